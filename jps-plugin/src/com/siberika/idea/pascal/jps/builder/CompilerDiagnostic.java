@@ -0,0 +1,43 @@
+package com.siberika.idea.pascal.jps.builder;
+
+import java.util.Objects;
+
+/**
+ * Structured compiler message
+ */
+class CompilerDiagnostic {
+    final CompilerMessageCategory category;
+    final String msgId;
+    final String message;
+    final String path;
+    final long line;
+    final long column;
+
+    CompilerDiagnostic(CompilerMessageCategory category, String msgId, String message, String path, long line, long column) {
+        this.category = category;
+        this.msgId = msgId;
+        this.message = message;
+        this.path = path;
+        this.line = line;
+        this.column = column;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CompilerDiagnostic that = (CompilerDiagnostic) o;
+        return line == that.line && column == that.column && category == that.category && Objects.equals(msgId, that.msgId)
+                && Objects.equals(message, that.message) && Objects.equals(path, that.path);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(category, msgId, message, path, line, column);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s(%d,%d) %s: %s", category, path, line, column, msgId, message);
+    }
+}
@@ -0,0 +1,160 @@
+package com.siberika.idea.pascal.jps.builder;
+
+import com.siberika.idea.pascal.jps.compiler.DelphiBackendCompiler;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Single pass tokenizer of FPC and Delphi compiler output lines.
+ * FPC:    [path(line[,column])] (Error|Fatal|Warning|Note|Hint): [(id)] message  or  [path(line[,column])] (id) message
+ * Delphi: [path(line)] (Error|Fatal|Warning|Hint): Xnnnn message
+ * Lines which don't match the formats are returned as INFO diagnostics with the whole line as message.
+ */
+class CompilerOutputTokenizer {
+
+    private static final String[] FPC_KEYWORDS = {"Error", "Fatal", "Warning", "warning", "Note", "Hint"};
+    private static final String[] DELPHI_KEYWORDS = {"Error", "Fatal", "Warning", "warning", "Hint"};
+
+    @NotNull
+    static CompilerDiagnostic tokenizeFPC(@NotNull String line) {
+        int kwEnd = -1;
+        String keyword = null;
+        int kwStart = findKeyword(line, FPC_KEYWORDS);
+        if (kwStart >= 0) {
+            keyword = getKeyword(line, kwStart, FPC_KEYWORDS);
+            kwEnd = kwStart + keyword.length() + 1;
+        }
+        if (keyword != null) {
+            boolean error = "Error".equals(keyword) || "Fatal".equals(keyword);
+            int idEnd = parseFPCMessageId(line, kwEnd);
+            if (idEnd > 0) {
+                CompilerMessageCategory category = error ? CompilerMessageCategory.ERROR :
+                        ("Note".equals(keyword) || "Hint".equals(keyword)) ? CompilerMessageCategory.HINT : CompilerMessageCategory.WARNING;
+                return withLocation(line, kwStart, category, line.substring(line.indexOf('(', kwEnd) + 1, idEnd - 2), line.substring(idEnd), true);
+            } else if (error) {
+                return withLocation(line, kwStart, CompilerMessageCategory.ERROR, null, line.substring(kwEnd).trim(), true);
+            }
+        }
+        // message without severity keyword: [location] (id) message
+        for (int i = line.indexOf('('); i >= 0; i = line.indexOf('(', i + 1)) {
+            int idEnd = parseFPCMessageId(line, i);
+            if (idEnd > 0) {
+                int start = i;
+                while ((start > 0) && (line.charAt(start - 1) == ' ' || line.charAt(start - 1) == ':')) {
+                    start--;
+                }
+                return withLocation(line, start, CompilerMessageCategory.HINT, line.substring(i + 1, idEnd - 2), line.substring(idEnd), true);
+            }
+        }
+        return new CompilerDiagnostic(CompilerMessageCategory.INFO, null, line, "", -1, -1);
+    }
+
+    @NotNull
+    static CompilerDiagnostic tokenizeDelphi(@NotNull String line) {
+        if (line.startsWith(DelphiBackendCompiler.DELPHI_STARTER_RESPONSE)) {
+            return new CompilerDiagnostic(CompilerMessageCategory.ERROR, null, line, "", -1, -1);
+        }
+        int kwStart = findKeyword(line, DELPHI_KEYWORDS);
+        if (kwStart >= 0) {
+            String keyword = getKeyword(line, kwStart, DELPHI_KEYWORDS);
+            int pos = skipSpaces(line, kwStart + keyword.length() + 1);
+            int idStart = pos;
+            if ((pos < line.length()) && isWordChar(line.charAt(pos))) {
+                pos++;
+                int digits = pos;
+                while ((pos < line.length()) && Character.isDigit(line.charAt(pos))) {
+                    pos++;
+                }
+                if ((pos > digits) && (pos < line.length()) && (line.charAt(pos) == ' ')) {
+                    CompilerMessageCategory category = ("Error".equals(keyword) || "Fatal".equals(keyword)) ? CompilerMessageCategory.ERROR :
+                            "Hint".equals(keyword) ? CompilerMessageCategory.INFO : CompilerMessageCategory.WARNING;
+                    return withLocation(line, kwStart, category, line.substring(idStart, pos), line.substring(pos + 1), false);
+                }
+            }
+        }
+        return new CompilerDiagnostic(CompilerMessageCategory.INFO, null, line, "", -1, -1);
+    }
+
+    // Returns index of first keyword followed by colon
+    private static int findKeyword(String line, String[] keywords) {
+        for (int colon = line.indexOf(':'); colon >= 0; colon = line.indexOf(':', colon + 1)) {
+            for (String keyword : keywords) {
+                int start = colon - keyword.length();
+                if ((start >= 0) && line.startsWith(keyword, start)) {
+                    return start;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static String getKeyword(String line, int start, String[] keywords) {
+        for (String keyword : keywords) {
+            if (line.startsWith(keyword, start) && (line.length() > start + keyword.length()) && (line.charAt(start + keyword.length()) == ':')) {
+                return keyword;
+            }
+        }
+        throw new IllegalStateException("No keyword at " + start);
+    }
+
+    // Parses "  (digits) " starting from pos and returns index after it or -1
+    private static int parseFPCMessageId(String line, int pos) {
+        pos = skipSpaces(line, pos);
+        if ((pos >= line.length()) || (line.charAt(pos) != '(')) {
+            return -1;
+        }
+        int digits = ++pos;
+        while ((pos < line.length()) && Character.isDigit(line.charAt(pos))) {
+            pos++;
+        }
+        if ((pos == digits) || (pos + 1 >= line.length()) || (line.charAt(pos) != ')') || (line.charAt(pos + 1) != ' ')) {
+            return -1;
+        }
+        return pos + 2;
+    }
+
+    // Creates diagnostic with location parsed from the text before the given index: path(line[,column])
+    private static CompilerDiagnostic withLocation(String line, int end, CompilerMessageCategory category, String msgId, String message, boolean hasColumn) {
+        while ((end > 0) && Character.isWhitespace(line.charAt(end - 1))) {
+            end--;
+        }
+        if ((end > 0) && (line.charAt(end - 1) == ')')) {
+            int open = line.lastIndexOf('(', end - 1);
+            if (open >= 0) {
+                String location = line.substring(open + 1, end - 1);
+                int comma = hasColumn ? location.indexOf(',') : -1;
+                long lineNum = parseNumber(comma >= 0 ? location.substring(0, comma) : location);
+                long colNum = comma >= 0 ? parseNumber(location.substring(comma + 1)) : -1;
+                if ((lineNum >= 0) && ((comma < 0) || (colNum >= 0))) {
+                    return new CompilerDiagnostic(category, msgId, message, line.substring(0, open), lineNum, colNum);
+                }
+            }
+        }
+        return new CompilerDiagnostic(category, msgId, message, null, -1, -1);
+    }
+
+    private static long parseNumber(String text) {
+        if (text.isEmpty() || (text.length() > 9)) {
+            return -1;
+        }
+        long result = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (!Character.isDigit(c)) {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    private static int skipSpaces(String line, int pos) {
+        while ((pos < line.length()) && Character.isWhitespace(line.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || (c == '_');
+    }
+}
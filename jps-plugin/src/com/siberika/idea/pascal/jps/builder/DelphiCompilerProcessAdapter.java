@@ -1,11 +1,6 @@
 package com.siberika.idea.pascal.jps.builder;
 
 import com.siberika.idea.pascal.jps.compiler.CompilerMessager;
-import com.siberika.idea.pascal.jps.compiler.DelphiBackendCompiler;
-import org.jetbrains.annotations.NonNls;
-
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Author: George Bakhtadze
@@ -13,42 +8,33 @@ import java.util.regex.Pattern;
  */
 public class DelphiCompilerProcessAdapter extends PascalCompilerProcessAdapter {
 
-    @NonNls private static final String PATTERN_COMMON = "((.*)\\((\\d+)\\))?\\s*";
-    @NonNls private static final String PATTERN_MESSAGE = "\\s*(\\w\\d+) (.*)$";
-    @NonNls private static final Pattern PATTERN_ERROR = Pattern.compile("((.*)\\((\\d+)\\))?\\s*(Error|Fatal):" + PATTERN_MESSAGE);
-    @NonNls private static final Pattern PATTERN_WARNING = Pattern.compile(PATTERN_COMMON + "(Error|Fatal|Warning|warning):" + PATTERN_MESSAGE);
-    @NonNls private static final Pattern PATTERN_INFO = Pattern.compile(PATTERN_COMMON + "(Hint:)" + PATTERN_MESSAGE);
-
     public DelphiCompilerProcessAdapter(CompilerMessager messager) {
         super(messager);
     }
 
     @Override
-    protected boolean processLine(CompilerMessager messager, String line) {
-        if (line == null) {
-            return false;
-        }
-        if (line.startsWith(DelphiBackendCompiler.DELPHI_STARTER_RESPONSE)) {
-            PascalCompilerMessager.createMessage(CompilerMessageCategory.ERROR, line, null, messager);
-            return true;
+    protected CompilerDiagnostic tokenize(String line) {
+        return CompilerOutputTokenizer.tokenizeDelphi(line);
+    }
+
+    // "<path>(<lines>)" progress line printed when the compiler starts a unit and while it's compiled
+    @Override
+    protected String getCompilingUnit(CompilerDiagnostic diagnostic) {
+        String message = diagnostic.message.trim();
+        int open = message.lastIndexOf('(');
+        if ((open <= 0) || !message.endsWith(")") || (open + 2 >= message.length())) {
+            return null;
         }
-        Matcher matcher = PATTERN_ERROR.matcher(line);
-        if (matcher.find()) {
-            PascalCompilerMessager.createMessage(CompilerMessageCategory.ERROR, line, matcher, messager);
-        } else {
-            matcher = PATTERN_WARNING.matcher(line);
-            if (matcher.find()) {
-                PascalCompilerMessager.createMessage(CompilerMessageCategory.WARNING, line, matcher, messager);
-            } else {
-                matcher = PATTERN_INFO.matcher(line);
-                if (matcher.find()) {
-                    PascalCompilerMessager.createMessage(CompilerMessageCategory.INFO, line, matcher, messager);
-                } else {
-                    PascalCompilerMessager.createMessage(CompilerMessageCategory.INFO, line, null, messager);
-                }
+        for (int i = open + 1; i < message.length() - 1; i++) {
+            if (!Character.isDigit(message.charAt(i))) {
+                return null;
             }
         }
-        return true;
+        String path = message.substring(0, open);
+        int dot = path.lastIndexOf('.');
+        String ext = dot >= 0 ? path.substring(dot + 1).toLowerCase() : "";
+        // time spent in include files is attributed to the including unit
+        return PascalBuilderService.COMPILABLE_EXTENSIONS.contains(ext) && !"inc".equals(ext) ? path : null;
     }
 
 }
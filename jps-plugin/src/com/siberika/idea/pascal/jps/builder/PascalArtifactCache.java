@@ -0,0 +1,545 @@
+package com.siberika.idea.pascal.jps.builder;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jps.incremental.CompileContext;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Local content-addressed store of compiled unit files (.ppu/.o, .dcu).
+ * Compiled files of a unit are keyed by a hash of compiler version, compiler options which are not paths,
+ * the unit source with its include files and sources of units it uses directly or through their interface uses.
+ * Include files are searched as the compiler does: in the directory of the including file and then in include paths
+ * of the command line. A unit with an include file which can't be found is not cached.
+ * Before the compiler is launched cached files of units missing or outdated in the output directory are restored,
+ * after a successful build compiled units written by the compiler during the build are stored.
+ * Least recently used entries are evicted when the store exceeds its size limit.
+ * The cache is enabled by "pascal.build.artifactCache" builder parameter or system property which specifies
+ * the store directory, size limit in megabytes is set by "pascal.build.artifactCache.maxSize".
+ */
+class PascalArtifactCache {
+
+    private static final Logger LOG = Logger.getInstance(PascalArtifactCache.class);
+
+    static final String DIR_PARAM = "pascal.build.artifactCache";
+    static final String MAX_SIZE_PARAM = "pascal.build.artifactCache.maxSize";
+
+    private static final long DEFAULT_MAX_SIZE_MB = 1024;
+    private static final String STATS_FILE = "stats.properties";
+    private static final String OBJECT_EXT = ".o";
+    private static final List<String> UNIT_EXTENSIONS = Arrays.asList("pas", "pp");
+    private static final List<String> INCLUDE_PATH_OPTIONS = Arrays.asList("-Fi", "-I");
+    private static final List<String> INCLUDE_DEFAULT_EXTENSIONS = Arrays.asList(".inc", ".pas", ".pp");
+
+    private static final Pattern PATTERN_INCLUDE = Pattern.compile("\\{\\$(?:I|INCLUDE)\\s+'?([^'}\\s+\\-][^'}]*?)'?\\s*}", Pattern.CASE_INSENSITIVE);
+    private static final Pattern PATTERN_COMMENT_OR_STRING = Pattern.compile("\\{[^}]*}|\\(\\*.*?\\*\\)|//[^\\n]*|'[^']*'", Pattern.DOTALL);
+    private static final Pattern PATTERN_WORD = Pattern.compile("[A-Za-z_][A-Za-z_0-9.]*|;");
+
+    private static final Map<File, PascalArtifactCache> INSTANCES = new ConcurrentHashMap<>();
+
+    private final File dir;
+    private final long maxSize;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong bytesSaved = new AtomicLong();
+
+    private PascalArtifactCache(File dir, long maxSize) {
+        this.dir = dir;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns artifact cache configured for the build or null if the cache is disabled
+     */
+    @Nullable
+    static PascalArtifactCache getInstance(@NotNull CompileContext context) {
+        String path = getParam(context, DIR_PARAM);
+        if ((null == path) || path.trim().isEmpty()) {
+            return null;
+        }
+        long maxSizeMb = DEFAULT_MAX_SIZE_MB;
+        String maxSizeStr = getParam(context, MAX_SIZE_PARAM);
+        if (maxSizeStr != null) {
+            try {
+                maxSizeMb = Long.parseLong(maxSizeStr.trim());
+            } catch (NumberFormatException e) {
+                LOG.info("Invalid " + MAX_SIZE_PARAM + " value: " + maxSizeStr);
+            }
+        }
+        final long maxSize = maxSizeMb * 1024 * 1024;
+        return INSTANCES.computeIfAbsent(new File(path.trim()), file -> new PascalArtifactCache(file, maxSize));
+    }
+
+    private static String getParam(CompileContext context, String name) {
+        String value = context.getBuilderParameter(name);
+        return value != null ? value : System.getProperty(name);
+    }
+
+    /**
+     * Opens cache session for a compiler launch
+     * @param sourcePaths unit search path of the launch
+     */
+    @NotNull
+    Session open(@Nullable String compilerVersion, @NotNull String[] cmdLine, @NotNull List<File> sourcePaths,
+                 @NotNull File outputDir, @NotNull String compiledExt) {
+        return new Session(compilerVersion, cmdLine, sourcePaths, outputDir, compiledExt);
+    }
+
+    class Session {
+        private final String optionsKey;
+        private final List<File> includePaths = new ArrayList<>();
+        private final File outputDir;
+        private final String compiledExt;
+        // Unit source by upper cased unit name, first found in search path order
+        private final Map<String, File> sources = new LinkedHashMap<>();
+        private final Map<String, UnitInfo> units = new HashMap<>();
+        private final Map<String, String> keys = new HashMap<>();
+        private long sessionHits;
+        private long sessionMisses;
+        private long sessionBytes;
+        // Compiled files modified since this time are written by the compiler launched in the session
+        private long compileStart;
+
+        private Session(String compilerVersion, String[] cmdLine, List<File> sourcePaths, File outputDir, String compiledExt) {
+            this.outputDir = outputDir;
+            this.compiledExt = compiledExt;
+            StringBuilder sb = new StringBuilder(String.valueOf(compilerVersion));
+            for (int i = 1; i < cmdLine.length; i++) {            // paths do not affect compiled units
+                String arg = cmdLine[i];
+                if ((arg.indexOf('/') < 0) && (arg.indexOf('\\') < 0)) {
+                    sb.append('\n').append(arg);
+                } else {
+                    addIncludePath(arg);
+                }
+            }
+            optionsKey = sb.toString();
+            for (File path : sourcePaths) {
+                collectSources(path);
+            }
+            compileStart = System.currentTimeMillis() / 1000 * 1000;
+        }
+
+        /**
+         * Restores cached compiled files of units which are missing or older than source in output directory.
+         * Should be called right before the compiler launch as compiled files modified after the call are considered
+         * written by the compiler.
+         */
+        void restore() {
+            for (Map.Entry<String, File> entry : sources.entrySet()) {
+                File source = entry.getValue();
+                String unitName = FileUtil.getNameWithoutExtension(source);
+                File compiled = findCompiled(unitName);
+                if ((compiled != null) && (compiled.lastModified() >= source.lastModified())) {
+                    continue;
+                }
+                String key = getKey(entry.getKey());
+                if (null == key) {
+                    continue;
+                }
+                File entryDir = getEntryDir(key);
+                if (entryDir.isDirectory()) {
+                    long size = restoreEntry(entryDir, source.lastModified());
+                    if (size > 0) {
+                        sessionHits++;
+                        sessionBytes += size;
+                        continue;
+                    }
+                }
+                sessionMisses++;
+            }
+            hits.addAndGet(sessionHits);
+            misses.addAndGet(sessionMisses);
+            bytesSaved.addAndGet(sessionBytes);
+            // file systems may keep modification time with seconds precision
+            compileStart = System.currentTimeMillis() / 1000 * 1000;
+        }
+
+        /**
+         * Stores compiled files written by the compiler since {@link #restore()} which are not in the cache yet
+         * and evicts old entries if needed. Compiled files not rewritten by the compiler may be outdated
+         * regarding the current sources of their dependencies so they are never stored.
+         */
+        void store() {
+            boolean added = false;
+            for (Map.Entry<String, File> entry : sources.entrySet()) {
+                String unitName = FileUtil.getNameWithoutExtension(entry.getValue());
+                File compiled = findCompiled(unitName);
+                if ((null == compiled) || (compiled.lastModified() < compileStart)
+                        || (compiled.lastModified() < entry.getValue().lastModified())) {
+                    continue;
+                }
+                String key = getKey(entry.getKey());
+                if (null == key) {
+                    continue;
+                }
+                File entryDir = getEntryDir(key);
+                if (!entryDir.isDirectory()) {
+                    added |= storeEntry(entryDir, compiled, unitName);
+                }
+            }
+            if (added) {
+                evict();
+            }
+            saveStats(sessionHits, sessionMisses, sessionBytes);
+        }
+
+        String getStatistics() {
+            return String.format("Artifact cache: %d hits, %d misses, %d KB restored. Total: %d hits, %d misses, %d KB restored",
+                    sessionHits, sessionMisses, sessionBytes / 1024, hits.get(), misses.get(), bytesSaved.get() / 1024);
+        }
+
+        private File findCompiled(String unitName) {
+            File compiled = new File(outputDir, unitName + compiledExt);
+            if (!compiled.isFile()) {
+                compiled = new File(outputDir, unitName.toLowerCase(Locale.ENGLISH) + compiledExt);
+            }
+            return compiled.isFile() ? compiled : null;
+        }
+
+        private long restoreEntry(File entryDir, long sourceTime) {
+            File[] files = entryDir.listFiles();
+            if ((null == files) || (files.length == 0)) {
+                return 0;
+            }
+            long size = 0;
+            long time = Math.max(System.currentTimeMillis(), sourceTime);
+            try {
+                for (File file : files) {
+                    File target = new File(outputDir, file.getName());
+                    FileUtil.copy(file, target);
+                    target.setLastModified(time);
+                    size += file.length();
+                }
+                entryDir.setLastModified(System.currentTimeMillis());
+            } catch (IOException e) {
+                LOG.info("Error restoring compiled unit from artifact cache: " + e.getMessage());
+                return 0;
+            }
+            return size;
+        }
+
+        private boolean storeEntry(File entryDir, File compiled, String unitName) {
+            File tempDir = new File(entryDir.getPath() + ".tmp" + Thread.currentThread().getId());
+            try {
+                FileUtil.copy(compiled, new File(tempDir, compiled.getName()));
+                File object = new File(outputDir, FileUtil.getNameWithoutExtension(compiled) + OBJECT_EXT);
+                if (object.isFile()) {
+                    FileUtil.copy(object, new File(tempDir, object.getName()));
+                }
+                if (!tempDir.renameTo(entryDir)) {
+                    FileUtil.delete(tempDir);
+                    return false;
+                }
+                return true;
+            } catch (IOException e) {
+                LOG.info(String.format("Error storing unit %s to artifact cache: %s", unitName, e.getMessage()));
+                FileUtil.delete(tempDir);
+                return false;
+            }
+        }
+
+        private void addIncludePath(String arg) {
+            for (String option : INCLUDE_PATH_OPTIONS) {
+                if (arg.startsWith(option) && (arg.length() > option.length())) {
+                    File path = new File(arg.substring(option.length()));
+                    if (path.isAbsolute()) {
+                        includePaths.add(path);
+                    }
+                    return;
+                }
+            }
+        }
+
+        private void collectSources(File path) {
+            File[] files = path.listFiles();
+            if (null == files) {
+                return;
+            }
+            Arrays.sort(files);
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    collectSources(file);
+                } else if (UNIT_EXTENSIONS.contains(FileUtil.getExtension(file.getName()).toLowerCase(Locale.ENGLISH))) {
+                    sources.putIfAbsent(FileUtil.getNameWithoutExtension(file).toUpperCase(Locale.ENGLISH), file);
+                }
+            }
+        }
+
+        /**
+         * Key of a unit: compiler options, unit content and content of units it depends on.
+         * Returns null if the unit or one of its dependencies has content which can't be hashed.
+         */
+        @Nullable
+        private String getKey(String unitName) {
+            if (keys.containsKey(unitName)) {
+                return keys.get(unitName);
+            }
+            String key = null;
+            UnitInfo info = getUnitInfo(unitName);
+            if ((info != null) && (info.hash != null)) {
+                Set<String> deps = new LinkedHashSet<>();
+                for (String used : info.uses) {
+                    collectInterfaceClosure(used, deps);
+                }
+                List<String> sorted = new ArrayList<>(deps);
+                Collections.sort(sorted);
+                StringBuilder sb = new StringBuilder(optionsKey).append('\n').append(unitName).append(':').append(info.hash);
+                for (String dep : sorted) {
+                    UnitInfo depInfo = getUnitInfo(dep);
+                    if ((depInfo != null) && (null == depInfo.hash)) {
+                        sb = null;
+                        break;
+                    }
+                    sb.append('\n').append(dep).append(':').append(depInfo != null ? depInfo.hash : "");
+                }
+                key = sb != null ? hash(sb.toString().getBytes(StandardCharsets.UTF_8)) : null;
+            }
+            keys.put(unitName, key);
+            return key;
+        }
+
+        private void collectInterfaceClosure(String unitName, Set<String> result) {
+            if (result.add(unitName)) {
+                UnitInfo info = getUnitInfo(unitName);
+                if (info != null) {
+                    for (String used : info.interfaceUses) {
+                        collectInterfaceClosure(used, result);
+                    }
+                }
+            }
+        }
+
+        // Returns information about the unit or null if its source is not in search path (e.g. SDK units)
+        @Nullable
+        private UnitInfo getUnitInfo(String unitName) {
+            File source = sources.get(unitName);
+            if (null == source) {
+                return null;
+            }
+            UnitInfo info = units.get(unitName);
+            if (null == info) {
+                info = UnitInfo.parse(source, includePaths);
+                units.put(unitName, info);
+            }
+            return info;
+        }
+    }
+
+    private File getEntryDir(String key) {
+        return new File(new File(dir, key.substring(0, 2)), key);
+    }
+
+    // Removes least recently used entries until total size fits the limit
+    private synchronized void evict() {
+        File[] buckets = dir.listFiles(File::isDirectory);
+        if (null == buckets) {
+            return;
+        }
+        List<File> entries = new ArrayList<>();
+        Map<File, Long> sizes = new HashMap<>();
+        long total = 0;
+        for (File bucket : buckets) {
+            File[] bucketEntries = bucket.listFiles(File::isDirectory);
+            for (File entry : bucketEntries != null ? bucketEntries : new File[0]) {
+                long size = 0;
+                File[] files = entry.listFiles();
+                for (File file : files != null ? files : new File[0]) {
+                    size += file.length();
+                }
+                entries.add(entry);
+                sizes.put(entry, size);
+                total += size;
+            }
+        }
+        if (total <= maxSize) {
+            return;
+        }
+        entries.sort(Comparator.comparingLong(File::lastModified));
+        for (File entry : entries) {
+            if (total <= maxSize) {
+                break;
+            }
+            if (FileUtil.delete(entry)) {
+                total -= sizes.get(entry);
+            }
+        }
+    }
+
+    // Adds session statistics to statistics persisted in the store directory
+    private synchronized void saveStats(long sessionHits, long sessionMisses, long sessionBytes) {
+        Properties stats = new Properties();
+        File file = new File(dir, STATS_FILE);
+        if (file.isFile()) {
+            try (InputStream is = new FileInputStream(file)) {
+                stats.load(is);
+            } catch (IOException e) {
+                LOG.info("Error loading artifact cache statistics: " + e.getMessage());
+            }
+        }
+        stats.setProperty("hits", String.valueOf(getLong(stats, "hits") + sessionHits));
+        stats.setProperty("misses", String.valueOf(getLong(stats, "misses") + sessionMisses));
+        stats.setProperty("bytesSaved", String.valueOf(getLong(stats, "bytesSaved") + sessionBytes));
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            return;
+        }
+        try (OutputStream os = new FileOutputStream(file)) {
+            stats.store(os, null);
+        } catch (IOException e) {
+            LOG.info("Error saving artifact cache statistics: " + e.getMessage());
+        }
+    }
+
+    private static long getLong(Properties properties, String key) {
+        try {
+            return Long.parseLong(properties.getProperty(key, "0"));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static String hash(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(data);
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Content hash and used units of a unit source
+    static class UnitInfo {
+        // null if some content of the unit can't be read
+        private final String hash;
+        private final List<String> uses;
+        private final List<String> interfaceUses;
+
+        private UnitInfo(String hash, List<String> uses, List<String> interfaceUses) {
+            this.hash = hash;
+            this.uses = uses;
+            this.interfaceUses = interfaceUses;
+        }
+
+        private static UnitInfo parse(File source, List<File> includePaths) {
+            String text = readText(source);
+            if (null == text) {
+                return new UnitInfo(null, Collections.emptyList(), Collections.emptyList());
+            }
+            StringBuilder content = new StringBuilder(text);
+            if (!appendIncludes(content, source, text, includePaths, new HashSet<>(Collections.singleton(source)))) {
+                return new UnitInfo(null, Collections.emptyList(), Collections.emptyList());
+            }
+            List<String> uses = new ArrayList<>();
+            List<String> interfaceUses = new ArrayList<>();
+            boolean inImplementation = false;
+            boolean inUses = false;
+            Matcher words = PATTERN_WORD.matcher(PATTERN_COMMENT_OR_STRING.matcher(text).replaceAll(" "));
+            while (words.find()) {
+                String word = words.group().toUpperCase(Locale.ENGLISH);
+                if (inUses) {
+                    if (";".equals(word)) {
+                        inUses = false;
+                    } else if (!"IN".equals(word)) {
+                        uses.add(word);
+                        if (!inImplementation) {
+                            interfaceUses.add(word);
+                        }
+                    }
+                } else if ("USES".equals(word)) {
+                    inUses = true;
+                } else if ("IMPLEMENTATION".equals(word)) {
+                    inImplementation = true;
+                }
+            }
+            return new UnitInfo(hash(content.toString().getBytes(StandardCharsets.ISO_8859_1)), uses, interfaceUses);
+        }
+
+        // Appends content of files included by the text and files included by them. Returns false if an include file is not found.
+        private static boolean appendIncludes(StringBuilder content, File file, String text, List<File> includePaths, Set<File> visited) {
+            Matcher includes = PATTERN_INCLUDE.matcher(text);
+            while (includes.find()) {
+                File include = findInclude(includes.group(1).trim(), file.getParentFile(), includePaths);
+                String includeText = include != null ? readText(include) : null;
+                if (null == includeText) {
+                    return false;
+                }
+                content.append('\n').append(includeText);
+                if (visited.add(include) && !appendIncludes(content, include, includeText, includePaths, visited)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Searches include file in the directory of including file and then in include paths, with default extensions if the name has no one
+        @Nullable
+        static File findInclude(String name, File dir, List<File> includePaths) {
+            List<String> names = new ArrayList<>();
+            names.add(name);
+            if (FileUtil.getExtension(name).isEmpty()) {
+                for (String ext : INCLUDE_DEFAULT_EXTENSIONS) {
+                    names.add(name + ext);
+                }
+            }
+            for (String candidate : names) {
+                File file = new File(candidate);
+                if (file.isAbsolute()) {
+                    if (file.isFile()) {
+                        return file;
+                    }
+                    continue;
+                }
+                if ((dir != null) && (file = new File(dir, candidate)).isFile()) {
+                    return file;
+                }
+                for (File path : includePaths) {
+                    if ((file = new File(path, candidate)).isFile()) {
+                        return file;
+                    }
+                }
+            }
+            return null;
+        }
+
+        @Nullable
+        private static String readText(File file) {
+            try {
+                return new String(Files.readAllBytes(file.toPath()), StandardCharsets.ISO_8859_1);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+    }
+}
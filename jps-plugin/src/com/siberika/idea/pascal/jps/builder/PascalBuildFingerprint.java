@@ -0,0 +1,243 @@
+package com.siberika.idea.pascal.jps.builder;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Persisted fingerprint of a target build: hashes of compiler command line, SDK version, sources and output files.
+ * Sources are Pascal sources, include and resource files (forms, .res, .rc, .lrs) and compiled units of dependencies
+ * in source directories and include paths of the command line.
+ * When everything matches the last successful build the compiler is not launched.
+ * Content hash of a source is recomputed only when the file is dirty or its length or modification time changed.
+ */
+class PascalBuildFingerprint {
+
+    private static final Logger LOG = Logger.getInstance(PascalBuildFingerprint.class);
+
+    private static final String FILE_NAME = "pascal-fingerprint.properties";
+    private static final String KEY_COMMAND = "command";
+    private static final String KEY_SDK = "sdk";
+    private static final String KEY_SOURCES = "sources";
+    private static final String KEY_OUTPUTS = "outputs";
+    private static final String PREFIX_SOURCE = "src:";
+    private static final List<String> COMPILED_EXTENSIONS = Arrays.asList("ppu", "dcu");
+    private static final List<String> RESOURCE_EXTENSIONS = Arrays.asList("lfm", "dfm", "fmx", "xfm", "res", "rc", "lrs", "lrj");
+    private static final List<String> INCLUDE_PATH_OPTIONS = Arrays.asList("-Fi", "-I");
+
+    private final File storage;
+    private final Properties stored = new Properties();
+    private final Properties current = new Properties();
+
+    private PascalBuildFingerprint(File storage) {
+        this.storage = storage;
+        if (storage.isFile()) {
+            try (InputStream is = new FileInputStream(storage)) {
+                stored.load(is);
+            } catch (IOException e) {
+                LOG.info("Error loading build fingerprint: " + e.getMessage());
+            }
+        }
+    }
+
+    @NotNull
+    static PascalBuildFingerprint load(@NotNull File dataRoot) {
+        return new PascalBuildFingerprint(new File(dataRoot, FILE_NAME));
+    }
+
+    /**
+     * Computes fingerprint of build inputs
+     * @param sourcePaths directories with sources and compiled units of dependencies
+     * @param sdkPaths    SDK directories which are not hashed as SDK content is identified by SDK version
+     * @param dirtyFiles  files reported as changed, their content is always hashed
+     */
+    void computeInputs(@NotNull String[] cmdLine, @Nullable String sdkVersion, @NotNull List<File> sourcePaths,
+                       @NotNull Collection<File> sdkPaths, @NotNull Collection<File> dirtyFiles) {
+        current.setProperty(KEY_COMMAND, hash(String.join("\n", cmdLine)));
+        current.setProperty(KEY_SDK, String.valueOf(sdkVersion));
+        Set<String> dirty = new HashSet<>();
+        for (File file : dirtyFiles) {
+            dirty.add(file.getPath());
+        }
+        MessageDigest digest = createDigest();
+        Set<File> visited = new HashSet<>();
+        for (File path : sourcePaths) {
+            hashSources(digest, path, dirty, visited, true);
+        }
+        for (File path : getIncludePaths(cmdLine)) {
+            if (!isUnder(path, sdkPaths)) {
+                hashSources(digest, path, dirty, visited, false);
+            }
+        }
+        current.setProperty(KEY_SOURCES, toHex(digest.digest()));
+    }
+
+    /**
+     * Returns reason to launch compiler or null if inputs and outputs match the last successful build
+     */
+    @Nullable
+    String getChangeReason(@NotNull List<File> outputDirs) {
+        if (stored.isEmpty()) {
+            return "no previous build information";
+        } else if (!current.getProperty(KEY_COMMAND).equals(stored.getProperty(KEY_COMMAND))) {
+            return "compiler command line changed";
+        } else if (!current.getProperty(KEY_SDK).equals(stored.getProperty(KEY_SDK))) {
+            return "SDK version changed";
+        } else if (!current.getProperty(KEY_SOURCES).equals(stored.getProperty(KEY_SOURCES))) {
+            return "sources changed";
+        } else if (!hashOutputs(outputDirs).equals(stored.getProperty(KEY_OUTPUTS))) {
+            return "output files changed";
+        }
+        return null;
+    }
+
+    // Saves fingerprint after a successful build
+    void save(@NotNull List<File> outputDirs) {
+        current.setProperty(KEY_OUTPUTS, hashOutputs(outputDirs));
+        File dir = storage.getParentFile();
+        if ((dir != null) && !dir.isDirectory() && !dir.mkdirs()) {
+            LOG.info("Can't create directory for build fingerprint: " + dir.getPath());
+            return;
+        }
+        try (OutputStream os = new FileOutputStream(storage)) {
+            current.store(os, null);
+        } catch (IOException e) {
+            LOG.info("Error saving build fingerprint: " + e.getMessage());
+        }
+    }
+
+    // Removes fingerprint so the next build launches compiler
+    void reset() {
+        if (storage.isFile() && !storage.delete()) {
+            LOG.info("Can't delete build fingerprint: " + storage.getPath());
+        }
+    }
+
+    // Include paths are not searched recursively by compilers
+    static List<File> getIncludePaths(String[] cmdLine) {
+        List<File> result = new ArrayList<>();
+        for (String arg : cmdLine) {
+            for (String option : INCLUDE_PATH_OPTIONS) {
+                if (arg.startsWith(option) && (arg.length() > option.length()) && new File(arg.substring(option.length())).isAbsolute()) {
+                    result.add(new File(arg.substring(option.length())));
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static boolean isUnder(File path, Collection<File> roots) {
+        for (File root : roots) {
+            if (FileUtil.isAncestor(root, path, false)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void hashSources(MessageDigest digest, File path, Set<String> dirty, Set<File> visited, boolean recursive) {
+        if (!visited.add(path)) {
+            return;
+        }
+        File[] files = path.listFiles();
+        if (null == files) {
+            return;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            if (file.isDirectory()) {
+                if (recursive) {
+                    hashSources(digest, file, dirty, visited, true);
+                }
+            } else if (isInput(file.getName())) {
+                String hash = getFileHash(file, dirty.contains(file.getPath()));
+                digest.update(file.getPath().getBytes(StandardCharsets.UTF_8));
+                digest.update(hash.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    private String getFileHash(File file, boolean dirty) {
+        String key = PREFIX_SOURCE + file.getPath();
+        String stamp = file.length() + ":" + file.lastModified();
+        String recorded = stored.getProperty(key);
+        String hash = null;
+        if (!dirty && (recorded != null) && recorded.startsWith(stamp + ":")) {
+            hash = recorded.substring(stamp.length() + 1);
+        } else {
+            try {
+                hash = hash(Files.readAllBytes(file.toPath()));
+            } catch (IOException e) {
+                hash = stamp;
+            }
+        }
+        current.setProperty(key, stamp + ":" + hash);
+        return hash;
+    }
+
+    private static boolean isInput(String name) {
+        int dot = name.lastIndexOf('.');
+        String ext = dot >= 0 ? name.substring(dot + 1).toLowerCase() : "";
+        return PascalBuilderService.COMPILABLE_EXTENSIONS.contains(ext) || COMPILED_EXTENSIONS.contains(ext) || RESOURCE_EXTENSIONS.contains(ext);
+    }
+
+    private static String hashOutputs(List<File> outputDirs) {
+        StringBuilder sb = new StringBuilder();
+        for (File dir : outputDirs) {
+            File[] files = dir.listFiles();
+            if (files != null) {
+                Arrays.sort(files);
+                for (File file : files) {
+                    if (file.isFile()) {
+                        sb.append(file.getPath()).append(':').append(file.length()).append(':').append(file.lastModified()).append('\n');
+                    }
+                }
+            }
+        }
+        return hash(sb.toString());
+    }
+
+    private static String hash(String text) {
+        return hash(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String hash(byte[] data) {
+        return toHex(createDigest().digest(data));
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,217 @@
+package com.siberika.idea.pascal.jps.builder;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Collects timings of a compiler run from the compiler progress lines.
+ * Time between two progress lines is attributed to the unit reported by the first of them so a unit gets its self time
+ * excluding time of the units it caused to compile after it was started. The report is saved as JSON and CSV in the build
+ * data directory of the target, not in the output directory which content is a part of the build fingerprint,
+ * and summarized in the build log.
+ */
+class PascalBuildProfiler {
+
+    private static final Logger LOG = Logger.getInstance(PascalBuildProfiler.class);
+
+    static final String REPORT_JSON = "pascal-build-profile.json";
+    static final String REPORT_CSV = "pascal-build-profile.csv";
+
+    private static final int SUMMARY_UNITS = 5;
+
+    private final String moduleName;
+    private final long startTime;
+    private final Map<String, UnitTiming> units = new LinkedHashMap<>();
+    private UnitTiming current;
+    private long currentStart;
+    private long wallTime = -1;
+
+    PascalBuildProfiler(@NotNull String moduleName) {
+        this.moduleName = moduleName;
+        this.startTime = System.nanoTime();
+    }
+
+    synchronized void onUnit(@NotNull String unitPath, long timeNanos) {
+        if ((current != null) && current.path.equals(unitPath)) {
+            return;
+        }
+        closeSegment(timeNanos);
+        current = units.get(unitPath);
+        if (null == current) {
+            current = new UnitTiming(unitPath);
+            units.put(unitPath, current);
+        }
+        currentStart = timeNanos;
+    }
+
+    // Called when compiler process is terminated
+    synchronized void finish() {
+        long time = System.nanoTime();
+        closeSegment(time);
+        current = null;
+        wallTime = time - startTime;
+        for (UnitTiming unit : units.values()) {
+            unit.lines = countLines(new File(unit.path));
+        }
+    }
+
+    /**
+     * Saves JSON and CSV reports to the directory
+     */
+    synchronized void save(@NotNull File dir) {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            LOG.info("Error creating build profile directory: " + dir.getPath());
+            return;
+        }
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(new File(dir, REPORT_JSON)), StandardCharsets.UTF_8)) {
+            writer.write(toJson());
+        } catch (IOException e) {
+            LOG.info("Error saving build profile: " + e.getMessage());
+        }
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(new File(dir, REPORT_CSV)), StandardCharsets.UTF_8)) {
+            writer.write(toCsv());
+        } catch (IOException e) {
+            LOG.info("Error saving build profile: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns human readable summary: module wall time, totals and the slowest units
+     */
+    @NotNull
+    synchronized String getSummary() {
+        long totalLines = 0;
+        for (UnitTiming unit : units.values()) {
+            totalLines += Math.max(0, unit.lines);
+        }
+        StringBuilder sb = new StringBuilder(String.format(Locale.US, "Module \"%s\" compiled in %.2f s: %d units, %d lines",
+                moduleName, toSeconds(wallTime), units.size(), totalLines));
+        if (totalLines > 0) {
+            sb.append(String.format(Locale.US, ", %.0f lines/s", totalLines / Math.max(toSeconds(wallTime), 0.001)));
+        }
+        List<UnitTiming> slowest = getSortedUnits();
+        if (!slowest.isEmpty()) {
+            sb.append(". Slowest units:");
+            for (int i = 0; i < Math.min(SUMMARY_UNITS, slowest.size()); i++) {
+                UnitTiming unit = slowest.get(i);
+                sb.append(String.format(Locale.US, "%s %s %.2f s", i > 0 ? "," : "", new File(unit.path).getName(), toSeconds(unit.duration)));
+            }
+        }
+        return sb.toString();
+    }
+
+    private void closeSegment(long timeNanos) {
+        if (current != null) {
+            current.duration += timeNanos - currentStart;
+        }
+    }
+
+    private List<UnitTiming> getSortedUnits() {
+        List<UnitTiming> result = new ArrayList<>(units.values());
+        result.sort((o1, o2) -> Long.compare(o2.duration, o1.duration));
+        return result;
+    }
+
+    private String toJson() {
+        StringBuilder sb = new StringBuilder("{\n");
+        sb.append("  \"module\": ").append(quote(moduleName)).append(",\n");
+        sb.append("  \"wallTimeMs\": ").append(toMillis(wallTime)).append(",\n");
+        sb.append("  \"units\": [");
+        String separator = "\n";
+        for (UnitTiming unit : getSortedUnits()) {
+            sb.append(separator).append("    {\"path\": ").append(quote(unit.path))
+                    .append(", \"durationMs\": ").append(toMillis(unit.duration))
+                    .append(", \"lines\": ").append(unit.lines)
+                    .append(", \"linesPerSecond\": ").append(String.format(Locale.US, "%.1f", unit.getThroughput()))
+                    .append('}');
+            separator = ",\n";
+        }
+        sb.append("\n  ]\n}\n");
+        return sb.toString();
+    }
+
+    private String toCsv() {
+        StringBuilder sb = new StringBuilder("path,durationMs,lines,linesPerSecond\n");
+        for (UnitTiming unit : getSortedUnits()) {
+            sb.append('"').append(unit.path.replace("\"", "\"\"")).append('"')
+                    .append(',').append(toMillis(unit.duration))
+                    .append(',').append(unit.lines)
+                    .append(',').append(String.format(Locale.US, "%.1f", unit.getThroughput()))
+                    .append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static String quote(String text) {
+        StringBuilder sb = new StringBuilder(text.length() + 2).append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if ((c == '"') || (c == '\\')) {
+                sb.append('\\').append(c);
+            } else if (c < ' ') {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    // Returns number of lines in the file or -1 if it can't be read
+    private static int countLines(File file) {
+        if (!file.isFile()) {
+            return -1;
+        }
+        try (InputStream is = new BufferedInputStream(new FileInputStream(file))) {
+            int lines = 0;
+            int last = -1;
+            int c;
+            while ((c = is.read()) >= 0) {
+                if (c == '\n') {
+                    lines++;
+                }
+                last = c;
+            }
+            return (last >= 0) && (last != '\n') ? lines + 1 : lines;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static long toMillis(long nanos) {
+        return nanos / 1000000;
+    }
+
+    private static double toSeconds(long nanos) {
+        return nanos / 1e9;
+    }
+
+    private static class UnitTiming {
+        private final String path;
+        private long duration;
+        private int lines = -1;
+
+        private UnitTiming(String path) {
+            this.path = path;
+        }
+
+        private double getThroughput() {
+            return (lines > 0) && (duration > 0) ? lines / toSeconds(duration) : 0;
+        }
+    }
+}
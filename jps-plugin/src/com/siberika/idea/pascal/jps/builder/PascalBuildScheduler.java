@@ -0,0 +1,292 @@
+package com.siberika.idea.pascal.jps.builder;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.Key;
+import com.siberika.idea.pascal.jps.compiler.PascalBackendCompiler;
+import com.siberika.idea.pascal.jps.util.ParamMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jps.builders.BuildTarget;
+import org.jetbrains.jps.builders.BuildTargetIndex;
+import org.jetbrains.jps.incremental.CompileContext;
+import org.jetbrains.jps.incremental.ProjectBuildException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compiles affected Pascal targets which have a main file concurrently in dependency order.
+ * Scheduling is done once per build session on the first build request. A target is compiled when all its scheduled
+ * dependencies are compiled and output directories of the dependencies go first in its unit search path so units
+ * of shared dependencies are compiled once.
+ * All compiler runs of the build session, including runs of build matrix entries and of targets which are not scheduled,
+ * are executed by a single executor so number of concurrent compiler processes is limited by "pascal.build.parallelism"
+ * builder parameter or system property and defaults to number of processors.
+ * Files to compile of scheduled targets are collected on the build thread when the targets are scheduled.
+ * A compiler run is not started and a running compiler is stopped when the build is canceled.
+ */
+class PascalBuildScheduler {
+
+    private static final Logger LOG = Logger.getInstance(PascalBuildScheduler.class);
+
+    static final String PARALLELISM_PARAM = "pascal.build.parallelism";
+
+    private static final Key<PascalBuildScheduler> SCHEDULER_KEY = Key.create("PASCAL_BUILD_SCHEDULER");
+    private static final long EXECUTOR_KEEP_ALIVE_SEC = 10;
+    private static final long CANCEL_CHECK_MS = 200;
+
+    interface Compilation {
+        /**
+         * Returns files to compile of the target: main file and changed files. Called on the build thread.
+         */
+        @NotNull
+        List<File> getFiles(@NotNull PascalTarget target) throws IOException;
+
+        /**
+         * Returns compiler runs of the target, one for each build matrix entry. Called when all scheduled dependencies
+         * of the target are compiled, should not launch compiler itself.
+         * @param dependencies compiled dependencies of the target, nearest first
+         */
+        @NotNull
+        List<Callable<Boolean>> prepare(@NotNull PascalTarget target, @NotNull List<File> files, @NotNull List<PascalTarget> dependencies) throws Exception;
+    }
+
+    private final CompileContext context;
+    private final Compilation compilation;
+    private final ExecutorService executor;
+    private final Map<PascalTarget, Collection<PascalTarget>> dependencies = new HashMap<>();
+    private final Map<PascalTarget, List<File>> files = new HashMap<>();
+    private final Map<PascalTarget, CompletableFuture<Boolean>> futures = new HashMap<>();
+
+    PascalBuildScheduler(CompileContext context, Compilation compilation, int parallelism) {
+        this.context = context;
+        this.compilation = compilation;
+        // threads are terminated when idle so the executor needs no shutdown at the end of build session
+        ThreadPoolExecutor threadPool = new ThreadPoolExecutor(parallelism, parallelism, EXECUTOR_KEEP_ALIVE_SEC, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new ThreadFactoryImpl());
+        threadPool.allowCoreThreadTimeOut(true);
+        this.executor = threadPool;
+    }
+
+    @NotNull
+    static synchronized PascalBuildScheduler getInstance(@NotNull CompileContext context, @NotNull Compilation compilation) throws IOException {
+        PascalBuildScheduler scheduler = context.getUserData(SCHEDULER_KEY);
+        if (null == scheduler) {
+            scheduler = new PascalBuildScheduler(context, compilation, getParallelism(context));
+            context.putUserData(SCHEDULER_KEY, scheduler);
+            scheduler.start();
+        }
+        return scheduler;
+    }
+
+    boolean isScheduled(@NotNull PascalTarget target) {
+        return futures.containsKey(target);
+    }
+
+    /**
+     * Waits for compilation of the scheduled target
+     * @return true if compilation succeeded, false if it failed, was skipped because of a dependency failure or the build is canceled
+     */
+    boolean await(@NotNull PascalTarget target) throws ProjectBuildException, IOException {
+        return await(futures.get(target));
+    }
+
+    /**
+     * Executes compiler runs of a target which is not scheduled and waits for their completion
+     * @return true if all runs succeeded
+     */
+    boolean run(@NotNull List<Callable<Boolean>> runs) throws ProjectBuildException, IOException {
+        return await(submit(runs));
+    }
+
+    // Exceptions of compiler runs are rethrown as is if they are ProjectBuildException or IOException
+    private boolean await(CompletableFuture<Boolean> future) throws ProjectBuildException, IOException {
+        try {
+            while (true) {
+                try {
+                    return future.get(CANCEL_CHECK_MS, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    if (context.getCancelStatus().isCanceled()) {
+                        cancelAll();
+                        return false;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelAll();
+            throw new ProjectBuildException("Build interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ProjectBuildException) {
+                throw (ProjectBuildException) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new ProjectBuildException(cause);
+        }
+    }
+
+    // Completes scheduled targets which are not compiled yet. Runs already submitted to executor check cancel status before start.
+    private void cancelAll() {
+        for (CompletableFuture<Boolean> future : futures.values()) {
+            future.complete(false);
+        }
+    }
+
+    private void start() throws IOException {
+        final BuildTargetIndex targetIndex = context.getProjectDescriptor().getBuildTargetIndex();
+        List<PascalTarget> targets = new ArrayList<>(targetIndex.getAllTargets(PascalTargetType.PRODUCTION));
+        targets.addAll(targetIndex.getAllTargets(PascalTargetType.TESTS));
+        Map<PascalTarget, Collection<PascalTarget>> targetDependencies = new HashMap<>();
+        for (PascalTarget target : targets) {
+            if (context.getScope().isAffected(target) && (PascalBackendCompiler.getMainFile(ParamMap.getJpsParams(target.getModule().getProperties())) != null)) {
+                targetDependencies.put(target, new ArrayList<>());
+            }
+        }
+        for (Map.Entry<PascalTarget, Collection<PascalTarget>> entry : targetDependencies.entrySet()) {
+            for (BuildTarget<?> dep : entry.getKey().computeDependencies()) {
+                if (targetDependencies.containsKey(dep) && !dep.equals(entry.getKey())) {
+                    entry.getValue().add((PascalTarget) dep);
+                }
+            }
+        }
+        schedule(targetDependencies);
+    }
+
+    /**
+     * Schedules compilation of the targets
+     * @param targetDependencies scheduled dependencies of each target
+     */
+    void schedule(@NotNull Map<PascalTarget, Collection<PascalTarget>> targetDependencies) throws IOException {
+        dependencies.putAll(targetDependencies);
+        for (PascalTarget target : dependencies.keySet()) {
+            files.put(target, compilation.getFiles(target));
+        }
+        for (PascalTarget target : dependencies.keySet()) {
+            schedule(target, new LinkedHashSet<>());
+        }
+        LOG.info(String.format("Scheduled %d Pascal targets", futures.size()));
+    }
+
+    private CompletableFuture<Boolean> schedule(PascalTarget target, Set<PascalTarget> path) {
+        CompletableFuture<Boolean> future = futures.get(target);
+        if (future != null) {
+            return future;
+        }
+        if (!path.add(target)) {                                       // dependency cycle
+            LOG.info("Dependency cycle detected at target " + target.getId());
+            return CompletableFuture.completedFuture(true);
+        }
+        List<CompletableFuture<Boolean>> deps = new ArrayList<>();
+        for (PascalTarget dep : dependencies.get(target)) {
+            deps.add(schedule(dep, path));
+        }
+        path.remove(target);
+        // preparation of compiler runs doesn't block so executor threads are never waiting for other tasks of the executor
+        future = CompletableFuture.allOf(deps.toArray(new CompletableFuture[0])).handle((v, e) -> v).thenComposeAsync(v -> {
+            for (CompletableFuture<Boolean> dep : deps) {
+                if (dep.isCompletedExceptionally() || !dep.join()) {
+                    LOG.info(String.format("Skipping build of target %s because of its dependency build failure", target.getId()));
+                    return CompletableFuture.completedFuture(false);
+                }
+            }
+            if (context.getCancelStatus().isCanceled()) {
+                return CompletableFuture.completedFuture(false);
+            }
+            try {
+                return submit(compilation.prepare(target, files.get(target), collectDependencies(target)));
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+        futures.put(target, future);
+        return future;
+    }
+
+    // Submits compiler runs to the executor, the result is true if all runs succeeded
+    private CompletableFuture<Boolean> submit(List<Callable<Boolean>> runs) {
+        List<CompletableFuture<Boolean>> results = new ArrayList<>(runs.size());
+        for (Callable<Boolean> run : runs) {
+            results.add(CompletableFuture.supplyAsync(() -> {
+                if (context.getCancelStatus().isCanceled()) {
+                    return false;
+                }
+                try {
+                    return run.call();
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, executor));
+        }
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).thenApply(v -> {
+            boolean success = true;
+            for (CompletableFuture<Boolean> result : results) {
+                success &= result.join();
+            }
+            return success;
+        });
+    }
+
+    // Scheduled dependencies of the target, nearest first
+    private List<PascalTarget> collectDependencies(PascalTarget target) {
+        Set<PascalTarget> visited = new LinkedHashSet<>();
+        collectDependencies(target, visited);
+        visited.remove(target);
+        return new ArrayList<>(visited);
+    }
+
+    private void collectDependencies(PascalTarget target, Set<PascalTarget> visited) {
+        if (visited.add(target)) {
+            for (PascalTarget dep : dependencies.get(target)) {
+                collectDependencies(dep, visited);
+            }
+        }
+    }
+
+    // Maximum number of concurrently running compiler processes
+    static int getParallelism(@NotNull CompileContext context) {
+        String value = context.getBuilderParameter(PARALLELISM_PARAM);
+        if (null == value) {
+            value = System.getProperty(PARALLELISM_PARAM);
+        }
+        try {
+            return value != null ? Math.max(1, Integer.parseInt(value.trim())) : Runtime.getRuntime().availableProcessors();
+        } catch (NumberFormatException e) {
+            LOG.info("Invalid " + PARALLELISM_PARAM + " value: " + value);
+            return Runtime.getRuntime().availableProcessors();
+        }
+    }
+
+    private static class ThreadFactoryImpl implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@NotNull Runnable r) {
+            Thread thread = new Thread(r, "Pascal compiler " + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
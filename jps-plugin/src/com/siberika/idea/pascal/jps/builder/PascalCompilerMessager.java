@@ -8,7 +8,6 @@ import org.jetbrains.jps.incremental.messages.CompilerMessage;
 
 import java.util.Arrays;
 import java.util.List;
-import java.util.regex.Matcher;
 
 /**
  * Author: George Bakhtadze
@@ -21,43 +20,34 @@ class PascalCompilerMessager implements CompilerMessager {
 
     private final CompileContext context;
     private final String name;
+    private final PascalBuildProfiler profiler;
+    private volatile boolean hasErrors;
 
     PascalCompilerMessager(String name, CompileContext context) {
+        this(name, context, null);
+    }
+
+    PascalCompilerMessager(String name, CompileContext context, PascalBuildProfiler profiler) {
         this.name = name;
         this.context = context;
+        this.profiler = profiler;
     }
 
-    static void createMessage(CompilerMessageCategory category, String line, Matcher matcher, CompilerMessager messager) {
-        int lineNum = -1;
-        int colNum = -1;
-        String msgId = null;
-        String message = null;
-        String url = "";
-        if (null != matcher) {
-            int groupCount = matcher.groupCount();
-            if (groupCount >= 5) {
-                url = matcher.group(2);
-                try {
-                    lineNum = Integer.parseInt(matcher.group(3));
-                    colNum = Integer.parseInt(matcher.group(5));
-                } catch (NumberFormatException ignore) {}
-            }
-            msgId = matcher.group(groupCount - 1);
-            message = matcher.group(groupCount);
-        }
-        message = message != null ? message : line;
-        if (isErrorSuppressNeeded(msgId, message)) {
+    static void createMessage(CompilerDiagnostic diagnostic, CompilerMessager messager) {
+        CompilerMessageCategory category = diagnostic.category;
+        String message = diagnostic.message;
+        if (isErrorSuppressNeeded(diagnostic.msgId, message)) {
             category = CompilerMessageCategory.WARNING;
         }
-
+        String url = diagnostic.path;
         if (CompilerMessageCategory.ERROR.equals(category)) {
-            messager.error(msgId, message, url, lineNum, colNum);
+            messager.error(diagnostic.msgId, message, url, diagnostic.line, diagnostic.column);
         } else if (CompilerMessageCategory.WARNING.equals(category)) {
-            messager.warning(msgId, message, url, lineNum, colNum);
+            messager.warning(diagnostic.msgId, message, url, diagnostic.line, diagnostic.column);
         } else if (CompilerMessageCategory.HINT.equals(category)) {
-            messager.hint(msgId, message, url, lineNum, colNum);
+            messager.hint(diagnostic.msgId, message, url, diagnostic.line, diagnostic.column);
         } else {
-            messager.info(msgId, message, url, lineNum, colNum);
+            messager.info(diagnostic.msgId, message, url, diagnostic.line, diagnostic.column);
         }
     }
 
@@ -82,6 +72,18 @@ class PascalCompilerMessager implements CompilerMessager {
 
     @Override
     public void error(String msgId, String msg, String path, long line, long column) {
+        hasErrors = true;
         context.processMessage(new CompilerMessage(name, BuildMessage.Kind.ERROR, msg, path, -1L, -1L, -1L, line, column));
     }
+
+    @Override
+    public void compiling(String unitPath, long timeNanos) {
+        if (profiler != null) {
+            profiler.onUnit(unitPath, timeNanos);
+        }
+    }
+
+    boolean hasErrors() {
+        return hasErrors;
+    }
 }
@@ -3,21 +3,82 @@ package com.siberika.idea.pascal.jps.builder;
 import com.siberika.idea.pascal.jps.compiler.CompilerMessager;
 import com.siberika.idea.pascal.jps.util.PascalConsoleProcessAdapter;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * Author: George Bakhtadze
  * Date: 12/05/2014
+ * Messages are reported as they are parsed. Hints and information messages with a location which were reported recently
+ * are skipped as FPC repeats them for each unit which includes the same file.
  */
 public abstract class PascalCompilerProcessAdapter extends PascalConsoleProcessAdapter {
+    private static final int DEDUP_LIMIT = 1024;
+
     private final CompilerMessager messager;
+    // Recently reported hints, oldest first
+    private final Set<CompilerDiagnostic> reported = Collections.newSetFromMap(new LinkedHashMap<CompilerDiagnostic, Boolean>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<CompilerDiagnostic, Boolean> eldest) {
+            return size() > DEDUP_LIMIT;
+        }
+    });
 
     public PascalCompilerProcessAdapter(CompilerMessager messager) {
         this.messager = messager;
     }
 
-    abstract protected boolean processLine(CompilerMessager messager, String text);
+    abstract protected CompilerDiagnostic tokenize(String line);
+
+    /**
+     * Returns path of the unit if the diagnostic is a compiler progress line reporting start of the unit compilation
+     */
+    protected String getCompilingUnit(CompilerDiagnostic diagnostic) {
+        return null;
+    }
+
+    protected boolean processLine(CompilerMessager messager, String line) {
+        if (line == null) {
+            return false;
+        }
+        long time = System.nanoTime();
+        CompilerDiagnostic diagnostic = tokenize(line);
+        // FPC progress lines have message ID and are tokenized as hints while Delphi ones are plain information lines
+        String unitPath = getCompilingUnit(diagnostic);
+        if (unitPath != null) {
+            messager.compiling(unitPath, time);
+        }
+        report(messager, diagnostic);
+        return true;
+    }
 
     @Override
     public boolean onLine(String text) {
-        return processLine(messager, text);
+        int start = 0;
+        int end;
+        while ((end = text.indexOf('\n', start)) >= 0) {
+            processLine(messager, trimLine(text, start, end));
+            start = end + 1;
+        }
+        if (start < text.length()) {
+            processLine(messager, trimLine(text, start, text.length()));
+        }
+        return true;
+    }
+
+    private void report(CompilerMessager messager, CompilerDiagnostic diagnostic) {
+        boolean important = (diagnostic.category == CompilerMessageCategory.ERROR) || (diagnostic.category == CompilerMessageCategory.WARNING);
+        if (important || (diagnostic.line < 0) || reported.add(diagnostic)) {
+            PascalCompilerMessager.createMessage(diagnostic, messager);
+        }
+    }
+
+    private static String trimLine(String text, int start, int end) {
+        if ((end > start) && (text.charAt(end - 1) == '\r')) {
+            end--;
+        }
+        return text.substring(start, end);
     }
 }
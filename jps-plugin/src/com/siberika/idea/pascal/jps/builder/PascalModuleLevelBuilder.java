@@ -1,7 +1,5 @@
 package com.siberika.idea.pascal.jps.builder;
 
-import com.intellij.execution.process.BaseOSProcessHandler;
-import com.intellij.execution.process.ProcessAdapter;
 import com.intellij.openapi.util.io.FileUtil;
 import com.siberika.idea.pascal.jps.compiler.CompilerMessager;
 import com.siberika.idea.pascal.jps.compiler.DelphiBackendCompiler;
@@ -33,7 +31,6 @@ import org.jetbrains.jps.model.module.JpsModuleSourceRoot;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -137,13 +134,7 @@ public class PascalModuleLevelBuilder extends ModuleLevelBuilder {
         for (String s : cmdLine) {
             messager.info(null, s, null, -1L, -1L);
         }
-        Process process = Runtime.getRuntime().exec(cmdLine);
-        BaseOSProcessHandler handler = new BaseOSProcessHandler(process, "", Charset.defaultCharset());
-        ProcessAdapter adapter = compiler.getCompilerProcessAdapter(messager);
-        handler.addProcessListener(adapter);
-        handler.startNotify();
-        handler.waitFor();
-        return process.exitValue();
+        return compiler.launch(messager, cmdLine, null);
     }
 
     private List<File> getFiles(List<JpsModuleSourceRoot> sourceRoots) {
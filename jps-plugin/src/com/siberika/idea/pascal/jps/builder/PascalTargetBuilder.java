@@ -5,6 +5,7 @@ import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.util.SmartList;
 import com.siberika.idea.pascal.jps.compiler.CompilerMessager;
+import com.siberika.idea.pascal.jps.compiler.FPCTargetProfile;
 import com.siberika.idea.pascal.jps.compiler.PascalBackendCompiler;
 import com.siberika.idea.pascal.jps.model.JpsPascalModuleType;
 import com.siberika.idea.pascal.jps.model.JpsPascalSdkType;
@@ -12,6 +13,7 @@ import com.siberika.idea.pascal.jps.sdk.PascalCompilerFamily;
 import com.siberika.idea.pascal.jps.sdk.PascalSdkData;
 import com.siberika.idea.pascal.jps.util.ParamMap;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jps.builders.BuildOutputConsumer;
 import org.jetbrains.jps.builders.BuildTarget;
 import org.jetbrains.jps.builders.BuildTargetIndex;
@@ -45,6 +47,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 /**
  * Author: George Bakhtadze
@@ -78,64 +81,230 @@ public class PascalTargetBuilder extends TargetBuilder<PascalSourceRootDescripto
     public void build(@NotNull PascalTarget target, @NotNull DirtyFilesHolder<PascalSourceRootDescriptor, PascalTarget> holder,
                       @NotNull BuildOutputConsumer outputConsumer, @NotNull CompileContext context) throws ProjectBuildException, IOException {
         LOG.info(String.format("Build() for target %s", target.getId()));
-        if (isDependencyTarget(target, context)) {
+        PascalBuildScheduler scheduler = PascalBuildScheduler.getInstance(context, new ScheduledCompilation(context));
+        if (!scheduler.isScheduled(target) && isDependencyTarget(target, context)) {
             return;
         }
         JpsModule module = target.getModule();
-        File mainFile = PascalBackendCompiler.getMainFile(ParamMap.getJpsParams(module.getProperties()));
 
         // Force main file to compile. TODO: force only for context-based (line marker?) run configurations
 //        if (!holder.hasDirtyFiles() && !holder.hasRemovedFiles()) return;
         final Map<PascalTarget, List<File>> files = new HashMap<PascalTarget, List<File>>();
-        if (mainFile != null) {
-            files.put(target, new SmartList<File>(mainFile));
+        List<File> mainFiles = getMainFiles(target);
+        if (!mainFiles.isEmpty()) {
+            files.put(target, mainFiles);
         }
         collectChangedFiles(files, holder);
-        boolean isRebuild = JavaBuilderUtil.isForcedRecompilationAllJavaModules(context) || (!JavaBuilderUtil.isCompileJavaIncrementally(context));
+        boolean isRebuild = isRebuild(context);
         if (files.isEmpty() && !isRebuild) {
             context.processMessage(new CompilerMessage(getPresentableName(), BuildMessage.Kind.INFO, "No changes detected"));
             return;
         }
 
-        boolean isDebug = isDebugBuild(context);
-
         JpsSdk<?> sdk = module.getSdk(JpsPascalSdkType.INSTANCE);
-        if (sdk != null) {
-            final PascalCompilerFamily compilerFamily = getCompilerFamily(sdk);
-            CompilerMessager messager = new PascalCompilerMessager(compilerFamily.name(), context);
-            PascalBackendCompiler compiler = PascalBackendCompiler.getCompiler(compilerFamily, messager);
-            if (compiler != null) {
-                messager.info(null, "Compiler family:" + compiler.getId(), "", -1L, -1);
-                List<File> sdkFiles = sdk.getParent().getFiles(JpsOrderRootType.COMPILED);
-                sdkFiles.addAll(sdk.getParent().getFiles(JpsOrderRootType.SOURCES));
-                File outputDir = getBuildOutputDirectory(module, target.isTests(), context);
-
-                for (File file : files.get(target)) {
-                    File compiled = new File(outputDir, FileUtil.getNameWithoutExtension(file) + compiler.getCompiledUnitExt());
+        PascalBackendCompiler compiler = sdk != null ? PascalBackendCompiler.getCompiler(getCompilerFamily(sdk), CompilerMessager.NO_OP_MESSAGER) : null;
+        if ((compiler != null) && (files.get(target) != null)) {
+            File outputDir = getBuildOutputDirectory(module, target.isTests(), context);
+            List<FPCTargetProfile> matrix = PascalCompilerFamily.FPC.equals(getCompilerFamily(sdk))
+                    ? PascalBackendCompiler.getBuildMatrix(ParamMap.getJpsParams(module.getProperties())) : Collections.<FPCTargetProfile>emptyList();
+            List<File> outputDirs = new ArrayList<File>();
+            for (FPCTargetProfile profile : matrix) {
+                outputDirs.add(profile.getOutputDir(outputDir));
+            }
+            if (outputDirs.isEmpty()) {
+                outputDirs.add(outputDir);
+            }
+            for (File file : files.get(target)) {
+                for (File dir : outputDirs) {
+                    File compiled = new File(dir, FileUtil.getNameWithoutExtension(file) + compiler.getCompiledUnitExt());
                     //messager.info(String.format("Map: %s => %s ", file.getCanonicalPath(), compiled.getCanonicalPath()), null, -1L, -1L);
                     outputConsumer.registerOutputFile(compiled, Collections.singleton(file.getCanonicalPath()));
                 }
+            }
+        }
+
+        boolean success;
+        if (scheduler.isScheduled(target)) {
+            success = scheduler.await(target);
+        } else {
+            success = scheduler.run(getCompilerRuns(target, files.get(target) != null ? files.get(target) : Collections.<File>emptyList(),
+                    Collections.<PascalTarget>emptyList(), context));
+        }
+        // compiler errors are already reported but a target skipped because of a dependency failure or failed with no error messages is not
+        if (!success && !context.getCancelStatus().isCanceled()) {
+            context.processMessage(new CompilerMessage(NAME, BuildMessage.Kind.ERROR, String.format("Module \"%s\" is not compiled", module.getName())));
+        }
+    }
+
+    // Compilation of a target scheduled for concurrent build. Files to compile are collected from the build file system state
+    // as the target is scheduled before its dirty files holder is available.
+    private class ScheduledCompilation implements PascalBuildScheduler.Compilation {
+        private final CompileContext context;
+
+        private ScheduledCompilation(CompileContext context) {
+            this.context = context;
+        }
+
+        @NotNull
+        @Override
+        public List<File> getFiles(@NotNull PascalTarget target) throws IOException {
+            Map<PascalTarget, List<File>> files = new HashMap<PascalTarget, List<File>>();
+            files.put(target, new ArrayList<File>(getMainFiles(target)));
+            context.getProjectDescriptor().fsState.processFilesToRecompile(context, target, new ChangedFilesCollector(files));
+            return files.get(target);
+        }
+
+        @NotNull
+        @Override
+        public List<Callable<Boolean>> prepare(@NotNull PascalTarget target, @NotNull List<File> files, @NotNull List<PascalTarget> dependencies) {
+            return getCompilerRuns(target, files, dependencies, context);
+        }
+    }
+
+    /**
+     * Returns compiler runs of the target: one for each entry of the module build matrix or one for the default compiler target.
+     * The runs are executed by build scheduler which limits number of concurrent compiler processes.
+     * @param dependencies compiled dependencies which output directories go first in unit search path
+     */
+    private List<Callable<Boolean>> getCompilerRuns(@NotNull PascalTarget target, @NotNull List<File> files, @NotNull List<PascalTarget> dependencies,
+                                                   @NotNull CompileContext context) {
+        JpsModule module = target.getModule();
+        JpsSdk<?> sdk = module.getSdk(JpsPascalSdkType.INSTANCE);
+        if (null == sdk) {
+            log(context, "Pascal SDK is not defined for module " + module.getName());
+            return Collections.<Callable<Boolean>>singletonList(() -> false);
+        }
+        List<FPCTargetProfile> matrix = PascalBackendCompiler.getBuildMatrix(ParamMap.getJpsParams(module.getProperties()));
+        if (!matrix.isEmpty() && !PascalCompilerFamily.FPC.equals(getCompilerFamily(sdk))) {
+            log(context, String.format("Build matrix is supported for FPC only, module \"%s\" is compiled for the default target", module.getName()));
+            matrix = Collections.emptyList();
+        }
+        if (matrix.isEmpty()) {
+            List<File> unitPaths = getUnitPaths(dependencies, null, context);
+            return Collections.<Callable<Boolean>>singletonList(() -> compile(target, sdk, null, files, unitPaths, context));
+        }
+        List<Callable<Boolean>> result = new ArrayList<Callable<Boolean>>(matrix.size());
+        for (FPCTargetProfile profile : matrix) {
+            List<File> unitPaths = getUnitPaths(dependencies, profile, context);
+            result.add(() -> compile(target, sdk, profile, files, unitPaths, context));
+        }
+        return result;
+    }
+
+    /**
+     * Compiles files of the target for the build matrix entry
+     * @param profile build matrix entry or null for the default compiler target
+     * @return true if the compiler completed with no errors
+     */
+    private boolean compile(@NotNull PascalTarget target, @NotNull JpsSdk<?> sdk, @Nullable FPCTargetProfile profile, @NotNull List<File> files,
+                            @NotNull List<File> unitPaths, @NotNull CompileContext context) throws ProjectBuildException, IOException {
+        JpsModule module = target.getModule();
+        final PascalCompilerFamily compilerFamily = getCompilerFamily(sdk);
+        String moduleName = profile != null ? module.getName() + ":" + profile.getName() : module.getName();
+        PascalBuildProfiler profiler = new PascalBuildProfiler(moduleName);
+        // Module name and build matrix entry in messages source keeps messages of concurrently running compilers attributed
+        PascalCompilerMessager messager = new PascalCompilerMessager(compilerFamily.name() + " [" + moduleName + "]", context, profiler);
+        PascalBackendCompiler compiler = PascalBackendCompiler.getCompiler(compilerFamily, messager);
+        if (compiler != null) {
+            messager.info(null, "Compiler family:" + compiler.getId(), "", -1L, -1);
+            List<File> sdkFiles = sdk.getParent().getFiles(JpsOrderRootType.COMPILED);
+            sdkFiles.addAll(sdk.getParent().getFiles(JpsOrderRootType.SOURCES));
+            File outputDir = getBuildOutputDirectory(module, target.isTests(), profile, context);
 
-                List<File> sourcePaths = new ArrayList<File>();
-                getFiles(new HashSet<JpsModule>(), sourcePaths, module);
-                String[] cmdLine = compiler.createStartupCommand(sdk.getHomePath(), module.getName(), outputDir.getAbsolutePath(),
-                        sdkFiles, sourcePaths,
-                        files.get(target), ParamMap.getJpsParams(module.getProperties()),
-                        isRebuild, isDebug,
-                        ParamMap.getJpsParams(sdk.getSdkProperties()));
-                if (cmdLine != null) {
-                    // For Delphi workingDirectory should be null otherwise file paths in compiler messages will be relative
-                    File workingDirectory = PascalCompilerFamily.DELPHI.equals(compilerFamily) ? null : new File(FileUtil.expandUserHome("~/"));
-                    compiler.launch(messager, cmdLine, workingDirectory);
-                } else {
-                    messager.warning(null, "Error. Can't launch compiler", null, -1L, -1L);
+            List<File> sourcePaths = new ArrayList<File>(unitPaths);
+            getFiles(new HashSet<JpsModule>(), sourcePaths, module);
+            String[] cmdLine = compiler.createStartupCommand(sdk.getHomePath(), module.getName(), outputDir.getAbsolutePath(),
+                    sdkFiles, sourcePaths,
+                    files, ParamMap.getJpsParams(module.getProperties()),
+                    isRebuild(context), isDebugBuild(context),
+                    ParamMap.getJpsParams(sdk.getSdkProperties()), profile);
+            if (cmdLine != null) {
+                List<File> outputDirs = getOutputDirs(module, outputDir, profile);
+                File dataRoot = context.getProjectDescriptor().dataManager.getDataPaths().getTargetDataRoot(target);
+                File dataDir = profile != null ? profile.getOutputDir(dataRoot) : dataRoot;
+                PascalBuildFingerprint fingerprint = PascalBuildFingerprint.load(dataDir);
+                fingerprint.computeInputs(cmdLine, sdk.getVersionString(), sourcePaths, sdkFiles, files);
+                String reason = isRebuild(context) ? "rebuild requested" : fingerprint.getChangeReason(outputDirs);
+                if (null == reason) {
+                    log(context, String.format("Module \"%s\" is up to date, compiler is not launched", moduleName));
+                    return true;
+                }
+                log(context, String.format("Compiling module \"%s\": %s", moduleName, reason));
+                PascalArtifactCache artifactCache = isRebuild(context) ? null : PascalArtifactCache.getInstance(context);
+                PascalArtifactCache.Session cacheSession = artifactCache != null
+                        ? artifactCache.open(sdk.getVersionString(), cmdLine, sourcePaths, outputDir, compiler.getCompiledUnitExt()) : null;
+                if (cacheSession != null) {
+                    cacheSession.restore();
+                }
+                // For Delphi workingDirectory should be null otherwise file paths in compiler messages will be relative
+                File workingDirectory = PascalCompilerFamily.DELPHI.equals(compilerFamily) ? null : new File(FileUtil.expandUserHome("~/"));
+                int exitCode = compiler.launch(messager, cmdLine, workingDirectory, () -> context.getCancelStatus().isCanceled());
+                profiler.finish();
+                profiler.save(dataDir);
+                log(context, profiler.getSummary() + ". Report: " + new File(dataDir, PascalBuildProfiler.REPORT_JSON).getPath());
+                // compiler may fail with no error messages, e.g. when a linker or resource compiler fails
+                if (messager.hasErrors() || (exitCode != 0)) {
+                    fingerprint.reset();
+                    return false;
+                }
+                if (cacheSession != null) {
+                    cacheSession.store();
+                    log(context, cacheSession.getStatistics());
                 }
+                fingerprint.save(outputDirs);
+                return true;
             } else {
-                messager.error(null, "Can't determine compiler family", "", -1L, -1L);
+                messager.warning(null, "Error. Can't launch compiler", null, -1L, -1L);
             }
         } else {
-            log(context, "Pascal SDK is not defined for module " + module.getName());
+            messager.error(null, "Can't determine compiler family", "", -1L, -1L);
+        }
+        return false;
+    }
+
+    // Output directories of compiled dependencies. Dependencies are compiled before the target so units of a build
+    // matrix entry are in the entry subdirectory if a dependency is compiled for the entry target. Otherwise the dependency
+    // output is not used as it contains units for another CPU or OS and the compiler builds the dependency units from sources.
+    private static List<File> getUnitPaths(List<PascalTarget> dependencies, @Nullable FPCTargetProfile profile, CompileContext context) {
+        List<File> result = new ArrayList<File>(dependencies.size());
+        for (PascalTarget dep : dependencies) {
+            File outputDir = JpsJavaExtensionService.getInstance().getOutputDirectory(dep.getModule(), dep.isTests());
+            if ((outputDir != null) && (profile != null)) {
+                outputDir = profile.getOutputDir(outputDir);
+                if (!outputDir.isDirectory()) {
+                    log(context, String.format("Module \"%s\" has no units compiled for %s, its units are compiled from sources",
+                            dep.getModule().getName(), profile.getName()));
+                    outputDir = null;
+                }
+            }
+            if (outputDir != null) {
+                result.add(outputDir);
+            }
+        }
+        return result;
+    }
+
+    // Unit output directory and executable output directory if it's different
+    private static List<File> getOutputDirs(JpsModule module, File outputDir, @Nullable FPCTargetProfile profile) {
+        List<File> result = new SmartList<File>(outputDir);
+        String exeOutputPath = PascalBackendCompiler.getExeOutputPath(ParamMap.getJpsParams(module.getProperties()));
+        File exeOutputDir = exeOutputPath != null ? new File(exeOutputPath) : null;
+        if ((exeOutputDir != null) && (profile != null)) {
+            exeOutputDir = profile.getOutputDir(exeOutputDir);
         }
+        if ((exeOutputDir != null) && !FileUtil.filesEqual(outputDir, exeOutputDir)) {
+            result.add(exeOutputDir);
+        }
+        return result;
+    }
+
+    private static List<File> getMainFiles(PascalTarget target) {
+        File mainFile = PascalBackendCompiler.getMainFile(ParamMap.getJpsParams(target.getModule().getProperties()));
+        return mainFile != null ? new SmartList<File>(mainFile) : Collections.<File>emptyList();
+    }
+
+    private static boolean isRebuild(CompileContext context) {
+        return JavaBuilderUtil.isForcedRecompilationAllJavaModules(context) || (!JavaBuilderUtil.isCompileJavaIncrementally(context));
     }
 
     private boolean isDebugBuild(CompileContext context) {
@@ -190,8 +359,17 @@ public class PascalTargetBuilder extends TargetBuilder<PascalSourceRootDescripto
 
     private static File getBuildOutputDirectory(@NotNull JpsModule module, boolean forTests,
                                                 @NotNull CompileContext context) throws ProjectBuildException {
+        return getBuildOutputDirectory(module, forTests, null, context);
+    }
+
+    // Output directory of build matrix entry is a subdirectory of the module output directory
+    private static File getBuildOutputDirectory(@NotNull JpsModule module, boolean forTests, @Nullable FPCTargetProfile profile,
+                                                @NotNull CompileContext context) throws ProjectBuildException {
         JpsJavaExtensionService instance = JpsJavaExtensionService.getInstance();
         File outputDirectory = instance.getOutputDirectory(module, forTests);
+        if ((outputDirectory != null) && (profile != null)) {
+            outputDirectory = profile.getOutputDir(outputDirectory);
+        }
         if (outputDirectory == null) {
             context.processMessage(new CompilerMessage(NAME, BuildMessage.Kind.ERROR, "No output dir for module " + module.getName()));
         } else {
@@ -203,20 +381,30 @@ public class PascalTargetBuilder extends TargetBuilder<PascalSourceRootDescripto
     }
 
     private static void collectChangedFiles(final Map<PascalTarget, List<File>> result, DirtyFilesHolder<PascalSourceRootDescriptor, PascalTarget> dirtyFilesHolder) throws IOException {
-        dirtyFilesHolder.processDirtyFiles(new FileProcessor<PascalSourceRootDescriptor, PascalTarget>() {
-            public boolean apply(PascalTarget target, File file, PascalSourceRootDescriptor sourceRoot) throws IOException {
-                final String path = file.getPath();
-                if (isPascalFile(path)) { //todo file type check
-                    List<File> toCompile = result.get(target);
-                    if (null == toCompile) {
-                        toCompile = new ArrayList<File>();
-                        result.put(target, toCompile);
-                    }
+        dirtyFilesHolder.processDirtyFiles(new ChangedFilesCollector(result));
+    }
+
+    private static class ChangedFilesCollector implements FileProcessor<PascalSourceRootDescriptor, PascalTarget> {
+        private final Map<PascalTarget, List<File>> result;
+
+        private ChangedFilesCollector(Map<PascalTarget, List<File>> result) {
+            this.result = result;
+        }
+
+        public boolean apply(PascalTarget target, File file, PascalSourceRootDescriptor sourceRoot) throws IOException {
+            final String path = file.getPath();
+            if (isPascalFile(path)) { //todo file type check
+                List<File> toCompile = result.get(target);
+                if (null == toCompile) {
+                    toCompile = new ArrayList<File>();
+                    result.put(target, toCompile);
+                }
+                if (!toCompile.contains(file)) {
                     toCompile.add(file);
                 }
-                return true;
             }
-        });
+            return true;
+        }
     }
 
     private static boolean isPascalFile(String path) {
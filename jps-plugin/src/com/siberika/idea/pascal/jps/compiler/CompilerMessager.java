@@ -27,4 +27,12 @@ public interface CompilerMessager {
     void info(String msgId, String msg, String path, long line, long column);
     void warning(String msgId, String msg, String path, long line, long column);
     void error(String msgId, String msg, String path, long line, long column);
+
+    /**
+     * Called when compiler reports start of compilation of a unit
+     * @param unitPath  unit file path as reported by compiler
+     * @param timeNanos {@link System#nanoTime()} when the progress line was received
+     */
+    default void compiling(String unitPath, long timeNanos) {
+    }
 }
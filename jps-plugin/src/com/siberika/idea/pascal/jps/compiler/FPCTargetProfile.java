@@ -0,0 +1,127 @@
+package com.siberika.idea.pascal.jps.compiler;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.text.StringUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Entry of FPC build matrix: target CPU, target OS and additional compiler options.
+ * Build matrix of a module is a list of entries separated by ";" or line breaks, each entry is "cpu-os [options]",
+ * e.g. "i386-win32; x86_64-linux -O2; arm-linux -CpARMV7A". Each entry is compiled to its own output subdirectory.
+ * Options containing spaces or separators can be quoted with double or single quotes, e.g. -Fi"C:\My Includes".
+ */
+public class FPCTargetProfile {
+
+    private static final Logger LOG = Logger.getInstance(FPCTargetProfile.class);
+
+    private static final Pattern NAME_PATTERN = Pattern.compile("[A-Za-z0-9_]+-[A-Za-z0-9_]+");
+    private static final String COMPILER_SETTING_CPU = "-P";
+    private static final String COMPILER_SETTING_OS = "-T";
+
+    private final String name;
+    private final String cpu;
+    private final String os;
+    private final List<String> options;
+
+    private FPCTargetProfile(String name, List<String> options) {
+        this.name = name;
+        int dash = name.indexOf('-');
+        this.cpu = name.substring(0, dash);
+        this.os = name.substring(dash + 1);
+        this.options = options;
+    }
+
+    /**
+     * Parses build matrix. Malformed and duplicate entries are skipped.
+     */
+    @NotNull
+    public static List<FPCTargetProfile> parse(@Nullable String matrix) {
+        if (StringUtil.isEmptyOrSpaces(matrix)) {
+            return Collections.emptyList();
+        }
+        List<FPCTargetProfile> result = new ArrayList<FPCTargetProfile>();
+        Set<String> names = new HashSet<String>();
+        for (List<String> parts : tokenize(matrix)) {
+            String name = parts.get(0).toLowerCase();
+            if (!NAME_PATTERN.matcher(name).matches()) {
+                LOG.info("Invalid build matrix entry: " + StringUtil.join(parts, " "));
+            } else if (names.add(name)) {
+                result.add(new FPCTargetProfile(name, new ArrayList<String>(parts.subList(1, parts.size()))));
+            }
+        }
+        return result;
+    }
+
+    // Splits the matrix to non-empty entries and entries to words. Quotes are removed, separators within quotes are kept.
+    private static List<List<String>> tokenize(String matrix) {
+        List<List<String>> result = new ArrayList<List<String>>();
+        List<String> entry = new ArrayList<String>();
+        StringBuilder word = null;
+        char quote = 0;
+        for (int i = 0; i < matrix.length(); i++) {
+            char c = matrix.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                } else {
+                    word.append(c);
+                }
+            } else if ((c == '"') || (c == '\'')) {
+                quote = c;
+                word = word != null ? word : new StringBuilder();
+            } else if (Character.isWhitespace(c) || (c == ';')) {
+                if (word != null) {
+                    entry.add(word.toString());
+                    word = null;
+                }
+                if (((c == ';') || (c == '\n')) && !entry.isEmpty()) {
+                    result.add(entry);
+                    entry = new ArrayList<String>();
+                }
+            } else {
+                word = word != null ? word : new StringBuilder();
+                word.append(c);
+            }
+        }
+        if (word != null) {
+            entry.add(word.toString());
+        }
+        if (!entry.isEmpty()) {
+            result.add(entry);
+        }
+        return result;
+    }
+
+    /**
+     * Returns name of the target in "cpu-os" form which is also name of its output subdirectory
+     */
+    @NotNull
+    public String getName() {
+        return name;
+    }
+
+    @NotNull
+    public File getOutputDir(@NotNull File baseDir) {
+        return new File(baseDir, name);
+    }
+
+    void addOptions(List<String> commandLine) {
+        commandLine.add(COMPILER_SETTING_CPU + cpu);
+        commandLine.add(COMPILER_SETTING_OS + os);
+        commandLine.addAll(options);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -19,6 +19,7 @@ import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.BooleanSupplier;
 
 /**
  * Author: George Bakhtadze
@@ -28,6 +29,10 @@ public abstract class PascalBackendCompiler {
 
     public static final Logger LOG = Logger.getInstance(PascalBackendCompiler.class.getName());
 
+    private static final long CANCEL_CHECK_MS = 200;
+
+    static final String CHARSET_PARAM = "pascal.compiler.charset";
+
     final CompilerMessager compilerMessager;
 
     PascalBackendCompiler(CompilerMessager compilerMessager) {
@@ -50,24 +55,60 @@ public abstract class PascalBackendCompiler {
         return null;
     }
 
-    public void launch(CompilerMessager messager, String[] cmdLine, File workingDir) throws IOException {
+    /**
+     * Launches compiler and waits for its completion. Non-zero exit code is reported as a warning.
+     * @return exit code of the compiler process
+     */
+    public int launch(CompilerMessager messager, String[] cmdLine, File workingDir) throws IOException {
+        return launch(messager, cmdLine, workingDir, () -> false);
+    }
+
+    /**
+     * Launches compiler and waits for its completion. The compiler process is destroyed when canceled.
+     * Non-zero exit code of a process which is not canceled is reported as a warning.
+     * @return exit code of the compiler process
+     */
+    public int launch(CompilerMessager messager, String[] cmdLine, File workingDir, @NotNull BooleanSupplier canceled) throws IOException {
         BaseOSProcessHandler handler = launchNoWait(messager, cmdLine, workingDir);
-        handler.waitFor();
+        boolean destroyed = false;
+        while (!handler.waitFor(CANCEL_CHECK_MS)) {
+            if (!destroyed && canceled.getAsBoolean()) {
+                handler.destroyProcess();
+                destroyed = true;
+            }
+        }
         int exitCode = handler.getProcess().exitValue();
-        if (exitCode != 0) {
+        if ((exitCode != 0) && !destroyed) {
             messager.warning(null, JpsPascalBundle.message("compiler.exit.code", exitCode), null, -1L, -1L);
         }
+        return exitCode;
     }
 
     public BaseOSProcessHandler launchNoWait(CompilerMessager messager, String[] cmdLine, File workingDir) throws IOException {
-        Process process = Runtime.getRuntime().exec(cmdLine, null, workingDir);
-        BaseOSProcessHandler handler = new BaseOSProcessHandler(process, cmdLine[0], Charset.defaultCharset());
+        Process process = new ProcessBuilder(cmdLine).directory(workingDir).start();
+        BaseOSProcessHandler handler = new BaseOSProcessHandler(process, cmdLine[0], getOutputCharset());
         ProcessAdapter adapter = getCompilerProcessAdapter(messager);
         handler.addProcessListener(adapter);
         handler.startNotify();
         return handler;
     }
 
+    /**
+     * Returns charset of compiler messages. Can be set with "pascal.compiler.charset" system property, defaults to the platform charset.
+     */
+    @NotNull
+    public Charset getOutputCharset() {
+        String name = System.getProperty(CHARSET_PARAM);
+        if (name != null) {
+            try {
+                return Charset.forName(name.trim());
+            } catch (IllegalArgumentException e) {
+                LOG.info("Invalid " + CHARSET_PARAM + " value: " + name);
+            }
+        }
+        return Charset.defaultCharset();
+    }
+
     @NotNull
     public abstract String getId();
 
@@ -80,12 +121,34 @@ public abstract class PascalBackendCompiler {
                                          final List<File> files, @Nullable final ParamMap moduleData,
                                          final boolean isRebuild, boolean isDebug,
                                          @Nullable final ParamMap pascalSdkData) throws IOException, IllegalArgumentException {
+        return createStartupCommand(sdkHomePath, moduleName, outputDir, sdkLibFiles, moduleLibFiles, files, moduleData,
+                isRebuild, isDebug, pascalSdkData, null);
+    }
+
+    /**
+     * Creates compiler command line
+     * @param targetProfile build matrix entry to compile for, executable output path of the module is replaced with
+     *                      the entry subdirectory of it. Only FPC supports build matrix.
+     */
+    public String[] createStartupCommand(final String sdkHomePath, final String moduleName, final String outputDir,
+                                         final List<File> sdkLibFiles, final List<File> moduleLibFiles,
+                                         final List<File> files, @Nullable final ParamMap moduleData,
+                                         final boolean isRebuild, boolean isDebug,
+                                         @Nullable final ParamMap pascalSdkData,
+                                         @Nullable final FPCTargetProfile targetProfile) throws IOException, IllegalArgumentException {
         final ArrayList<String> commandLine = new ArrayList<String>();
         if (outputDir != null) {
-            if (!createStartupCommandImpl(sdkHomePath, moduleName, getExeOutputPath(moduleData), outputDir, sdkLibFiles, moduleLibFiles,
+            String exeOutputPath = getExeOutputPath(moduleData);
+            if ((targetProfile != null) && !StringUtil.isEmpty(exeOutputPath)) {
+                exeOutputPath = targetProfile.getOutputDir(new File(exeOutputPath)).getPath();
+            }
+            if (!createStartupCommandImpl(sdkHomePath, moduleName, exeOutputPath, outputDir, sdkLibFiles, moduleLibFiles,
                     isRebuild, isDebug, pascalSdkData, commandLine)) {
                 return null;
             }
+            if (targetProfile != null) {
+                targetProfile.addOptions(commandLine);
+            }
             File mainFile = getMainFile(moduleData);
             if ((null == mainFile) && (files.size() > 0)) {
                 mainFile = files.get(0);
@@ -120,6 +183,11 @@ public abstract class PascalBackendCompiler {
         return moduleData != null ? moduleData.get(JpsPascalModuleType.USERDATA_KEY_EXE_OUTPUT_PATH.toString()) : null;
     }
 
+    @NotNull
+    public static List<FPCTargetProfile> getBuildMatrix(ParamMap moduleData) {
+        return FPCTargetProfile.parse(moduleData != null ? moduleData.get(JpsPascalModuleType.USERDATA_KEY_BUILD_MATRIX.toString()) : null);
+    }
+
     protected static void addLibPathToCmdLine(final ArrayList<String> commandLine, File sourceRoot,
                                               final String compilerSettingSrcpath, final String compilerSettingIncpath) {
         if (sourceRoot.isDirectory()) {
@@ -12,6 +12,7 @@ public class JpsPascalModuleType extends JpsElementTypeBase<JpsSimpleElement<Par
     public static final String MODULE_TYPE_ID = "PASCAL_MODULE";
     public static final Key<Object> USERDATA_KEY_MAIN_FILE = new Key<Object>("mainFile");
     public static final Key<Object> USERDATA_KEY_EXE_OUTPUT_PATH = new Key<Object>("exeOutputPath");
+    public static final Key<Object> USERDATA_KEY_BUILD_MATRIX = new Key<Object>("buildMatrix");
 
     private JpsPascalModuleType() {
     }
@@ -0,0 +1,268 @@
+package com.siberika.idea.pascal.jps.util;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Launches external tools (compilers, decompilers, debugger tools) and streams their standard output to a consumer
+ * instead of collecting it in memory. Standard output is processed in the calling thread.
+ * Standard error is drained in fixed size buffers by a watchdog task running on a small shared pool, only its tail is kept.
+ * The watchdog also destroys the process on timeout or cancellation.
+ */
+public class ProcessLauncher {
+
+    private static final Logger LOG = Logger.getInstance(ProcessLauncher.class);
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int STDERR_LIMIT = 8192;
+    private static final long POLL_INTERVAL_MS = 50;
+
+    private static final ScheduledExecutorService IO_POOL = Executors.newScheduledThreadPool(2, r -> {
+        Thread thread = new Thread(r, "Pascal process I/O");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Processes standard output stream of a process
+     */
+    public interface StreamProcessor<T, E extends Exception> {
+        T process(@NotNull InputStream stdout) throws E, IOException;
+    }
+
+    /**
+     * Receives decoded standard output in chunks. The buffer is reused between calls.
+     */
+    public interface ChunkConsumer {
+        void consume(@NotNull char[] buffer, int length);
+    }
+
+    private final String[] cmdLine;
+    private File workDir;
+    private Charset charset = Charset.defaultCharset();
+    private long timeoutMs = -1;
+    private BooleanSupplier canceled;
+
+    public ProcessLauncher(@NotNull String... cmdLine) {
+        this.cmdLine = cmdLine;
+    }
+
+    public ProcessLauncher withWorkDir(@Nullable File workDir) {
+        this.workDir = workDir;
+        return this;
+    }
+
+    public ProcessLauncher withCharset(@NotNull Charset charset) {
+        this.charset = charset;
+        return this;
+    }
+
+    // Negative value means no timeout. A run which exceeds the timeout throws IOException.
+    public ProcessLauncher withTimeout(long timeoutMs) {
+        this.timeoutMs = timeoutMs;
+        return this;
+    }
+
+    /**
+     * Sets cancellation check which is polled while the process is running. A canceled run throws {@link CancellationException}.
+     */
+    public ProcessLauncher withCancelCheck(@Nullable BooleanSupplier canceled) {
+        this.canceled = canceled;
+        return this;
+    }
+
+    /**
+     * Runs the process and passes its standard output to the processor.
+     * Output left unread by the processor is skipped. The process is destroyed if the processor throws an exception.
+     */
+    @NotNull
+    public <T, E extends Exception> Result<T> run(@NotNull StreamProcessor<T, E> processor) throws E, IOException {
+        LOG.info("Executing: " + Arrays.toString(cmdLine));
+        Process process = new ProcessBuilder(cmdLine).directory(workDir).start();
+        process.getOutputStream().close();
+        Watchdog watchdog = new Watchdog(process);
+        watchdog.future = IO_POOL.scheduleWithFixedDelay(watchdog, POLL_INTERVAL_MS, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        T value = null;
+        boolean consumed = false;
+        try (InputStream stdout = process.getInputStream()) {
+            // parsers tend to close their input, the stream is closed here
+            value = processor.process(new FilterInputStream(stdout) {
+                @Override
+                public void close() {
+                }
+            });
+            skipRemaining(stdout, watchdog);
+            consumed = true;
+        } finally {
+            if (!consumed) {
+                process.destroy();
+            }
+            watchdog.finish();
+            // the processor might fail on truncated output of the destroyed process, cancellation and timeout take precedence
+            if (watchdog.canceled) {
+                //noinspection ThrowFromFinallyBlock
+                throw new CancellationException("Process canceled: " + cmdLine[0]);
+            } else if (watchdog.timedOut) {
+                //noinspection ThrowFromFinallyBlock
+                throw new IOException("Process timed out: " + cmdLine[0]);
+            }
+        }
+        return new Result<T>(value, process.exitValue(), watchdog.getStderr());
+    }
+
+    // Reads output left by the processor so the process can complete
+    private static void skipRemaining(InputStream stdout, Watchdog watchdog) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        while (!watchdog.isStopped() && (stdout.read(buffer) >= 0)) {
+        }
+    }
+
+    /**
+     * Runs the process and passes its standard output decoded with the launcher charset to the consumer
+     */
+    @NotNull
+    public Result<Void> run(@NotNull ChunkConsumer consumer) throws IOException {
+        return run((StreamProcessor<Void, IOException>) stdout -> {
+            Reader reader = new InputStreamReader(stdout, charset);
+            char[] buffer = new char[BUFFER_SIZE];
+            int length;
+            while ((length = reader.read(buffer)) >= 0) {
+                consumer.consume(buffer, length);
+            }
+            return null;
+        });
+    }
+
+    public static class Result<T> {
+        private final T value;
+        private final int exitCode;
+        private final String stderr;
+
+        private Result(T value, int exitCode, String stderr) {
+            this.value = value;
+            this.exitCode = exitCode;
+            this.stderr = stderr;
+        }
+
+        // Value returned by stream processor
+        public T getValue() {
+            return value;
+        }
+
+        public int getExitCode() {
+            return exitCode;
+        }
+
+        // Last characters of standard error output
+        @NotNull
+        public String getStderr() {
+            return stderr;
+        }
+    }
+
+    private class Watchdog implements Runnable {
+        private final Process process;
+        private final long deadline;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        // Ring buffer with the stderr tail
+        private final byte[] tail = new byte[STDERR_LIMIT];
+        private long tailLength;
+        private volatile boolean canceled;
+        private volatile boolean timedOut;
+        private volatile ScheduledFuture<?> future;
+
+        private Watchdog(Process process) {
+            this.process = process;
+            this.deadline = timeoutMs >= 0 ? System.currentTimeMillis() + timeoutMs : Long.MAX_VALUE;
+        }
+
+        @Override
+        public synchronized void run() {
+            drainStderr(false);
+            if (!process.isAlive()) {
+                return;
+            }
+            if ((ProcessLauncher.this.canceled != null) && ProcessLauncher.this.canceled.getAsBoolean()) {
+                canceled = true;
+                process.destroy();
+            } else if (System.currentTimeMillis() > deadline) {
+                LOG.info("Process timed out: " + cmdLine[0]);
+                timedOut = true;
+                process.destroy();
+            }
+        }
+
+        // Process was destroyed by the watchdog
+        private boolean isStopped() {
+            return canceled || timedOut;
+        }
+
+        // Waits for the process and reads the rest of stderr
+        private void finish() {
+            try {
+                if (!process.waitFor(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+                    timedOut = true;
+                    process.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                process.destroyForcibly();
+            } finally {
+                ScheduledFuture<?> f = future;
+                if (f != null) {
+                    f.cancel(false);
+                }
+                synchronized (this) {
+                    drainStderr(true);
+                }
+            }
+        }
+
+        private void drainStderr(boolean toEnd) {
+            InputStream stderr = process.getErrorStream();
+            try {
+                int available;
+                while ((available = toEnd ? buffer.length : stderr.available()) > 0) {
+                    int read = stderr.read(buffer, 0, Math.min(available, buffer.length));
+                    if (read < 0) {
+                        break;
+                    }
+                    for (int i = 0; i < read; i++) {
+                        tail[(int) (tailLength++ % tail.length)] = buffer[i];
+                    }
+                }
+            } catch (IOException e) {
+                // streams of a destroyed process are closed
+                if (!canceled && !timedOut) {
+                    LOG.info("Error reading process error output: " + e.getMessage());
+                }
+            }
+        }
+
+        private synchronized String getStderr() {
+            int length = (int) Math.min(tailLength, tail.length);
+            byte[] result = new byte[length];
+            int start = (int) ((tailLength - length) % tail.length);
+            for (int i = 0; i < length; i++) {
+                result[i] = tail[(start + i) % tail.length];
+            }
+            return new String(result, charset);
+        }
+    }
+}
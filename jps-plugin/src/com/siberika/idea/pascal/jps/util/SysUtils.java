@@ -54,20 +54,33 @@ public class SysUtils {
         return timeout < 0 ? processHandler.runProcess() : processHandler.runProcess(timeout);
     }
 
+    /**
+     * Runs the executable and returns its standard output. Output is read in chunks into a single buffer.
+     * @return trimmed output or null if it's empty or the process can't be launched
+     * @throws PascalException if the process completed with non-zero exit code and no output
+     */
     @Nullable
     public static String runAndGetStdOut(String workDir, String exePath, int timeoutMs, String...params) throws PascalException {
-        final ProcessOutput processOutput;
+        if (!new File(workDir).isDirectory() || !new File(exePath).canExecute()) {
+            LOG.info(String.format("WARNING: Can't run %s in %s", exePath, workDir));
+            return null;
+        }
+        String[] cmdLine = new String[params.length + 1];
+        cmdLine[0] = exePath;
+        System.arraycopy(params, 0, cmdLine, 1, params.length);
+        final StringBuilder sb = new StringBuilder();
+        final ProcessLauncher.Result<Void> result;
         try {
-            processOutput = getProcessOutput(timeoutMs, workDir, exePath, params);
-        } catch (final ExecutionException e) {
+            result = new ProcessLauncher(cmdLine).withWorkDir(new File(workDir)).withTimeout(timeoutMs).run((buffer, length) -> sb.append(buffer, 0, length));
+        } catch (IOException e) {
+            LOG.info(String.format("WARNING: Error running %s: %s", exePath, e.getMessage()));
             return null;
         }
-        int exitCode = processOutput.getExitCode();
-        final String stdout = processOutput.getStdout().trim();
-        final String stderr = processOutput.getStderr().trim();
+        int exitCode = result.getExitCode();
+        final String stdout = trim(sb);
         if ((exitCode != 0) && (stdout.isEmpty())) {
+            final String stderr = result.getStderr().trim();
             LOG.info(String.format("WARNING: Error running %s. Code: %d", exePath, exitCode));
-            LOG.info(String.format("Output: %s", stdout));
             LOG.info(String.format("Error: %s", stderr));
             throw new PascalException(JpsPascalBundle.message("error.exit.code", exePath, exitCode, stderr));
         }
@@ -77,6 +90,19 @@ public class SysUtils {
         return stdout;
     }
 
+    // Trims whitespace without an intermediate copy of the whole text
+    private static String trim(StringBuilder sb) {
+        int start = 0;
+        int end = sb.length();
+        while ((start < end) && (sb.charAt(start) <= ' ')) {
+            start++;
+        }
+        while ((end > start) && (sb.charAt(end - 1) <= ' ')) {
+            end--;
+        }
+        return sb.substring(start, end);
+    }
+
     public static void close(Closeable closeable) {
         try {
             if (closeable != null) {
@@ -8,6 +8,7 @@ import com.intellij.psi.SmartPsiElementPointer;
 import com.intellij.psi.search.PsiElementProcessor;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.util.Consumer;
+import com.intellij.util.SmartList;
 import com.siberika.idea.pascal.lang.psi.PasEntityScope;
 import com.siberika.idea.pascal.lang.psi.PasExpr;
 import com.siberika.idea.pascal.lang.psi.PasExpression;
@@ -17,11 +18,16 @@ import com.siberika.idea.pascal.lang.psi.PasWithStatement;
 import com.siberika.idea.pascal.lang.psi.PascalStructType;
 import com.siberika.idea.pascal.lang.psi.impl.PasField;
 import com.siberika.idea.pascal.lang.psi.impl.PascalExpression;
+import com.siberika.idea.pascal.lang.psi.impl.WithStatementMap;
+import com.siberika.idea.pascal.lang.references.ResolvedIdents;
 import com.siberika.idea.pascal.util.PsiUtil;
+import org.jetbrains.annotations.NotNull;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Highlight all identifiers in WITH statement which come from the scope under cursor or all identifiers from WITH scopes when cursor is on WITH keyword
@@ -66,50 +72,74 @@ public class PasHighlightWithIdentsHandler extends HighlightUsagesHandlerBase<Ps
         addOccurrence(with.getFirstChild());
 
         addOccurrence(target);
+        WithStatementMap withMap = WithStatementMap.forElement(with);
+        List<Set<PasEntityScope>> withScopes = new SmartList<>();
+        if (expr instanceof PasExpression) {
+            withScopes.add(getWithScopes((PasExpression) expr));
+        } else {
+            for (PasExpression withExpr : with.getExpressionList()) {
+                withScopes.add(getWithScopes(withExpr));
+            }
+        }
         Collection<PasFullyQualifiedIdent> idents = PsiTreeUtil.findChildrenOfAnyType(with, PasFullyQualifiedIdent.class);
         for (PasFullyQualifiedIdent ident : idents) {
-            if (expr instanceof PasExpression) {
-                processElementsFromWith((PasExpression) expr, ident, element -> {
+            if ((withMap != null) && !withMap.getAffecting(ident.getTextRange().getStartOffset()).contains(with)) {
+                continue;                                          // not within the statement body
+            }
+            for (Set<PasEntityScope> scopes : withScopes) {
+                processElementsFromWith(scopes, ident, element -> {
                     addOccurrence(element);
                     return true;
                 });
-            } else {
-                for (PasExpression withExpr : with.getExpressionList()) {
-                    processElementsFromWith(withExpr, ident, element -> {
-                        addOccurrence(element);
-                        return true;
-                    });
-                }
             }
         }
     }
 
     public static void processElementsFromWith(PasExpression withExpr, PasFullyQualifiedIdent namedElement, PsiElementProcessor<PasSubIdent> processor) {
+        processElementsFromWith(getWithScopes(withExpr), namedElement, processor);
+    }
+
+    /**
+     * Returns structured type of the WITH expression and its parent types which members are accessible without qualification
+     */
+    @NotNull
+    public static Set<PasEntityScope> getWithScopes(PasExpression withExpr) {
         PasExpr expression = withExpr != null ? withExpr.getExpr() : null;
         if (expression instanceof PascalExpression) {
-            List<PasField.ValueType> types = PascalExpression.getTypes((PascalExpression) withExpr.getExpr());
+            List<PasField.ValueType> types = PascalExpression.getTypes((PascalExpression) expression);
             if (!types.isEmpty()) {
                 PasEntityScope ns = PascalExpression.retrieveScope(types);
                 if (ns instanceof PascalStructType) {
-                    processWithNamespace(ns, namedElement, processor);
+                    Set<PasEntityScope> result = new HashSet<>();
+                    result.add(ns);
                     for (SmartPsiElementPointer<PasEntityScope> scopePtr : ns.getParentScope()) {
-                        processWithNamespace(scopePtr.getElement(), namedElement, processor);
+                        PasEntityScope scope = scopePtr.getElement();
+                        if (scope instanceof PascalStructType) {
+                            result.add(scope);
+                        }
                     }
+                    return result;
                 }
             }
         }
+        return Collections.emptySet();
     }
 
-    private static void processWithNamespace(PasEntityScope scope, PasFullyQualifiedIdent namedElement, PsiElementProcessor<PasSubIdent> processor) {
+    /**
+     * Passes first part of the identifier to the processor if it's resolved to a member of one of the WITH scopes.
+     * Resolve result is taken from the module resolved identifiers table.
+     */
+    public static void processElementsFromWith(@NotNull Set<PasEntityScope> withScopes, PasFullyQualifiedIdent namedElement, PsiElementProcessor<PasSubIdent> processor) {
         List<PasSubIdent> subidents = namedElement.getSubIdentList();
-        if (!subidents.isEmpty()) {
-            PasSubIdent sub = subidents.get(0);
-            if (scope instanceof PascalStructType) {
-                PasField field = scope.getField(sub.getName());
-                if (field != null) {
-                    processor.execute(sub);
-                }
-            }
+        if (withScopes.isEmpty() || subidents.isEmpty()) {
+            return;
+        }
+        PasSubIdent sub = subidents.get(0);
+        ResolvedIdents idents = ResolvedIdents.forElement(sub);
+        int index = idents != null ? idents.indexOf(sub) : -1;
+        PasField field = index >= 0 ? idents.getField(index) : null;
+        if ((field != null) && withScopes.contains(field.owner)) {
+            processor.execute(sub);
         }
     }
 
@@ -20,6 +20,7 @@ import com.siberika.idea.pascal.lang.psi.impl.PasField;
 import com.siberika.idea.pascal.lang.psi.impl.PasModuleImpl;
 import com.siberika.idea.pascal.lang.psi.impl.PasRoutineImplDeclImpl;
 import com.siberika.idea.pascal.lang.psi.impl.PascalModuleImpl;
+import com.siberika.idea.pascal.lang.psi.impl.RoutineImplMap;
 import com.siberika.idea.pascal.lang.psi.impl.RoutineUtil;
 import com.siberika.idea.pascal.util.Filter;
 import com.siberika.idea.pascal.util.PosUtil;
@@ -28,10 +29,13 @@ import org.apache.commons.lang.StringUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -66,22 +70,20 @@ public class SectionToggle {
 
     // Non-strict
     public static PsiElement getRoutineTarget(PascalRoutine routine) {
-        Container cont = calcPrefix(new Container(routine), false);
         if (routine instanceof PasExportedRoutine) {
-            return retrieveImplementation(cont, false);
+            return findImplementation(routine, false);
         } else if (routine instanceof PasRoutineImplDecl) {
-            return retrieveDeclaration(cont, false);
+            return findDeclaration(routine, false);
         }
         return null;
     }
 
     // Strict
     public static PsiElement getImplementationOrDeclaration(PascalRoutine routine) {
-        Container cont = calcPrefix(new Container(routine), false);
         if (routine instanceof PasExportedRoutine) {
-            return retrieveImplementation(cont, true);
+            return findImplementation(routine, true);
         } else if (routine instanceof PasRoutineImplDeclImpl) {
-            PsiElement decl = retrieveDeclaration(cont, true);
+            PsiElement decl = findDeclaration(routine, true);
             if (decl != null) {
                 return decl;
             } else {
@@ -93,11 +95,23 @@ public class SectionToggle {
 
     @Nullable
     public static PsiElement retrieveImplementation(PascalRoutine routine, boolean strict) {
-        return retrieveImplementation(calcPrefix(new Container(routine), false), strict);
+        return findImplementation(routine, strict);
+    }
+
+    // Uses implementations map of the module if the routine is mapped
+    @Nullable
+    private static PsiElement findImplementation(PascalRoutine routine, boolean strict) {
+        if (routine instanceof PasExportedRoutine) {
+            RoutineImplMap map = RoutineImplMap.forElement(routine);
+            if ((map != null) && map.contains(routine)) {
+                return map.getTarget(routine, strict);
+            }
+        }
+        return retrieveImplementation(calcPrefix(new Container(routine), false), strict, null);
     }
 
     @Nullable
-    private static PsiElement retrieveImplementation(Container container, boolean strict) {
+    private static PsiElement retrieveImplementation(Container container, boolean strict, @Nullable Map<String, PasField> implsByName) {
         if (null == container) {
             return null;
         }
@@ -107,14 +121,12 @@ public class SectionToggle {
                 return routine;
             } else if (!strict || !container.element.isOverloaded()) {                          // Try to find implementation w/o parameters
                 final String name = container.prefix + container.element.getName();
-                final Collection<PasField> fields = ((PasModuleImpl) container.scope).getPrivateFields();
-                for (PasField field : fields) {
-                    if (field.fieldType == PasField.FieldType.ROUTINE && name.equalsIgnoreCase(field.name)) {
-                        if (strict && hasParametersOrReturnType((PascalRoutine) field.getElement())) {           // Only empty parameters list and return type allowed in strict mode
-                            return null;
-                        } else {
-                            return field.getElement();
-                        }
+                PasField field = implsByName != null ? implsByName.get(name.toUpperCase()) : findRoutineField(((PasModuleImpl) container.scope).getPrivateFields(), name);
+                if (field != null) {
+                    if (strict && hasParametersOrReturnType((PascalRoutine) field.getElement())) {           // Only empty parameters list and return type allowed in strict mode
+                        return null;
+                    } else {
+                        return field.getElement();
                     }
                 }
             }
@@ -122,6 +134,42 @@ public class SectionToggle {
         return null;
     }
 
+    @Nullable
+    private static PasField findRoutineField(Collection<PasField> fields, String name) {
+        for (PasField field : fields) {
+            if (field.fieldType == PasField.FieldType.ROUTINE && name.equalsIgnoreCase(field.name)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Builds map of routine declarations of the module to their implementations and vice versa
+     */
+    @NotNull
+    public static RoutineImplMap buildRoutineImplMap(@NotNull PascalModule module, long stamp) {
+        final Map<String, PasField> implsByName = new HashMap<>();
+        for (PasField field : module.getPrivateFields()) {
+            if (field.fieldType == PasField.FieldType.ROUTINE) {
+                implsByName.putIfAbsent(field.name.toUpperCase(), field);
+            }
+        }
+        List<PascalRoutine> routines = new ArrayList<>(PsiTreeUtil.findChildrenOfType(module, PasExportedRoutine.class));
+        for (PasRoutineImplDecl routine : PsiTreeUtil.findChildrenOfType(module, PasRoutineImplDecl.class)) {
+            if (PsiUtil.isNotNestedRoutine(routine)) {
+                routines.add(routine);
+            }
+        }
+        return RoutineImplMap.build(routines, new RoutineImplMap.Resolver() {
+            @Override
+            public PsiElement resolve(@NotNull PascalRoutine routine, boolean strict) {
+                Container cont = calcPrefix(new Container(routine), false);
+                return routine instanceof PasExportedRoutine ? retrieveImplementation(cont, strict, implsByName) : retrieveDeclaration(cont, strict);
+            }
+        }, stamp);
+    }
+
     public static boolean hasParametersOrReturnType(@Nullable PascalRoutine routine) {
         return (routine != null) && (routine.hasParameters() || (!routine.isConstructor() && (routine.getFunctionTypeStr().length() > 0)));
     }
@@ -161,6 +209,18 @@ public class SectionToggle {
         if (!PsiUtil.isNotNestedRoutine(routine)) {           // Filter out nested routines and closures
             return null;
         }
+        return findDeclaration(routine, strict);
+    }
+
+    // Uses implementations map of the module if the routine is mapped
+    @Nullable
+    private static PsiElement findDeclaration(PascalRoutine routine, boolean strict) {
+        if (routine instanceof PasRoutineImplDecl) {
+            RoutineImplMap map = RoutineImplMap.forElement(routine);
+            if ((map != null) && map.contains(routine)) {
+                return map.getTarget(routine, strict);
+            }
+        }
         return retrieveDeclaration(calcPrefix(new Container(routine), false), strict);
     }
 
@@ -300,11 +360,11 @@ public class SectionToggle {
             }
             // starting from the index search for implementations
             for (int i = ind - 1; (i >= 0) && (res < 0); i--) {
-                PsiElement impl = retrieveImplementation(calcPrefix(new Container(decls.get(i)), false), false);
+                PsiElement impl = findImplementation(decls.get(i), false);
                 res = impl != null ? impl.getTextRange().getEndOffset() : -1;
             }
             for (int i = ind + 1; (i < decls.size()) && (res < 0); i++) {
-                PsiElement impl = retrieveImplementation(calcPrefix(new Container(decls.get(i)), false), false);
+                PsiElement impl = findImplementation(decls.get(i), false);
                 if (impl != null) {
                     res = impl.getTextRange().getStartOffset();
                 }
@@ -377,11 +437,11 @@ public class SectionToggle {
         }
         // starting from the index search for declarations
         for (int i = ind - 1; (i >= 0) && (res < 0); i--) {
-            PsiElement decl = retrieveDeclaration(calcPrefix(new Container(impls.get(i)), false), false);
+            PsiElement decl = findDeclaration(impls.get(i), false);
             res = decl != null ? decl.getTextRange().getEndOffset() : -1;
         }
         for (int i = ind + 1; (i < impls.size()) && (res < 0); i++) {
-            PsiElement decl = retrieveDeclaration(calcPrefix(new Container(impls.get(i)), false), false);
+            PsiElement decl = findDeclaration(impls.get(i), false);
             if (decl != null) {
                 res = decl.getTextRange().getStartOffset();
             }
@@ -0,0 +1,86 @@
+package com.siberika.idea.pascal.ide.hierarchy;
+
+import com.intellij.ide.hierarchy.HierarchyBrowserManager;
+import com.intellij.ide.hierarchy.HierarchyNodeDescriptor;
+import com.intellij.ide.hierarchy.HierarchyTreeStructure;
+import com.intellij.ide.hierarchy.TypeHierarchyBrowserBase;
+import com.intellij.ide.util.treeView.AlphaComparator;
+import com.intellij.ide.util.treeView.NodeDescriptor;
+import com.intellij.ide.util.treeView.SourceComparator;
+import com.intellij.openapi.actionSystem.IdeActions;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiElement;
+import com.siberika.idea.pascal.lang.psi.PascalInterfaceDecl;
+import com.siberika.idea.pascal.lang.psi.PascalStructType;
+import com.siberika.idea.pascal.lang.references.ResolveUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import java.util.Comparator;
+import java.util.Map;
+
+public class PascalTypeHierarchyBrowser extends TypeHierarchyBrowserBase {
+
+    PascalTypeHierarchyBrowser(Project project, PsiElement element) {
+        super(project, element);
+    }
+
+    @Override
+    protected boolean isInterface(PsiElement psiElement) {
+        return psiElement instanceof PascalInterfaceDecl;
+    }
+
+    @Override
+    protected boolean canBeDeleted(PsiElement psiElement) {
+        return false;
+    }
+
+    @Override
+    protected String getQualifiedName(PsiElement psiElement) {
+        return psiElement instanceof PascalStructType ? ResolveUtil.cleanupName(((PascalStructType) psiElement).getUniqueName()) : "";
+    }
+
+    @Nullable
+    @Override
+    protected PsiElement getElementFromDescriptor(@NotNull HierarchyNodeDescriptor descriptor) {
+        return descriptor.getPsiElement();
+    }
+
+    @Override
+    protected void createTrees(@NotNull Map<String, JTree> trees) {
+        createTreeAndSetupCommonActions(trees, IdeActions.GROUP_TYPE_HIERARCHY_POPUP);
+    }
+
+    @Nullable
+    @Override
+    protected JPanel createLegendPanel() {
+        return null;
+    }
+
+    @Override
+    protected boolean isApplicableElement(@NotNull PsiElement element) {
+        return element instanceof PascalStructType;
+    }
+
+    @Nullable
+    @Override
+    protected HierarchyTreeStructure createHierarchyTreeStructure(@NotNull String type, @NotNull PsiElement psiElement) {
+        PascalStructType struct = (PascalStructType) psiElement;
+        if (SUPERTYPES_HIERARCHY_TYPE.equals(type)) {
+            return new PascalTypeHierarchyTreeStructure(myProject, struct, PascalTypeHierarchyTreeStructure.Mode.SUPERTYPES);
+        } else if (SUBTYPES_HIERARCHY_TYPE.equals(type)) {
+            return new PascalTypeHierarchyTreeStructure(myProject, struct, PascalTypeHierarchyTreeStructure.Mode.SUBTYPES);
+        } else if (TYPE_HIERARCHY_TYPE.equals(type)) {
+            return new PascalTypeHierarchyTreeStructure(myProject, struct, PascalTypeHierarchyTreeStructure.Mode.TYPE);
+        } else {
+            return null;
+        }
+    }
+
+    @Nullable
+    @Override
+    protected Comparator<NodeDescriptor> getComparator() {
+        return HierarchyBrowserManager.getInstance(myProject).getState().SORT_ALPHABETICALLY ? AlphaComparator.INSTANCE : SourceComparator.INSTANCE;
+    }
+}
@@ -0,0 +1,53 @@
+package com.siberika.idea.pascal.ide.hierarchy;
+
+import com.intellij.icons.AllIcons;
+import com.intellij.ide.IdeBundle;
+import com.intellij.ide.hierarchy.HierarchyNodeDescriptor;
+import com.intellij.ide.util.treeView.NodeDescriptor;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ui.util.CompositeAppearance;
+import com.intellij.openapi.util.Comparing;
+import com.intellij.psi.PsiElement;
+import com.intellij.ui.LayeredIcon;
+import com.siberika.idea.pascal.lang.psi.PascalStructType;
+import com.siberika.idea.pascal.lang.references.ResolveUtil;
+import org.jetbrains.annotations.NotNull;
+
+class PascalTypeHierarchyNodeDescriptor extends HierarchyNodeDescriptor {
+
+    PascalTypeHierarchyNodeDescriptor(@NotNull Project project, NodeDescriptor parentDescriptor, @NotNull PsiElement element, boolean isBase) {
+        super(project, parentDescriptor, element, isBase);
+    }
+
+    @Override
+    public boolean update() {
+        boolean changes = super.update();
+        PsiElement element = getPsiElement();
+        if (!(element instanceof PascalStructType)) {
+            String invalidPrefix = IdeBundle.message("node.hierarchy.invalid");
+            if (!myHighlightedText.getText().startsWith(invalidPrefix)) {
+                myHighlightedText.getBeginning().addText(invalidPrefix, HierarchyNodeDescriptor.getInvalidPrefixAttributes());
+            }
+            return true;
+        }
+        if (changes && myIsBase) {
+            LayeredIcon icon = new LayeredIcon(2);
+            icon.setIcon(getIcon(), 0);
+            icon.setIcon(AllIcons.Hierarchy.Base, 1, -AllIcons.Hierarchy.Base.getIconWidth() / 2, 0);
+            setIcon(icon);
+        }
+        PascalStructType type = (PascalStructType) element;
+        CompositeAppearance oldText = myHighlightedText;
+        myHighlightedText = new CompositeAppearance();
+        myHighlightedText.getEnding().addText(ResolveUtil.cleanupName(type.getName()));
+        String unitName = type.getContainingFile() != null ? type.getContainingFile().getName() : null;
+        if (unitName != null) {
+            myHighlightedText.getEnding().addText(" (" + unitName + ")", HierarchyNodeDescriptor.getPackageNameAttributes());
+        }
+        myName = myHighlightedText.getText();
+        if (!Comparing.equal(myHighlightedText, oldText)) {
+            changes = true;
+        }
+        return changes;
+    }
+}
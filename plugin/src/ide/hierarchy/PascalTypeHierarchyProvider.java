@@ -0,0 +1,49 @@
+package com.siberika.idea.pascal.ide.hierarchy;
+
+import com.intellij.ide.hierarchy.HierarchyBrowser;
+import com.intellij.ide.hierarchy.HierarchyProvider;
+import com.intellij.ide.hierarchy.TypeHierarchyBrowserBase;
+import com.intellij.openapi.actionSystem.DataContext;
+import com.intellij.openapi.actionSystem.LangDataKeys;
+import com.intellij.openapi.actionSystem.PlatformDataKeys;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.siberika.idea.pascal.util.PsiUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Type hierarchy of Pascal structured types built with {@link com.siberika.idea.pascal.lang.search.PascalHierarchyService}
+ */
+public class PascalTypeHierarchyProvider implements HierarchyProvider {
+
+    @Nullable
+    @Override
+    public PsiElement getTarget(@NotNull DataContext dataContext) {
+        Project project = PlatformDataKeys.PROJECT.getData(dataContext);
+        if (null == project) {
+            return null;
+        }
+        Editor editor = PlatformDataKeys.EDITOR.getData(dataContext);
+        if (editor != null) {
+            PsiFile file = PsiDocumentManager.getInstance(project).getPsiFile(editor.getDocument());
+            return file != null ? PsiUtil.getStructByElement(file.findElementAt(editor.getCaretModel().getOffset())) : null;
+        }
+        PsiElement element = LangDataKeys.PSI_ELEMENT.getData(dataContext);
+        return element != null ? PsiUtil.getStructByElement(element) : null;
+    }
+
+    @NotNull
+    @Override
+    public HierarchyBrowser createHierarchyBrowser(PsiElement target) {
+        return new PascalTypeHierarchyBrowser(target.getProject(), target);
+    }
+
+    @Override
+    public void browserActivated(@NotNull HierarchyBrowser hierarchyBrowser) {
+        ((TypeHierarchyBrowserBase) hierarchyBrowser).changeView(TypeHierarchyBrowserBase.TYPE_HIERARCHY_TYPE);
+    }
+}
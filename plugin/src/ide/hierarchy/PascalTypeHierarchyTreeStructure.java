@@ -0,0 +1,93 @@
+package com.siberika.idea.pascal.ide.hierarchy;
+
+import com.intellij.ide.hierarchy.HierarchyNodeDescriptor;
+import com.intellij.ide.hierarchy.HierarchyTreeStructure;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiElement;
+import com.intellij.util.ArrayUtil;
+import com.siberika.idea.pascal.lang.psi.PascalInterfaceDecl;
+import com.siberika.idea.pascal.lang.psi.PascalStructType;
+import com.siberika.idea.pascal.lang.search.PascalHierarchyService;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tree of supertypes, subtypes or the whole hierarchy of a structured type.
+ * The whole hierarchy is the chain of first non-interface ancestors with subtypes of the type below it.
+ */
+class PascalTypeHierarchyTreeStructure extends HierarchyTreeStructure {
+
+    enum Mode {TYPE, SUPERTYPES, SUBTYPES}
+
+    private final Mode mode;
+
+    PascalTypeHierarchyTreeStructure(Project project, PascalStructType type, Mode mode) {
+        super(project, mode == Mode.TYPE ? buildAncestorsChain(project, type) : new PascalTypeHierarchyNodeDescriptor(project, null, type, true));
+        this.mode = mode;
+        if (mode == Mode.TYPE) {
+            setBaseElement(myBaseDescriptor);
+        }
+    }
+
+    private static HierarchyNodeDescriptor buildAncestorsChain(Project project, PascalStructType type) {
+        PascalHierarchyService service = PascalHierarchyService.getInstance(project);
+        List<PascalStructType> chain = new ArrayList<>();
+        PascalStructType current = type;
+        while ((current = getFirstParent(service, current, chain)) != null) {
+            chain.add(0, current);
+        }
+        HierarchyNodeDescriptor descriptor = null;
+        for (PascalStructType ancestor : chain) {
+            HierarchyNodeDescriptor child = new PascalTypeHierarchyNodeDescriptor(project, descriptor, ancestor, false);
+            if (descriptor != null) {
+                descriptor.setCachedChildren(new Object[] {child});
+            }
+            descriptor = child;
+        }
+        HierarchyNodeDescriptor base = new PascalTypeHierarchyNodeDescriptor(project, descriptor, type, true);
+        if (descriptor != null) {
+            descriptor.setCachedChildren(new Object[] {base});
+        }
+        return base;
+    }
+
+    private static PascalStructType getFirstParent(PascalHierarchyService service, PascalStructType type, List<PascalStructType> chain) {
+        for (PascalStructType parent : service.getSupertypes(type)) {
+            if (!(parent instanceof PascalInterfaceDecl) || (type instanceof PascalInterfaceDecl)) {
+                return chain.contains(parent) ? null : parent;
+            }
+        }
+        return null;
+    }
+
+    @NotNull
+    @Override
+    protected Object[] buildChildren(@NotNull HierarchyNodeDescriptor descriptor) {
+        PsiElement element = descriptor.getPsiElement();
+        if (!(element instanceof PascalStructType)) {
+            return ArrayUtil.EMPTY_OBJECT_ARRAY;
+        }
+        PascalHierarchyService service = PascalHierarchyService.getInstance(myProject);
+        PascalStructType type = (PascalStructType) element;
+        List<PascalStructType> children = mode == Mode.SUPERTYPES ? service.getSupertypes(type) : service.getSubtypes(type);
+        List<HierarchyNodeDescriptor> result = new ArrayList<>(children.size());
+        for (PascalStructType child : children) {
+            if (!isAncestor(descriptor, child)) {
+                result.add(new PascalTypeHierarchyNodeDescriptor(myProject, descriptor, child, false));
+            }
+        }
+        return result.toArray();
+    }
+
+    // Prevents infinite trees on cyclic inheritance in erroneous code
+    private static boolean isAncestor(HierarchyNodeDescriptor descriptor, PascalStructType type) {
+        for (Object current = descriptor; current instanceof HierarchyNodeDescriptor; current = ((HierarchyNodeDescriptor) current).getParentDescriptor()) {
+            if (type.equals(((HierarchyNodeDescriptor) current).getPsiElement())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -38,6 +38,7 @@ import com.siberika.idea.pascal.lang.psi.impl.PasRoutineImplDeclImpl;
 import com.siberika.idea.pascal.lang.psi.impl.PasVariantScope;
 import com.siberika.idea.pascal.lang.references.ResolveContext;
 import com.siberika.idea.pascal.lang.references.ResolveUtil;
+import com.siberika.idea.pascal.lang.references.ResolvedIdents;
 import com.siberika.idea.pascal.lang.references.resolve.Resolve;
 import com.siberika.idea.pascal.util.PsiContext;
 import com.siberika.idea.pascal.util.PsiUtil;
@@ -73,13 +74,21 @@ public class PascalAnnotator implements Annotator {
         if (PsiUtil.isEntityName(element) && !PsiUtil.isLastPartOfMethodImplName((PascalNamedElement) element)) {
             //noinspection ConstantConditions
             PascalNamedElement namedElement = (PascalNamedElement) element;
-            List<PsiElement> scopes = new SmartList<>();
-            ResolveContext resolveContext = new ResolveContext(null, PasField.TYPES_ALL, true, scopes, null);
-
-            final NamespaceRec fqn = NamespaceRec.fromElement(element);
-            boolean noTargets = Resolve.resolveExpr(fqn, resolveContext, (originalScope, scope, field, type) -> false);
+            List<PsiElement> scopes;
+            boolean noTargets;
+            ResolvedIdents idents = ResolvedIdents.forElement(element);
+            int index = idents != null ? idents.indexOf(element) : -1;
+            if (index >= 0) {                                            // Already resolved within module pass
+                noTargets = !idents.isResolved(index);
+                scopes = idents.getScopes(index);
+            } else {
+                scopes = new SmartList<>();
+                ResolveContext resolveContext = new ResolveContext(null, PasField.TYPES_ALL, true, scopes, null);
+                noTargets = Resolve.resolveExpr(NamespaceRec.fromElement(element), resolveContext, (originalScope, scope, field, type) -> false);
+            }
 
             if (noTargets && !isVariantField(scopes)) {
+                final NamespaceRec fqn = NamespaceRec.fromElement(element);
                 Annotation ann = holder.createErrorAnnotation(element, message("ann.error.undeclared.identifier"));
                 PsiContext context = PsiUtil.getContext(namedElement);
                 Set<AddFixType> fixes = EnumSet.of(AddFixType.VAR, AddFixType.TYPE, AddFixType.CONST, AddFixType.ROUTINE, AddFixType.UNIT_FIND); // [*] => var type const routine
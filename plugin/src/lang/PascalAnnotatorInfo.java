@@ -5,10 +5,14 @@ import com.intellij.psi.PsiFile;
 public class PascalAnnotatorInfo {
     private final PsiFile file;
     private final int lineCount;
+    private final CharSequence text;
+    private final long stamp;
 
-    public PascalAnnotatorInfo(PsiFile file, int lineCount) {
+    public PascalAnnotatorInfo(PsiFile file, int lineCount, CharSequence text, long stamp) {
         this.file = file;
         this.lineCount = lineCount;
+        this.text = text;
+        this.stamp = stamp;
     }
 
     public PsiFile getFile() {
@@ -18,4 +22,14 @@ public class PascalAnnotatorInfo {
     public int getLineCount() {
         return lineCount;
     }
+
+    // Document text snapshot taken when the information was collected
+    public CharSequence getText() {
+        return text;
+    }
+
+    // Document modification stamp of the text snapshot
+    public long getStamp() {
+        return stamp;
+    }
 }
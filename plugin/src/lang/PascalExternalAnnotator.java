@@ -6,7 +6,6 @@ import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.Editor;
-import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleUtilCore;
 import com.intellij.openapi.project.DumbAware;
@@ -26,6 +25,7 @@ import com.siberika.idea.pascal.jps.sdk.PascalCompilerFamily;
 import com.siberika.idea.pascal.jps.sdk.PascalSdkData;
 import com.siberika.idea.pascal.lang.psi.PasTypes;
 import com.siberika.idea.pascal.module.ModuleService;
+import com.siberika.idea.pascal.module.SyntaxCheckUnitCache;
 import com.siberika.idea.pascal.sdk.BasePascalSdkType;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -51,12 +51,27 @@ public class PascalExternalAnnotator extends ExternalAnnotator<PascalAnnotatorIn
         if (null == sdkData) {
             return null;
         }
-        return sdkData.isSyntaxCheckEnabled(hasErrors) ? new PascalAnnotatorInfo(file, editor.getDocument().getLineCount()) : null;
+        if (!sdkData.isSyntaxCheckEnabled(hasErrors) || (null == file.getVirtualFile())) {
+            return null;
+        }
+        Document doc = editor.getDocument();
+        PascalAnnotatorInfo info = new PascalAnnotatorInfo(file, doc.getLineCount(), doc.getImmutableCharSequence(), doc.getModificationStamp());
+        PascalSyntaxCheckOverlay.submit(info);
+        return info;
     }
 
     @Nullable
     @Override
     public PascalSyntaxCheckResult doAnnotate(PascalAnnotatorInfo collectedInfo) {
+        try {
+            return annotate(collectedInfo);
+        } finally {
+            PascalSyntaxCheckOverlay.complete(collectedInfo);
+        }
+    }
+
+    @Nullable
+    private PascalSyntaxCheckResult annotate(PascalAnnotatorInfo collectedInfo) {
         Module module = ModuleUtilCore.findModuleForFile(collectedInfo.getFile());
         if (null == module) {
             return null;
@@ -65,31 +80,57 @@ public class PascalExternalAnnotator extends ExternalAnnotator<PascalAnnotatorIn
         final PascalSdkData sdkData = isPascalSdk(sdk) ? BasePascalSdkType.getAdditionalData(sdk) : null;
         String family = sdkData != null ? sdkData.getString(PascalSdkData.Keys.COMPILER_FAMILY) : null;
         PascalBackendCompiler compiler = family != null ? PascalBackendCompiler.getCompiler(PascalCompilerFamily.of(family), CompilerMessager.NO_OP_MESSAGER) : null;
-        File tempDir = module.getComponent(ModuleService.class).getSyntaxCheckTempDir();
-        final ArrayList<String> commandLine = new ArrayList<>();
-        final boolean perform = (compiler != null) && compiler.createSyntaxCheckCommandImpl(sdk.getHomePath(), collectedInfo.getFile().getVirtualFile().getPath(), sdkData,
-                collectSourcePaths(sdk, module), commandLine, tempDir.getAbsolutePath());
-        if (!perform) {
+        ModuleService moduleService = module.getComponent(ModuleService.class);
+        File tempDir = moduleService.getSyntaxCheckTempDir();
+        VirtualFile file = collectedInfo.getFile().getVirtualFile();
+        if ((null == compiler) || (null == tempDir) || (null == file)) {
             return null;
         }
         try {
-            Document doc = PsiDocumentManager.getInstance(collectedInfo.getFile().getProject()).getDocument(collectedInfo.getFile());
-            if (doc != null) {
-                ApplicationManager.getApplication().invokeAndWait(() -> FileDocumentManager.getInstance().saveDocumentAsIs(doc));
-                PascalSyntaxCheckResult messager = new PascalSyntaxCheckResult(collectedInfo);
-                compiler.launch(messager, commandLine.toArray(new String[0]), tempDir);
-                return messager;
-            } else {
+            File overlayFile = PascalSyntaxCheckOverlay.writeSnapshot(collectedInfo, tempDir);
+            if (null == overlayFile) {
                 return null;
             }
+            SyntaxCheckUnitCache unitCache = moduleService.getSyntaxCheckUnitCache(module, sdk, sdkData, compiler.getCompiledUnitExt());
+            try {
+                unitCache.lockCompile();
+                try {
+                    File unitDir = unitCache.prepare();
+                    final ArrayList<String> commandLine = new ArrayList<>();
+                    if (!compiler.createSyntaxCheckCommandImpl(sdk.getHomePath(), overlayFile.getPath(), sdkData,
+                            collectSourcePaths(sdk, module, file), commandLine, (unitDir != null ? unitDir : tempDir).getAbsolutePath())) {
+                        return null;
+                    }
+                    PascalSyntaxCheckResult messager = new PascalSyntaxCheckResult(collectedInfo, overlayFile);
+                    try {
+                        return PascalSyntaxCheckOverlay.compile(collectedInfo, compiler, messager, commandLine.toArray(new String[0]), getWorkingDir(file, tempDir)) ? messager : null;
+                    } finally {
+                        unitCache.evict(file.getNameWithoutExtension());         // compiled from unsaved text
+                    }
+                } finally {
+                    unitCache.unlockCompile();
+                }
+            } finally {
+                PascalSyntaxCheckOverlay.deleteSnapshot(overlayFile);
+            }
         } catch (IOException e) {
             LOG.error("Error launching external annotator", e);
             return null;
         }
     }
 
-    private VirtualFile[] collectSourcePaths(Sdk sdk, Module module) {
+    // Compiler runs in directory of the checked file as a regular build does
+    private File getWorkingDir(VirtualFile file, File tempDir) {
+        VirtualFile parent = file.getParent();
+        return (parent != null) && parent.isInLocalFileSystem() ? new File(parent.getPath()) : tempDir;
+    }
+
+    // Directory of the checked file goes first to resolve units and includes located near the file on disk
+    private VirtualFile[] collectSourcePaths(Sdk sdk, Module module, VirtualFile file) {
         List<VirtualFile[]> urlLists = new ArrayList<>();
+        if (file.getParent() != null) {
+            urlLists.add(new VirtualFile[] {file.getParent()});
+        }
         urlLists.add(sdk.getRootProvider().getFiles(OrderRootType.CLASSES));
         urlLists.add(sdk.getRootProvider().getFiles(OrderRootType.SOURCES));
         urlLists.add(ModuleRootManager.getInstance(module).getSourceRoots());
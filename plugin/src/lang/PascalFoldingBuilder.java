@@ -10,18 +10,23 @@ import com.intellij.openapi.editor.FoldingGroup;
 import com.intellij.openapi.project.DumbAware;
 import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiComment;
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
 import com.intellij.psi.search.PsiElementProcessor;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.siberika.idea.pascal.editor.highlighter.PasHighlightWithIdentsHandler;
 import com.siberika.idea.pascal.lang.folding.PascalCodeFoldingSettings;
+import com.siberika.idea.pascal.lang.folding.PascalLexerFoldingBuilder;
+import com.siberika.idea.pascal.lang.lexer.PascalLexer;
 import com.siberika.idea.pascal.lang.psi.PasCaseStatement;
 import com.siberika.idea.pascal.lang.psi.PasClassHelperDecl;
 import com.siberika.idea.pascal.lang.psi.PasClassTypeDecl;
 import com.siberika.idea.pascal.lang.psi.PasClassTypeTypeDecl;
 import com.siberika.idea.pascal.lang.psi.PasCompoundStatement;
 import com.siberika.idea.pascal.lang.psi.PasConstSection;
+import com.siberika.idea.pascal.lang.psi.PasEntityScope;
 import com.siberika.idea.pascal.lang.psi.PasEnumType;
 import com.siberika.idea.pascal.lang.psi.PasExpression;
 import com.siberika.idea.pascal.lang.psi.PasFullyQualifiedIdent;
@@ -32,6 +37,7 @@ import com.siberika.idea.pascal.lang.psi.PasObjectDecl;
 import com.siberika.idea.pascal.lang.psi.PasRecordDecl;
 import com.siberika.idea.pascal.lang.psi.PasRecordHelperDecl;
 import com.siberika.idea.pascal.lang.psi.PasRepeatStatement;
+import com.siberika.idea.pascal.lang.psi.PasStatement;
 import com.siberika.idea.pascal.lang.psi.PasTypeDeclaration;
 import com.siberika.idea.pascal.lang.psi.PasTypeSection;
 import com.siberika.idea.pascal.lang.psi.PasTypes;
@@ -45,6 +51,7 @@ import com.siberika.idea.pascal.lang.psi.PasWithStatement;
 import com.siberika.idea.pascal.lang.psi.PascalPsiElement;
 import com.siberika.idea.pascal.lang.psi.PascalQualifiedIdent;
 import com.siberika.idea.pascal.lang.psi.impl.PasRoutineImplDeclImpl;
+import com.siberika.idea.pascal.lang.psi.impl.WithStatementMap;
 import com.siberika.idea.pascal.util.PsiUtil;
 import org.apache.commons.lang.StringUtils;
 import org.jetbrains.annotations.NotNull;
@@ -53,7 +60,10 @@ import org.jetbrains.annotations.Nullable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -63,10 +73,17 @@ import java.util.Set;
 public class PascalFoldingBuilder extends FoldingBuilderEx implements DumbAware {
 
     private static final int PLACEHOLDER_MAX_SIZE = 256;
+    // Quick folding of files of size more than this is built by lexer only
+    private static final int LEXER_FOLDING_THRESHOLD = 1000000;
+    // System property to override the lexer folding threshold
+    static final String LEXER_FOLDING_THRESHOLD_PROPERTY = "pascal.folding.lexer.threshold";
 
     @NotNull
     @Override
     public FoldingDescriptor[] buildFoldRegions(@NotNull PsiElement root, @NotNull Document document, boolean quick) {
+        if (quick && (document.getTextLength() > Integer.getInteger(LEXER_FOLDING_THRESHOLD_PROPERTY, LEXER_FOLDING_THRESHOLD))) {
+            return buildLexerFoldRegions(root, document);
+        }
         final List<FoldingDescriptor> descriptors = new ArrayList<FoldingDescriptor>();
 
         Collection<PascalPsiElement> commonElements = new ArrayList<>();
@@ -79,6 +96,8 @@ public class PascalFoldingBuilder extends FoldingBuilderEx implements DumbAware
         Collection<PasFullyQualifiedIdent> namedElements = new ArrayList<>();
 
         PsiElementProcessor<PsiElement> processor = new PsiElementProcessor<PsiElement>() {
+            private TextRange withBody;             // body of the outermost WITH statement visited last
+
             @Override
             public boolean execute(@NotNull PsiElement each) {
                 if (each == root) return true;
@@ -94,8 +113,13 @@ public class PascalFoldingBuilder extends FoldingBuilderEx implements DumbAware
                     commentElements.add((PsiComment) each);
                 } else if (each instanceof PasWithStatement) {
                     withElements.add((PasWithStatement) each);
+                    PasStatement body = ((PasWithStatement) each).getStatement();
+                    if ((body != null) && ((null == withBody) || (body.getTextRange().getStartOffset() >= withBody.getEndOffset()))) {
+                        withBody = body.getTextRange();
+                    }
                 } else if (each instanceof PasFullyQualifiedIdent) {
-                    if (getAffectedBy(withElements, each) != null) {
+                    // WITH statements are visited before their bodies so only identifiers within the bodies are collected
+                    if ((withBody != null) && withBody.contains(each.getTextRange().getStartOffset())) {
                         namedElements.add((PasFullyQualifiedIdent) each);
                     }
                 } else if (PsiTreeUtil.instanceOf(each,
@@ -121,19 +145,56 @@ public class PascalFoldingBuilder extends FoldingBuilderEx implements DumbAware
         if (!quick) {
             foldComments(descriptors, document, commentElements);
             if (!DumbService.isDumb(root.getProject()) && PascalCodeFoldingSettings.getInstance().isFoldWithBlocks()) {
-                foldWithIdents(descriptors, withElements, namedElements);
+                WithStatementMap withMap = WithStatementMap.forElement(root);
+                foldWithIdents(descriptors, withMap != null ? withMap : WithStatementMap.build(withElements, 0), namedElements);
             }
         }
 
         return descriptors.toArray(new FoldingDescriptor[0]);
     }
 
-    private void foldWithIdents(List<FoldingDescriptor> descriptors, Collection<PasWithStatement> withElements, Collection<PasFullyQualifiedIdent> namedElements) {
+    // PSI based folding replaces these regions during the full pass
+    private FoldingDescriptor[] buildLexerFoldRegions(@NotNull PsiElement root, @NotNull Document document) {
+        PsiFile file = root.getContainingFile();
+        VirtualFile virtualFile = file != null ? file.getOriginalFile().getVirtualFile() : null;
+        List<PascalLexerFoldingBuilder.Region> regions = new PascalLexerFoldingBuilder(
+                new PascalLexer.ParsingPascalLexer(root.getProject(), virtualFile), document.getCharsSequence()).build();
+        ASTNode node = root.getNode();
+        List<FoldingDescriptor> descriptors = new ArrayList<>(regions.size());
+        Set<TextRange> ranges = new HashSet<>();
+        for (PascalLexerFoldingBuilder.Region region : regions) {
+            if (!ranges.add(region.range)) {
+                continue;
+            }
+            switch (region.kind) {
+                case ROUTINE:
+                    descriptors.add(createNamedFoldingDescriptor(node, region.range, null, region.placeholder, isCollapseMethods(), Collections.emptySet()));
+                    break;
+                case COMMENT:
+                    descriptors.add(createNamedFoldingDescriptor(node, region.range, null, region.placeholder, isCollapseDocs(), Collections.emptySet()));
+                    break;
+                case USES:
+                    descriptors.add(createNamedFoldingDescriptor(node, region.range, null, region.placeholder, isCollapseImports(), Collections.emptySet()));
+                    break;
+                default:
+                    descriptors.add(new FoldingDescriptor(node, region.range, null));
+            }
+        }
+        return descriptors.toArray(new FoldingDescriptor[0]);
+    }
+
+    private void foldWithIdents(List<FoldingDescriptor> descriptors, WithStatementMap withMap, Collection<PasFullyQualifiedIdent> namedElements) {
+        if (withMap.isEmpty()) {
+            return;
+        }
+        // type of each WITH expression is computed once, identifiers resolve results are taken from the module table
+        Map<PasExpression, Set<PasEntityScope>> withScopes = new HashMap<>();
         for (PasFullyQualifiedIdent namedElement : namedElements) {
-            PasWithStatement withElement = getAffectedBy(withElements, namedElement);
+            PasWithStatement withElement = withMap.getOutermost(namedElement.getTextRange().getStartOffset());
             if (withElement != null) {
                 for (PasExpression withExpr : withElement.getExpressionList()) {
-                    PasHighlightWithIdentsHandler.processElementsFromWith(withExpr, namedElement, element -> {
+                    Set<PasEntityScope> scopes = withScopes.computeIfAbsent(withExpr, PasHighlightWithIdentsHandler::getWithScopes);
+                    PasHighlightWithIdentsHandler.processElementsFromWith(scopes, namedElement, element -> {
                         descriptors.add(createNamedFoldingDescriptor(element.getNode(), element.getTextRange(), null,
                                 withExpr.getExpr().getText() + "." + element.getName(),
                                 true, Collections.singleton(withExpr)));
@@ -144,19 +205,6 @@ public class PascalFoldingBuilder extends FoldingBuilderEx implements DumbAware
         }
     }
 
-    private PasWithStatement getAffectedBy(Collection<PasWithStatement> withElements, PsiElement each) {
-        for (PasWithStatement withElement : withElements) {
-            if (affects(withElement, each)) {
-                return withElement;
-            }
-        }
-        return null;
-    }
-
-    private boolean affects(PasWithStatement withElement, PsiElement namedElement) {
-        return PsiUtil.isParentOf(namedElement, withElement.getStatement());
-    }
-
     private void foldRoutines(List<FoldingDescriptor> descriptors, Collection<PasRoutineImplDeclImpl> routineList) {
         for (PasRoutineImplDeclImpl routine : routineList) {
             int foldStart = getStartOffset(routine);
@@ -334,6 +382,14 @@ public class PascalFoldingBuilder extends FoldingBuilderEx implements DumbAware
         }
     }
 
+    private boolean isCollapseImports() {
+        try {
+            return JavaCodeFoldingSettings.getInstance().isCollapseImports();
+        } catch (Throwable t) {
+            return true;
+        }
+    }
+
     private boolean isCollapseMethods() {
         try {
             return JavaCodeFoldingSettings.getInstance().isCollapseMethods();
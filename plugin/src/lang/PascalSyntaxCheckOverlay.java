@@ -0,0 +1,125 @@
+package com.siberika.idea.pascal.lang;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.siberika.idea.pascal.jps.compiler.CompilerMessager;
+import com.siberika.idea.pascal.jps.compiler.PascalBackendCompiler;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Runs syntax check of unsaved document text.
+ * Text snapshot is written to a directory created for each check and deleted when the check completes so snapshots of
+ * other files never shadow their sources on disk. Checks are debounced and a running compiler process is destroyed
+ * when a newer snapshot of the same file arrives. The latest stamp of a file is forgotten when its check completes.
+ */
+class PascalSyntaxCheckOverlay {
+
+    private static final Logger LOG = Logger.getInstance(PascalSyntaxCheckOverlay.class.getName());
+
+    private static final String OVERLAY_DIR = "overlay";
+    private static final String CHECK_DIR_PREFIX = "check";
+    private static final long DEBOUNCE_MS = 300;
+    private static final long POLL_MS = 50;
+
+    // Latest snapshot stamp by source file path
+    private static final Map<String, Long> latestStamps = new ConcurrentHashMap<>();
+
+    static void submit(@NotNull PascalAnnotatorInfo info) {
+        latestStamps.put(info.getFile().getVirtualFile().getPath(), info.getStamp());
+    }
+
+    /**
+     * Forgets the snapshot stamp unless a newer snapshot of the file has been submitted
+     */
+    static void complete(@NotNull PascalAnnotatorInfo info) {
+        latestStamps.remove(info.getFile().getVirtualFile().getPath(), info.getStamp());
+    }
+
+    static boolean isSubmitted(@NotNull VirtualFile file) {
+        return latestStamps.containsKey(file.getPath());
+    }
+
+    /**
+     * Waits for debounce delay and writes snapshot to a new directory under the temp directory
+     * @return overlay file or null if a newer snapshot of the file has been submitted meanwhile
+     */
+    @Nullable
+    static File writeSnapshot(@NotNull PascalAnnotatorInfo info, @NotNull File tempDir) throws IOException {
+        long deadline = System.currentTimeMillis() + DEBOUNCE_MS;
+        while (System.currentTimeMillis() < deadline) {
+            ProgressManager.checkCanceled();
+            if (isStale(info)) {
+                return null;
+            }
+            sleep(POLL_MS);
+        }
+        VirtualFile file = info.getFile().getVirtualFile();
+        File overlayRoot = new File(tempDir, OVERLAY_DIR);
+        if (!overlayRoot.isDirectory() && !overlayRoot.mkdirs()) {
+            throw new IOException("Can't create overlay directory: " + overlayRoot.getPath());
+        }
+        File overlayDir = FileUtil.createTempDirectory(overlayRoot, CHECK_DIR_PREFIX, null);
+        File overlayFile = new File(overlayDir, file.getName());
+        String text = info.getText().toString();
+        String separator = file.getDetectedLineSeparator();
+        if ((separator != null) && !"\n".equals(separator)) {
+            text = StringUtil.convertLineSeparators(text, separator);
+        }
+        try {
+            Files.write(overlayFile.toPath(), text.getBytes(file.getCharset()));
+        } catch (IOException e) {
+            FileUtil.delete(overlayDir);
+            throw e;
+        }
+        return overlayFile;
+    }
+
+    /**
+     * Deletes the snapshot together with its directory
+     */
+    static void deleteSnapshot(@NotNull File overlayFile) {
+        File overlayDir = overlayFile.getParentFile();
+        if (!FileUtil.delete(overlayDir != null ? overlayDir : overlayFile)) {
+            LOG.info("Can't delete syntax check snapshot: " + overlayFile.getPath());
+        }
+    }
+
+    /**
+     * Launches compiler and waits for its completion.
+     * The process is destroyed if the check is cancelled or a newer snapshot of the file has been submitted.
+     * @return true if the compiler process completed
+     */
+    static boolean compile(@NotNull PascalAnnotatorInfo info, @NotNull PascalBackendCompiler compiler, @NotNull CompilerMessager messager,
+                           @NotNull String[] cmdLine, @NotNull File workingDir) throws IOException {
+        final ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+        compiler.launch(messager, cmdLine, workingDir, () -> isStale(info) || ((indicator != null) && indicator.isCanceled()));
+        ProgressManager.checkCanceled();
+        return !isStale(info);
+    }
+
+    private static boolean isStale(@NotNull PascalAnnotatorInfo info) {
+        Long latest = latestStamps.get(info.getFile().getVirtualFile().getPath());
+        return (latest != null) && (latest != info.getStamp());
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            LOG.info("Syntax check interrupted");
+            throw new ProcessCanceledException();
+        }
+    }
+}
@@ -21,9 +21,9 @@ class PascalSyntaxCheckResult implements CompilerMessager {
     private final int lineCount;
     private final Path path;
 
-    PascalSyntaxCheckResult(PascalAnnotatorInfo annotatorInfo) {
+    PascalSyntaxCheckResult(PascalAnnotatorInfo annotatorInfo, File checkedFile) {
         this.lineCount = annotatorInfo.getLineCount();
-        this.path = new File(annotatorInfo.getFile().getVirtualFile().getPath()).toPath();
+        this.path = checkedFile.toPath();
     }
 
     enum SEVERITY {ERROR, WARNING, INFO, HINT}
@@ -6,21 +6,29 @@ import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.projectRoots.Sdk;
 import com.intellij.openapi.roots.OrderRootType;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.siberika.idea.pascal.PascalBundle;
-import com.siberika.idea.pascal.PascalException;
+import com.siberika.idea.pascal.jps.JpsPascalBundle;
+import com.siberika.idea.pascal.jps.util.ProcessLauncher;
 import com.siberika.idea.pascal.jps.util.SysUtils;
 import com.siberika.idea.pascal.sdk.BasePascalSdkType;
 import com.siberika.idea.pascal.sdk.DelphiSdkType;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -79,27 +87,43 @@ public class DCUCachingDecompiler implements PascalCachingUnitDecompiler {
             return PascalBundle.message("decompile.wrong.sdktype.delphi");
         }
         File decompilerCommand = BasePascalSdkType.getDecompilerCommand(sdk, NULL_FILE);
-        String result = "";
         try {
             if (!decompilerCommand.isFile() || !decompilerCommand.canExecute()) {
                 return PascalBundle.message("decompile.wrong.delphi", decompilerCommand.getCanonicalPath());
             }
             List<String> paths = collectUnitPaths(sdk);
-            String[] args = getArgs(BasePascalSdkType.getDecompilerArgs(sdk), fullPath, "-U" + Joiner.on(';').join(paths), "-I", "-SI", "-");
-            result = SysUtils.runAndGetStdOut(sdk.getHomePath(), decompilerCommand.getCanonicalPath(), SysUtils.LONG_TIMEOUT, args);
-            if (result != null) {
-                return handleText(result).replace("\r", "");
+            String[] args = getArgs(BasePascalSdkType.getDecompilerArgs(sdk), decompilerCommand.getCanonicalPath(), fullPath,
+                    "-U" + Joiner.on(';').join(paths), "-I", "-SI", "-");
+            ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+            // decompiler output is converted line by line as it's read so only the resulting text is kept in memory
+            ProcessLauncher.Result<String> result = new ProcessLauncher(args)
+                    .withWorkDir(new File(sdk.getHomePath()))
+                    .withTimeout(SysUtils.LONG_TIMEOUT)
+                    .withCancelCheck(indicator != null ? indicator::isCanceled : null)
+                    .run(stdout -> {
+                        BufferedReader reader = new BufferedReader(new InputStreamReader(stdout, Charset.defaultCharset()));
+                        SourceBuilder builder = new SourceBuilder();
+                        String line;
+                        while ((line = reader.readLine()) != null) {
+                            builder.append(line);
+                        }
+                        return builder.build();
+                    });
+            if (result.getValue() != null) {
+                return result.getValue();
+            } else if (result.getExitCode() != 0) {
+                return JpsPascalBundle.message("error.exit.code", decompilerCommand.getPath(), result.getExitCode(), result.getStderr().trim());
             } else {
                 return PascalBundle.message("decompile.empty.result");
             }
+        } catch (CancellationException e) {
+            throw new ProcessCanceledException();
         } catch (IOException e) {
             LOG.info("I/O error: " + e.getMessage(), e);
             return PascalBundle.message("decompile.io.error");
-        } catch (PascalException e1) {
-            return e1.getMessage();
         } catch (Exception e) {
             LOG.info("Unknown error: " + e.getMessage(), e);
-            return PascalBundle.message("decompile.unknown.error", result);
+            return PascalBundle.message("decompile.unknown.error", e.getMessage());
         }
     }
 
@@ -125,12 +149,30 @@ public class DCUCachingDecompiler implements PascalCachingUnitDecompiler {
         return result;
     }
 
-    private static String handleText(@NotNull String result) {
-        String[] lines = result.split("\n");
-        boolean unitDone = false;
-        boolean inConst = false;
-        StringBuffer res = new StringBuffer();
-        for (String line : lines) {
+    // Converts decompiler output to compilable interface section of the unit. Leading and trailing empty lines are skipped.
+    static class SourceBuilder {
+        private final StringBuffer res = new StringBuffer();
+        private boolean unitDone = false;
+        private boolean inConst = false;
+        private boolean empty = true;
+        private int emptyLines = 0;
+
+        void append(String line) {
+            if (line.trim().isEmpty()) {
+                emptyLines++;
+                return;
+            }
+            if (!empty) {
+                for (int i = 0; i < emptyLines; i++) {
+                    appendLine("");
+                }
+            }
+            empty = false;
+            emptyLines = 0;
+            appendLine(line);
+        }
+
+        private void appendLine(String line) {
             if (isConstant(line)) {                                // Comment out all non-compilable constant declarations
                 if (!inConst) {
                     res.append("    default;\n");                  // insert const value
@@ -161,8 +203,6 @@ public class DCUCachingDecompiler implements PascalCachingUnitDecompiler {
                 res.append(line.replaceFirst(":", "_"));
             } else if (VAR_PREFIXED.matcher(line).matches()) {
                 res.append(line.replaceFirst("@", "_"));
-            } else if (VAR_PREFIXED.matcher(line).matches()) {
-                res.append(line.replaceFirst("@", "_"));
             } else if (processRoutine(res, line)) {
                 // empty
             } else if (processRoutineInvalid(res, line)) {
@@ -171,8 +211,16 @@ public class DCUCachingDecompiler implements PascalCachingUnitDecompiler {
                 res.append(line).append("\n");
             }
         }
-        res.append("implementation\n  {compiled code}\nend.\n");
-        return res.toString();
+
+        // Returns the converted text or null if there was no output
+        @Nullable
+        String build() {
+            if (empty) {
+                return null;
+            }
+            res.append("implementation\n  {compiled code}\nend.\n");
+            return res.toString();
+        }
     }
 
     private static boolean processRoutine(StringBuffer res, String line) {
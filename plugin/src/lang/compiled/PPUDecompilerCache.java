@@ -6,6 +6,8 @@ import com.google.common.cache.LoadingCache;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.projectRoots.Sdk;
 import com.intellij.openapi.roots.ModuleRootManager;
 import com.intellij.openapi.util.io.FileUtil;
@@ -13,20 +15,28 @@ import com.intellij.openapi.vfs.VirtualFile;
 import com.siberika.idea.pascal.PascalBundle;
 import com.siberika.idea.pascal.PascalException;
 import com.siberika.idea.pascal.PascalRTException;
+import com.siberika.idea.pascal.jps.JpsPascalBundle;
 import com.siberika.idea.pascal.jps.sdk.PascalSdkUtil;
+import com.siberika.idea.pascal.jps.util.ProcessLauncher;
 import com.siberika.idea.pascal.jps.util.SysUtils;
 import com.siberika.idea.pascal.module.ModuleService;
 import com.siberika.idea.pascal.sdk.BasePascalSdkType;
 import com.siberika.idea.pascal.sdk.FPCSdkType;
 import com.siberika.idea.pascal.util.DocUtil;
-import com.siberika.idea.pascal.util.StrUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.xml.sax.SAXException;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.util.Objects;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -92,28 +102,23 @@ public class PPUDecompilerCache implements PascalCachingUnitDecompiler {
         @Override
         public PPUDumpParser.Section load(@NotNull Key key) {
             File ppuDump = null;
-            String xml = "";
+            StreamHead head = new StreamHead();
             try {
                 ppuDump = retrievePpuDump(key.getKey());
-                xml = retrieveXml(key.getKey(), key.file, ppuDump);
-                if (xml != null) {
-                    return PPUDumpParser.parse(xml, PPUDecompilerCache.this);
-                } else {
-                    return new PPUDumpParser.Section(PascalBundle.message("decompile.empty.result"));
-                }
+                return retrieveSection(key.getKey(), key.file, ppuDump, head);
             } catch (PascalRTException e) {
                 LOG.info("Exception: " + e.getMessage(), e);
                 return new PPUDumpParser.Section(e.getMessage());
             } catch (IOException e) {
                 LOG.info("I/O error: " + e.getMessage(), e);
                 return new PPUDumpParser.Section(PascalBundle.message("decompile.io.error"));
-            } catch (ParseException e) {
+            } catch (ParseException | SAXException e) {
                 LOG.info("Parse error: " + e.getMessage(), e);
                 String ver = getPPUDumpVersion(ppuDump);
                 if (ver.compareTo(PPUDUMP_VERSION_MIN) < 0) {
                     return new PPUDumpParser.Section(PascalBundle.message("decompile.version.error", ver, PPUDUMP_VERSION_MIN));
                 } else {
-                    return new PPUDumpParser.Section(PascalBundle.message("decompile.parse.error", xml));
+                    return new PPUDumpParser.Section(PascalBundle.message("decompile.parse.error", head));
                 }
             } catch (PascalException e1) {
                 return new PPUDumpParser.Section(e1.getMessage());
@@ -121,18 +126,41 @@ public class PPUDecompilerCache implements PascalCachingUnitDecompiler {
                 throw e;
             } catch (Exception e) {
                 LOG.info("Unknown error: " + e.getMessage(), e);
-                return new PPUDumpParser.Section(PascalBundle.message("decompile.unknown.error", StrUtil.limit(xml, 2048)));
+                return new PPUDumpParser.Section(PascalBundle.message("decompile.unknown.error", head));
             }
         }
     }
 
-    String retrieveXml(String key, VirtualFile file, File ppuDump) throws IOException, PascalException {
+    /**
+     * Runs ppudump and parses its XML output as it's produced
+     * @param head receives beginning of the output for error messages
+     */
+    PPUDumpParser.Section retrieveSection(String key, VirtualFile file, File ppuDump, StreamHead head) throws Exception {
         ModuleService.getInstance(module).ensureCache(module, false);
-        if (file != null) {
-            return SysUtils.runAndGetStdOut(sdk.getHomePath(), ppuDump.getCanonicalPath(), SysUtils.LONG_TIMEOUT, PPUDUMP_OPTIONS_COMMON, PPUDUMP_OPTIONS_FORMAT, file.getPath());
-        } else {
+        if (null == file) {
             throw new PascalRTException(PascalBundle.message("decompile.file.notfound", key));
         }
+        ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+        ProcessLauncher.Result<PPUDumpParser.Section> result;
+        try {
+            result = new ProcessLauncher(ppuDump.getCanonicalPath(), PPUDUMP_OPTIONS_COMMON, PPUDUMP_OPTIONS_FORMAT, file.getPath())
+                    .withWorkDir(new File(sdk.getHomePath()))
+                    .withTimeout(SysUtils.LONG_TIMEOUT)
+                    .withCancelCheck(indicator != null ? indicator::isCanceled : null)
+                    .run(stdout -> {
+                        InputStream input = head.wrap(stdout);
+                        return input != null ? PPUDumpParser.parse(input, this) : null;
+                    });
+        } catch (CancellationException e) {
+            throw new ProcessCanceledException();
+        }
+        if (result.getValue() != null) {
+            return result.getValue();
+        } else if (result.getExitCode() != 0) {
+            throw new PascalException(JpsPascalBundle.message("error.exit.code", ppuDump.getPath(), result.getExitCode(), result.getStderr().trim()));
+        } else {
+            return new PPUDumpParser.Section(PascalBundle.message("decompile.empty.result"));
+        }
     }
 
     File retrievePpuDump(String key) throws IOException {
@@ -165,7 +193,7 @@ public class PPUDecompilerCache implements PascalCachingUnitDecompiler {
     }
 
     VirtualFile retrieveFile(Module module, String unitName) {
-        return module.getComponent(ModuleService.class).getFileByUnitName(unitName);
+        return module.getComponent(ModuleService.class).getFileByUnitName(module, unitName);
     }
 
     // TODO: use full file name as key to avoid using wrong file in case of .ppu with the same name in different modules
@@ -173,6 +201,49 @@ public class PPUDecompilerCache implements PascalCachingUnitDecompiler {
         return FileUtil.getNameWithoutExtension(unitName);
     }
 
+    /**
+     * Keeps the first bytes of a stream
+     */
+    static class StreamHead {
+        private static final int LIMIT = 2048;
+        private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+
+        // Returns stream which records its beginning or null if the stream is empty
+        @Nullable
+        InputStream wrap(@NotNull InputStream stream) throws IOException {
+            PushbackInputStream input = new PushbackInputStream(stream);
+            int first = input.read();
+            if (first < 0) {
+                return null;
+            }
+            input.unread(first);
+            return new FilterInputStream(input) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if ((b >= 0) && (data.size() < LIMIT)) {
+                        data.write(b);
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(@NotNull byte[] b, int off, int len) throws IOException {
+                    int read = super.read(b, off, len);
+                    if (read > 0) {
+                        data.write(b, off, Math.min(read, LIMIT - data.size()));
+                    }
+                    return read;
+                }
+            };
+        }
+
+        @Override
+        public String toString() {
+            return new String(data.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
     private static class Key {
         private final VirtualFile file;
 
@@ -3,7 +3,6 @@ package com.siberika.idea.pascal.lang.compiled;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.text.StringUtil;
 import com.siberika.idea.pascal.PascalBundle;
-import org.jetbrains.annotations.NotNull;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
@@ -11,10 +10,8 @@ import org.xml.sax.helpers.DefaultHandler;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
@@ -50,10 +47,6 @@ public class PPUDumpParser {
         return handler.result;
     }
 
-    public static Section parse(@NotNull String xml, PPUDecompilerCache cache) throws ParseException, ParserConfigurationException, SAXException, IOException {
-        return parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), cache);
-    }
-
     private static class XMLHandler extends DefaultHandler {
         static final Set<String> TYPES = new HashSet<String>(Arrays.asList("/ord", "/ptr", "/string", "/float", "/type", "/file", "/variant", "/set"));
         static final Set<String> DIRECTIVES = new HashSet<String>(Arrays.asList(
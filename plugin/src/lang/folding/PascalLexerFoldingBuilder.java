@@ -0,0 +1,359 @@
+package com.siberika.idea.pascal.lang.folding;
+
+import com.intellij.lexer.Lexer;
+import com.intellij.lexer.LexerPosition;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.TokenType;
+import com.intellij.psi.tree.IElementType;
+import com.intellij.psi.tree.TokenSet;
+import com.siberika.idea.pascal.lang.lexer.PascalLexer;
+import com.siberika.idea.pascal.lang.psi.PasTypes;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds folding regions from the token stream only without building PSI.
+ * Handles begin/end nesting, structured types, routine bodies, unit sections, uses clauses, declaration sections and comment blocks.
+ * Used for the quick folding pass of big files, PSI based folding replaces the regions later.
+ */
+public class PascalLexerFoldingBuilder {
+
+    public enum Kind {BLOCK, SECTION, ROUTINE, USES, COMMENT}
+
+    private static final int PLACEHOLDER_MAX_SIZE = 256;
+
+    private static final TokenSet BLOCK_START = TokenSet.create(PasTypes.BEGIN, PasTypes.TRY, PasTypes.ASM, PasTypes.CASE, PasTypes.RECORD);
+    private static final TokenSet STRUCT_START = TokenSet.create(PasTypes.CLASS, PasTypes.OBJECT, PasTypes.INTERFACE, PasTypes.DISPINTERFACE);
+    private static final TokenSet ROUTINE_START = TokenSet.create(PasTypes.PROCEDURE, PasTypes.FUNCTION, PasTypes.CONSTRUCTOR, PasTypes.DESTRUCTOR, PasTypes.OPERATOR);
+    private static final TokenSet UNIT_SECTIONS = TokenSet.create(PasTypes.INTERFACE, PasTypes.IMPLEMENTATION, PasTypes.INITIALIZATION, PasTypes.FINALIZATION);
+    private static final TokenSet NO_ROUTINE_BEFORE = TokenSet.create(PasTypes.EQ, PasTypes.COLON, PasTypes.OF, PasTypes.LPAREN, PasTypes.COMMA, PasTypes.REFERENCE, PasTypes.TO);
+    private static final TokenSet NO_BODY = TokenSet.create(PasTypes.FORWARD, PasTypes.EXTERNAL);
+
+    public static class Region {
+        public final TextRange range;
+        public final String placeholder;
+        public final Kind kind;
+
+        Region(TextRange range, String placeholder, Kind kind) {
+            this.range = range;
+            this.placeholder = placeholder;
+            this.kind = kind;
+        }
+    }
+
+    private static class Block {
+        final IElementType type;
+        final int start;
+        final Routine routine;
+
+        Block(IElementType type, int start, Routine routine) {
+            this.type = type;
+            this.start = start;
+            this.routine = routine;
+        }
+    }
+
+    private static class Routine {
+        final int start;
+        final StringBuilder header = new StringBuilder();
+        boolean headerDone;
+        int parenLevel;
+
+        Routine(int start) {
+            this.start = start;
+        }
+    }
+
+    private final Lexer lexer;
+    private final CharSequence text;
+    private final List<Region> regions = new ArrayList<>();
+
+    private final List<Block> blocks = new ArrayList<>();
+    private final List<Routine> routines = new ArrayList<>();
+    private IElementType prevToken;
+    private int prevTokenEnd;
+    private boolean unit;
+    private boolean implementation;
+    private int parenLevel;
+    private int sectionStart = -1;
+    private int declSectionStart = -1;
+    private int usesStart = -1;
+    private StringBuilder usesNames;
+    private TextRange commentRange;
+    private int commentLfPos;
+    private String commentEnd;
+
+    public PascalLexerFoldingBuilder(@NotNull Lexer lexer, @NotNull CharSequence text) {
+        this.lexer = lexer;
+        this.text = text;
+    }
+
+    @NotNull
+    public List<Region> build() {
+        lexer.start(text);
+        IElementType type;
+        while ((type = lexer.getTokenType()) != null) {
+            if (type != TokenType.WHITE_SPACE) {
+                int start = lexer.getTokenStart();
+                int end = lexer.getTokenEnd();
+                if (PascalLexer.COMMENTS.contains(type)) {
+                    if (type == PasTypes.COMMENT) {
+                        handleComment(start, end);
+                    }
+                } else {
+                    handleToken(type, start, end);
+                    prevToken = type;
+                    prevTokenEnd = end;
+                }
+            }
+            lexer.advance();
+        }
+        flushComment();
+        closeDeclSection(prevTokenEnd);
+        closeSection(prevTokenEnd);
+        return regions;
+    }
+
+    private void handleToken(IElementType type, int start, int end) {
+        if (type == PasTypes.LPAREN) {
+            parenLevel++;
+        } else if (type == PasTypes.RPAREN) {
+            parenLevel = Math.max(0, parenLevel - 1);
+        }
+        Routine routine = getPendingRoutine();
+        if ((routine != null) && !routine.headerDone) {
+            handleRoutineHeader(routine, type, start, end);
+            return;
+        }
+        if (usesStart >= 0) {
+            handleUses(type, start, end);
+            return;
+        }
+
+        if (type == PasTypes.UNIT) {
+            unit = true;
+        } else if (type == PasTypes.USES) {
+            usesStart = end;
+            usesNames = new StringBuilder(" ");
+        } else if ((type == PasTypes.END) && !blocks.isEmpty()) {
+            closeBlock(end);
+        } else if ((type == PasTypes.UNTIL) && !blocks.isEmpty() && (top().type == PasTypes.REPEAT)) {
+            blocks.remove(blocks.size() - 1);
+        } else if (type == PasTypes.REPEAT) {
+            blocks.add(new Block(type, end, null));
+        } else if (BLOCK_START.contains(type)) {
+            if (((type != PasTypes.CASE) || !isInRecord()) && ((type != PasTypes.RECORD) || !isRecordConstraint())) {    // variant part of a record has no own END
+                openBlock(type, end);
+            }
+        } else if (STRUCT_START.contains(type) && ((prevToken == PasTypes.EQ) || (prevToken == PasTypes.PACKED))) {
+            if (!isForwardStruct()) {
+                openBlock(type, end);
+            }
+        } else if (blocks.isEmpty() && (parenLevel == 0)) {
+            handleTopLevel(type, start, end);
+        }
+    }
+
+    private void handleTopLevel(IElementType type, int start, int end) {
+        if (unit && UNIT_SECTIONS.contains(type)) {
+            closeDeclSection(prevTokenEnd);
+            closeSection(prevTokenEnd);
+            sectionStart = end;
+            implementation = implementation || (type == PasTypes.IMPLEMENTATION);
+        } else if (PascalLexer.DECL_SECTION_KEY.contains(type) || (type == PasTypes.LABEL)) {
+            closeDeclSection(prevTokenEnd);
+            declSectionStart = end;
+        } else if (ROUTINE_START.contains(type) && !NO_ROUTINE_BEFORE.contains(prevToken)) {
+            closeDeclSection(prevTokenEnd);
+            if (!unit || implementation) {
+                routines.add(new Routine(end));
+            }
+        } else if (type == PasTypes.END) {                                        // end of a module
+            closeDeclSection(prevTokenEnd);
+            closeSection(prevTokenEnd);
+        } else if (NO_BODY.contains(type) && !routines.isEmpty()) {
+            routines.remove(routines.size() - 1);
+        }
+    }
+
+    private void handleRoutineHeader(Routine routine, IElementType type, int start, int end) {
+        if (type == PasTypes.LPAREN) {
+            routine.parenLevel++;
+        } else if (type == PasTypes.RPAREN) {
+            routine.parenLevel--;
+        }
+        if ((type == PasTypes.SEMI) && (routine.parenLevel <= 0)) {
+            routine.headerDone = true;
+        } else if (routine.header.length() <= PLACEHOLDER_MAX_SIZE) {
+            if ((routine.header.length() > 0) && (start > prevTokenEnd) && (type != PasTypes.RPAREN) && (type != PasTypes.COLON)
+                    && (type != PasTypes.SEMI) && (prevToken != PasTypes.LPAREN)) {
+                routine.header.append(' ');
+            }
+            routine.header.append(text, start, end);
+        }
+    }
+
+    private void handleUses(IElementType type, int start, int end) {
+        if (type == PasTypes.SEMI) {
+            if (usesNames.length() > PLACEHOLDER_MAX_SIZE) {
+                usesNames.append(",...");
+            }
+            addRegion(usesStart, end, usesNames.append(";").toString(), Kind.USES);
+            usesStart = -1;
+            usesNames = null;
+        } else if (usesNames.length() <= PLACEHOLDER_MAX_SIZE) {
+            if (type == PasTypes.COMMA) {
+                usesNames.append(", ");
+            } else if ((type == PasTypes.NAME) || (type == PasTypes.DOT)) {
+                usesNames.append(text, start, end);
+            }
+        }
+    }
+
+    private void openBlock(IElementType type, int end) {
+        Routine routine = null;
+        if (blocks.isEmpty() && ((type == PasTypes.BEGIN) || (type == PasTypes.ASM)) && !routines.isEmpty()) {
+            routine = routines.remove(routines.size() - 1);                       // body of the innermost routine
+        }
+        if (blocks.isEmpty()) {
+            closeDeclSection(prevTokenEnd);
+        }
+        blocks.add(new Block(type, end, routine));
+    }
+
+    private void closeBlock(int end) {
+        Block block = blocks.remove(blocks.size() - 1);
+        if (block.type == PasTypes.REPEAT) {
+            return;
+        }
+        if (block.routine != null) {
+            String header = block.routine.header.toString();
+            addRegion(block.routine.start, end, " " + header + ";", Kind.ROUTINE);
+        }
+        addRegion(block.start, end, null, Kind.BLOCK);
+    }
+
+    private boolean isInRecord() {
+        for (int i = blocks.size() - 1; i >= 0; i--) {
+            IElementType type = blocks.get(i).type;
+            if (type == PasTypes.RECORD) {
+                return true;
+            } else if (type != PasTypes.CASE) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    // Detects "class;", "class of", "class(TParent);" and "interface;" forms which have no body
+    private boolean isForwardStruct() {
+        IElementType next = getNextToken(true);
+        return (next == PasTypes.SEMI) || (next == PasTypes.OF);
+    }
+
+    // Detects "record" constraint of a type parameter
+    private boolean isRecordConstraint() {
+        IElementType next = getNextToken(false);
+        return (next == PasTypes.GT) || (next == PasTypes.COMMA);
+    }
+
+    // Returns type of the next significant token optionally skipping parenthesized tokens
+    private IElementType getNextToken(boolean skipParens) {
+        int parens = 0;
+        LexerPosition position = lexer.getCurrentPosition();
+        try {
+            lexer.advance();
+            IElementType type;
+            while ((type = lexer.getTokenType()) != null) {
+                if ((type != TokenType.WHITE_SPACE) && !PascalLexer.COMMENTS.contains(type)) {
+                    if (skipParens && (type == PasTypes.LPAREN)) {
+                        parens++;
+                    } else if (skipParens && (type == PasTypes.RPAREN)) {
+                        parens--;
+                    } else if (parens <= 0) {
+                        return type;
+                    }
+                }
+                lexer.advance();
+            }
+            return null;
+        } finally {
+            lexer.restore(position);
+        }
+    }
+
+    private void handleComment(int start, int end) {
+        if ((commentRange != null) && isNextLine(commentRange.getEndOffset(), start)) {
+            commentRange = commentRange.union(new TextRange(start, end));
+            return;
+        }
+        flushComment();
+        commentRange = new TextRange(start, end);
+        commentLfPos = indexOf('\n', start, end);
+        commentEnd = text.charAt(start) == '{' ? "}" : (start + 1 < end) && (text.charAt(start) == '(') && (text.charAt(start + 1) == '*') ? "*)" : "";
+    }
+
+    private void flushComment() {
+        if (commentRange != null) {
+            int lfPos = commentLfPos >= 0 ? commentLfPos : commentRange.getEndOffset();
+            if (lfPos < commentRange.getEndOffset()) {
+                addRegion(lfPos, commentRange.getEndOffset(), "..." + commentEnd, Kind.COMMENT);
+            }
+            commentRange = null;
+        }
+    }
+
+    // True if the only text between the offsets is whitespace with at most one line break
+    private boolean isNextLine(int from, int to) {
+        int lines = 0;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                lines++;
+            } else if (!Character.isWhitespace(c)) {
+                return false;
+            }
+        }
+        return lines < 2;
+    }
+
+    private int indexOf(char c, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void closeSection(int end) {
+        if (sectionStart >= 0) {
+            addRegion(sectionStart, end, null, Kind.SECTION);
+            sectionStart = -1;
+        }
+    }
+
+    private void closeDeclSection(int end) {
+        if (declSectionStart >= 0) {
+            addRegion(declSectionStart, end, null, Kind.SECTION);
+            declSectionStart = -1;
+        }
+    }
+
+    private void addRegion(int start, int end, String placeholder, Kind kind) {
+        if (end - start > 1) {
+            regions.add(new Region(new TextRange(start, end), placeholder, kind));
+        }
+    }
+
+    private Routine getPendingRoutine() {
+        return !routines.isEmpty() ? routines.get(routines.size() - 1) : null;
+    }
+
+    private Block top() {
+        return blocks.get(blocks.size() - 1);
+    }
+
+}
@@ -12,7 +12,6 @@ import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.SmartPsiElementPointer;
 import com.intellij.psi.util.PsiTreeUtil;
-import com.intellij.util.Processor;
 import com.intellij.util.SmartList;
 import com.intellij.util.containers.SmartHashSet;
 import com.siberika.idea.pascal.PascalBundle;
@@ -28,7 +27,7 @@ import com.siberika.idea.pascal.lang.psi.PascalStructType;
 import com.siberika.idea.pascal.lang.psi.impl.PasField;
 import com.siberika.idea.pascal.lang.psi.impl.RoutineUtil;
 import com.siberika.idea.pascal.lang.references.ResolveUtil;
-import com.siberika.idea.pascal.lang.search.PascalDefinitionsSearch;
+import com.siberika.idea.pascal.lang.search.PascalHierarchyService;
 import com.siberika.idea.pascal.util.DocUtil;
 import com.siberika.idea.pascal.util.EditorUtil;
 import com.siberika.idea.pascal.util.PsiUtil;
@@ -112,12 +111,7 @@ public class NotImplementedInspection extends PascalLocalInspectionBase {
     }
 
     private boolean hasNoDescendants(PasClassTypeDecl classTypeDecl) {
-        return PascalDefinitionsSearch.processDescendingStructs(classTypeDecl, false, new Processor<PasEntityScope>() {
-            @Override
-            public boolean process(PasEntityScope pascalStructType) {
-                return false;
-            }
-        });
+        return !PascalHierarchyService.getInstance(classTypeDecl.getProject()).hasSubtypes(classTypeDecl);
     }
 
     private class ImplementMethodFix extends PascalBaseFix {
@@ -6,13 +6,20 @@ import com.intellij.codeInspection.ProblemDescriptor;
 import com.intellij.codeInspection.ProblemHighlightType;
 import com.intellij.codeInspection.ProblemsHolder;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiElementVisitor;
+import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiNameIdentifierOwner;
+import com.intellij.psi.PsiPolyVariantReference;
 import com.intellij.psi.PsiReference;
+import com.intellij.psi.ResolveResult;
 import com.intellij.psi.SmartPsiElementPointer;
 import com.intellij.psi.search.LocalSearchScope;
 import com.intellij.psi.search.PsiElementProcessor;
 import com.intellij.psi.search.searches.ReferencesSearch;
+import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.util.Processor;
 import com.intellij.util.Query;
 import com.intellij.util.containers.SmartHashSet;
@@ -24,15 +31,21 @@ import com.siberika.idea.pascal.lang.psi.PasEntityScope;
 import com.siberika.idea.pascal.lang.psi.PasExportedRoutine;
 import com.siberika.idea.pascal.lang.psi.PasFormalParameter;
 import com.siberika.idea.pascal.lang.psi.PasFormalParameterSection;
+import com.siberika.idea.pascal.lang.psi.PasNamedIdent;
+import com.siberika.idea.pascal.lang.psi.PasNamedIdentDecl;
 import com.siberika.idea.pascal.lang.psi.PasRoutineImplDecl;
 import com.siberika.idea.pascal.lang.psi.PasSubIdent;
+import com.siberika.idea.pascal.lang.psi.PasVisitor;
 import com.siberika.idea.pascal.lang.psi.PascalInterfaceDecl;
 import com.siberika.idea.pascal.lang.psi.PascalNamedElement;
 import com.siberika.idea.pascal.lang.psi.PascalRoutine;
 import com.siberika.idea.pascal.lang.psi.PascalStructType;
+import com.siberika.idea.pascal.lang.psi.impl.PasField;
+import com.siberika.idea.pascal.lang.references.ResolvedIdents;
 import com.siberika.idea.pascal.util.PsiUtil;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -40,37 +53,42 @@ import static com.siberika.idea.pascal.PascalBundle.message;
 
 public class UnusedIdentsInspection extends PascalLocalInspectionBase {
 
-    private LocalSearchScope fileScope;
+    // Usages are kept per inspection session as the inspection instance is shared by sessions running concurrently
+    private static final Key<LocalUsages> USAGES_KEY = Key.create("pascal.unused.idents.usages");
 
+    @NotNull
     @Override
-    public void inspectionStarted(@NotNull LocalInspectionToolSession session, boolean isOnTheFly) {
-        super.inspectionStarted(session, isOnTheFly);
-        fileScope = new LocalSearchScope(session.getFile());
+    public PsiElementVisitor buildVisitor(@NotNull ProblemsHolder holder, boolean isOnTheFly, @NotNull LocalInspectionToolSession session) {
+        return new PasVisitor() {
+            @Override
+            public void visitNamedIdent(@NotNull PasNamedIdent namedIdent) {
+                checkNamedIdent(namedIdent, holder, isOnTheFly, session);
+            }
+
+            @Override
+            public void visitNamedIdentDecl(@NotNull PasNamedIdentDecl namedIdent) {
+                checkNamedIdent(namedIdent, holder, isOnTheFly, session);
+            }
+        };
     }
 
-    @Override
-    public void checkNamedIdent(PascalNamedElement namedIdent, ProblemsHolder holder, boolean isOnTheFly) {
-        ProblemDescriptor res = annotateIdent(holder.getManager(), namedIdent, isOnTheFly, fileScope);
+    private void checkNamedIdent(PascalNamedElement namedIdent, ProblemsHolder holder, boolean isOnTheFly, LocalInspectionToolSession session) {
+        LocalUsages usages = session.getUserData(USAGES_KEY);
+        if (null == usages) {
+            usages = session.putUserDataIfAbsent(USAGES_KEY, new LocalUsages(session.getFile()));
+        }
+        ProblemDescriptor res = annotateIdent(holder.getManager(), namedIdent, isOnTheFly, usages);
         if (res != null) {
             holder.registerProblem(res);
         }
     }
 
-    private ProblemDescriptor annotateIdent(InspectionManager holder, PascalNamedElement element, boolean isOnTheFly, LocalSearchScope fileScope) {
-        Project project = element.getProject();
+    private ProblemDescriptor annotateIdent(InspectionManager holder, PascalNamedElement element, boolean isOnTheFly, LocalUsages usages) {
         if (element.isLocal() && !PsiUtil.isFormalParameterOfExportedRoutineOrProcType(element) && !PsiUtil.isPropertyIndexIdent(element) && !isImplementedOrOverriddenRoutine(element)) {
-            Query<PsiReference> usages = ReferencesSearch.search(element, fileScope);
             final boolean structDecl = PsiUtil.isStructDecl(element);
             final boolean method = PsiUtil.isRoutineName(element);
-            if (usages.forEach(new Processor<PsiReference>() {
-                @Override
-                public boolean process(PsiReference psiReference) {
-                    PsiElement el = psiReference.getElement();
-                    return PsiManager.getInstance(project).areElementsEquivalent(element, el) ||
-                            ((structDecl || method) && (el instanceof PasSubIdent) && (el.getParent() instanceof PasClassQualifiedIdent)
-                                    && (el.getParent().getParent() instanceof PasRoutineImplDecl));
-                }
-            })) {
+            boolean unused = usages.isCollected() ? !usages.isUsed(element, structDecl || method) : !hasReferences(element, usages.fileScope, structDecl || method);
+            if (unused) {
                 return holder.createProblemDescriptor(element, message("inspection.warn.unused.local.ident"), true,
                         ProblemHighlightType.LIKE_UNUSED_SYMBOL, isOnTheFly,
                         new IdentQuickFixes.RemoveIdentAction(), new IdentQuickFixes.ExcludeIdentAction());
@@ -79,6 +97,96 @@ public class UnusedIdentsInspection extends PascalLocalInspectionBase {
         return null;
     }
 
+    // Used when identifiers of the file can not be collected in a single pass, e.g. for include files
+    private boolean hasReferences(PascalNamedElement element, LocalSearchScope fileScope, boolean ignoreMethodImplNames) {
+        Project project = element.getProject();
+        Query<PsiReference> usages = ReferencesSearch.search(element, fileScope);
+        return !usages.forEach(new Processor<PsiReference>() {
+            @Override
+            public boolean process(PsiReference psiReference) {
+                PsiElement el = psiReference.getElement();
+                return PsiManager.getInstance(project).areElementsEquivalent(element, el) || (ignoreMethodImplNames && isMethodImplName(el));
+            }
+        });
+    }
+
+    private static boolean isMethodImplName(PsiElement el) {
+        return (el instanceof PasSubIdent) && (el.getParent() instanceof PasClassQualifiedIdent) && (el.getParent().getParent() instanceof PasRoutineImplDecl);
+    }
+
+    /**
+     * Declarations referenced within a file collected in a single tree walk.
+     * References from method implementation names are kept separately as they are not usages of types and methods.
+     */
+    private static class LocalUsages {
+        private final PsiFile file;
+        private final LocalSearchScope fileScope;
+        private Set<PsiElement> used;
+        private Set<PsiElement> usedByImplNames;
+        private boolean collected;
+
+        LocalUsages(PsiFile file) {
+            this.file = file;
+            this.fileScope = new LocalSearchScope(file);
+        }
+
+        synchronized boolean isCollected() {
+            if (null == used) {
+                collect();
+            }
+            return collected;
+        }
+
+        synchronized boolean isUsed(PascalNamedElement element, boolean ignoreMethodImplNames) {
+            PsiElement named = getNamedElement(element);
+            return used.contains(named) || (!ignoreMethodImplNames && usedByImplNames.contains(named));
+        }
+
+        private void collect() {
+            used = new HashSet<>();
+            usedByImplNames = new HashSet<>();
+            ResolvedIdents idents = ResolvedIdents.forElement(file);
+            if (null == idents) {
+                return;
+            }
+            for (int i = 0; i < idents.size(); i++) {
+                for (PasField field : idents.getTargets(i)) {
+                    PsiElement target = field.target != null ? field.target : field.getElement();
+                    addReference(idents.getIdent(i), target);
+                }
+            }
+            for (PasRoutineImplDecl routine : PsiTreeUtil.findChildrenOfType(file, PasRoutineImplDecl.class)) {
+                PasNamedIdent nameIdent = PsiTreeUtil.getChildOfType(routine, PasNamedIdent.class);
+                PsiReference ref = nameIdent != null ? nameIdent.getReference() : null;
+                if (ref instanceof PsiPolyVariantReference) {
+                    for (ResolveResult result : ((PsiPolyVariantReference) ref).multiResolve(false)) {
+                        addReference(nameIdent, result.getElement());
+                    }
+                }
+            }
+            collected = true;
+        }
+
+        private void addReference(PsiElement ref, PsiElement target) {
+            if (null == target) {
+                return;
+            }
+            PsiElement named = getNamedElement(target);
+            if (ref.getManager().areElementsEquivalent(ref, named)) {
+                return;
+            }
+            (isMethodImplName(ref) ? usedByImplNames : used).add(named);
+        }
+
+        private static PsiElement getNamedElement(PsiElement element) {
+            if (element instanceof PsiNameIdentifierOwner) {
+                PsiElement nameIdent = ((PsiNameIdentifierOwner) element).getNameIdentifier();
+                return nameIdent != null ? nameIdent : element;
+            }
+            return element;
+        }
+    }
+
     private boolean isImplementedOrOverriddenRoutine(PascalNamedElement element) {
         if (!((element.getParent() instanceof PasFormalParameter) && (element.getParent().getParent() instanceof PasFormalParameterSection)
                 && element.getParent().getParent().getParent() instanceof PasRoutineImplDecl)) {
@@ -10,7 +10,8 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.Arrays;
-import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
 * Author: George Bakhtadze
@@ -23,6 +24,8 @@ public class NamespaceRec {
     private int current;
 
     private static final String[] EMPTY_LEVELS = {};
+    // Unit namespace prefixes split to levels. There are few of them configured in SDK.
+    private static final Map<String, String[]> PREFIX_LEVELS = new ConcurrentHashMap<>();
     private boolean nested = false;
     private boolean ignoreVisibility = false;
 
@@ -55,15 +58,10 @@ public class NamespaceRec {
      * adds the given prefix at the beginning of this FQN
      */
     public void addPrefix(NamespaceRec original, String prefix) {
-        String[] lvls = prefix.split("\\.", 100);
+        String[] lvls = PREFIX_LEVELS.computeIfAbsent(prefix, p -> p.split("\\.", 100));
         String[] newLevels = new String[lvls.length + original.levels.length];
-        int ind = 0;
-        for (String lvl : lvls) {
-            newLevels[ind++] = lvl;
-        }
-        for (String lvl : original.levels) {
-            newLevels[ind++] = lvl;
-        }
+        System.arraycopy(lvls, 0, newLevels, 0, lvls.length);
+        System.arraycopy(original.levels, 0, newLevels, lvls.length, original.levels.length);
         levels = newLevels;
         target = original.target + lvls.length;
     }
@@ -74,14 +72,22 @@ public class NamespaceRec {
     private NamespaceRec(@NotNull PascalQualifiedIdent qualifiedIdent, @Nullable PasSubIdent targetIdent) {
         assert (targetIdent == null) || (targetIdent.getParent() == qualifiedIdent);
         int targetInd = -1;
-        List<PasSubIdent> idents = qualifiedIdent.getSubIdentList();
-        levels = new String[idents.size()];
+        int count = 0;
+        for (PsiElement child = qualifiedIdent.getFirstChild(); child != null; child = child.getNextSibling()) {     // sub idents are walked directly to not allocate a list
+            if (child instanceof PasSubIdent) {
+                count++;
+            }
+        }
+        levels = count > 0 ? new String[count] : EMPTY_LEVELS;
         parentIdent = qualifiedIdent;
-        for (int i = 0; i < idents.size(); i++) {
-            if (idents.get(i) == targetIdent) {
-                targetInd = i;
+        int i = 0;
+        for (PsiElement child = qualifiedIdent.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof PasSubIdent) {
+                if (child == targetIdent) {
+                    targetInd = i;
+                }
+                levels[i++] = ((PasSubIdent) child).getName();//.replace(PasField.DUMMY_IDENTIFIER, ""));
             }
-            levels[i] = idents.get(i).getName();//.replace(PasField.DUMMY_IDENTIFIER, ""));
         }
         if (-1 == targetInd) {
             targetInd = levels.length - 1;
@@ -219,16 +225,23 @@ public class NamespaceRec {
     }
 
     // Returns True if the specified FQN string is found and advances this FQN
+    // Matches dot separated parts of the name with levels starting from current without splitting the name
     public boolean advance(String fqn) {
-        String[] lvls = fqn.split("\\.");
         int i = current;
-        while (((i - current) < lvls.length) && (current + i < levels.length)
-                && (lvls[i - current].equalsIgnoreCase(levels[i]))) {
+        int start = 0;
+        while (current + i < levels.length) {
+            int end = fqn.indexOf('.', start);
+            end = end >= 0 ? end : fqn.length();
+            String level = levels[i];
+            if ((level.length() != end - start) || !fqn.regionMatches(true, start, level, 0, level.length())) {
+                return false;
+            }
             i++;
-        }
-        if ((i - current) >= lvls.length) {
-            current = i - 1;
-            return true;
+            if (end == fqn.length()) {
+                current = i - 1;
+                return true;
+            }
+            start = end + 1;
         }
         return false;
     }
@@ -1,10 +1,12 @@
 package com.siberika.idea.pascal.lang.parser;
 
 import com.intellij.lang.ASTNode;
+import com.intellij.lang.LighterASTNode;
 import com.intellij.openapi.project.Project;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.stubs.PsiFileStub;
-import com.intellij.psi.tree.IStubFileElementType;
+import com.intellij.psi.tree.ILightStubFileElementType;
+import com.intellij.util.diff.FlyweightCapableTreeStructure;
 import com.siberika.idea.pascal.PascalLanguage;
 import com.siberika.idea.pascal.module.PascalProjectService;
 import org.jetbrains.annotations.NotNull;
@@ -12,8 +14,10 @@ import org.jetbrains.annotations.NotNull;
 /**
  * Author: George Bakhtadze
  * Date: 27/10/2015
+ *
+ * Stubs are built from light tree during indexing so AST and PSI are not created for indexed files.
  */
-public class PascalFileElementType extends IStubFileElementType<PsiFileStub<PascalFile>> {
+public class PascalFileElementType extends ILightStubFileElementType<PsiFileStub<PascalFile>> {
     public PascalFileElementType(String debugName, PascalLanguage language) {
         super(debugName, language);
     }
@@ -24,15 +28,25 @@ public class PascalFileElementType extends IStubFileElementType<PsiFileStub<Pasc
     }
 
     public static int getStubIndexVersion() {
-        return 114;
+        return 117;
     }
 
     @Override
     protected ASTNode doParseContents(@NotNull ASTNode chameleon, @NotNull PsiElement psi) {
+        storeParsingFile(psi);
+        return super.doParseContents(chameleon, psi);
+    }
+
+    @Override
+    public FlyweightCapableTreeStructure<LighterASTNode> parseContentsLight(ASTNode chameleon) {
+        storeParsingFile(chameleon.getPsi());
+        return super.parseContentsLight(chameleon);
+    }
+
+    // store file being parsed to retrieve in lexer
+    private static void storeParsingFile(PsiElement psi) {
         Project project = psi.getProject();
         PascalProjectService service = project.getComponent(PascalProjectService.class);
-        // store file being parsed to retrieve in lexer
         service.setData(PascalProjectService.KEY_PARSING, psi.getContainingFile().getVirtualFile());
-        return super.doParseContents(chameleon, psi);
     }
 }
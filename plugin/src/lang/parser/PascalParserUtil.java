@@ -8,7 +8,6 @@ import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleUtilCore;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.text.StringUtil;
-import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.impl.source.resolve.FileContextUtil;
@@ -55,7 +54,6 @@ import javax.swing.*;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.LinkedHashSet;
-import java.util.List;
 import java.util.Set;
 
 /**
@@ -113,20 +111,19 @@ public class PascalParserUtil extends GeneratedParserUtilBase {
     private static void addUsedUnitDeclarations(Collection<PascalNamedElement> result, PsiElement current, String name) {
         PsiFile file = current.getContainingFile();
         Module module = ModuleUtilCore.findModuleForPsiElement(current);
-        List<VirtualFile> unitFiles = PasReferenceUtil.findUnitFiles(current.getProject(), module);
         for (PascalQualifiedIdent usedUnitName : PsiUtil.getUsedUnits(PsiUtil.getModuleInterfaceUsesClause(file))) {
-            addUnitDeclarations(result, current.getProject(), unitFiles, usedUnitName.getName(), name);
+            addUnitDeclarations(result, current.getProject(), module, usedUnitName.getName(), name);
         }
         for (PascalQualifiedIdent usedUnitName : PsiUtil.getUsedUnits(PsiUtil.getModuleImplementationUsesClause(file))) {
-            addUnitDeclarations(result, current.getProject(), unitFiles, usedUnitName.getName(), name);
+            addUnitDeclarations(result, current.getProject(), module, usedUnitName.getName(), name);
         }
         for (String unitName : EXPLICIT_UNITS) {
-            addUnitDeclarations(result, current.getProject(), unitFiles, unitName, name);
+            addUnitDeclarations(result, current.getProject(), module, unitName, name);
         }
     }
 
-    private static void addUnitDeclarations(Collection<PascalNamedElement> result, Project project, List<VirtualFile> unitFiles, String unitName, String name) {
-        PascalNamedElement usedUnit = PasReferenceUtil.findUnit(project, unitFiles, unitName);
+    private static void addUnitDeclarations(Collection<PascalNamedElement> result, Project project, Module module, String unitName, String name) {
+        PascalNamedElement usedUnit = PasReferenceUtil.findUnit(project, module, unitName);
         if (usedUnit != null) {
             addDeclarations(result, PsiUtil.getModuleInterfaceSection(usedUnit), name);
         }
@@ -3,6 +3,10 @@ package com.siberika.idea.pascal.lang.psi;
 import com.intellij.openapi.util.Pair;
 import com.intellij.psi.SmartPsiElementPointer;
 import com.siberika.idea.pascal.lang.psi.impl.PasField;
+import com.siberika.idea.pascal.lang.psi.impl.GenericSpecializationCache;
+import com.siberika.idea.pascal.lang.psi.impl.RoutineImplMap;
+import com.siberika.idea.pascal.lang.psi.impl.WithStatementMap;
+import com.siberika.idea.pascal.lang.references.ResolvedIdents;
 import com.siberika.idea.pascal.lang.stub.PasModuleStub;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -41,6 +45,22 @@ public interface PascalModule extends PasEntityScope, PascalStubElement<PasModul
     // Used in interface and implementation identifiers list
     Pair<List<PascalNamedElement>, List<PascalNamedElement>> getIdentsFrom(@Nullable String module, boolean includeInterface, List<String> unitPrefixes);
 
+    // Resolve results of all identifiers of the module
+    @NotNull
+    ResolvedIdents getResolvedIdents();
+
+    // WITH statements of the module indexed by their bodies
+    @NotNull
+    WithStatementMap getWithStatementMap();
+
+    // Routine declarations of the module mapped to implementations and vice versa
+    @NotNull
+    RoutineImplMap getRoutineImplMap();
+
+    // Generic type specializations referenced in the module
+    @NotNull
+    GenericSpecializationCache getSpecializationCache();
+
     @NotNull
     List<String> getUsedUnitsPublic();
 
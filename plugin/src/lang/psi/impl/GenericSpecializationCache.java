@@ -0,0 +1,143 @@
+package com.siberika.idea.pascal.lang.psi.impl;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.siberika.idea.pascal.lang.psi.PasEntityScope;
+import com.siberika.idea.pascal.lang.psi.PasGenericPostfix;
+import com.siberika.idea.pascal.lang.psi.PasModule;
+import com.siberika.idea.pascal.lang.psi.PasTypeID;
+import com.siberika.idea.pascal.lang.psi.PascalModule;
+import com.siberika.idea.pascal.util.PsiUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of generic type specializations (e.g. TList<TFoo>, TDictionary<string, TBar>) referenced within a module.
+ * Key is location of the scope where the specialization is referenced and the generic type name with normalized argument list.
+ * Value is the resolved type declaration. Specializations aren't instantiated by resolve so a specialization shares
+ * member table of the generic type scope and the cache saves repeated resolving of the same specialization.
+ * Resolve result depends on declarations in all used units and their order so the cache is dropped on any PSI modification.
+ */
+public class GenericSpecializationCache {
+
+    private final Map<Key, PasField> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Returns specializations cache of the module containing the element or null if the element is not within a module
+     */
+    @Nullable
+    public static GenericSpecializationCache forElement(@NotNull PsiElement element) {
+        PasModule module = PsiUtil.getElementPasModule(element);
+        return module instanceof PascalModule ? ((PascalModule) module).getSpecializationCache() : null;
+    }
+
+    /**
+     * Returns normalized specialization of the type ID: upper cased generic type name and argument list without whitespaces
+     * or null if the type ID is not a specialization
+     */
+    @Nullable
+    public static String getSpecialization(@NotNull PasTypeID typeId) {
+        PasGenericPostfix postfix = typeId.getGenericPostfix();
+        if (null == postfix) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        appendNormalized(sb, typeId.getFullyQualifiedIdent().getText());
+        appendNormalized(sb, postfix.getText());
+        return sb.toString();
+    }
+
+    /**
+     * Returns name of generic type if the type name is a specialization like "TList<TFoo>" or the type name otherwise
+     */
+    @NotNull
+    public static String getGenericName(@NotNull String typeName) {
+        int pos = typeName.indexOf('<');
+        if ((pos <= 0) || !typeName.endsWith(">")) {
+            return typeName;
+        }
+        for (int i = 0; i < pos; i++) {
+            char c = typeName.charAt(i);
+            if (!Character.isLetterOrDigit(c) && (c != '_')) {
+                return typeName;
+            }
+        }
+        return typeName.substring(0, pos);
+    }
+
+    private static void appendNormalized(StringBuilder sb, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (!Character.isWhitespace(c) && (c != '&')) {
+                sb.append(Character.toUpperCase(c));
+            }
+        }
+    }
+
+    /**
+     * Returns resolved declaration of the specialization referenced in the scope or null if it's not cached or became invalid
+     */
+    @Nullable
+    public PasField get(@Nullable PasEntityScope scope, @NotNull String specialization, boolean includeLibrary) {
+        Key key = new Key(scope, specialization, includeLibrary);
+        PasField field = entries.get(key);
+        if (field != null) {
+            if (PsiUtil.isElementUsable(field.getElement())) {
+                return field;
+            }
+            entries.remove(key);
+        }
+        return null;
+    }
+
+    public void put(@Nullable PasEntityScope scope, @NotNull String specialization, boolean includeLibrary, @NotNull PasField field) {
+        if (field.getElement() != null) {
+            entries.put(new Key(scope, specialization, includeLibrary), field);
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // Scope is identified by its location to not hold PSI. Offsets don't change while the cache is in use.
+    private static class Key {
+        private final String scope;
+        private final String specialization;
+        private final boolean includeLibrary;
+
+        private Key(PasEntityScope scope, String specialization, boolean includeLibrary) {
+            this.scope = scope != null ? getLocation(scope) : "";
+            this.specialization = specialization;
+            this.includeLibrary = includeLibrary;
+        }
+
+        private static String getLocation(PasEntityScope scope) {
+            PsiFile file = scope.getContainingFile();
+            VirtualFile virtualFile = file != null ? file.getVirtualFile() : null;
+            return (virtualFile != null ? virtualFile.getPath() : String.valueOf(file)) + "@" + scope.getTextOffset();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return (includeLibrary == key.includeLibrary) && scope.equals(key.scope) && specialization.equals(key.specialization);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(scope, specialization, includeLibrary);
+        }
+    }
+}
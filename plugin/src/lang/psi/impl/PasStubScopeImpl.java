@@ -8,21 +8,18 @@ import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.stubs.IStubElementType;
 import com.intellij.psi.stubs.StubElement;
-import com.intellij.util.SmartList;
 import com.siberika.idea.pascal.lang.psi.PasEntityScope;
 import com.siberika.idea.pascal.lang.psi.PascalNamedElement;
-import com.siberika.idea.pascal.lang.stub.PasExportedRoutineStub;
-import com.siberika.idea.pascal.lang.stub.PasIdentStubImpl;
+import com.siberika.idea.pascal.lang.psi.PascalRoutine;
 import com.siberika.idea.pascal.lang.stub.PasNamedStub;
-import com.siberika.idea.pascal.lang.stub.struct.PasStructStub;
+import com.siberika.idea.pascal.lang.stub.PasStubMemberTable;
 import com.siberika.idea.pascal.util.PsiUtil;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.Collection;
-import java.util.List;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Author: George Bakhtadze
@@ -33,8 +30,6 @@ public abstract class PasStubScopeImpl<B extends PasNamedStub> extends PascalNam
 
     protected static final Logger LOG = Logger.getInstance(PasStubScopeImpl.class.getName());
 
-    private Map<String, PasNamedStub> fieldsMap = new ConcurrentHashMap<>();
-
     private volatile String cachedKey;
 
     PasStubScopeImpl(ASTNode node) {
@@ -60,7 +55,6 @@ public abstract class PasStubScopeImpl<B extends PasNamedStub> extends PascalNam
             PasStubStructTypeImpl.invalidate(key);
             cachedKey = null;
         }
-        fieldsMap.clear();                                     // TODO: probably not safe
     }
 
     @Nullable
@@ -89,56 +83,21 @@ public abstract class PasStubScopeImpl<B extends PasNamedStub> extends PascalNam
         return String.format("%s%s", PsiUtil.getFieldName(this), scope != null ? "." + scope.getKey() : "");
     }
 
+    @Nullable
     PasField getFieldStub(String name) {
-        if (fieldsMap.containsKey(PascalHelperScope.KEY_EMPTY_MARKER)) {
-            PasNamedStub stub = name != null ? fieldsMap.get(name.toUpperCase()) : null;
-            return stub != null ? new PasField(stub, name) : null;
-        }
-
-        PasField result = null;
-        List<StubElement> childrenStubs = retrieveStub().getChildrenStubs();
-        for (StubElement stubElement : childrenStubs) {
-            //String stubName = stubElement instanceof PasExportedRoutineStub ? ((PasExportedRoutineStub) stubElement).getCanonicalName() : ((PasNamedStub) stubElement).getName();
-            String stubName = ((PasNamedStub) stubElement).getName();
-            if (name.equalsIgnoreCase(stubName)) {
-                result = new PasField((PasNamedStub) stubElement, null);
-            }
-            fieldsMap.put(stubName.toUpperCase(), (PasNamedStub) stubElement);
-            if (stubElement instanceof PasStructStub) {
-                List<String> aliases = ((PasStructStub) stubElement).getAliases();
-                if (aliases != null) {
-                    for (String alias : aliases) {
-                        if (name.equalsIgnoreCase(alias)) {
-                            result = new PasField((PasNamedStub) stubElement, alias);
-                        }
-                        fieldsMap.put(alias.toUpperCase(), (PasNamedStub) stubElement);
-                    }
-                }
-            } else if (stubElement instanceof PasExportedRoutineStub) {
-                PasExportedRoutineStub rStub = (PasExportedRoutineStub) stubElement;
-                fieldsMap.put(RoutineUtil.calcCanonicalName(rStub.getName(), rStub.getFormalParameterNames(), rStub.getFormalParameterTypes(),
-                        rStub.getFormalParameterAccess(), rStub.getFunctionTypeStr(), rStub.getFormalParameterValues()), (PasNamedStub) stubElement);
-            }
-        }
-        fieldsMap.put(PascalHelperScope.KEY_EMPTY_MARKER, new PasIdentStubImpl(null, "", 0, "", PasField.FieldType.VARIABLE, "", null, PasField.Access.READONLY, null, null));
-        return result;
+        B stub = retrieveStub();
+        return (stub != null) && (name != null) ? PasStubMemberTable.of(stub).getField(name) : null;
     }
 
     Collection<PasField> getAllFieldsStub() {
-        Collection<PasField> res = new SmartList<>();
-        List<StubElement> childrenStubs = retrieveStub().getChildrenStubs();
-        for (StubElement stubElement : childrenStubs) {
-            res.add(new PasField((PasNamedStub) stubElement, null));
-            if (stubElement instanceof PasStructStub) {
-                List<String> aliases = ((PasStructStub) stubElement).getAliases();
-                if (aliases != null) {
-                    for (String alias : aliases) {
-                        res.add(new PasField((PasNamedStub) stubElement, alias));
-                    }
-                }
-            }
-        }
-        return res;
+        B stub = retrieveStub();
+        return stub != null ? PasStubMemberTable.of(stub).getAllFields() : Collections.emptyList();
+    }
+
+    @Nullable
+    PascalRoutine getRoutineStub(String reducedName) {
+        B stub = retrieveStub();
+        return (stub != null) && (reducedName != null) ? PasStubMemberTable.of(stub).findRoutine(reducedName) : null;
     }
 
     <T extends PascalHelperScope.Cached> void ensureChache(Cache<String, T> cache) {
@@ -198,6 +198,9 @@ public abstract class PasStubStructTypeImpl<T extends PascalStructType, B extend
     @Nullable
     @Override
     public PascalRoutine getRoutine(String reducedName) {
+        if (retrieveStub() != null) {
+            return getRoutineStub(reducedName);
+        }
         return RoutineUtil.findRoutine(getAllFields(), reducedName);
     }
 
@@ -3,7 +3,13 @@ package com.siberika.idea.pascal.lang.psi.impl;
 import com.intellij.extapi.psi.ASTWrapperPsiElement;
 import com.intellij.lang.ASTNode;
 import com.intellij.lang.parameterInfo.ParameterInfoUtils;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.RecursionGuard;
+import com.intellij.openapi.util.RecursionManager;
+import com.intellij.openapi.util.Ref;
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
 import com.intellij.psi.impl.source.tree.LeafPsiElement;
 import com.intellij.psi.tree.IElementType;
 import com.intellij.psi.util.PsiTreeUtil;
@@ -61,10 +67,25 @@ public class PascalExpression extends ASTWrapperPsiElement implements PascalPsiE
 
     private static final int MAX_KIND_DIFF = 2;
 
+    // Guard against cyclic inference, e.g. constants defined via themselves. Results computed within a cycle are not cached.
+    private static final RecursionGuard TYPES_GUARD = RecursionManager.createGuard("pascal.expression.types");
+    private static final RecursionGuard INFER_GUARD = RecursionManager.createGuard("pascal.expression.infer");
+
+    // Inference results valid while PSI modification count of the project is the same as types depend on declarations in other units
+    private volatile Cached<List<PasField.ValueType>> cachedTypes;
+    private volatile Cached<String> cachedInferredType;
+
     public PascalExpression(ASTNode node) {
         super(node);
     }
 
+    @Override
+    public void subtreeChanged() {
+        super.subtreeChanged();
+        cachedTypes = null;
+        cachedInferredType = null;
+    }
+
     public boolean isRoot() {
         return getParent() instanceof PasExpression;
     }
@@ -74,7 +95,35 @@ public class PascalExpression extends ASTWrapperPsiElement implements PascalPsiE
         return PsiUtil.findImmChildOfAnyType(this, PascalOperation.class);
     }
 
+    // Returns a new list which can be modified by caller
     public static List<PasField.ValueType> getTypes(PascalExpression expr) {
+        return new SmartList<>(expr.getTypesCached());
+    }
+
+    private List<PasField.ValueType> getTypesCached() {
+        long stamp = getStamp();
+        Cached<List<PasField.ValueType>> cached = cachedTypes;
+        if ((cached != null) && (cached.stamp == stamp)) {
+            return cached.value;
+        }
+        RecursionGuard.StackStamp stackStamp = TYPES_GUARD.markStack();
+        List<PasField.ValueType> res = TYPES_GUARD.doPreventingRecursion(this, false, new Computable<List<PasField.ValueType>>() {
+            @Override
+            public List<PasField.ValueType> compute() {
+                return calcTypes(PascalExpression.this);
+            }
+        });
+        if (null == res) {                                          // cyclic inference
+            return Collections.emptyList();
+        }
+        res = Collections.unmodifiableList(res);
+        if ((stamp >= 0) && stackStamp.mayCacheNow()) {
+            cachedTypes = new Cached<>(stamp, res);
+        }
+        return res;
+    }
+
+    private static List<PasField.ValueType> calcTypes(PascalExpression expr) {
         List<PasField.ValueType> res;
 
         if (expr instanceof PasReferenceExpr) {
@@ -187,9 +236,50 @@ public class PascalExpression extends ASTWrapperPsiElement implements PascalPsiE
     }
 
     public static String inferType(PasExpr expression) {
+        if (expression instanceof PascalExpression) {
+            return ((PascalExpression) expression).inferTypeCached();
+        }
         return doInferType(expression, false);
     }
 
+    private String inferTypeCached() {
+        long stamp = getStamp();
+        Cached<String> cached = cachedInferredType;
+        if ((cached != null) && (cached.stamp == stamp)) {
+            return cached.value;
+        }
+        RecursionGuard.StackStamp stackStamp = INFER_GUARD.markStack();
+        Ref<String> res = INFER_GUARD.doPreventingRecursion(this, false, new Computable<Ref<String>>() {
+            @Override
+            public Ref<String> compute() {
+                return Ref.create(doInferType((PasExpr) PascalExpression.this, false));
+            }
+        });
+        if (null == res) {                                          // cyclic inference
+            return null;
+        }
+        if ((stamp >= 0) && stackStamp.mayCacheNow()) {
+            cachedInferredType = new Cached<>(stamp, res.get());
+        }
+        return res.get();
+    }
+
+    // Returns PSI modification count of the project or -1 if the expression is not within a file
+    private long getStamp() {
+        PsiFile file = getContainingFile();
+        return file != null ? PsiManager.getInstance(file.getProject()).getModificationTracker().getModificationCount() : -1;
+    }
+
+    /**
+     * Returns True if types and inferred type of the expression are cached and valid
+     */
+    public boolean isTypeCached() {
+        long stamp = getStamp();
+        Cached<List<PasField.ValueType>> types = cachedTypes;
+        Cached<String> inferred = cachedInferredType;
+        return (types != null) && (types.stamp == stamp) && (inferred != null) && (inferred.stamp == stamp);
+    }
+
     public static String inferType(PsiElement element) {
         if (element instanceof PasExpr) {
             return inferType((PasExpr) element);
@@ -500,4 +590,14 @@ public class PascalExpression extends ASTWrapperPsiElement implements PascalPsiE
     public PasExpr getExpr() {
         return PsiTreeUtil.getChildOfType(this, PasExpr.class);
     }
+
+    private static class Cached<T> {
+        private final long stamp;
+        private final T value;
+
+        private Cached(long stamp, T value) {
+            this.stamp = stamp;
+            this.value = value;
+        }
+    }
 }
@@ -25,7 +25,6 @@ class PascalHelperScope extends PascalHelperNamed {
 
     private static final Logger LOG = Logger.getInstance(PascalHelperScope.class);
 
-    static final String KEY_EMPTY_MARKER = "#";
     static final Members EMPTY_MEMBERS = new Members();
 
     volatile private PasEntityScope containingScope;
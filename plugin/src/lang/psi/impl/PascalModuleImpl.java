@@ -7,12 +7,18 @@ import com.intellij.openapi.module.ModuleUtilCore;
 import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.TextRange;
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiManager;
 import com.intellij.psi.SmartPointerManager;
 import com.intellij.psi.SmartPsiElementPointer;
 import com.intellij.psi.stubs.IStubElementType;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.util.SmartList;
+import com.siberika.idea.pascal.ide.actions.SectionToggle;
 import com.siberika.idea.pascal.lang.parser.NamespaceRec;
 import com.siberika.idea.pascal.lang.parser.PascalParserUtil;
 import com.siberika.idea.pascal.lang.psi.PasBlockGlobal;
@@ -25,8 +31,10 @@ import com.siberika.idea.pascal.lang.psi.PascalQualifiedIdent;
 import com.siberika.idea.pascal.lang.psi.PascalRoutine;
 import com.siberika.idea.pascal.lang.references.ResolveContext;
 import com.siberika.idea.pascal.lang.references.ResolveUtil;
+import com.siberika.idea.pascal.lang.references.ResolvedIdents;
 import com.siberika.idea.pascal.lang.references.resolve.Resolve;
 import com.siberika.idea.pascal.lang.references.resolve.ResolveProcessor;
+import com.siberika.idea.pascal.lang.references.resolve.UnitNameLengthComparator;
 import com.siberika.idea.pascal.lang.stub.PasModuleStub;
 import com.siberika.idea.pascal.util.PsiUtil;
 import com.siberika.idea.pascal.util.SyncUtil;
@@ -37,10 +45,8 @@ import org.jetbrains.annotations.Nullable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -51,23 +57,26 @@ import java.util.concurrent.locks.ReentrantLock;
 public abstract class PascalModuleImpl extends PasStubScopeImpl<PasModuleStub> implements PascalModule {
 
     private static final PascalHelperScope.UnitMembers EMPTY_MEMBERS = new PascalHelperScope.UnitMembers();
-    private static final Idents EMPTY_IDENTS = new Idents();
     private static final Cache<String, PascalHelperScope.Members> privateCache = CacheBuilder.newBuilder().softValues().build();
     private static final Cache<String, PascalHelperScope.Members> publicCache = CacheBuilder.newBuilder().softValues().build();
-    private static final Cache<String, Idents> identCache = CacheBuilder.newBuilder().softValues().build();
 
     private final Callable<? extends PascalHelperScope.Members> PRIVATE_BUILDER = this.new PrivateBuilder();
     private final Callable<? extends PascalHelperScope.Members> PUBLIC_BUILDER = this.new PublicBuilder();
-    private final Callable<Idents> IDENTS_BUILDER = this.new IdentsBuilder();
 
     private List<String> usedUnitsPublic = null;
     private List<String> usedUnitsPrivate = null;
     private List<SmartPsiElementPointer<PasEntityScope>> privateUnits = null;
     private List<SmartPsiElementPointer<PasEntityScope>> publicUnits = null;
+    volatile private List<SmartPsiElementPointer<PasEntityScope>> publicUnitsByNameLength;
+    volatile private List<SmartPsiElementPointer<PasEntityScope>> allUnitsByNameLength;
     private ReentrantLock unitsLock = new ReentrantLock();
     private ReentrantLock publicUnitsLock = new ReentrantLock();
     private ReentrantLock privateUnitsLock = new ReentrantLock();
     volatile private Collection<PasWithStatement> withStatements;
+    volatile private WithStatementMap withStatementMap;
+    volatile private RoutineImplMap routineImplMap;
+    // Identifiers table which build was canceled, continued by the next build with the same PSI modification count
+    volatile private PendingIdents pendingIdents;
 
     public PascalModuleImpl(ASTNode node) {
         super(node);
@@ -93,13 +102,17 @@ public abstract class PascalModuleImpl extends PasStubScopeImpl<PasModuleStub> i
             publicUnits = null;
             publicUnitsLock.unlock();
         }
+        publicUnitsByNameLength = null;
+        allUnitsByNameLength = null;
         withStatements = null;
+        withStatementMap = null;
+        routineImplMap = null;
+        pendingIdents = null;
     }
 
     public static void invalidate(String key) {
         privateCache.invalidate(key);
         publicCache.invalidate(key);
-        identCache.invalidate(key);
     }
 
     @Override
@@ -173,6 +186,9 @@ public abstract class PascalModuleImpl extends PasStubScopeImpl<PasModuleStub> i
     @Nullable
     @Override
     public PascalRoutine getRoutine(String reducedName) {
+        if (retrieveStub() != null) {
+            return getRoutineStub(reducedName);
+        }
         return RoutineUtil.findRoutine(getAllFields(), reducedName);
     }
 
@@ -192,20 +208,6 @@ public abstract class PascalModuleImpl extends PasStubScopeImpl<PasModuleStub> i
         }
     }
 
-    PasField getFieldStub(String name) {
-        PasField result = super.getFieldStub(name);
-        if ((null == result) && getName().equalsIgnoreCase(name)) {
-            result = new PasField(this.retrieveStub(), null);       // This unit name reference
-        }
-        return result;
-    }
-
-    Collection<PasField> getAllFieldsStub() {
-        Collection<PasField> res = super.getAllFieldsStub();
-        res.add(new PasField(this.retrieveStub(), null));       // This unit name reference
-        return res;
-    }
-
     @Override
     @Nullable
     public final PasField getPrivateField(final String name) {
@@ -242,6 +244,42 @@ public abstract class PascalModuleImpl extends PasStubScopeImpl<PasModuleStub> i
         return publicUnits;
     }
 
+    /**
+     * Returns used units sorted by name length in reverse order so longer dotted names are checked first.
+     * Private units are included if includePrivate is true.
+     */
+    public List<SmartPsiElementPointer<PasEntityScope>> getUnitsByNameLength(boolean includePrivate) {
+        List<SmartPsiElementPointer<PasEntityScope>> result = includePrivate ? allUnitsByNameLength : publicUnitsByNameLength;
+        if (null == result) {
+            List<PasEntityScope> units = new ArrayList<>();
+            if (includePrivate) {
+                addNamedUnits(units, getPrivateUnits());
+            }
+            addNamedUnits(units, getPublicUnits());
+            units.sort(new UnitNameLengthComparator());
+            result = new ArrayList<>(units.size());
+            for (PasEntityScope unit : units) {
+                result.add(PsiUtil.createSmartPointer(unit));
+            }
+            result = Collections.unmodifiableList(result);
+            if (includePrivate) {
+                allUnitsByNameLength = result;
+            } else {
+                publicUnitsByNameLength = result;
+            }
+        }
+        return result;
+    }
+
+    private static void addNamedUnits(List<PasEntityScope> result, List<SmartPsiElementPointer<PasEntityScope>> units) {
+        for (SmartPsiElementPointer<PasEntityScope> unitPtr : units) {
+            PasEntityScope unit = unitPtr.getElement();
+            if ((unit != null) && !StringUtils.isEmpty(unit.getName())) {
+                result.add(unit);
+            }
+        }
+    }
+
     private List<SmartPsiElementPointer<PasEntityScope>> doCollectUnits(Collection<String> units, boolean addExplicit) {
         List<SmartPsiElementPointer<PasEntityScope>> result = new ArrayList<>(units.size() + PascalParserUtil.EXPLICIT_UNITS.size());
         addUnits(result, units);
@@ -272,33 +310,28 @@ public abstract class PascalModuleImpl extends PasStubScopeImpl<PasModuleStub> i
         return getMembers(publicCache, PUBLIC_BUILDER).all.values();
     }
 
-    @NotNull
-    private Idents getIdents(Cache<String, Idents> cache, Callable<? extends Idents> builder) {
-        ensureChache(cache);
-        try {
-            return cache.get(getKey(), builder);
-        } catch (Exception e) {
-            if (e.getCause() instanceof ProcessCanceledException) {
-                throw (ProcessCanceledException) e.getCause();
-            } else {
-                LOG.warn("Error occurred during building idents for: " + this, e.getCause());
-            }
-            invalidateCache(false);
-            return EMPTY_IDENTS;
-        }
-    }
-
     @Override
     public Pair<List<PascalNamedElement>, List<PascalNamedElement>> getIdentsFrom(@Nullable String module, boolean includeInterface, List<String> unitPrefixes) {
-        Idents idents = getIdents(identCache, IDENTS_BUILDER);
+        ResolvedIdents idents = getResolvedIdents();
         Pair<List<PascalNamedElement>, List<PascalNamedElement>> res = new Pair<List<PascalNamedElement>, List<PascalNamedElement>>(new SmartList<>(), new SmartList<>());
-        if (includeInterface) {
-            collectElements(module, idents.identsIntf, res.first, unitPrefixes);
+        for (int i = 0; i < idents.size(); i++) {
+            ResolvedIdents.Section section = idents.getSection(i);
+            if (section == ResolvedIdents.Section.IMPLEMENTATION) {
+                collectElement(module, idents.getIdent(i), idents.getField(i), res.second, unitPrefixes);
+            } else if (includeInterface && (section == ResolvedIdents.Section.INTERFACE)) {
+                collectElement(module, idents.getIdent(i), idents.getField(i), res.first, unitPrefixes);
+            }
         }
-        collectElements(module, idents.identsImpl, res.second, unitPrefixes);
         return res;
     }
 
+    // Resolve results depend on declarations in other units so the table is rebuilt on any PSI modification
+    @NotNull
+    @Override
+    public ResolvedIdents getResolvedIdents() {
+        return CachedValuesManager.getCachedValue(this, () -> CachedValueProvider.Result.create(buildResolvedIdents(), PsiModificationTracker.MODIFICATION_COUNT));
+    }
+
     private PasField getPasField(String name, Cache<String, PascalHelperScope.Members> cache, Callable<? extends PascalHelperScope.Members> builder) {
         PasField res = name != null ? getMembers(cache, builder).all.get(name.toUpperCase()) : null;
         if ((res != null) && !PsiUtil.isElementUsable(res.getElement())) {
@@ -310,14 +343,11 @@ public abstract class PascalModuleImpl extends PasStubScopeImpl<PasModuleStub> i
         }
     }
 
-    private void collectElements(@Nullable String module, Map<PascalNamedElement, PasField> idents, List<PascalNamedElement> result, List<String> unitPrefixes) {
-        for (Map.Entry<PascalNamedElement, PasField> entry : idents.entrySet()) {
-            PasField field = entry.getValue();
-            if ((field != null) && PasField.isAllowed(field.visibility, PasField.Visibility.PRIVATE)
-                    && PasField.TYPES_STRUCTURE.contains(field.fieldType)
-                    && (field.owner instanceof PascalModule) && !this.equals(field.owner) && PsiUtil.isElementValid(field.owner) && nameMatch(module, field.owner.getName(), unitPrefixes)) {
-                result.add(entry.getKey());
-            }
+    private void collectElement(@Nullable String module, PascalNamedElement ident, PasField field, List<PascalNamedElement> result, List<String> unitPrefixes) {
+        if ((field != null) && PasField.isAllowed(field.visibility, PasField.Visibility.PRIVATE)
+                && PasField.TYPES_STRUCTURE.contains(field.fieldType)
+                && (field.owner instanceof PascalModule) && !this.equals(field.owner) && PsiUtil.isElementValid(field.owner) && nameMatch(module, field.owner.getName(), unitPrefixes)) {
+            result.add(ident);
         }
     }
 
@@ -388,40 +418,78 @@ public abstract class PascalModuleImpl extends PasStubScopeImpl<PasModuleStub> i
         return RoutineUtil.findRoutine(getPrivateFields(), reducedName);
     }
 
-    private static class Idents extends PascalHelperScope.Cached {
-        Map<PascalNamedElement, PasField> identsIntf = new HashMap<>();
-        Map<PascalNamedElement, PasField> identsImpl = new HashMap<>();
-    }
+    private static class PendingIdents {
+        private final long stamp;
+        private final ResolvedIdents.Builder builder;
 
-    private class IdentsBuilder implements Callable<Idents> {
-        @Override
-        public Idents call() {
-            Idents res = new Idents();
-            final PsiElement intf = PsiUtil.getModuleInterfaceSection(PascalModuleImpl.this);
-            if (intf != null) {
-                collectIdents(intf, res.identsIntf);
-            }
-            final PsiElement impl = PsiUtil.getModuleImplementationSection(PascalModuleImpl.this);
-            collectIdents(impl, res.identsImpl);
-            res.stamp = getStamp(getContainingFile());
-            return res;
+        private PendingIdents(long stamp, ResolvedIdents.Builder builder) {
+            this.stamp = stamp;
+            this.builder = builder;
         }
     }
 
-    private void collectIdents(final PsiElement section, final Map<PascalNamedElement, PasField> identsMap) {
-        //noinspection unchecked
-        for (PascalNamedElement namedElement : PsiUtil.findChildrenOfAnyType(section, PasSubIdentImpl.class, PasRefNamedIdentImpl.class)) {
-            if (!PsiUtil.isLastPartOfMethodImplName(namedElement)) {
-                Resolve.resolveExpr(NamespaceRec.fromElement(namedElement), new ResolveContext(PasField.TYPES_ALL, true),
-                        new ResolveProcessor() {
-                            @Override
-                            public boolean process(final PasEntityScope originalScope, final PasEntityScope scope, final PasField field, final PasField.FieldType type) {
-                                identsMap.put(namedElement, field);
-                                return false;
-                            }
-                        }
-                );
+    // Resolves all identifiers of the module. Resolve results are kept when the build is canceled.
+    @NotNull
+    private ResolvedIdents buildResolvedIdents() {
+        long stamp = PsiManager.getInstance(getProject()).getModificationTracker().getModificationCount();
+        PendingIdents pending = pendingIdents;
+        if ((null == pending) || (pending.stamp != stamp)) {
+            List<PascalNamedElement> idents = new ArrayList<>();
+            //noinspection unchecked
+            for (PascalNamedElement namedElement : PsiUtil.findChildrenOfAnyType(this, PasSubIdentImpl.class, PasRefNamedIdentImpl.class)) {
+                if (!PsiUtil.isLastPartOfMethodImplName(namedElement)) {
+                    idents.add(namedElement);
+                }
             }
+            pending = new PendingIdents(stamp, new ResolvedIdents.Builder(idents));
+            pendingIdents = pending;
+        }
+        final PsiElement intf = PsiUtil.getModuleInterfaceSection(this);
+        final PsiElement impl = PsiUtil.getModuleImplementationSection(this);
+        final TextRange intfRange = intf != null ? intf.getTextRange() : null;
+        final TextRange implRange = impl.getTextRange();
+        ResolvedIdents table;
+        try {
+            table = pending.builder.build((namedElement, builder) -> {
+                ResolvedIdents.Section section = ResolvedIdents.Section.NONE;
+                int offset = namedElement.getTextRange().getStartOffset();
+                if ((intfRange != null) && intfRange.contains(offset)) {
+                    section = ResolvedIdents.Section.INTERFACE;
+                } else if (implRange.contains(offset)) {
+                    section = ResolvedIdents.Section.IMPLEMENTATION;
+                }
+                resolveIdent(namedElement, section, builder);
+            });
+        } catch (ProcessCanceledException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            LOG.warn("Error occurred during building idents for: " + this, e);
+            table = ResolvedIdents.EMPTY;
+        }
+        pendingIdents = null;
+        return table;
+    }
+
+    // Overloaded routines of the scope of the first candidate are collected as the resolver can't always tell them apart
+    private static void resolveIdent(final PascalNamedElement namedElement, ResolvedIdents.Section section, ResolvedIdents.Builder builder) {
+        final List<PsiElement> scopes = new SmartList<>();
+        final List<PasField> result = new SmartList<>();
+        Resolve.resolveExpr(NamespaceRec.fromElement(namedElement), new ResolveContext(null, PasField.TYPES_ALL, true, scopes, null),
+                new ResolveProcessor() {
+                    @Override
+                    public boolean process(final PasEntityScope originalScope, final PasEntityScope scope, final PasField field, final PasField.FieldType type) {
+                        if (result.isEmpty() || ((type == PasField.FieldType.ROUTINE) && (result.get(0).owner == field.owner))) {
+                            result.add(field);
+                            return type == PasField.FieldType.ROUTINE;
+                        }
+                        return false;
+                    }
+                }
+        );
+        if (result.isEmpty()) {
+            builder.addUnresolved(namedElement, section, scopes);
+        } else {
+            builder.addResolved(namedElement, section, result);
         }
     }
 
@@ -500,4 +568,34 @@ public abstract class PascalModuleImpl extends PasStubScopeImpl<PasModuleStub> i
         }
         return withStatements;
     }
+
+    @NotNull
+    @Override
+    public WithStatementMap getWithStatementMap() {
+        WithStatementMap map = withStatementMap;
+        long stamp = getStamp(getContainingFile());
+        if ((null == map) || (map.getStamp() != stamp)) {
+            map = WithStatementMap.build(PsiTreeUtil.findChildrenOfType(this, PasWithStatement.class), stamp);
+            withStatementMap = map;
+        }
+        return map;
+    }
+
+    @NotNull
+    @Override
+    public RoutineImplMap getRoutineImplMap() {
+        RoutineImplMap map = routineImplMap;
+        long stamp = getStamp(getContainingFile());
+        if ((null == map) || (map.getStamp() != stamp)) {
+            map = SectionToggle.buildRoutineImplMap(this, stamp);
+            routineImplMap = map;
+        }
+        return map;
+    }
+
+    @NotNull
+    @Override
+    public GenericSpecializationCache getSpecializationCache() {
+        return CachedValuesManager.getCachedValue(this, () -> CachedValueProvider.Result.create(new GenericSpecializationCache(), PsiModificationTracker.MODIFICATION_COUNT));
+    }
 }
@@ -0,0 +1,88 @@
+package com.siberika.idea.pascal.lang.psi.impl;
+
+import com.intellij.psi.PsiElement;
+import com.siberika.idea.pascal.lang.psi.PasModule;
+import com.siberika.idea.pascal.lang.psi.PascalModule;
+import com.siberika.idea.pascal.lang.psi.PascalRoutine;
+import com.siberika.idea.pascal.util.PsiUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bidirectional map between routine declarations of a module (interface routines and methods of structured types including nested ones)
+ * and their implementations. A declaration is mapped to its implementation and an implementation to its declaration.
+ * Both strict (matching overload signatures) and non-strict targets are stored.
+ */
+public class RoutineImplMap {
+
+    private final long stamp;
+    private final Map<PascalRoutine, Target> targets;
+
+    private RoutineImplMap(long stamp, Map<PascalRoutine, Target> targets) {
+        this.stamp = stamp;
+        this.targets = targets;
+    }
+
+    /**
+     * Builds the map resolving target of each routine with the resolver
+     * @param resolver returns target of the routine in strict or non-strict mode
+     */
+    public static RoutineImplMap build(@NotNull Collection<? extends PascalRoutine> routines, @NotNull Resolver resolver, long stamp) {
+        Map<PascalRoutine, Target> targets = new HashMap<>(routines.size() * 2);
+        for (PascalRoutine routine : routines) {
+            PsiElement strict = resolver.resolve(routine, true);
+            PsiElement nonStrict = strict != null ? strict : resolver.resolve(routine, false);  // non-strict search returns the same target if strict one succeeds
+            targets.put(routine, new Target(strict, nonStrict));
+        }
+        return new RoutineImplMap(stamp, targets);
+    }
+
+    /**
+     * Returns routine implementations map of the module containing the element or null if the element is not within a module
+     */
+    @Nullable
+    public static RoutineImplMap forElement(@NotNull PsiElement element) {
+        PasModule module = PsiUtil.getElementPasModule(element);
+        return module instanceof PascalModule ? ((PascalModule) module).getRoutineImplMap() : null;
+    }
+
+    long getStamp() {
+        return stamp;
+    }
+
+    public boolean contains(@NotNull PascalRoutine routine) {
+        return targets.containsKey(routine);
+    }
+
+    /**
+     * Returns implementation of the declaration or declaration of the implementation
+     */
+    @Nullable
+    public PsiElement getTarget(@NotNull PascalRoutine routine, boolean strict) {
+        Target target = targets.get(routine);
+        return target != null ? (strict ? target.strict : target.nonStrict) : null;
+    }
+
+    public int size() {
+        return targets.size();
+    }
+
+    public interface Resolver {
+        @Nullable
+        PsiElement resolve(@NotNull PascalRoutine routine, boolean strict);
+    }
+
+    private static class Target {
+        private final PsiElement strict;
+        private final PsiElement nonStrict;
+
+        private Target(PsiElement strict, PsiElement nonStrict) {
+            this.strict = strict;
+            this.nonStrict = nonStrict;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.siberika.idea.pascal.lang.psi.impl;
+
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.PsiElement;
+import com.siberika.idea.pascal.lang.psi.PasEntityScope;
+import com.siberika.idea.pascal.lang.psi.PasModule;
+import com.siberika.idea.pascal.lang.psi.PasStatement;
+import com.siberika.idea.pascal.lang.psi.PasWithStatement;
+import com.siberika.idea.pascal.lang.psi.PascalModule;
+import com.siberika.idea.pascal.util.PsiUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Bodies of WITH statements of a module ordered by start offset.
+ * Bodies are either nested or disjoint so statements affecting an offset form a chain of enclosing bodies
+ * which is found with a binary search followed by a walk up to enclosing statements.
+ */
+public class WithStatementMap {
+
+    private final long stamp;
+    private final PasWithStatement[] statements;
+    private final int[] starts;
+    private final int[] ends;
+    private final int[] parents;                // index of nearest enclosing statement or -1
+
+    private WithStatementMap(Collection<PasWithStatement> withStatements, long stamp) {
+        this.stamp = stamp;
+        List<PasWithStatement> list = new ArrayList<>(withStatements.size());
+        List<TextRange> ranges = new ArrayList<>(withStatements.size());
+        for (PasWithStatement withStatement : withStatements) {
+            PasStatement body = withStatement.getStatement();
+            if (body != null) {
+                list.add(withStatement);
+                ranges.add(body.getTextRange());
+            }
+        }
+        Integer[] order = new Integer[list.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.<Integer>comparingInt(i -> ranges.get(i).getStartOffset()).thenComparingInt(i -> -ranges.get(i).getEndOffset()));
+        statements = new PasWithStatement[order.length];
+        starts = new int[order.length];
+        ends = new int[order.length];
+        parents = new int[order.length];
+        int[] stack = new int[order.length];
+        int top = -1;
+        for (int i = 0; i < order.length; i++) {
+            TextRange range = ranges.get(order[i]);
+            statements[i] = list.get(order[i]);
+            starts[i] = range.getStartOffset();
+            ends[i] = range.getEndOffset();
+            while ((top >= 0) && (ends[stack[top]] <= starts[i])) {
+                top--;
+            }
+            parents[i] = top >= 0 ? stack[top] : -1;
+            stack[++top] = i;
+        }
+    }
+
+    public static WithStatementMap build(@NotNull Collection<PasWithStatement> withStatements, long stamp) {
+        return new WithStatementMap(withStatements, stamp);
+    }
+
+    /**
+     * Returns WITH statements map of the module containing the element or null if the element is not within a module
+     */
+    @Nullable
+    public static WithStatementMap forElement(@NotNull PsiElement element) {
+        PasModule module = PsiUtil.getElementPasModule(element);
+        return module instanceof PascalModule ? ((PascalModule) module).getWithStatementMap() : null;
+    }
+
+    /**
+     * Returns WITH statements of the scope which body contains the identifier, outermost first
+     */
+    @NotNull
+    public static List<PasWithStatement> getAffecting(@Nullable PasEntityScope scope, @Nullable PsiElement ident) {
+        if ((null == scope) || (null == ident)) {
+            return Collections.emptyList();
+        }
+        WithStatementMap map = forElement(ident);
+        List<PasWithStatement> result = new ArrayList<>();
+        if (map != null) {
+            for (PasWithStatement ws : map.getAffecting(ident.getTextRange().getStartOffset())) {
+                if (PsiUtil.isParentOf(ws, scope)) {
+                    result.add(ws);
+                }
+            }
+        } else {
+            for (PasWithStatement ws : scope.getWithStatements()) {
+                if (PsiUtil.isParentOf(ident, ws.getStatement()) && PsiUtil.isParentOf(ws, scope)) {
+                    result.add(ws);
+                }
+            }
+        }
+        return result;
+    }
+
+    long getStamp() {
+        return stamp;
+    }
+
+    public boolean isEmpty() {
+        return statements.length == 0;
+    }
+
+    /**
+     * Returns WITH statements which body contains the offset, outermost first
+     */
+    @NotNull
+    public List<PasWithStatement> getAffecting(int offset) {
+        int index = findInnermost(offset);
+        if (index < 0) {
+            return Collections.emptyList();
+        }
+        List<PasWithStatement> result = new ArrayList<>();
+        for (; index >= 0; index = parents[index]) {
+            result.add(statements[index]);
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * Returns outermost WITH statement which body contains the offset
+     */
+    @Nullable
+    public PasWithStatement getOutermost(int offset) {
+        int index = findInnermost(offset);
+        if (index < 0) {
+            return null;
+        }
+        while (parents[index] >= 0) {
+            index = parents[index];
+        }
+        return statements[index];
+    }
+
+    private int findInnermost(int offset) {
+        int low = 0;
+        int high = starts.length - 1;
+        int index = -1;
+        while (low <= high) {                     // last statement starting at or before the offset
+            int mid = (low + high) >>> 1;
+            if (starts[mid] <= offset) {
+                index = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        while ((index >= 0) && (ends[index] <= offset)) {
+            index = parents[index];
+        }
+        return index;
+    }
+
+}
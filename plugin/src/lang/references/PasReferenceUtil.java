@@ -45,6 +45,7 @@ import com.siberika.idea.pascal.lang.psi.PascalRoutine;
 import com.siberika.idea.pascal.lang.psi.PascalRoutineEntity;
 import com.siberika.idea.pascal.lang.psi.PascalStructType;
 import com.siberika.idea.pascal.lang.psi.PascalStubElement;
+import com.siberika.idea.pascal.lang.psi.impl.GenericSpecializationCache;
 import com.siberika.idea.pascal.lang.psi.impl.PasArrayTypeImpl;
 import com.siberika.idea.pascal.lang.psi.impl.PasClassTypeTypeDeclImpl;
 import com.siberika.idea.pascal.lang.psi.impl.PasEnumTypeImpl;
@@ -60,7 +61,9 @@ import com.siberika.idea.pascal.lang.psi.impl.PasTypeIDImpl;
 import com.siberika.idea.pascal.lang.psi.impl.PasVariantScope;
 import com.siberika.idea.pascal.lang.psi.impl.PascalExpression;
 import com.siberika.idea.pascal.lang.psi.impl.PascalModuleImpl;
+import com.siberika.idea.pascal.lang.psi.impl.WithStatementMap;
 import com.siberika.idea.pascal.lang.search.Helper;
+import com.siberika.idea.pascal.lang.stub.PascalUnitFileIndex;
 import com.siberika.idea.pascal.sdk.BuiltinsParser;
 import com.siberika.idea.pascal.util.ModuleUtil;
 import com.siberika.idea.pascal.util.PsiUtil;
@@ -96,7 +99,23 @@ public class PasReferenceUtil {
      */
     @Nullable
     public static PasEntityScope findUnit(@NotNull Project project, @NotNull List<VirtualFile> unitFiles, @NotNull final String moduleName) {
-        VirtualFile file = findUnitFile(unitFiles, moduleName);
+        return findUnitInFile(project, findUnitFile(unitFiles, moduleName), moduleName);
+    }
+
+    /**
+     * Finds and returns unit by name using unit file index
+     *
+     * @param module - IDEA module to include its compiled dependencies
+     * @param moduleName - unit name
+     * @return unit element
+     */
+    @Nullable
+    public static PasEntityScope findUnit(@NotNull Project project, @Nullable final Module module, @NotNull final String moduleName) {
+        return findUnitInFile(project, findUnitFile(project, module, moduleName), moduleName);
+    }
+
+    @Nullable
+    private static PasEntityScope findUnitInFile(@NotNull Project project, @Nullable VirtualFile file, @NotNull final String moduleName) {
         if (file != null) {
             PsiFile pascalFile = PsiManager.getInstance(project).findFile(file);
             PascalModule pasModule = PsiTreeUtil.findChildOfType(pascalFile, PascalModule.class);
@@ -133,10 +152,30 @@ public class PasReferenceUtil {
     }
 
     /**
-     * Finds and returns module files in search path
+     * Finds and returns file of a module with the given name with unit file index lookups
+     * Sources are searched in whole project, compiled units - in the module with dependencies.
+     * Unit namespaces of the module are taken into account. Files with full unit name are preferred over truncated to 8 characters.
+     */
+    @Nullable
+    private static VirtualFile findUnitFile(@NotNull Project project, @Nullable final Module module, @NotNull final String moduleName) {
+        List<String> namespaces = ModuleUtil.retrieveUnitNamespaces(module, project);
+        List<VirtualFile> candidates = new SmartList<>();
+        candidates.addAll(PascalUnitFileIndex.getUnitFiles(moduleName, namespaces, GlobalSearchScope.allScope(project), PascalFileType.INSTANCE));
+        GlobalSearchScope scope = module != null ? GlobalSearchScope.moduleWithDependenciesAndLibrariesScope(module) : GlobalSearchScope.allScope(project);
+        candidates.addAll(PascalUnitFileIndex.getUnitFiles(moduleName, namespaces, scope, PPUFileType.INSTANCE, DCUFileType.INSTANCE));
+        VirtualFile builtins = BuiltinsParser.getBuiltinsSource();
+        if (isFileOfModuleWithName(builtins, moduleName)) {
+            candidates.add(builtins);
+        }
+        candidates.sort(Comparator.comparing(file -> file.getNameWithoutExtension().length() < moduleName.length()));
+        return !candidates.isEmpty() ? candidates.get(0) : null;
+    }
+
+    /**
+     * Returns files of all units available in the module: sources of the project, compiled units of the module with dependencies and builtins
      *
      * @param module - IDEA module to include its compiled dependencies
-     * @return list of PsiFiles
+     * @return list of unit files
      */
     @NotNull
     public static List<VirtualFile> findUnitFiles(@NotNull Project project, @Nullable final Module module) {
@@ -255,9 +294,8 @@ public class PasReferenceUtil {
     @Nullable
     private static PasField.ValueType resolveTypeId(@NotNull PasTypeID typeId, boolean includeLibrary, int recursionCount) {
         ResolveContext context = new ResolveContext(PasField.TYPES_TYPE, includeLibrary);
-        Collection<PasField> types = resolve(NamespaceRec.fromElement(typeId.getFullyQualifiedIdent()), context, ++recursionCount);
-        if (!types.isEmpty()) {
-            PasField type = types.iterator().next();
+        PasField type = resolveTypeIdField(typeId, context, ++recursionCount);
+        if (type != null) {
             PascalNamedElement el = type.getElement();
             if (ResolveUtil.isStubPowered(el)) {
                 return ResolveUtil.resolveTypeWithStub((PascalStubElement) el, new ResolveContext(type.owner, PasField.TYPES_TYPE, context.includeLibrary, null, context.unitNamespaces), recursionCount);
@@ -267,6 +305,25 @@ public class PasReferenceUtil {
         return null;
     }
 
+    // Resolves declaration of the type. Declarations of generic specializations are cached per module.
+    @Nullable
+    private static PasField resolveTypeIdField(@NotNull PasTypeID typeId, ResolveContext context, int recursionCount) {
+        String specialization = GenericSpecializationCache.getSpecialization(typeId);
+        GenericSpecializationCache cache = specialization != null ? GenericSpecializationCache.forElement(typeId) : null;
+        PasEntityScope scope = cache != null ? PsiUtil.getNearestAffectingScope(typeId) : null;
+        PasField result = cache != null ? cache.get(scope, specialization, context.includeLibrary) : null;
+        if (null == result) {
+            Collection<PasField> types = resolve(NamespaceRec.fromElement(typeId.getFullyQualifiedIdent()), context, recursionCount);
+            result = !types.isEmpty() ? types.iterator().next() : null;
+            if ((cache != null) && (result != null)) {
+                cache.put(scope, specialization, context.includeLibrary, result);
+            }
+        } else if (null == context.unitNamespaces) {                 // set by resolve() otherwise
+            context.unitNamespaces = ModuleUtil.retrieveUnitNamespaces(typeId);
+        }
+        return result;
+    }
+
     private static PasField.ValueType retrieveAnonymousType(PasTypeDecl decl, boolean includeLibrary, int recursionCount) {
         PasField.Kind kind = null;
         PasField.ValueType baseType = null;
@@ -601,11 +658,8 @@ public class PasReferenceUtil {
         if (null == scope) {
             return;
         }
-        Collection<PasWithStatement> statements = scope.getWithStatements();
-        for (PasWithStatement ws : statements) {
-            if (PsiUtil.isParentOf(ident, ws.getStatement()) && PsiUtil.isParentOf(ws, scope)) {
-                getWithStatementScopes(namespaces, ws);
-            }
+        for (PasWithStatement ws : WithStatementMap.getAffecting(scope, ident)) {
+            getWithStatementScopes(namespaces, ws);
         }
     }
 
@@ -41,6 +41,7 @@ import com.siberika.idea.pascal.lang.psi.PascalNamedElement;
 import com.siberika.idea.pascal.lang.psi.PascalRoutine;
 import com.siberika.idea.pascal.lang.psi.PascalStructType;
 import com.siberika.idea.pascal.lang.psi.PascalStubElement;
+import com.siberika.idea.pascal.lang.psi.impl.GenericSpecializationCache;
 import com.siberika.idea.pascal.lang.psi.impl.PasArrayTypeImpl;
 import com.siberika.idea.pascal.lang.psi.impl.PasClassTypeTypeDeclImpl;
 import com.siberika.idea.pascal.lang.psi.impl.PasEnumTypeImpl;
@@ -55,6 +56,7 @@ import com.siberika.idea.pascal.lang.stub.PasExportedRoutineStub;
 import com.siberika.idea.pascal.lang.stub.PasIdentStub;
 import com.siberika.idea.pascal.lang.stub.PasModuleStub;
 import com.siberika.idea.pascal.lang.stub.PascalModuleIndex;
+import com.siberika.idea.pascal.module.ModuleService;
 import com.siberika.idea.pascal.sdk.BuiltinsParser;
 import com.siberika.idea.pascal.util.ModuleUtil;
 import com.siberika.idea.pascal.util.PsiUtil;
@@ -70,8 +72,6 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class ResolveUtil {
 
@@ -79,8 +79,6 @@ public class ResolveUtil {
 
     public static final String STRUCT_SUFFIX = "#";
 
-    private static final Pattern PATTERN_TYPE_PARAM = Pattern.compile("(\\w+)(<.*?>)");
-
     private static final Set<PasField.Kind> KINDS_FOLLOW_TYPE = EnumSet.of(PasField.Kind.TYPEALIAS, PasField.Kind.ARRAY, PasField.Kind.POINTER, PasField.Kind.CLASSREF, PasField.Kind.PROCEDURE);
     private static final Set<PasField.Kind> KINDS_TYPE_REF = EnumSet.of(PasField.Kind.TYPEALIAS, PasField.Kind.TYPEREF);
 
@@ -92,12 +90,14 @@ public class ResolveUtil {
             return modules;
         }
         final GlobalSearchScope scope = module != null ? GlobalSearchScope.moduleWithDependenciesAndLibrariesScope(module, false) : ProjectScope.getAllScope(project);
-        if (key != null) {
+        if ((key != null) && (module != null)) {
+            modules.addAll(ModuleService.getInstance(module).getUnitNameTable(module).findUnits(key));
+        } else if (key != null) {
             modules.addAll(StubIndex.getElements(PascalModuleIndex.KEY, key.toUpperCase(), project, scope, PascalModule.class));
-                String dotKey = "." + key.toUpperCase();
-                for (String namespace : ModuleUtil.retrieveUnitNamespaces(module, project)) {
-                    modules.addAll(StubIndex.getElements(PascalModuleIndex.KEY, namespace.toUpperCase() + dotKey, project, scope, PascalModule.class));
-                }
+            String dotKey = "." + key.toUpperCase();
+            for (String namespace : ModuleUtil.retrieveUnitNamespaces(null, project)) {
+                modules.addAll(StubIndex.getElements(PascalModuleIndex.KEY, namespace.toUpperCase() + dotKey, project, scope, PascalModule.class));
+            }
         } else {
             Processor<String> processor = new Processor<String>() {
                 @Override
@@ -136,11 +136,7 @@ public class ResolveUtil {
     // Resolve most deep type name which is the same (alias to) the specified type name
     @NotNull
     public static String resolveTypeAliasChain(String typeName, PascalNamedElement contextElement, int recursionCount) {
-        Matcher m = PATTERN_TYPE_PARAM.matcher(typeName);
-        if (m.matches()) {
-            typeName = m.group(1);
-        }
-        final String finalTypeName = typeName;
+        final String finalTypeName = GenericSpecializationCache.getGenericName(typeName);
         AtomicReference<String> result = new AtomicReference<>(finalTypeName);
         ResolveContext ctx = new ResolveContext(PasField.TYPES_TYPE, true);
         Resolve.resolveExpr(NamespaceRec.fromFQN(contextElement, finalTypeName), ctx,
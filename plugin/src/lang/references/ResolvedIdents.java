@@ -0,0 +1,209 @@
+package com.siberika.idea.pascal.lang.references;
+
+import com.intellij.psi.PsiElement;
+import com.siberika.idea.pascal.lang.psi.PasModule;
+import com.siberika.idea.pascal.lang.psi.PascalModule;
+import com.siberika.idea.pascal.lang.psi.PascalNamedElement;
+import com.siberika.idea.pascal.lang.psi.impl.PasField;
+import com.siberika.idea.pascal.util.PsiUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolve results of all identifiers of a module computed in a single pass per module modification.
+ * Entries are kept in document order in parallel arrays so an identifier can be found by its offset.
+ */
+public class ResolvedIdents {
+
+    public static final ResolvedIdents EMPTY = new Builder(Collections.<PascalNamedElement>emptyList()).build((ident, builder) -> {});
+
+    public enum Section {NONE, INTERFACE, IMPLEMENTATION}
+
+    private static final Section[] SECTIONS = Section.values();
+
+    private final int[] offsets;
+    private final PascalNamedElement[] idents;
+    private final PasField[] fields;
+    private final byte[] sections;
+    // Scopes collected during resolve of unresolved identifiers only, by entry index
+    private final Map<Integer, List<PsiElement>> unresolvedScopes;
+    // Overloaded routines declared in the same scope as the resolved one, by entry index
+    private final Map<Integer, List<PasField>> overloads;
+
+    private ResolvedIdents(Builder builder) {
+        int size = builder.idents.size();
+        offsets = new int[size];
+        idents = builder.idents.toArray(new PascalNamedElement[size]);
+        fields = builder.fields.toArray(new PasField[size]);
+        sections = new byte[size];
+        for (int i = 0; i < size; i++) {
+            offsets[i] = idents[i].getTextRange().getStartOffset();
+            sections[i] = (byte) builder.sections.get(i).ordinal();
+        }
+        unresolvedScopes = builder.unresolvedScopes;
+        overloads = builder.overloads;
+    }
+
+    /**
+     * Returns resolved identifiers table of the module containing the element or null if the element is not within a module
+     */
+    @Nullable
+    public static ResolvedIdents forElement(@NotNull PsiElement element) {
+        PasModule module = PsiUtil.getElementPasModule(element);
+        return module instanceof PascalModule ? ((PascalModule) module).getResolvedIdents() : null;
+    }
+
+    public int size() {
+        return idents.length;
+    }
+
+    /**
+     * Returns index of the identifier in the table or -1 if the identifier was not collected
+     */
+    public int indexOf(@NotNull PsiElement ident) {
+        int index = binarySearch(ident.getTextRange().getStartOffset());
+        return (index >= 0) && ident.equals(idents[index]) ? index : -1;
+    }
+
+    public PascalNamedElement getIdent(int index) {
+        return idents[index];
+    }
+
+    // Returns field the identifier resolved to, null if the identifier is not resolved
+    @Nullable
+    public PasField getField(int index) {
+        return fields[index];
+    }
+
+    /**
+     * Returns all fields the identifier may refer to: the resolved field and routines overloaded in the same scope
+     * which were not told apart by the resolver
+     */
+    @NotNull
+    public List<PasField> getTargets(int index) {
+        List<PasField> targets = overloads.get(index);
+        if (targets != null) {
+            return targets;
+        }
+        return fields[index] != null ? Collections.singletonList(fields[index]) : Collections.<PasField>emptyList();
+    }
+
+    public boolean isResolved(int index) {
+        return !unresolvedScopes.containsKey(index);
+    }
+
+    @NotNull
+    public List<PsiElement> getScopes(int index) {
+        List<PsiElement> scopes = unresolvedScopes.get(index);
+        return scopes != null ? scopes : Collections.emptyList();
+    }
+
+    public Section getSection(int index) {
+        return SECTIONS[sections[index]];
+    }
+
+    private int binarySearch(int offset) {
+        int low = 0;
+        int high = offsets.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (offsets[mid] < offset) {
+                low = mid + 1;
+            } else if (offsets[mid] > offset) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Resolves an identifier and adds the result to the builder
+     */
+    public interface Resolver {
+        void resolve(@NotNull PascalNamedElement ident, @NotNull Builder builder);
+    }
+
+    /**
+     * Collects resolve results of identifiers in document order. Results of identifiers resolved before a cancellation
+     * are kept so the same builder continues from the first identifier which is not resolved yet.
+     */
+    public static class Builder {
+        private final List<? extends PascalNamedElement> pending;
+        private int next;
+        private final List<PascalNamedElement> idents = new ArrayList<>();
+        private final List<PasField> fields = new ArrayList<>();
+        private final List<Section> sections = new ArrayList<>();
+        private final Map<Integer, List<PsiElement>> unresolvedScopes = new HashMap<>();
+        private final Map<Integer, List<PasField>> overloads = new HashMap<>();
+
+        /**
+         * @param pending identifiers to resolve in document order
+         */
+        public Builder(@NotNull List<? extends PascalNamedElement> pending) {
+            this.pending = pending;
+        }
+
+        public void addResolved(@NotNull PascalNamedElement ident, @NotNull Section section, @Nullable PasField field) {
+            idents.add(ident);
+            fields.add(field);
+            sections.add(section);
+        }
+
+        /**
+         * Adds an identifier resolved to several overloaded routines, the first one is the resolved field
+         */
+        public void addResolved(@NotNull PascalNamedElement ident, @NotNull Section section, @NotNull List<PasField> targets) {
+            if (targets.size() > 1) {
+                overloads.put(idents.size(), targets);
+            }
+            addResolved(ident, section, targets.isEmpty() ? null : targets.get(0));
+        }
+
+        public void addUnresolved(@NotNull PascalNamedElement ident, @NotNull Section section, @NotNull List<PsiElement> scopes) {
+            unresolvedScopes.put(idents.size(), scopes);
+            addResolved(ident, section, null);
+        }
+
+        /**
+         * Resolves identifiers which are not resolved yet and builds the table
+         */
+        public ResolvedIdents build(@NotNull Resolver resolver) {
+            while (next < pending.size()) {
+                int size = idents.size();
+                try {
+                    resolver.resolve(pending.get(next), this);
+                } catch (RuntimeException e) {
+                    truncate(size);
+                    throw e;
+                }
+                next++;
+            }
+            return new ResolvedIdents(this);
+        }
+
+        // Number of identifiers processed by resolver
+        public int getResolvedCount() {
+            return next;
+        }
+
+        // Removes entries of an identifier which resolve was interrupted
+        private void truncate(int size) {
+            while (idents.size() > size) {
+                int last = idents.size() - 1;
+                idents.remove(last);
+                fields.remove(last);
+                sections.remove(last);
+                unresolvedScopes.remove(last);
+                overloads.remove(last);
+            }
+        }
+    }
+}
@@ -6,6 +6,7 @@ import com.intellij.psi.PsiFile;
 import com.intellij.psi.SmartPsiElementPointer;
 import com.intellij.psi.stubs.StubElement;
 import com.intellij.util.Processor;
+import com.intellij.util.SmartList;
 import com.siberika.idea.pascal.lang.parser.NamespaceRec;
 import com.siberika.idea.pascal.lang.parser.PascalFile;
 import com.siberika.idea.pascal.lang.psi.PasEntityScope;
@@ -21,6 +22,7 @@ import com.siberika.idea.pascal.lang.psi.PascalStubElement;
 import com.siberika.idea.pascal.lang.psi.impl.PasField;
 import com.siberika.idea.pascal.lang.psi.impl.PascalExpression;
 import com.siberika.idea.pascal.lang.psi.impl.PascalModuleImpl;
+import com.siberika.idea.pascal.lang.psi.impl.WithStatementMap;
 import com.siberika.idea.pascal.lang.references.ResolveContext;
 import com.siberika.idea.pascal.lang.references.ResolveUtil;
 import com.siberika.idea.pascal.lang.search.Helper;
@@ -30,7 +32,6 @@ import org.apache.commons.lang.StringUtils;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -38,10 +39,12 @@ abstract class FQNResolver {
 
     private static final Logger LOG = Logger.getInstance(FQNResolver.class);
 
+    private static final UnitNameLengthComparator UNIT_NAME_LENGTH_COMPARATOR = new UnitNameLengthComparator();
+
     private final PasEntityScope scope;
     final NamespaceRec fqn;
     private final ResolveContext context;
-    private final List<PasEntityScope> sortedUnits;
+    private List<PasEntityScope> sortedUnits;                  // created when first needed as most identifiers are resolved before unit names are tried
     private boolean wasType;
     public PasField result;
     PasEntityScope lastPartScope;
@@ -53,7 +56,6 @@ abstract class FQNResolver {
         if (null == this.context.unitNamespaces) {
             this.context.unitNamespaces = ModuleUtil.retrieveUnitNamespaces(fqn.getParentIdent());
         }
-        this.sortedUnits = new ArrayList<>();
         this.wasType = false;
     }
 
@@ -98,14 +100,15 @@ abstract class FQNResolver {
         // current name not found, search for units
         fqn.reset();
 
+        if (null == sortedUnits) {
+            sortedUnits = new ArrayList<>();
+        }
         if (moduleScope instanceof PascalModuleImpl) {
-            if (implAffects) {
-                addSortedUnits(((PascalModuleImpl) moduleScope).getPrivateUnits());
-            }
-            addSortedUnits(((PascalModuleImpl) moduleScope).getPublicUnits());
+            addSortedUnits(((PascalModuleImpl) moduleScope).getUnitsByNameLength(implAffects));
         }
         // sort namespaces by name length in reverse order to check longer named namespaces first
-        sortedUnits.sort(new UnitNameLengthComparator());
+        // used units are already sorted so the sort merges them with scopes added during first part resolve
+        sortedUnits.sort(UNIT_NAME_LENGTH_COMPARATOR);
         boolean res = checkForDottedUnitName(implAffects);
         if (!res) {                     // Found unit
             return !fqn.isComplete() && resolveNext(lastPartScope);
@@ -118,10 +121,7 @@ abstract class FQNResolver {
         for (SmartPsiElementPointer<PasEntityScope> unitPtr : units) {
             PasEntityScope unit = unitPtr.getElement();
             if ((unit != null) && (context.includeLibrary || !PsiUtil.isFromLibrary(unit))) {
-                // Add unit scopes to sorted units list
-                if (!StringUtils.isEmpty(unit.getName())) {
-                    sortedUnits.add(unit);
-                }
+                sortedUnits.add(unit);
             }
         }
     }
@@ -193,6 +193,9 @@ abstract class FQNResolver {
         }
         if (context.scope instanceof PascalModuleImpl) {
             if (!StringUtils.isEmpty(context.scope.getName())) {
+                if (null == sortedUnits) {
+                    sortedUnits = new SmartList<>();
+                }
                 sortedUnits.add(context.scope);
             }
             if (implAffects) {
@@ -237,12 +240,9 @@ abstract class FQNResolver {
         if (null == scope) {
             return true;
         }
-        Collection<PasWithStatement> statements = scope.getWithStatements();
-        for (PasWithStatement ws : statements) {
-            if (PsiUtil.isParentOf(ident, ws.getStatement()) && PsiUtil.isParentOf(ws, scope)) {
-                if (!getWithStatementScopes(ws)) {
-                    return false;
-                }
+        for (PasWithStatement ws : WithStatementMap.getAffecting(scope, ident)) {
+            if (!getWithStatementScopes(ws)) {
+                return false;
             }
         }
         return true;
@@ -5,7 +5,7 @@ import com.siberika.idea.pascal.lang.psi.PasEntityScope;
 
 import java.util.Comparator;
 
-class UnitNameLengthComparator implements Comparator<PasEntityScope> {
+public class UnitNameLengthComparator implements Comparator<PasEntityScope> {
     @Override
     public int compare(PasEntityScope o1, PasEntityScope o2) {
         return StringLenComparator.getInstance().compare(o2.getName(), o1.getName());
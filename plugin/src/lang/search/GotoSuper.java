@@ -202,15 +202,12 @@ public class GotoSuper implements LanguageCodeInsightActionHandler {
                 return false;
             }
             if (struct instanceof PascalStructType) {
-                for (SmartPsiElementPointer<PasEntityScope> parent : struct.getParentScope()) {
-                    PasEntityScope el = parent.getElement();
-                    if (!consumer.process(el)) {
+                for (PascalStructType parent : PascalHierarchyService.getInstance(struct.getProject()).getSupertypes((PascalStructType) struct)) {
+                    if (!consumer.process(parent)) {
                         return false;
                     }
-                    if (!struct.equals(el)) {
-                        if (!retrieveParentStructs(consumer, el, recursionCount + 1)) {
-                            return false;
-                        }
+                    if (!retrieveParentStructs(consumer, parent, recursionCount + 1)) {
+                        return false;
                     }
                 }
             }
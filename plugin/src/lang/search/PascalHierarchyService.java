@@ -0,0 +1,381 @@
+package com.siberika.idea.pascal.lang.search;
+
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.SmartPsiElementPointer;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.stubs.StubIndex;
+import com.intellij.util.CommonProcessors;
+import com.intellij.util.Processor;
+import com.intellij.util.SmartList;
+import com.intellij.util.containers.SmartHashSet;
+import com.siberika.idea.pascal.ide.actions.SectionToggle;
+import com.siberika.idea.pascal.lang.parser.NamespaceRec;
+import com.siberika.idea.pascal.lang.psi.PasEntityScope;
+import com.siberika.idea.pascal.lang.psi.PasExportedRoutine;
+import com.siberika.idea.pascal.lang.psi.PasGenericTypeIdent;
+import com.siberika.idea.pascal.lang.psi.PasRoutineImplDecl;
+import com.siberika.idea.pascal.lang.psi.PascalNamedElement;
+import com.siberika.idea.pascal.lang.psi.PascalRoutine;
+import com.siberika.idea.pascal.lang.psi.PascalStructType;
+import com.siberika.idea.pascal.lang.psi.PascalStubElement;
+import com.siberika.idea.pascal.lang.psi.impl.PasField;
+import com.siberika.idea.pascal.lang.references.PasReferenceUtil;
+import com.siberika.idea.pascal.lang.references.PascalClassByNameContributor;
+import com.siberika.idea.pascal.lang.references.ResolveContext;
+import com.siberika.idea.pascal.lang.references.ResolveUtil;
+import com.siberika.idea.pascal.lang.references.resolve.Resolve;
+import com.siberika.idea.pascal.lang.stub.PascalInheritanceIndex;
+import com.siberika.idea.pascal.lang.stub.StubUtil;
+import com.siberika.idea.pascal.util.ModuleUtil;
+import com.siberika.idea.pascal.util.PsiUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Inheritance graph of structured types (classes, interfaces, objects, records and helpers) of a project.
+ * Types are nodes with int IDs and direct supertypes and subtypes are stored as ID arrays.
+ * Adjacency of a node is computed when first needed: supertypes are resolved parents of the type,
+ * subtypes are types found in {@link PascalInheritanceIndex} by the type name which parents resolve to the type.
+ * The index is persistent and updated by the platform with stubs so the graph only keeps resolved edges in memory.
+ * The graph is not updated incrementally: it's dropped on any PSI modification and edges are resolved again as queried.
+ */
+public class PascalHierarchyService {
+
+    private static final int[] NO_IDS = new int[0];
+
+    private final Project project;
+    private volatile Graph graph = new Graph(-1);
+
+    public PascalHierarchyService(Project project) {
+        this.project = project;
+    }
+
+    public static PascalHierarchyService getInstance(@NotNull Project project) {
+        return project.getComponent(PascalHierarchyService.class);
+    }
+
+    /**
+     * Returns direct supertypes of the type
+     */
+    @NotNull
+    public List<PascalStructType> getSupertypes(@NotNull PascalStructType type) {
+        Graph g = ensureGraph();
+        return g.getElements(g.getSupertypes(g.getId(type), type));
+    }
+
+    /**
+     * Returns direct subtypes of the type
+     */
+    @NotNull
+    public List<PascalStructType> getSubtypes(@NotNull PascalStructType type) {
+        Graph g = ensureGraph();
+        return g.getElements(g.getSubtypes(g.getId(type), type));
+    }
+
+    /**
+     * Calls processor for each supertype of the type. Each type is processed once.
+     * @param recursive if True all ancestors are processed
+     * @return True if there were no processor.process() calls or all of them returned True
+     */
+    public boolean processSupertypes(@NotNull PascalStructType type, boolean recursive, @NotNull Processor<? super PascalStructType> processor) {
+        return process(type, true, recursive, processor);
+    }
+
+    /**
+     * Calls processor for each subtype of the type. Each type is processed once.
+     * @param recursive if True all descendants are processed
+     * @return True if there were no processor.process() calls or all of them returned True
+     */
+    public boolean processSubtypes(@NotNull PascalStructType type, boolean recursive, @NotNull Processor<? super PascalStructType> processor) {
+        return process(type, false, recursive, processor);
+    }
+
+    public boolean hasSubtypes(@NotNull PascalStructType type) {
+        return !processSubtypes(type, false, t -> false);
+    }
+
+    /**
+     * Returns True if the type is a descendant of the given ancestor
+     */
+    public boolean isSubtype(@NotNull PascalStructType type, @NotNull PascalStructType ancestor) {
+        Graph g = ensureGraph();
+        int target = g.getId(ancestor);
+        return !processSupertypes(type, true, t -> g.getId(t) != target);
+    }
+
+    /**
+     * Returns those of the given structured types and methods of structured types which have descendants or overriding methods.
+     * Descendants of a type are retrieved once for the type and all its methods. Results are cached until PSI modification.
+     */
+    @NotNull
+    public Set<PasEntityScope> findOverridden(@NotNull Collection<? extends PsiElement> elements) {
+        Graph g = ensureGraph();
+        Map<PascalStructType, List<PascalStructType>> descendants = new HashMap<>();
+        Set<PasEntityScope> result = new SmartHashSet<>();
+        for (PsiElement element : elements) {
+            if (!(element instanceof PasEntityScope)) {
+                continue;
+            }
+            ProgressManager.checkCanceled();
+            String key = getElementKey(element);
+            Boolean overridden = g.overridden.get(key);
+            if (null == overridden) {
+                overridden = calcOverridden((PasEntityScope) element, descendants);
+                g.overridden.put(key, overridden);
+            }
+            if (overridden) {
+                result.add((PasEntityScope) element);
+            }
+        }
+        return result;
+    }
+
+    private boolean calcOverridden(PasEntityScope element, Map<PascalStructType, List<PascalStructType>> descendants) {
+        if (element instanceof PascalStructType) {
+            return hasSubtypes((PascalStructType) element);
+        } else if (((element instanceof PasExportedRoutine) || (element instanceof PasRoutineImplDecl))
+                && (element.getContainingScope() instanceof PascalStructType)) {
+            PascalRoutine routine = (PascalRoutine) element;
+            if (routine instanceof PasRoutineImplDecl) {
+                PsiElement decl = SectionToggle.retrieveDeclaration(routine, false);
+                if (!(decl instanceof PasExportedRoutine)) {
+                    return false;
+                }
+                routine = (PascalRoutine) decl;
+            }
+            PascalStructType struct = PsiUtil.getStructByElement(routine);
+            if (null == struct) {
+                return false;
+            }
+            List<PascalStructType> subtypes = descendants.get(struct);
+            if (null == subtypes) {
+                subtypes = new ArrayList<>();
+                processSubtypes(struct, true, new CommonProcessors.CollectProcessor<>(subtypes));
+                descendants.put(struct, subtypes);
+            }
+            for (PascalStructType subtype : subtypes) {
+                if (!GotoSuper.extractMethodsByName(subtype, routine, false, 0, method -> false)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean process(PascalStructType type, boolean up, boolean recursive, Processor<? super PascalStructType> processor) {
+        Graph g = ensureGraph();
+        int start = g.getId(type);
+        BitSet visited = new BitSet();
+        visited.set(start);
+        int[] queue = new int[] {start};
+        int head = 0, tail = 1;
+        while (head < tail) {
+            int id = queue[head++];
+            PascalStructType current = g.getElement(id);
+            if (null == current) {
+                continue;
+            }
+            for (int next : up ? g.getSupertypes(id, current) : g.getSubtypes(id, current)) {
+                if (visited.get(next)) {
+                    continue;
+                }
+                visited.set(next);
+                PascalStructType element = g.getElement(next);
+                if ((element != null) && !processor.process(element)) {
+                    return false;
+                }
+                if (recursive) {
+                    if (tail == queue.length) {
+                        queue = Arrays.copyOf(queue, tail * 2);
+                    }
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return true;
+    }
+
+    private Graph ensureGraph() {
+        long stamp = PsiManager.getInstance(project).getModificationTracker().getModificationCount();
+        Graph g = graph;
+        if (g.stamp != stamp) {
+            g = new Graph(stamp);
+            graph = g;
+        }
+        return g;
+    }
+
+    private static String getNodeKey(PascalStructType type) {
+        PsiFile file = type.getContainingFile();
+        VirtualFile virtualFile = file != null ? file.getVirtualFile() : null;
+        String key = ResolveUtil.cleanupName(type.getUniqueName()).toUpperCase();
+        return virtualFile != null ? key + "@" + virtualFile.getPath() : key + "@" + type.getTextOffset();
+    }
+
+    // Offsets don't change while a graph is in use as it's dropped on any PSI modification
+    private static String getElementKey(PsiElement element) {
+        PsiFile file = element.getContainingFile();
+        VirtualFile virtualFile = file != null ? file.getVirtualFile() : null;
+        return (virtualFile != null ? virtualFile.getPath() : String.valueOf(file)) + "@" + element.getTextOffset();
+    }
+
+    private List<PascalStructType> findSubtypes(PascalStructType parent) {
+        String key = PascalInheritanceIndex.getKey(parent.getName());
+        List<PascalStructType> result = new SmartList<>();
+        if (key.isEmpty()) {
+            return result;
+        }
+        GlobalSearchScope scope = PascalClassByNameContributor.getScope(project, true);
+        for (PascalStructType type : StubIndex.getElements(PascalInheritanceIndex.KEY, key, project, scope, PascalStructType.class)) {
+            for (String parentName : type.getParentNames()) {
+                if (key.equals(PascalInheritanceIndex.getKey(parentName)) && elementsEqual(parent, resolveParent(parent, type, parentName))) {
+                    result.add(type);
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static List<PascalStructType> findSupertypes(PascalStructType type) {
+        List<PascalStructType> result = new SmartList<>();
+        for (PasEntityScope parent : PsiUtil.extractSmartPointers(type.getParentScope())) {
+            if ((parent instanceof PascalStructType) && (parent != type)) {
+                result.add((PascalStructType) parent);
+            }
+        }
+        return result;
+    }
+
+    private boolean elementsEqual(PascalStructType struct, PasEntityScope resolved) {
+        return (resolved != null) &&
+                (PsiManager.getInstance(project).areElementsEquivalent(struct, resolved)
+                        || struct.getUniqueName().equalsIgnoreCase(ResolveUtil.cleanupName(resolved.getUniqueName())));
+    }
+
+    private static PasEntityScope resolveParent(PascalStructType parent, PascalStructType descendant, String name) {
+        ResolveContext ctx = new ResolveContext(descendant, PasField.TYPES_TYPE, PsiUtil.isFromLibrary(parent), null, ModuleUtil.retrieveUnitNamespaces(descendant));
+        NamespaceRec rec = NamespaceRec.fromFQN(descendant, name);
+        AtomicReference<PasEntityScope> result = new AtomicReference<>();
+        Resolve.resolveExpr(rec, ctx, (originalScope, scope, field, type) -> {
+            PascalNamedElement el = field.getElement();
+            if (el instanceof PasGenericTypeIdent) {
+                result.set(PasReferenceUtil.resolveTypeScope(NamespaceRec.fromFQN(el, name), null, PsiUtil.isFromLibrary(parent)));
+                return false;
+            } else if (ResolveUtil.isStubPowered(el)) {
+                final ResolveContext ctx2 = new ResolveContext(StubUtil.retrieveScope((PascalStubElement) el), PasField.TYPES_TYPE, PsiUtil.isFromLibrary(parent), null, ctx.unitNamespaces);
+                PasField.ValueType types = ResolveUtil.resolveTypeWithStub((PascalStubElement) el, ctx2, 0);
+                if (types != null) {
+                    result.set(types.getTypeScopeStub());
+                    return false;
+                }
+            }
+            return true;
+        });
+        return result.get();
+    }
+
+    // Nodes and edges computed since the last PSI modification. Edges are computed outside of the lock and published under it.
+    private class Graph {
+        private final long stamp;
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<SmartPsiElementPointer<PascalStructType>> elements = new ArrayList<>();
+        private int[][] supertypes = new int[16][];
+        private int[][] subtypes = new int[16][];
+        // Keyed by element location to not hold PSI
+        private final Map<String, Boolean> overridden = new ConcurrentHashMap<>();
+
+        private Graph(long stamp) {
+            this.stamp = stamp;
+        }
+
+        synchronized int getId(@NotNull PascalStructType type) {
+            String key = getNodeKey(type);
+            Integer id = ids.get(key);
+            if (null == id) {
+                id = elements.size();
+                ids.put(key, id);
+                elements.add(PsiUtil.createSmartPointer(type));
+                if (id == supertypes.length) {
+                    supertypes = Arrays.copyOf(supertypes, id * 2);
+                    subtypes = Arrays.copyOf(subtypes, id * 2);
+                }
+            }
+            return id;
+        }
+
+        @Nullable
+        PascalStructType getElement(int id) {
+            SmartPsiElementPointer<PascalStructType> pointer;
+            synchronized (this) {
+                pointer = elements.get(id);
+            }
+            PsiElement element = pointer.getElement();
+            return element instanceof PascalStructType ? (PascalStructType) element : null;
+        }
+
+        List<PascalStructType> getElements(int[] ids) {
+            List<PascalStructType> result = new SmartList<>();
+            for (int id : ids) {
+                PascalStructType element = getElement(id);
+                if (element != null) {
+                    result.add(element);
+                }
+            }
+            return result;
+        }
+
+        int[] getSupertypes(int id, PascalStructType type) {
+            int[] result = getEdges(true, id);
+            if (null == result) {
+                result = toIds(findSupertypes(type));
+                setEdges(true, id, result);
+            }
+            return result;
+        }
+
+        int[] getSubtypes(int id, PascalStructType type) {
+            int[] result = getEdges(false, id);
+            if (null == result) {
+                result = toIds(findSubtypes(type));
+                setEdges(false, id, result);
+            }
+            return result;
+        }
+
+        private int[] toIds(List<PascalStructType> types) {
+            if (types.isEmpty()) {
+                return NO_IDS;
+            }
+            int[] result = new int[types.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = getId(types.get(i));
+            }
+            return result;
+        }
+
+        private synchronized int[] getEdges(boolean up, int id) {
+            return (up ? supertypes : subtypes)[id];
+        }
+
+        private synchronized void setEdges(boolean up, int id, int[] value) {
+            (up ? supertypes : subtypes)[id] = value;
+        }
+    }
+}
@@ -0,0 +1,658 @@
+package com.siberika.idea.pascal.lang.stub;
+
+import com.intellij.lang.LighterAST;
+import com.intellij.lang.LighterASTNode;
+import com.intellij.lang.LightTreeUtil;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.Pair;
+import com.intellij.psi.TokenType;
+import com.intellij.psi.tree.IElementType;
+import com.intellij.psi.tree.TokenSet;
+import com.intellij.util.SmartList;
+import com.siberika.idea.pascal.lang.lexer.PascalLexer;
+import com.siberika.idea.pascal.lang.psi.PasTypes;
+import com.siberika.idea.pascal.lang.psi.PascalModule;
+import com.siberika.idea.pascal.lang.psi.PascalNamedElement;
+import com.siberika.idea.pascal.lang.psi.field.Flag;
+import com.siberika.idea.pascal.lang.psi.field.ParamModifier;
+import com.siberika.idea.pascal.lang.psi.impl.PasField;
+import com.siberika.idea.pascal.lang.psi.impl.RoutineUtil;
+import com.siberika.idea.pascal.lang.references.ResolveUtil;
+import com.siberika.idea.pascal.util.StrUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Calculates stub data from LighterAST so stubs can be built during indexing without creating AST and PSI.
+ * Each method mirrors the PSI based calculation referenced in its comment and should be kept in sync with it.
+ */
+public class LightStubUtil {
+
+    private static final Logger LOG = Logger.getInstance(LightStubUtil.class);
+
+    public static final TokenSet STRUCT_TYPES = TokenSet.create(PasTypes.CLASS_TYPE_DECL, PasTypes.CLASS_HELPER_DECL, PasTypes.INTERFACE_TYPE_DECL,
+            PasTypes.OBJECT_DECL, PasTypes.RECORD_HELPER_DECL, PasTypes.RECORD_DECL);
+    public static final TokenSet ROUTINE_IMPL_TYPES = TokenSet.create(PasTypes.ROUTINE_IMPL_DECL, PasTypes.ROUTINE_IMPL_DECL_NESTED_1,
+            PasTypes.ROUTINE_IMPL_DECL_WO_NESTED, PasTypes.CLOSURE_ROUTINE);
+    // Element types of PasEntityScope implementations
+    private static final TokenSet SCOPE_TYPES = TokenSet.orSet(STRUCT_TYPES, ROUTINE_IMPL_TYPES, TokenSet.create(PasTypes.MODULE, PasTypes.EXPORTED_ROUTINE));
+    // Element types of PascalNamedElement implementations
+    private static final TokenSet NAMED_TYPES = TokenSet.create(PasTypes.UNIT_MODULE_HEAD, PasTypes.LIBRARY_MODULE_HEAD, PasTypes.PACKAGE_MODULE_HEAD,
+            PasTypes.PROGRAM_MODULE_HEAD, PasTypes.NAMED_IDENT, PasTypes.NAMED_IDENT_DECL, PasTypes.GENERIC_TYPE_IDENT, PasTypes.SUB_IDENT,
+            PasTypes.OPERATOR_SUB_IDENT, PasTypes.REF_NAMED_IDENT, PasTypes.KEYWORD_IDENT, PasTypes.ESCAPED_IDENT, PasTypes.NAMESPACE_IDENT,
+            PasTypes.FULLY_QUALIFIED_IDENT, PasTypes.CLASS_QUALIFIED_IDENT, PasTypes.IN_OPERATOR_QUALIFIED_IDENT, PasTypes.CONST_DECLARATION);
+    private static final TokenSet QUALIFIED_TYPES = TokenSet.create(PasTypes.NAMESPACE_IDENT, PasTypes.FULLY_QUALIFIED_IDENT,
+            PasTypes.CLASS_QUALIFIED_IDENT, PasTypes.IN_OPERATOR_QUALIFIED_IDENT);
+    private static final TokenSet SUB_IDENT_TYPES = TokenSet.create(PasTypes.SUB_IDENT, PasTypes.OPERATOR_SUB_IDENT);
+    // Element types of PascalVariableDeclaration implementations
+    private static final TokenSet VARIABLE_DECL_TYPES = TokenSet.create(PasTypes.VAR_DECLARATION, PasTypes.FORMAL_PARAMETER, PasTypes.CLASS_FIELD,
+            PasTypes.INLINE_VAR_DECLARATION, PasTypes.FOR_INLINE_DECLARATION);
+    private static final TokenSet TYPED_DECL_TYPES = TokenSet.orSet(VARIABLE_DECL_TYPES, TokenSet.create(PasTypes.CLASS_PROPERTY, PasTypes.CONST_DECLARATION));
+    private static final TokenSet EXPORTABLE_DECL_TYPES = TokenSet.create(PasTypes.VAR_DECLARATION, PasTypes.CONST_DECLARATION,
+            PasTypes.TYPE_DECLARATION, PasTypes.EXPORTS_SECTION);
+    private static final TokenSet CONST_EXPRESSION_TYPES = TokenSet.create(PasTypes.CONST_EXPRESSION, PasTypes.CONST_EXPRESSION_ORD);
+    private static final TokenSet MODULE_HEAD_TYPES = TokenSet.create(PasTypes.UNIT_MODULE_HEAD, PasTypes.LIBRARY_MODULE_HEAD, PasTypes.PACKAGE_MODULE_HEAD);
+    private static final TokenSet WS_COMMENTS = TokenSet.orSet(TokenSet.create(TokenType.WHITE_SPACE), PascalLexer.COMMENTS);
+
+    // PascalNamedStubElement.getName()
+    @NotNull
+    public static String getName(@NotNull LighterAST tree, @NotNull LighterASTNode node) {
+        if (node.getTokenType() == PasTypes.OPERATOR_SUB_IDENT) {
+            return getText(tree, node);
+        }
+        LighterASTNode nameNode = findNameNode(tree, node);
+        if (null == nameNode) {
+            return "";
+        }
+        return QUALIFIED_TYPES.contains(nameNode.getTokenType()) ? getQualifiedName(tree, nameNode) : getText(tree, nameNode);
+    }
+
+    // PascalHelperNamed.calcNameElement()
+    @Nullable
+    private static LighterASTNode findNameNode(LighterAST tree, LighterASTNode node) {
+        if (QUALIFIED_TYPES.contains(node.getTokenType()) || (node.getTokenType() == PasTypes.OPERATOR_SUB_IDENT)) {
+            return node;
+        }
+        LighterASTNode result = LightTreeUtil.firstChildOfType(tree, node, PasTypes.NAMESPACE_IDENT);
+        if (null == result) {
+            LighterASTNode namedChild = LightTreeUtil.firstChildOfType(tree, node, NAMED_TYPES);
+            result = namedChild != null ? findNameNode(tree, namedChild) : null;
+        }
+        if (null == result) {
+            result = LightTreeUtil.firstChildOfType(tree, node, PascalNamedElement.NAME_TYPE_SET);
+        }
+        return result;
+    }
+
+    // PascalQualifiedIdent name: names of sub idents separated by dots
+    @NotNull
+    private static String getQualifiedName(LighterAST tree, LighterASTNode node) {
+        StringBuilder sb = new StringBuilder();
+        for (LighterASTNode subIdent : LightTreeUtil.getChildrenOfType(tree, node, SUB_IDENT_TYPES)) {
+            if (sb.length() > 0) {
+                sb.append(".");
+            }
+            sb.append(getName(tree, subIdent));
+        }
+        return sb.toString();
+    }
+
+    // PasTypeID.getFullyQualifiedIdent().getName()
+    @NotNull
+    private static String getTypeIdName(LighterAST tree, LighterASTNode typeId) {
+        LighterASTNode fqn = LightTreeUtil.firstChildOfType(tree, typeId, PasTypes.FULLY_QUALIFIED_IDENT);
+        return fqn != null ? getQualifiedName(tree, fqn) : "";
+    }
+
+    @NotNull
+    static String getText(LighterAST tree, LighterASTNode node) {
+        return LightTreeUtil.toFilteredString(tree, node, null);
+    }
+
+    // PsiUtil.getNearestAffectingScope()
+    @Nullable
+    static LighterASTNode getNearestScope(@NotNull LighterAST tree, @NotNull LighterASTNode node) {
+        if (findParentOfType(tree, node, TokenSet.create(PasTypes.CLASS_PARENT)) != null) {                 // Don't search for a struct parent IDs in this struct
+            LighterASTNode struct = findParentOfType(tree, node, STRUCT_TYPES);
+            node = struct != null ? struct : node;
+        }
+        return findParentOfType(tree, node, SCOPE_TYPES);
+    }
+
+    /**
+     * Returns True if the node is declared within a routine implementation
+     */
+    public static boolean isInsideRoutineImpl(@NotNull LighterAST tree, @NotNull LighterASTNode node) {
+        LighterASTNode scope = getNearestScope(tree, node);
+        while (scope != null) {
+            if (ROUTINE_IMPL_TYPES.contains(scope.getTokenType())) {
+                return true;
+            }
+            scope = getNearestScope(tree, scope);
+        }
+        return false;
+    }
+
+    // PascalModuleImpl.getModuleType()
+    @NotNull
+    public static PascalModule.ModuleType getModuleType(@NotNull LighterAST tree, @NotNull LighterASTNode module) {
+        LighterASTNode head = LightTreeUtil.firstChildOfType(tree, module, MODULE_HEAD_TYPES);
+        if (null == head) {
+            return PascalModule.ModuleType.PROGRAM;
+        } else if (head.getTokenType() == PasTypes.UNIT_MODULE_HEAD) {
+            return PascalModule.ModuleType.UNIT;
+        } else if (head.getTokenType() == PasTypes.LIBRARY_MODULE_HEAD) {
+            return PascalModule.ModuleType.LIBRARY;
+        }
+        return PascalModule.ModuleType.PACKAGE;
+    }
+
+    // PascalModuleImpl.getUsedUnitsPublic()
+    @NotNull
+    public static List<String> getUsedUnitsPublic(@NotNull LighterAST tree, @NotNull LighterASTNode module) {
+        LighterASTNode intf = findDescendantOfType(tree, module, PasTypes.UNIT_INTERFACE);
+        return getUsedUnits(tree, intf != null ? LightTreeUtil.firstChildOfType(tree, intf, PasTypes.USES_CLAUSE) : null);
+    }
+
+    // PascalModuleImpl.getUsedUnitsPrivate()
+    @NotNull
+    public static List<String> getUsedUnitsPrivate(@NotNull LighterAST tree, @NotNull LighterASTNode module) {
+        LighterASTNode impl = findDescendantOfType(tree, module, PasTypes.UNIT_IMPLEMENTATION);
+        LighterASTNode uses = impl != null ? LightTreeUtil.firstChildOfType(tree, impl, PasTypes.USES_CLAUSE) : findDescendantOfType(tree, module, PasTypes.USES_CLAUSE);
+        return getUsedUnits(tree, uses);
+    }
+
+    // PsiUtil.getUsedUnits(): names in reverse order
+    private static List<String> getUsedUnits(LighterAST tree, LighterASTNode usesClause) {
+        List<String> result = new SmartList<>();
+        if (usesClause != null) {
+            List<LighterASTNode> idents = LightTreeUtil.getChildrenOfType(tree, usesClause, PasTypes.NAMESPACE_IDENT);
+            for (int i = idents.size() - 1; i >= 0; i--) {
+                result.add(getQualifiedName(tree, idents.get(i)));
+            }
+        }
+        return result;
+    }
+
+    // PascalNamedStubElement.calcIsExported() for identifiers and structured types
+    public static boolean isExported(@NotNull LighterAST tree, @NotNull LighterASTNode node) {
+        LighterASTNode parent = tree.getParent(node);
+        if ((parent != null) && ((parent.getTokenType() == PasTypes.TYPE_DECL) || (parent.getTokenType() == PasTypes.GENERIC_TYPE_IDENT))) {
+            parent = tree.getParent(parent);
+        }
+        if (null == parent) {
+            return false;
+        }
+        if (EXPORTABLE_DECL_TYPES.contains(parent.getTokenType())) {
+            LighterASTNode section = tree.getParent(parent);
+            LighterASTNode sectionParent = section != null ? tree.getParent(section) : null;
+            return (sectionParent != null) && (sectionParent.getTokenType() == PasTypes.UNIT_INTERFACE);
+        }
+        LighterASTNode scope = getNearestScope(tree, parent);
+        if (null == scope) {
+            return false;
+        } else if (scope.getTokenType() == PasTypes.MODULE) {
+            return (getModuleType(tree, scope) == PascalModule.ModuleType.UNIT) && (findParentOfType(tree, parent, TokenSet.create(PasTypes.UNIT_INTERFACE)) != null);
+        } else if (STRUCT_TYPES.contains(scope.getTokenType())) {
+            return isExported(tree, scope);
+        }
+        return false;
+    }
+
+    // PascalExportedRoutineImpl.calcIsExported()
+    public static boolean isRoutineExported(@NotNull LighterAST tree, @NotNull LighterASTNode routine) {
+        LighterASTNode parent = tree.getParent(routine);
+        if (null == parent) {
+            return false;
+        } else if (STRUCT_TYPES.contains(parent.getTokenType())) {
+            return isExported(tree, parent);
+        }
+        return parent.getTokenType() == PasTypes.UNIT_INTERFACE;
+    }
+
+    // ===== Identifiers =====
+
+    // PsiUtil.getFieldType()
+    @NotNull
+    public static PasField.FieldType getIdentFieldType(@NotNull LighterAST tree, @NotNull LighterASTNode ident) {
+        LighterASTNode parent = tree.getParent(ident);
+        LighterASTNode typeParent = parent;
+        while ((typeParent != null) && (typeParent.getTokenType() == TokenType.ERROR_ELEMENT)) {
+            typeParent = tree.getParent(typeParent);
+        }
+        IElementType parentType = parent != null ? parent.getTokenType() : null;
+        if ((typeParent != null) && (typeParent.getTokenType() == PasTypes.GENERIC_TYPE_IDENT)) {
+            return PasField.FieldType.TYPE;
+        } else if ((parentType == PasTypes.CONST_DECLARATION) || (parentType == PasTypes.ENUM_TYPE)) {
+            return PasField.FieldType.CONSTANT;
+        } else if (parentType == PasTypes.CLASS_PROPERTY) {
+            return PasField.FieldType.PROPERTY;
+        }
+        return PasField.FieldType.VARIABLE;
+    }
+
+    // ResolveUtil.retrieveDeclarationType()
+    @Nullable
+    public static Pair<String, PasField.Kind> retrieveDeclarationType(@NotNull LighterAST tree, @NotNull LighterASTNode ident) {
+        LighterASTNode parent = tree.getParent(ident);
+        if (null == parent) {
+            return null;
+        }
+        LighterASTNode typeDecl = null;
+        LighterASTNode typeId = null;
+        if (TYPED_DECL_TYPES.contains(parent.getTokenType())) {
+            typeDecl = getNextSiblingOfType(tree, ident, PasTypes.TYPE_DECL);
+            if (null == typeDecl) {
+                typeId = getNextSiblingOfType(tree, ident, PasTypes.TYPE_ID);
+            }
+        } else if (parent.getTokenType() == PasTypes.GENERIC_TYPE_IDENT) {
+            typeDecl = getNextSiblingOfType(tree, parent, PasTypes.TYPE_DECL);
+        }
+        return retrieveType(tree, typeDecl, typeId);
+    }
+
+    // ResolveUtil.retrieveType()
+    @Nullable
+    private static Pair<String, PasField.Kind> retrieveType(LighterAST tree, @Nullable LighterASTNode typeDecl, @Nullable LighterASTNode typeId) {
+        if ((null == typeId) && (typeDecl != null)) {
+            typeId = LightTreeUtil.firstChildOfType(tree, typeDecl, PasTypes.TYPE_ID);
+        }
+        if (typeId != null) {
+            return Pair.create(getTypeIdName(tree, typeId), isTypeAlias(tree, typeDecl) ? PasField.Kind.TYPEALIAS : PasField.Kind.TYPEREF);
+        } else if (typeDecl != null) {
+            return retrieveAnonymousType(tree, typeDecl);
+        }
+        return null;
+    }
+
+    // ResolveUtil.retrieveAnonymousType()
+    @Nullable
+    private static Pair<String, PasField.Kind> retrieveAnonymousType(LighterAST tree, LighterASTNode typeDecl) {
+        LighterASTNode type = getFirstChild(tree, typeDecl);
+        if (null == type) {
+            return null;
+        }
+        IElementType elementType = type.getTokenType();
+        if (elementType == PasTypes.CLASS_TYPE_TYPE_DECL) {
+            LighterASTNode typeId = LightTreeUtil.firstChildOfType(tree, type, PasTypes.TYPE_ID);
+            return Pair.create(typeId != null ? getTypeIdName(tree, typeId) : null, PasField.Kind.CLASSREF);
+        } else if (STRUCT_TYPES.contains(elementType) || (elementType == PasTypes.FILE_TYPE)) {
+            return Pair.create(null, PasField.Kind.STRUCT);
+        } else if ((elementType == PasTypes.ARRAY_TYPE) || (elementType == PasTypes.POINTER_TYPE)) {
+            PasField.Kind kind = elementType == PasTypes.ARRAY_TYPE ? PasField.Kind.ARRAY : PasField.Kind.POINTER;
+            Pair<String, PasField.Kind> baseType = retrieveType(tree, LightTreeUtil.firstChildOfType(tree, type, PasTypes.TYPE_DECL), null);
+            if (baseType != null) {
+                return Pair.create(baseType.first, baseType.second != PasField.Kind.STRUCT ? kind : PasField.Kind.STRUCT);
+            } else {
+                return Pair.create(null, kind);
+            }
+        } else if ((elementType == PasTypes.SET_TYPE) || (elementType == PasTypes.PROCEDURE_TYPE)) {
+            Pair<String, PasField.Kind> baseType = retrieveType(tree, LightTreeUtil.firstChildOfType(tree, type, PasTypes.TYPE_DECL), null);
+            return Pair.create(baseType != null ? baseType.first : null, elementType == PasTypes.SET_TYPE ? PasField.Kind.SET : PasField.Kind.PROCEDURE);
+        } else if (elementType == PasTypes.STRING_TYPE) {
+            return Pair.create(getText(tree, type), PasField.Kind.STRING);
+        } else if (elementType == PasTypes.ENUM_TYPE) {
+            return Pair.create(getText(tree, type), PasField.Kind.ENUM);
+        } else if (elementType == PasTypes.SUB_RANGE_TYPE) {
+            return Pair.create(getText(tree, type), PasField.Kind.SUBRANGE);
+        }
+        return null;
+    }
+
+    // PsiUtil.isTypeAlias()
+    private static boolean isTypeAlias(LighterAST tree, @Nullable LighterASTNode typeDecl) {
+        LighterASTNode first = typeDecl != null ? getFirstChild(tree, typeDecl) : null;
+        return (null == first) || (first.getTokenType() != PasTypes.TYPE);
+    }
+
+    // PascalIdentDeclImpl.getAccess()
+    @NotNull
+    public static PasField.Access getIdentAccess(@NotNull LighterAST tree, @NotNull LighterASTNode ident, @NotNull PasField.FieldType type, @Nullable String typeString) {
+        if (type == PasField.FieldType.VARIABLE) {
+            return PasField.Access.READWRITE;
+        } else if (type == PasField.FieldType.CONSTANT) {
+            return (null == typeString) || typeString.trim().isEmpty() ? PasField.Access.READONLY : PasField.Access.READWRITE;
+        } else if (type == PasField.FieldType.PROPERTY) {
+            return getPropertyAccess(tree, tree.getParent(ident));
+        }
+        return PasField.Access.READONLY;
+    }
+
+    private static PasField.Access getPropertyAccess(LighterAST tree, LighterASTNode property) {
+        boolean read = false;
+        boolean write = false;
+        for (LighterASTNode specifier : LightTreeUtil.getChildrenOfType(tree, property, PasTypes.CLASS_PROPERTY_SPECIFIER)) {
+            LighterASTNode first = getFirstChild(tree, specifier);
+            if (first != null) {
+                read |= first.getTokenType() == PasTypes.READ;
+                write |= first.getTokenType() == PasTypes.WRITE;
+            }
+        }
+        if (read) {
+            return write ? PasField.Access.READWRITE : PasField.Access.READONLY;
+        }
+        return write ? PasField.Access.WRITEONLY : PasField.Access.READWRITE;
+    }
+
+    // PascalIdentDeclImpl.getValue()
+    @Nullable
+    public static String getIdentValue(@NotNull LighterAST tree, @NotNull LighterASTNode ident) {
+        LighterASTNode parent = tree.getParent(ident);
+        LighterASTNode value = null;
+        if (parent != null) {
+            if (parent.getTokenType() == PasTypes.VAR_DECLARATION) {
+                value = LightTreeUtil.firstChildOfType(tree, parent, PasTypes.VAR_VALUE_SPEC);
+            } else if (parent.getTokenType() == PasTypes.CONST_DECLARATION) {
+                value = LightTreeUtil.firstChildOfType(tree, parent, CONST_EXPRESSION_TYPES);
+            }
+        }
+        return value != null ? getText(tree, value) : null;
+    }
+
+    // PascalIdentDeclImpl.getSubMembers()
+    @NotNull
+    public static List<String> getIdentSubMembers(@NotNull LighterAST tree, @NotNull LighterASTNode ident, @Nullable PasField.Kind kind) {
+        LighterASTNode parent = tree.getParent(ident);
+        LighterASTNode decl = (kind == PasField.Kind.ENUM) && (parent != null) ? getNextSiblingOfType(tree, parent, PasTypes.TYPE_DECL) : null;
+        LighterASTNode enumDecl = decl != null ? findDescendantOfType(tree, decl, PasTypes.ENUM_TYPE) : null;
+        if (null == enumDecl) {
+            return Collections.emptyList();
+        }
+        List<LighterASTNode> constsList = LightTreeUtil.getChildrenOfType(tree, enumDecl, PasTypes.NAMED_IDENT_DECL);
+        List<String> result = new ArrayList<>(constsList.size());
+        for (LighterASTNode enumConstDecl : constsList) {
+            result.add(getName(tree, enumConstDecl));
+        }
+        return result;
+    }
+
+    // PsiUtil.isDefaultProperty()
+    public static boolean isDefaultProperty(@NotNull LighterAST tree, @NotNull LighterASTNode ident) {
+        LighterASTNode parent = tree.getParent(ident);
+        return (parent != null) && (LightTreeUtil.firstChildOfType(tree, parent, PasTypes.DEFAULT) != null);
+    }
+
+    // ===== Routines =====
+
+    // PascalExportedRoutineImpl.initAllFlags()
+    public static int getRoutineFlags(@NotNull LighterAST tree, @NotNull LighterASTNode routine) {
+        int flags = 0;
+        flags |= flag(Flag.EXPORTED, isRoutineExported(tree, routine));
+        flags |= flag(Flag.CONSTRUCTOR, isConstructor(tree, routine));
+        flags |= flag(Flag.FUNCTION, LightTreeUtil.firstChildOfType(tree, routine, TokenSet.create(PasTypes.FUNCTION, PasTypes.OPERATOR)) != null);
+        for (LighterASTNode directive : LightTreeUtil.getChildrenOfType(tree, routine, PasTypes.FUNCTION_DIRECTIVE)) {
+            String text = getText(tree, directive).toUpperCase();
+            flags |= flag(Flag.OVERLOADED, text.startsWith("OVERLOAD"));
+            flags |= flag(Flag.OVERRIDDEN, text.startsWith("OVERRIDE"));
+            flags |= flag(Flag.ABSTRACT, text.startsWith("ABSTRACT"));
+            flags |= flag(Flag.VIRTUAL, text.startsWith("VIRTUAL") || text.startsWith("DYNAMIC"));
+            flags |= flag(Flag.FINAL, text.startsWith("FINAL"));
+        }
+        return flags;
+    }
+
+    public static int getIdentFlags(@NotNull LighterAST tree, @NotNull LighterASTNode ident) {
+        return flag(Flag.EXPORTED, isExported(tree, ident)) | flag(Flag.DEFAULT_PROPERTY, isDefaultProperty(tree, ident));
+    }
+
+    private static int flag(Flag flag, boolean value) {
+        return value ? 1 << flag.ordinal() : 0;
+    }
+
+    // RoutineUtil.isConstructor()
+    private static boolean isConstructor(LighterAST tree, LighterASTNode routine) {
+        List<LighterASTNode> children = tree.getChildren(routine);
+        int first = skipWsComments(children, 0);
+        if (first >= children.size()) {
+            return false;
+        }
+        IElementType type = children.get(first).getTokenType();
+        if (type == PasTypes.CLASS) {
+            int second = skipWhitespaces(children, first + 1);
+            return (second < children.size()) && (children.get(second).getTokenType() == PasTypes.CONSTRUCTOR);
+        }
+        return type == PasTypes.CONSTRUCTOR;
+    }
+
+    // PascalHelperRoutine.calcFunctionTypeStr()
+    @NotNull
+    public static String getFunctionTypeStr(@NotNull LighterAST tree, @NotNull LighterASTNode routine) {
+        if (isConstructor(tree, routine)) {
+            LighterASTNode scope = getNearestScope(tree, routine);
+            if (null == scope) {
+                return "";
+            }
+            return RoutineUtil.calcCanonicalTypeName(STRUCT_TYPES.contains(scope.getTokenType()) ? getStructName(tree, scope) : getName(tree, scope));
+        }
+        LighterASTNode type = LightTreeUtil.firstChildOfType(tree, routine, PasTypes.TYPE_DECL);
+        LighterASTNode typeId = type != null ? findDescendantOfType(tree, type, PasTypes.TYPE_ID) : null;
+        if (typeId != null) {
+            return getTypeIdName(tree, typeId);
+        }
+        return type != null ? RoutineUtil.calcCanonicalTypeName(getText(tree, type)) : "";
+    }
+
+    // RoutineUtil.calcFormalParameterNames()
+    public static void calcFormalParameters(@NotNull LighterAST tree, @NotNull LighterASTNode routine, List<String> formalParameterNames,
+                                            List<String> formalParameterTypes, List<ParamModifier> formalParameterAccess, List<String> formalParameterValues) {
+        LighterASTNode section = LightTreeUtil.firstChildOfType(tree, routine, PasTypes.FORMAL_PARAMETER_SECTION);
+        if (null == section) {
+            return;
+        }
+        for (LighterASTNode parameter : LightTreeUtil.getChildrenOfType(tree, section, PasTypes.FORMAL_PARAMETER)) {
+            LighterASTNode td = LightTreeUtil.firstChildOfType(tree, parameter, PasTypes.TYPE_DECL);
+            String typeStr = td != null ? getText(tree, td) : "";
+            ParamModifier modifier = calcModifier(tree, LightTreeUtil.firstChildOfType(tree, parameter, PasTypes.PARAM_TYPE));
+            for (LighterASTNode ident : LightTreeUtil.getChildrenOfType(tree, parameter, PasTypes.NAMED_IDENT)) {
+                formalParameterNames.add(getName(tree, ident));
+                formalParameterTypes.add(typeStr);
+                formalParameterAccess.add(modifier);
+            }
+            LighterASTNode value = LightTreeUtil.firstChildOfType(tree, parameter, CONST_EXPRESSION_TYPES);
+            if (value != null) {
+                formalParameterValues.add(getText(tree, value));
+            }
+        }
+    }
+
+    private static ParamModifier calcModifier(LighterAST tree, @Nullable LighterASTNode paramType) {
+        if (paramType != null) {
+            String text = getText(tree, paramType).toUpperCase();
+            if ("CONST".equals(text)) {
+                return ParamModifier.CONST;
+            } else if ("VAR".equals(text)) {
+                return ParamModifier.VAR;
+            } else if ("OUT".equals(text)) {
+                return ParamModifier.OUT;
+            } else if ("CONSTREF".equals(text)) {
+                return ParamModifier.CONSTREF;
+            }
+        }
+        return ParamModifier.NONE;
+    }
+
+    // ===== Structured types =====
+
+    // PasStubStructTypeImpl.getName(): text of type name with generic parameters or empty string for anonymous types
+    @NotNull
+    private static String getStructName(LighterAST tree, LighterASTNode struct) {
+        LighterASTNode nameIdent = getStructNameIdent(tree, struct);
+        return nameIdent != null ? getText(tree, nameIdent) : "";
+    }
+
+    // PasStubStructTypeImpl.getNameIdentifier()
+    @Nullable
+    private static LighterASTNode getStructNameIdent(LighterAST tree, LighterASTNode struct) {
+        LighterASTNode parent = tree.getParent(struct);
+        return parent != null ? getPrevSiblingOfType(tree, parent, PasTypes.GENERIC_TYPE_IDENT) : null;
+    }
+
+    // PasStructDeclStubElementType.calcStubName()
+    @NotNull
+    public static String calcStructStubName(@NotNull LighterAST tree, @NotNull LighterASTNode struct, @NotNull List<String> aliases) {
+        String name = getStructName(tree, struct);
+        if (!name.isEmpty()) {
+            return name + ResolveUtil.STRUCT_SUFFIX;
+        }
+        LighterASTNode decl = retrieveUpperLevelDecl(tree, struct);
+        IElementType declType = decl != null ? decl.getTokenType() : null;
+        if (declType == PasTypes.TYPE_DECLARATION) {
+            LighterASTNode typeIdent = LightTreeUtil.firstChildOfType(tree, decl, PasTypes.GENERIC_TYPE_IDENT);
+            return typeIdent != null ? getName(tree, typeIdent) : "";
+        } else if (VARIABLE_DECL_TYPES.contains(declType)) {
+            List<LighterASTNode> idents = LightTreeUtil.getChildrenOfType(tree, decl, PasTypes.NAMED_IDENT_DECL);
+            if (idents.isEmpty()) {
+                idents = LightTreeUtil.getChildrenOfType(tree, decl, PasTypes.NAMED_IDENT);
+            }
+            for (int i = 1; i < idents.size(); i++) {
+                aliases.add(getName(tree, idents.get(i)) + ResolveUtil.STRUCT_SUFFIX);
+            }
+            return !idents.isEmpty() ? getName(tree, idents.get(0)) + ResolveUtil.STRUCT_SUFFIX : "";
+        } else if (declType == PasTypes.CONST_DECLARATION) {
+            LighterASTNode ident = LightTreeUtil.firstChildOfType(tree, decl, PasTypes.NAMED_IDENT_DECL);
+            return (ident != null ? getName(tree, ident) : "") + ResolveUtil.STRUCT_SUFFIX;
+        }
+        LOG.warn("ERROR: Unexpected anonymous structure parent: " + (decl != null ? getText(tree, decl) : null));
+        return "";
+    }
+
+    private static LighterASTNode retrieveUpperLevelDecl(LighterAST tree, LighterASTNode node) {
+        LighterASTNode parent = tree.getParent(node);
+        parent = parent != null ? tree.getParent(parent) : null;
+        if ((parent != null) && (parent.getTokenType() == PasTypes.ARRAY_TYPE)) {
+            parent = retrieveUpperLevelDecl(tree, parent);
+        }
+        return parent;
+    }
+
+    // PasStubStructTypeImpl.calcParentNames()
+    @NotNull
+    public static List<String> getStructParentNames(@NotNull LighterAST tree, @NotNull LighterASTNode struct) {
+        LighterASTNode classParent = LightTreeUtil.firstChildOfType(tree, struct, PasTypes.CLASS_PARENT);
+        if (null == classParent) {
+            return Collections.emptyList();
+        }
+        List<String> result = new SmartList<>();
+        for (LighterASTNode typeId : LightTreeUtil.getChildrenOfType(tree, classParent, PasTypes.TYPE_ID)) {
+            result.add(getTypeIdName(tree, typeId));
+        }
+        return result;
+    }
+
+    // PasStubStructTypeImpl.getTypeParameters()
+    @NotNull
+    public static List<String> getStructTypeParameters(@NotNull LighterAST tree, @NotNull LighterASTNode struct) {
+        LighterASTNode nameIdent = getStructNameIdent(tree, struct);
+        if (null == nameIdent) {
+            return Collections.emptyList();
+        }
+        List<String> result = new SmartList<>();
+        for (LighterASTNode typeParam : LightTreeUtil.getChildrenOfType(tree, nameIdent, PasTypes.CONSTRAINED_TYPE_PARAM)) {
+            for (LighterASTNode ident : LightTreeUtil.getChildrenOfType(tree, typeParam, PasTypes.NAMED_IDENT)) {
+                result.add(getName(tree, ident));
+            }
+        }
+        return result;
+    }
+
+    // PascalClassHelperDeclImpl.getTarget()
+    @NotNull
+    public static String getHelperTarget(@NotNull LighterAST tree, @NotNull LighterASTNode helper) {
+        LighterASTNode typeId = LightTreeUtil.firstChildOfType(tree, helper, PasTypes.TYPE_ID);
+        return typeId != null ? StrUtil.getNamePart(getTypeIdName(tree, typeId)) : "";
+    }
+
+    // ===== Tree navigation =====
+
+    @Nullable
+    private static LighterASTNode findParentOfType(LighterAST tree, LighterASTNode node, TokenSet types) {
+        LighterASTNode parent = tree.getParent(node);
+        while ((parent != null) && !types.contains(parent.getTokenType())) {
+            parent = tree.getParent(parent);
+        }
+        return parent;
+    }
+
+    // Depth first search excluding the node itself as PsiTreeUtil.findChildOfType() does
+    @Nullable
+    private static LighterASTNode findDescendantOfType(LighterAST tree, LighterASTNode node, IElementType type) {
+        for (LighterASTNode child : tree.getChildren(node)) {
+            if (child.getTokenType() == type) {
+                return child;
+            }
+            LighterASTNode result = findDescendantOfType(tree, child, type);
+            if (result != null) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    private static LighterASTNode getFirstChild(LighterAST tree, LighterASTNode node) {
+        List<LighterASTNode> children = tree.getChildren(node);
+        int index = skipWsComments(children, 0);
+        return index < children.size() ? children.get(index) : null;
+    }
+
+    @Nullable
+    private static LighterASTNode getNextSiblingOfType(LighterAST tree, LighterASTNode node, IElementType type) {
+        LighterASTNode parent = tree.getParent(node);
+        if (null == parent) {
+            return null;
+        }
+        List<LighterASTNode> siblings = tree.getChildren(parent);
+        for (int i = indexOf(siblings, node) + 1; (i > 0) && (i < siblings.size()); i++) {
+            if (siblings.get(i).getTokenType() == type) {
+                return siblings.get(i);
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    private static LighterASTNode getPrevSiblingOfType(LighterAST tree, LighterASTNode node, IElementType type) {
+        LighterASTNode parent = tree.getParent(node);
+        if (null == parent) {
+            return null;
+        }
+        List<LighterASTNode> siblings = tree.getChildren(parent);
+        for (int i = indexOf(siblings, node) - 1; i >= 0; i--) {
+            if (siblings.get(i).getTokenType() == type) {
+                return siblings.get(i);
+            }
+        }
+        return null;
+    }
+
+    // Light nodes can be recreated on each access so they are compared by type and range
+    private static int indexOf(List<LighterASTNode> nodes, LighterASTNode node) {
+        for (int i = 0; i < nodes.size(); i++) {
+            LighterASTNode cur = nodes.get(i);
+            if (cur.equals(node) || ((cur.getTokenType() == node.getTokenType())
+                    && (cur.getStartOffset() == node.getStartOffset()) && (cur.getEndOffset() == node.getEndOffset()))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipWsComments(List<LighterASTNode> nodes, int index) {
+        while ((index < nodes.size()) && WS_COMMENTS.contains(nodes.get(index).getTokenType())) {
+            index++;
+        }
+        return index;
+    }
+
+    // PsiUtil.getNextSibling() skips whitespaces only
+    private static int skipWhitespaces(List<LighterASTNode> nodes, int index) {
+        while ((index < nodes.size()) && (nodes.get(index).getTokenType() == TokenType.WHITE_SPACE)) {
+            index++;
+        }
+        return index;
+    }
+}
@@ -16,7 +16,6 @@ import com.siberika.idea.pascal.lang.psi.impl.PasField;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
-import java.util.Collections;
 import java.util.List;
 
 /**
@@ -27,6 +26,9 @@ public class PasExportedRoutineStubElementType extends ILightStubElementType<Pas
 
     public static PasExportedRoutineStubElementType INSTANCE;
 
+    private static final PasField.Visibility[] VISIBILITIES = PasField.Visibility.values();
+    private static final ParamModifier[] PARAM_MODIFIERS = ParamModifier.values();
+
     public PasExportedRoutineStubElementType(String debugName) {
         super(debugName, PascalLanguage.INSTANCE);
         INSTANCE = this;
@@ -34,8 +36,14 @@ public class PasExportedRoutineStubElementType extends ILightStubElementType<Pas
 
     @Override
     public PasExportedRoutineStub createStub(LighterAST tree, LighterASTNode node, StubElement parentStub) {
-        return new PasExportedRoutineStubImpl(parentStub, "-", PasField.Visibility.PUBLIC, 0,
-                "", "--", null, Collections.emptyList(), null, null);
+        List<String> parameterNames = new SmartList<>();
+        List<String> parameterTypes = new SmartList<>();
+        List<ParamModifier> parameterAccess = new SmartList<>();
+        List<String> parameterValues = new SmartList<>();
+        LightStubUtil.calcFormalParameters(tree, node, parameterNames, parameterTypes, parameterAccess, parameterValues);
+        return new PasExportedRoutineStubImpl(parentStub, LightStubUtil.getName(tree, node), PasField.Visibility.PUBLIC, LightStubUtil.getRoutineFlags(tree, node),
+                StubUtil.getContainingUnitName(parentStub), LightStubUtil.getFunctionTypeStr(tree, node),
+                parameterNames, parameterTypes, parameterAccess, parameterValues);
     }
 
     @Override
@@ -60,33 +68,47 @@ public class PasExportedRoutineStubElementType extends ILightStubElementType<Pas
     public void serialize(@NotNull PasExportedRoutineStub stub, @NotNull StubOutputStream dataStream) throws IOException {
         StubUtil.printStub("PasExpRoutineStub.serialize", stub);
 
+        int mask = StubUtil.unitNameMask(stub) | StubUtil.flagIf(!stub.getFormalParameterNames().isEmpty(), StubUtil.HAS_PARAMETERS)
+                | StubUtil.flagIf(!stub.getFormalParameterValues().isEmpty(), StubUtil.HAS_PARAMETER_VALUES);
+        dataStream.writeVarInt(mask);
         dataStream.writeName(stub.getName());
-        dataStream.writeInt(stub.getFlags());
-        dataStream.writeName(stub.getVisibility().name());
-        dataStream.writeName(stub.getContainingUnitName());
+        dataStream.writeVarInt(stub.getFlags());
+        StubUtil.writeEnum(dataStream, stub.getVisibility());
+        if ((mask & StubUtil.HAS_UNIT_NAME) != 0) {
+            dataStream.writeName(stub.getContainingUnitName());
+        }
         dataStream.writeName(stub.getFunctionTypeStr());
-        StubUtil.writeStringCollection(dataStream, stub.getFormalParameterNames());
-        StubUtil.writeStringCollection(dataStream, stub.getFormalParameterTypes());
-        StubUtil.writeEnumCollection(dataStream, stub.getFormalParameterAccess());
-        StubUtil.writeStringCollection(dataStream, stub.getFormalParameterValues());
+        if ((mask & StubUtil.HAS_PARAMETERS) != 0) {
+            StubUtil.writeStringCollection(dataStream, stub.getFormalParameterNames());
+            StubUtil.writeStringCollection(dataStream, stub.getFormalParameterTypes());
+            StubUtil.writeEnumCollection(dataStream, stub.getFormalParameterAccess());
+        }
+        if ((mask & StubUtil.HAS_PARAMETER_VALUES) != 0) {
+            StubUtil.writeStringCollection(dataStream, stub.getFormalParameterValues());
+        }
     }
 
     @NotNull
     @Override
     public PasExportedRoutineStub deserialize(@NotNull StubInputStream dataStream, StubElement parentStub) throws IOException {
+        int mask = dataStream.readVarInt();
         String name = StubUtil.readName(dataStream);
-        int flags = dataStream.readInt();
-        PasField.Visibility visibility = StubUtil.readEnum(dataStream, PasField.Visibility.class);
-        String containingUnitName = StubUtil.readName(dataStream);
+        int flags = dataStream.readVarInt();
+        PasField.Visibility visibility = StubUtil.readEnum(dataStream, VISIBILITIES);
+        String containingUnitName = StubUtil.readUnitName(dataStream, mask, parentStub);
         String typeStr = StubUtil.readName(dataStream);
         List<String> parameterNames = new SmartList<>();
-        StubUtil.readStringCollection(dataStream, parameterNames);
         List<String> parameterTypes = new SmartList<>();
-        StubUtil.readStringCollection(dataStream, parameterTypes);
         List<ParamModifier> parameterAccess = new SmartList<>();
-        StubUtil.readEnumCollection(dataStream, parameterAccess, ParamModifier.values());
+        if ((mask & StubUtil.HAS_PARAMETERS) != 0) {
+            StubUtil.readStringCollection(dataStream, parameterNames);
+            StubUtil.readStringCollection(dataStream, parameterTypes);
+            StubUtil.readEnumCollection(dataStream, parameterAccess, PARAM_MODIFIERS);
+        }
         List<String> parameterValues = new SmartList<>();
-        StubUtil.readStringCollection(dataStream, parameterValues);
+        if ((mask & StubUtil.HAS_PARAMETER_VALUES) != 0) {
+            StubUtil.readStringCollection(dataStream, parameterValues);
+        }
         return new PasExportedRoutineStubImpl(parentStub, name, visibility, flags, containingUnitName,
                 typeStr, parameterNames, parameterTypes, parameterAccess, parameterValues);
     }
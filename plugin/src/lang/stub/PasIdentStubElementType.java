@@ -3,6 +3,7 @@ package com.siberika.idea.pascal.lang.stub;
 import com.intellij.lang.ASTNode;
 import com.intellij.lang.LighterAST;
 import com.intellij.lang.LighterASTNode;
+import com.intellij.openapi.util.Pair;
 import com.intellij.psi.stubs.ILightStubElementType;
 import com.intellij.psi.stubs.IndexSink;
 import com.intellij.psi.stubs.StubElement;
@@ -26,6 +27,10 @@ public class PasIdentStubElementType extends ILightStubElementType<PasIdentStub,
 
     public static PasIdentStubElementType INSTANCE;
 
+    private static final PasField.FieldType[] FIELD_TYPES = PasField.FieldType.values();
+    private static final PasField.Kind[] KINDS = PasField.Kind.values();
+    private static final PasField.Access[] ACCESSES = PasField.Access.values();
+
     public PasIdentStubElementType(String debugName) {
         super(debugName, PascalLanguage.INSTANCE);
         INSTANCE = this;
@@ -33,9 +38,14 @@ public class PasIdentStubElementType extends ILightStubElementType<PasIdentStub,
 
     @Override
     public PasIdentStub createStub(LighterAST tree, LighterASTNode node, StubElement parentStub) {
-        return new PasIdentStubImpl(parentStub, "-", 0, ".",
-                PasField.FieldType.VARIABLE, null, null,
-                PasField.Access.READWRITE, null, Collections.emptyList());
+        PasField.FieldType type = LightStubUtil.getIdentFieldType(tree, node);
+        Pair<String, PasField.Kind> typeInfo = LightStubUtil.retrieveDeclarationType(tree, node);
+        String typeString = typeInfo != null ? typeInfo.first : null;
+        PasField.Kind kind = typeInfo != null ? typeInfo.second : null;
+        return new PasIdentStubImpl(parentStub, LightStubUtil.getName(tree, node), LightStubUtil.getIdentFlags(tree, node),
+                StubUtil.getContainingUnitName(parentStub), type, typeString, kind,
+                LightStubUtil.getIdentAccess(tree, node, type, typeString), LightStubUtil.getIdentValue(tree, node),
+                LightStubUtil.getIdentSubMembers(tree, node, kind));
     }
 
     @Override
@@ -59,30 +69,48 @@ public class PasIdentStubElementType extends ILightStubElementType<PasIdentStub,
     @Override
     public void serialize(@NotNull PasIdentStub stub, @NotNull StubOutputStream dataStream) throws IOException {
         StubUtil.printStub("PasIdentStub.serialize", stub);
+        int mask = StubUtil.unitNameMask(stub) | StubUtil.flagIf(stub.getTypeString() != null, StubUtil.HAS_TYPE_STRING)
+                | StubUtil.flagIf(stub.getValue() != null, StubUtil.HAS_VALUE)
+                | StubUtil.flagIf(!stub.getSubMembers().isEmpty(), StubUtil.HAS_SUB_MEMBERS);
+        dataStream.writeVarInt(mask);
         dataStream.writeName(stub.getName());
-        dataStream.writeInt(stub.getFlags());
-        dataStream.writeName(stub.getContainingUnitName());
-        dataStream.writeName(stub.getType().name());
-        dataStream.writeName(stub.getTypeString());
-        dataStream.writeName(stub.getTypeKind() != null ? stub.getTypeKind().name() : StubUtil.ENUM_NULL);
-        dataStream.writeName(stub.getAccess().name());
-        dataStream.writeName(stub.getValue());
-        StubUtil.writeStringCollection(dataStream, stub.getSubMembers());
+        dataStream.writeVarInt(stub.getFlags());
+        StubUtil.writeEnum(dataStream, stub.getType());
+        StubUtil.writeEnum(dataStream, stub.getTypeKind());
+        StubUtil.writeEnum(dataStream, stub.getAccess());
+        if ((mask & StubUtil.HAS_UNIT_NAME) != 0) {
+            dataStream.writeName(stub.getContainingUnitName());
+        }
+        if ((mask & StubUtil.HAS_TYPE_STRING) != 0) {
+            dataStream.writeName(stub.getTypeString());
+        }
+        if ((mask & StubUtil.HAS_VALUE) != 0) {
+            dataStream.writeName(stub.getValue());
+        }
+        if ((mask & StubUtil.HAS_SUB_MEMBERS) != 0) {
+            StubUtil.writeStringCollection(dataStream, stub.getSubMembers());
+        }
     }
 
     @NotNull
     @Override
     public PasIdentStub deserialize(@NotNull StubInputStream dataStream, StubElement parentStub) throws IOException {
+        int mask = dataStream.readVarInt();
         String name = StubUtil.readName(dataStream);
-        int flags = dataStream.readInt();
-        String containingUnitName = StubUtil.readName(dataStream);
-        PasField.FieldType type = StubUtil.readEnum(dataStream, PasField.FieldType.class);
-        String typeString = StubUtil.readName(dataStream);
-        PasField.Kind kind = StubUtil.readEnum(dataStream, PasField.Kind.class);
-        PasField.Access access = StubUtil.readEnum(dataStream, PasField.Access.class);
-        String value = StubUtil.readName(dataStream);
-        List<String> subMembers = new SmartList<>();
-        StubUtil.readStringCollection(dataStream, subMembers);
+        int flags = dataStream.readVarInt();
+        PasField.FieldType type = StubUtil.readEnum(dataStream, FIELD_TYPES);
+        PasField.Kind kind = StubUtil.readEnum(dataStream, KINDS);
+        PasField.Access access = StubUtil.readEnum(dataStream, ACCESSES);
+        String containingUnitName = StubUtil.readUnitName(dataStream, mask, parentStub);
+        String typeString = (mask & StubUtil.HAS_TYPE_STRING) != 0 ? StubUtil.readName(dataStream) : null;
+        String value = (mask & StubUtil.HAS_VALUE) != 0 ? StubUtil.readName(dataStream) : null;
+        List<String> subMembers;
+        if ((mask & StubUtil.HAS_SUB_MEMBERS) != 0) {
+            subMembers = new SmartList<>();
+            StubUtil.readStringCollection(dataStream, subMembers);
+        } else {
+            subMembers = Collections.emptyList();
+        }
         return new PasIdentStubImpl(parentStub, name, flags, containingUnitName, type, typeString, kind, access, value, subMembers);
     }
 
@@ -94,6 +122,11 @@ public class PasIdentStubElementType extends ILightStubElementType<PasIdentStub,
         }
     }
 
+    @Override
+    public boolean shouldCreateStub(LighterAST tree, LighterASTNode node, StubElement parentStub) {
+        return !LightStubUtil.isInsideRoutineImpl(tree, node);
+    }
+
     @Override
     public boolean shouldCreateStub(ASTNode node) {
         PasEntityScope scope = PsiUtil.getNearestAffectingScope(node.getPsi());
@@ -14,6 +14,8 @@ public class PasNamedStubBase<T extends PsiElement> extends StubBase<T> {
 
     volatile protected int flags;
 
+    private volatile PasStubMemberTable memberTable;
+
     protected PasNamedStubBase(StubElement parent, IStubElementType elementType, String name, String containingUnitName) {
         super(parent, elementType);
         this.name = name;
@@ -44,6 +46,16 @@ public class PasNamedStubBase<T extends PsiElement> extends StubBase<T> {
 
     }
 
+    // Children are added to a stub after it's created so the table is built on first access when the stub tree is complete
+    public PasStubMemberTable getMemberTable() {
+        PasStubMemberTable table = memberTable;
+        if (null == table) {
+            table = PasStubMemberTable.build(this);
+            memberTable = table;
+        }
+        return table;
+    }
+
     public int getFlags() {
         return flags;
     }
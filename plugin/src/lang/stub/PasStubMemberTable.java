@@ -0,0 +1,246 @@
+package com.siberika.idea.pascal.lang.stub;
+
+import com.intellij.psi.stubs.StubElement;
+import com.siberika.idea.pascal.lang.psi.PascalNamedElement;
+import com.siberika.idea.pascal.lang.psi.PascalRoutine;
+import com.siberika.idea.pascal.lang.psi.impl.PasField;
+import com.siberika.idea.pascal.lang.psi.impl.RoutineUtil;
+import com.siberika.idea.pascal.lang.stub.struct.PasStructStub;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Immutable open addressing hash table of members of a scope stub. Keys are compared case insensitively so lookups don't allocate.
+ * Child stubs are keyed by name, structured types also by aliases and routines also by canonical name.
+ * A module stub is also keyed by its own name as a unit reference.
+ * Routine overloads are indexed by routine name so routine search by reduced name checks only the overloads.
+ * PasField wrappers are created once per entry on first access.
+ */
+public class PasStubMemberTable {
+
+    private static final int[] NO_ENTRIES = new int[0];
+
+    private final PasNamedStub[] stubs;
+    private final String[] aliases;
+    private final AtomicReferenceArray<PasField> fields;
+    private volatile Collection<PasField> allFields;
+
+    // Member name table: key slot -> entry index
+    private final String[] keys;
+    private final int[] keyEntries;
+    // Routine table: routine name slot -> entry indices of overloads
+    private final String[] routineKeys;
+    private final int[][] routineEntries;
+
+    private PasStubMemberTable(List<PasNamedStub> stubs, List<String> aliases) {
+        int size = stubs.size();
+        this.stubs = stubs.toArray(new PasNamedStub[size]);
+        this.aliases = aliases.toArray(new String[size]);
+        this.fields = new AtomicReferenceArray<>(size);
+
+        int routines = 0;
+        for (PasNamedStub stub : this.stubs) {
+            routines += stub instanceof PasExportedRoutineStub ? 1 : 0;
+        }
+        keys = new String[tableSize(size + routines)];
+        keyEntries = new int[keys.length];
+        routineKeys = new String[tableSize(routines)];
+        routineEntries = new int[routineKeys.length][];
+        for (int i = 0; i < size; i++) {
+            put(getEntryName(i), i);
+            if ((null == this.aliases[i]) && (this.stubs[i] instanceof PasExportedRoutineStub)) {
+                PasExportedRoutineStub routine = (PasExportedRoutineStub) this.stubs[i];
+                put(calcCanonicalName(routine), i);
+                putRoutine(routine.getName(), i);
+            }
+        }
+    }
+
+    /**
+     * Builds member table of the scope stub from its children
+     */
+    @NotNull
+    public static PasStubMemberTable build(@NotNull StubElement<?> scopeStub) {
+        List<PasNamedStub> stubs = new ArrayList<>(scopeStub.getChildrenStubs().size() + 1);
+        List<String> aliases = new ArrayList<>(scopeStub.getChildrenStubs().size() + 1);
+        if (scopeStub instanceof PasModuleStub) {
+            stubs.add((PasNamedStub) scopeStub);
+            aliases.add(null);
+        }
+        for (StubElement child : scopeStub.getChildrenStubs()) {
+            if (!(child instanceof PasNamedStub)) {
+                continue;
+            }
+            stubs.add((PasNamedStub) child);
+            aliases.add(null);
+            if (child instanceof PasStructStub) {
+                List<String> childAliases = ((PasStructStub) child).getAliases();
+                if (childAliases != null) {
+                    for (String alias : childAliases) {
+                        stubs.add((PasNamedStub) child);
+                        aliases.add(alias);
+                    }
+                }
+            }
+        }
+        return new PasStubMemberTable(stubs, aliases);
+    }
+
+    /**
+     * Returns member table of the scope stub. The table is cached in the stub.
+     */
+    @NotNull
+    public static PasStubMemberTable of(@NotNull PasNamedStub scopeStub) {
+        return scopeStub instanceof PasNamedStubBase ? ((PasNamedStubBase) scopeStub).getMemberTable() : build(scopeStub);
+    }
+
+    /**
+     * Returns member with the name, alias or routine canonical name case insensitively. If there are several such members the last one is returned.
+     */
+    @Nullable
+    public PasField getField(@NotNull String name) {
+        int entry = find(keys, keyEntries, name, name.length());
+        return entry >= 0 ? getField(entry) : null;
+    }
+
+    /**
+     * Returns stub of the member found the same way as {@link #getField(String)}
+     */
+    @Nullable
+    public PasNamedStub getStub(@NotNull String name) {
+        int entry = find(keys, keyEntries, name, name.length());
+        return entry >= 0 ? stubs[entry] : null;
+    }
+
+    /**
+     * Returns number of overloads of the routine with the name
+     */
+    public int getRoutineCount(@NotNull String name) {
+        int slot = findSlot(routineKeys, name, name.length());
+        return slot >= 0 ? routineEntries[slot].length : 0;
+    }
+
+    /**
+     * Returns routine which reduced name is equal to the given one case insensitively
+     */
+    @Nullable
+    public PascalRoutine findRoutine(@NotNull String reducedName) {
+        int nameEnd = reducedName.indexOf('(');
+        int slot = findSlot(routineKeys, reducedName, nameEnd >= 0 ? nameEnd : reducedName.length());
+        int[] entries = slot >= 0 ? routineEntries[slot] : NO_ENTRIES;
+        for (int entry : entries) {
+            PascalNamedElement el = getField(entry).getElement();
+            if ((el instanceof PascalRoutine) && reducedName.equalsIgnoreCase(((PascalRoutine) el).getReducedName())) {
+                return (PascalRoutine) el;
+            }
+        }
+        return null;
+    }
+
+    @NotNull
+    public Collection<PasField> getAllFields() {
+        Collection<PasField> result = allFields;
+        if (null == result) {
+            PasField[] all = new PasField[stubs.length];
+            for (int i = 0; i < all.length; i++) {
+                all[i] = getField(i);
+            }
+            result = Collections.unmodifiableList(Arrays.asList(all));
+            allFields = result;
+        }
+        return result;
+    }
+
+    public int size() {
+        return stubs.length;
+    }
+
+    private PasField getField(int entry) {
+        PasField field = fields.get(entry);
+        if (null == field) {
+            field = new PasField(stubs[entry], aliases[entry]);
+            if (!fields.compareAndSet(entry, null, field)) {
+                field = fields.get(entry);
+            }
+        }
+        return field;
+    }
+
+    private String getEntryName(int entry) {
+        return aliases[entry] != null ? aliases[entry] : stubs[entry].getName();
+    }
+
+    private static String calcCanonicalName(PasExportedRoutineStub stub) {
+        return RoutineUtil.calcCanonicalName(stub.getName(), stub.getFormalParameterNames(), stub.getFormalParameterTypes(),
+                stub.getFormalParameterAccess(), stub.getFunctionTypeStr(), stub.getFormalParameterValues());
+    }
+
+    private void put(String key, int entry) {
+        if (null == key) {
+            return;
+        }
+        int slot = probe(keys, key, key.length());
+        keys[slot] = key;
+        keyEntries[slot] = entry;
+    }
+
+    private void putRoutine(String name, int entry) {
+        if (null == name) {
+            return;
+        }
+        int slot = probe(routineKeys, name, name.length());
+        int[] entries = routineEntries[slot];
+        if (null == entries) {
+            routineKeys[slot] = name;
+            routineEntries[slot] = new int[] {entry};
+        } else {
+            entries = Arrays.copyOf(entries, entries.length + 1);
+            entries[entries.length - 1] = entry;
+            routineEntries[slot] = entries;
+        }
+    }
+
+    private static int find(String[] table, int[] entries, String key, int length) {
+        int slot = findSlot(table, key, length);
+        return slot >= 0 ? entries[slot] : -1;
+    }
+
+    private static int findSlot(String[] table, String key, int length) {
+        int slot = probe(table, key, length);
+        return table[slot] != null ? slot : -1;
+    }
+
+    // Returns slot with the key or the first empty slot. Tables are never full.
+    private static int probe(String[] table, String key, int length) {
+        int mask = table.length - 1;
+        int slot = hash(key, length) & mask;
+        while ((table[slot] != null) && !matches(table[slot], key, length)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static boolean matches(String stored, String key, int length) {
+        return (stored.length() == length) && stored.regionMatches(true, 0, key, 0, length);
+    }
+
+    private static int hash(String key, int length) {
+        int h = 0;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + Character.toUpperCase(key.charAt(i));
+        }
+        return h ^ (h >>> 16);
+    }
+
+    // Power of two not less than twice the number of keys so load factor is at most 0.5
+    private static int tableSize(int count) {
+        return Integer.highestOneBit(Math.max(count, 1) * 2 - 1) << 1;
+    }
+}
@@ -0,0 +1,43 @@
+package com.siberika.idea.pascal.lang.stub;
+
+import com.intellij.psi.stubs.StringStubIndexExtension;
+import com.intellij.psi.stubs.StubIndexKey;
+import com.siberika.idea.pascal.lang.parser.PascalFileElementType;
+import com.siberika.idea.pascal.lang.psi.PascalStructType;
+import com.siberika.idea.pascal.lang.references.ResolveUtil;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Index of structured types by short names of their parents.
+ * Key is upper cased parent name without namespace, unit name and type arguments so a type can be found by the name of any of its ancestors.
+ */
+public class PascalInheritanceIndex extends StringStubIndexExtension {
+
+    public static final StubIndexKey<String, PascalStructType> KEY =
+            StubIndexKey.createIndexKey("pascal.inheritance");
+
+    @NotNull
+    @Override
+    public StubIndexKey getKey() {
+        return KEY;
+    }
+
+    @Override
+    public int getVersion() {
+        return PascalFileElementType.getStubIndexVersion();
+    }
+
+    /**
+     * Returns index key for the parent name as written in parents list or for the name of a structured type
+     */
+    @NotNull
+    public static String getKey(@NotNull String name) {
+        String result = ResolveUtil.cleanupName(name);
+        int end = result.indexOf('<');
+        if (end >= 0) {
+            result = result.substring(0, end);
+        }
+        int start = Math.max(result.lastIndexOf('.'), result.lastIndexOf(' ')) + 1;
+        return result.substring(start).trim().toUpperCase();
+    }
+}
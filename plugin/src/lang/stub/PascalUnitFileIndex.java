@@ -0,0 +1,189 @@
+package com.siberika.idea.pascal.lang.stub;
+
+import com.intellij.openapi.fileTypes.FileType;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.SmartList;
+import com.intellij.util.indexing.DataIndexer;
+import com.intellij.util.indexing.DefaultFileTypeSpecificInputFilter;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.indexing.FileContent;
+import com.intellij.util.indexing.ID;
+import com.intellij.util.indexing.ScalarIndexExtension;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import com.siberika.idea.pascal.DCUFileType;
+import com.siberika.idea.pascal.PPUFileType;
+import com.siberika.idea.pascal.PascalFileType;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of unit source and compiled files by normalized unit name.
+ * Unit name is the file name without extension in upper case including namespace prefix if any (e.g. SYSTEM.SYSUTILS).
+ * Names with namespace prefix are also indexed by each of their dotted suffixes (e.g. SYSUTILS)
+ * so lookup of a unit within unit namespaces is a single case-insensitive index query instead of probing file name variants.
+ */
+public class PascalUnitFileIndex extends ScalarIndexExtension<String> {
+
+    public static final ID<String, Void> NAME = ID.create("PascalUnitFileIndex");
+
+    private static final int TRUNCATED_NAME_LENGTH = 8;
+    private static final FileType[] UNIT_FILE_TYPES = {PascalFileType.INSTANCE, PPUFileType.INSTANCE, DCUFileType.INSTANCE};
+
+    @NotNull
+    @Override
+    public ID<String, Void> getName() {
+        return NAME;
+    }
+
+    @NotNull
+    @Override
+    public DataIndexer<String, Void, FileContent> getIndexer() {
+        return inputData -> {
+            String name = normalize(inputData.getFile().getNameWithoutExtension());
+            Map<String, Void> result = new HashMap<>();
+            result.put(name, null);
+            for (int i = name.indexOf('.'); i >= 0; i = name.indexOf('.', i + 1)) {
+                if (i < name.length() - 1) {
+                    result.put(name.substring(i + 1), null);
+                }
+            }
+            return result;
+        };
+    }
+
+    @NotNull
+    @Override
+    public KeyDescriptor<String> getKeyDescriptor() {
+        return EnumeratorStringDescriptor.INSTANCE;
+    }
+
+    @Override
+    public int getVersion() {
+        return 1;
+    }
+
+    @NotNull
+    @Override
+    public FileBasedIndex.InputFilter getInputFilter() {
+        return new DefaultFileTypeSpecificInputFilter(UNIT_FILE_TYPES) {
+            @Override
+            public boolean acceptInput(@NotNull VirtualFile file) {
+                return isUnitFile(file);
+            }
+        };
+    }
+
+    @Override
+    public boolean dependsOnFileContent() {
+        return false;
+    }
+
+    @NotNull
+    public static String normalize(@NotNull String unitName) {
+        return unitName.toUpperCase();
+    }
+
+    /**
+     * Returns files of units with exactly the given name (case-insensitive) within the scope
+     * @param fileTypes if not empty only files of the specified types are returned
+     */
+    @NotNull
+    public static Collection<VirtualFile> getFilesByName(@NotNull String unitName, @NotNull GlobalSearchScope scope, FileType...fileTypes) {
+        return findFiles(unitName, Collections.emptyList(), scope, fileTypes);
+    }
+
+    /**
+     * Returns files of the unit with the given name within the scope.
+     * Name longer than 8 characters is also looked up truncated to 8 characters as the compilers do.
+     */
+    @NotNull
+    public static List<VirtualFile> getUnitFiles(@NotNull String unitName, @NotNull GlobalSearchScope scope, FileType...fileTypes) {
+        return getUnitFiles(unitName, Collections.emptyList(), scope, fileTypes);
+    }
+
+    /**
+     * Returns files of the unit with the given name within the scope.
+     * Files named exactly as the unit go first followed by files named as the unit prefixed with one of the namespaces in namespaces order.
+     * Name longer than 8 characters is also looked up truncated to 8 characters as the compilers do.
+     */
+    @NotNull
+    public static List<VirtualFile> getUnitFiles(@NotNull String unitName, @NotNull List<String> namespaces, @NotNull GlobalSearchScope scope, FileType...fileTypes) {
+        List<VirtualFile> result = findFiles(unitName, namespaces, scope, fileTypes);
+        if (unitName.length() > TRUNCATED_NAME_LENGTH) {
+            result.addAll(findFiles(unitName.substring(0, TRUNCATED_NAME_LENGTH), Collections.emptyList(), scope, fileTypes));
+        }
+        return result;
+    }
+
+    @Nullable
+    public static VirtualFile getUnitFile(@NotNull String unitName, @NotNull GlobalSearchScope scope, FileType...fileTypes) {
+        List<VirtualFile> files = getUnitFiles(unitName, scope, fileTypes);
+        return !files.isEmpty() ? files.get(0) : null;
+    }
+
+    private static List<VirtualFile> findFiles(String unitName, List<String> namespaces, GlobalSearchScope scope, FileType...fileTypes) {
+        String key = normalize(unitName);
+        List<VirtualFile> result = new SmartList<>();
+        List<VirtualFile> withNamespace = new SmartList<>();
+        for (VirtualFile file : FileBasedIndex.getInstance().getContainingFiles(NAME, key, scope)) {
+            if (isOfType(file, fileTypes)) {
+                String name = normalize(file.getNameWithoutExtension());
+                if (name.equals(key)) {
+                    result.add(file);
+                } else if (indexOfNamespace(namespaces, name, key) >= 0) {
+                    withNamespace.add(file);
+                }
+            }
+        }
+        withNamespace.sort(Comparator.comparingInt(file -> indexOfNamespace(namespaces, normalize(file.getNameWithoutExtension()), key)));
+        result.addAll(withNamespace);
+        return result;
+    }
+
+    // Returns index of namespace which prefixed with makes the unit name equal to the file name or -1
+    private static int indexOfNamespace(List<String> namespaces, String fileName, String unitName) {
+        int prefixLength = fileName.length() - unitName.length() - 1;
+        if ((prefixLength <= 0) || (fileName.charAt(prefixLength) != '.') || !fileName.endsWith(unitName)) {
+            return -1;
+        }
+        for (int i = 0; i < namespaces.size(); i++) {
+            String namespace = namespaces.get(i);
+            if ((namespace.length() == prefixLength) && fileName.regionMatches(true, 0, namespace, 0, prefixLength)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isOfType(VirtualFile file, FileType[] fileTypes) {
+        if (fileTypes.length == 0) {
+            return true;
+        }
+        for (FileType fileType : fileTypes) {
+            if (fileType == file.getFileType()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isUnitFile(@NotNull VirtualFile file) {
+        String ext = file.getExtension();
+        if (null == ext) {
+            return false;
+        }
+        ext = ext.toLowerCase();
+        return PascalFileType.UNIT_EXTENSIONS.contains(ext)
+                || PPUFileType.INSTANCE.getDefaultExtension().equals(ext)
+                || DCUFileType.INSTANCE.getDefaultExtension().equals(ext);
+    }
+}
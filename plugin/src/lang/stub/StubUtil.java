@@ -8,17 +8,64 @@ import com.siberika.idea.pascal.lang.psi.PasEntityScope;
 import com.siberika.idea.pascal.lang.psi.PascalStubElement;
 import com.siberika.idea.pascal.lang.stub.struct.PasClassDeclStub;
 import com.siberika.idea.pascal.lang.stub.struct.PascalHelperDeclStub;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.util.Collection;
 import java.util.List;
 
+/**
+ * Stub serialization helpers. Enums are stored as ordinals in one byte, sizes and flags as varints.
+ * Strings are stored with writeName() so they are interned by stub name storage.
+ * Optional fields are omitted and their presence is stored in a bit mask written by each stub element type.
+ */
 public class StubUtil {
-    public static final String ENUM_NULL = "-";
 
-    public static <T extends Enum<T>> T readEnum(StubInputStream dataStream, Class<T> clazz) throws IOException {
-        String name = readName(dataStream);
-        return (name != null) && !name.equals(ENUM_NULL) ? T.valueOf(clazz, name) : null;
+    // Presence bits of optional stub fields
+    public static final int HAS_UNIT_NAME = 1;
+    public static final int HAS_TYPE_STRING = 2;
+    public static final int HAS_VALUE = 4;
+    public static final int HAS_SUB_MEMBERS = 8;
+    public static final int HAS_PARENTS = 16;
+    public static final int HAS_ALIASES = 32;
+    public static final int HAS_TYPE_PARAMETERS = 64;
+    public static final int HAS_PARAMETERS = 128;
+    public static final int HAS_PARAMETER_VALUES = 256;
+
+    // Writes ordinal of the enum constant shifted by one so null is written as zero
+    public static void writeEnum(StubOutputStream dataStream, @Nullable Enum value) throws IOException {
+        dataStream.writeByte(value != null ? value.ordinal() + 1 : 0);
+    }
+
+    public static <T extends Enum<T>> T readEnum(StubInputStream dataStream, T[] values) throws IOException {
+        int ordinal = dataStream.readUnsignedByte();
+        return ordinal > 0 ? values[ordinal - 1] : null;
+    }
+
+    public static int flagIf(boolean condition, int flag) {
+        return condition ? flag : 0;
+    }
+
+    /**
+     * Returns name of the module stub from the parent stub chain which is the same as containing unit name of PSI elements
+     */
+    @Nullable
+    public static String getContainingUnitName(@Nullable StubElement parentStub) {
+        StubElement stub = parentStub;
+        while ((stub != null) && !(stub instanceof PasModuleStub)) {
+            stub = stub.getParentStub();
+        }
+        return stub != null ? ((PasModuleStub) stub).getName() : null;
+    }
+
+    // Containing unit name is stored only if it differs from name of the module stub the stub belongs to
+    public static int unitNameMask(PasNamedStub stub) {
+        String name = stub.getContainingUnitName();
+        return flagIf((null == name) || !name.equals(getContainingUnitName(stub.getParentStub())), HAS_UNIT_NAME);
+    }
+
+    public static String readUnitName(StubInputStream dataStream, int mask, StubElement parentStub) throws IOException {
+        return (mask & HAS_UNIT_NAME) != 0 ? readName(dataStream) : getContainingUnitName(parentStub);
     }
 
     public static String readName(StubInputStream dataStream) throws IOException {
@@ -50,14 +97,14 @@ public class StubUtil {
     }
 
     public static void writeStringCollection(StubOutputStream dataStream, Collection<String> collection) throws IOException {
-        dataStream.writeInt(collection.size());
+        dataStream.writeVarInt(collection.size());
         for (String entry : collection) {
             dataStream.writeName(entry);
         }
     }
 
     public static void readStringCollection(StubInputStream dataStream, Collection<String> result) throws IOException {
-        int size = dataStream.readInt();
+        int size = dataStream.readVarInt();
         for (int i = 0; i < size; i++) {
             StringRef ref = dataStream.readName();
             if (ref != null) {
@@ -67,16 +114,16 @@ public class StubUtil {
     }
 
     public static void writeEnumCollection(StubOutputStream dataStream, List<? extends Enum> collection) throws IOException {
-        dataStream.writeInt(collection.size());
+        dataStream.writeVarInt(collection.size());
         for (Enum entry : collection) {
-            dataStream.writeInt(entry.ordinal());
+            dataStream.writeByte(entry.ordinal());
         }
     }
 
     public static <T extends Enum<T>> void readEnumCollection(StubInputStream dataStream, List<T> result, T[] values) throws IOException {
-        int size = dataStream.readInt();
+        int size = dataStream.readVarInt();
         for (int i = 0; i < size; i++) {
-            result.add(values[dataStream.readInt()]);
+            result.add(values[dataStream.readUnsignedByte()]);
         }
     }
 
@@ -92,11 +139,20 @@ public class StubUtil {
 
     public static void serializeHelper(PascalHelperDeclStub stub, StubOutputStream dataStream) throws IOException {
         StubUtil.printStub("serializeHelper", stub);
+        int mask = unitNameMask(stub) | flagIf(!stub.getParentNames().isEmpty(), HAS_PARENTS)
+                | flagIf(!stub.getTypeParameters().isEmpty(), HAS_TYPE_PARAMETERS);
+        dataStream.writeVarInt(mask);
         dataStream.writeName(stub.getName());
-        dataStream.writeName(stub.getContainingUnitName());
-        StubUtil.writeStringCollection(dataStream, stub.getParentNames());
+        if ((mask & HAS_UNIT_NAME) != 0) {
+            dataStream.writeName(stub.getContainingUnitName());
+        }
         dataStream.writeName(stub.getTarget());
-        StubUtil.writeStringCollection(dataStream, stub.getTypeParameters());
+        if ((mask & HAS_PARENTS) != 0) {
+            writeStringCollection(dataStream, stub.getParentNames());
+        }
+        if ((mask & HAS_TYPE_PARAMETERS) != 0) {
+            writeStringCollection(dataStream, stub.getTypeParameters());
+        }
     }
 
 }
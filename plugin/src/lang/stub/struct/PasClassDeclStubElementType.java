@@ -1,14 +1,11 @@
 package com.siberika.idea.pascal.lang.stub.struct;
 
-import com.intellij.lang.LighterAST;
-import com.intellij.lang.LighterASTNode;
 import com.intellij.psi.stubs.StubElement;
 import com.intellij.util.SmartList;
 import com.siberika.idea.pascal.lang.psi.PascalClassDecl;
 import com.siberika.idea.pascal.lang.psi.impl.PasClassTypeDeclImpl;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.Collections;
 import java.util.List;
 
 public class PasClassDeclStubElementType extends PasStructDeclStubElementType<PasClassDeclStub, PascalClassDecl> {
@@ -20,11 +17,6 @@ public class PasClassDeclStubElementType extends PasStructDeclStubElementType<Pa
         INSTANCE = this;
     }
 
-    @Override
-    public PasClassDeclStub createStub(LighterAST tree, LighterASTNode node, StubElement parentStub) {
-        return new PasClassDeclStubImpl(parentStub, "-", ".", Collections.emptyList(), null, INSTANCE, null);
-    }
-
     @Override
     public PascalClassDecl createPsi(@NotNull PasClassDeclStub stub) {
         return new PasClassTypeDeclImpl(stub, this);
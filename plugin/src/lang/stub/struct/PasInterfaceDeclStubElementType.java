@@ -1,14 +1,11 @@
 package com.siberika.idea.pascal.lang.stub.struct;
 
-import com.intellij.lang.LighterAST;
-import com.intellij.lang.LighterASTNode;
 import com.intellij.psi.stubs.StubElement;
 import com.intellij.util.SmartList;
 import com.siberika.idea.pascal.lang.psi.PascalInterfaceDecl;
 import com.siberika.idea.pascal.lang.psi.impl.PasInterfaceTypeDeclImpl;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.Collections;
 import java.util.List;
 
 public class PasInterfaceDeclStubElementType extends PasStructDeclStubElementType<PasInterfaceDeclStub, PascalInterfaceDecl> {
@@ -20,11 +17,6 @@ public class PasInterfaceDeclStubElementType extends PasStructDeclStubElementTyp
         INSTANCE = this;
     }
 
-    @Override
-    public PasInterfaceDeclStub createStub(LighterAST tree, LighterASTNode node, StubElement parentStub) {
-        return new PasInterfaceDeclStubImpl(parentStub, "-", ".", Collections.emptyList(), null, INSTANCE, null);
-    }
-
     @Override
     public PascalInterfaceDecl createPsi(@NotNull PasInterfaceDeclStub stub) {
         return new PasInterfaceTypeDeclImpl(stub, this);
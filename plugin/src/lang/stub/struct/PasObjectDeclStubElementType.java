@@ -1,14 +1,11 @@
 package com.siberika.idea.pascal.lang.stub.struct;
 
-import com.intellij.lang.LighterAST;
-import com.intellij.lang.LighterASTNode;
 import com.intellij.psi.stubs.StubElement;
 import com.intellij.util.SmartList;
 import com.siberika.idea.pascal.lang.psi.PascalObjectDecl;
 import com.siberika.idea.pascal.lang.psi.impl.PasObjectDeclImpl;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.Collections;
 import java.util.List;
 
 public class PasObjectDeclStubElementType extends PasStructDeclStubElementType<PasObjectDeclStub, PascalObjectDecl> {
@@ -20,11 +17,6 @@ public class PasObjectDeclStubElementType extends PasStructDeclStubElementType<P
         INSTANCE = this;
     }
 
-    @Override
-    public PasObjectDeclStub createStub(LighterAST tree, LighterASTNode node, StubElement parentStub) {
-        return new PasObjectDeclStubImpl(parentStub, "-", ".", Collections.emptyList(), null, INSTANCE, null);
-    }
-
     @Override
     public PascalObjectDecl createPsi(@NotNull PasObjectDeclStub stub) {
         return new PasObjectDeclImpl(stub, this);
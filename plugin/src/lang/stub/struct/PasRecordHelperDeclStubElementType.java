@@ -10,6 +10,7 @@ import com.intellij.psi.stubs.StubOutputStream;
 import com.intellij.util.SmartList;
 import com.siberika.idea.pascal.lang.psi.PascalHelperDecl;
 import com.siberika.idea.pascal.lang.psi.impl.PasRecordHelperDeclImpl;
+import com.siberika.idea.pascal.lang.stub.LightStubUtil;
 import com.siberika.idea.pascal.lang.stub.PascalHelperIndex;
 import com.siberika.idea.pascal.lang.stub.PascalSymbolIndex;
 import com.siberika.idea.pascal.lang.stub.StubUtil;
@@ -30,7 +31,10 @@ public class PasRecordHelperDeclStubElementType extends PasStructDeclStubElement
 
     @Override
     public PasHelperDeclStub createStub(LighterAST tree, LighterASTNode node, StubElement parentStub) {
-        return new PasRecordHelperDeclStubImpl(parentStub, "-", ".", "", Collections.emptyList(), null, INSTANCE, null);
+        List<String> aliases = new SmartList<>();
+        String stubName = LightStubUtil.calcStructStubName(tree, node, aliases);
+        return new PasRecordHelperDeclStubImpl(parentStub, stubName, StubUtil.getContainingUnitName(parentStub), LightStubUtil.getHelperTarget(tree, node),
+                LightStubUtil.getStructParentNames(tree, node), aliases, INSTANCE, LightStubUtil.getStructTypeParameters(tree, node));
     }
 
     @Override
@@ -80,6 +84,7 @@ public class PasRecordHelperDeclStubElementType extends PasStructDeclStubElement
         if (StringUtil.isNotEmpty(stub.getTarget())) {
             sink.occurrence(PascalHelperIndex.KEY, stub.getTarget().toUpperCase());
         }
+        indexParents(stub, sink);
     }
 
 }
@@ -1,5 +1,7 @@
 package com.siberika.idea.pascal.lang.stub.struct;
 
+import com.intellij.lang.LighterAST;
+import com.intellij.lang.LighterASTNode;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.stubs.ILightStubElementType;
@@ -16,12 +18,15 @@ import com.siberika.idea.pascal.lang.psi.PascalNamedElement;
 import com.siberika.idea.pascal.lang.psi.PascalStructType;
 import com.siberika.idea.pascal.lang.psi.PascalVariableDeclaration;
 import com.siberika.idea.pascal.lang.references.ResolveUtil;
+import com.siberika.idea.pascal.lang.stub.LightStubUtil;
+import com.siberika.idea.pascal.lang.stub.PascalInheritanceIndex;
 import com.siberika.idea.pascal.lang.stub.PascalStructIndex;
 import com.siberika.idea.pascal.lang.stub.PascalSymbolIndex;
 import com.siberika.idea.pascal.lang.stub.StubUtil;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
 
 public abstract class PasStructDeclStubElementType<StubT extends PasStructStub, PsiT extends PascalStructType> extends ILightStubElementType<StubT, PsiT> {
@@ -39,46 +44,82 @@ public abstract class PasStructDeclStubElementType<StubT extends PasStructStub,
         return null;
     }
 
+    @Override
+    public StubT createStub(LighterAST tree, LighterASTNode node, StubElement parentStub) {
+        List<String> aliases = new SmartList<>();
+        String stubName = LightStubUtil.calcStructStubName(tree, node, aliases);
+        return createStub(parentStub, stubName, StubUtil.getContainingUnitName(parentStub), LightStubUtil.getStructParentNames(tree, node),
+                aliases, LightStubUtil.getStructTypeParameters(tree, node));
+    }
+
     /**unchecked*/
     @Override
     public void serialize(@NotNull StubT stub, @NotNull StubOutputStream dataStream) throws IOException {
         StubUtil.printStub("PasStructDeclStub.serialize", stub);
+        int mask = StubUtil.unitNameMask(stub) | StubUtil.flagIf(!stub.getParentNames().isEmpty(), StubUtil.HAS_PARENTS)
+                | StubUtil.flagIf(!stub.getAliases().isEmpty(), StubUtil.HAS_ALIASES)
+                | StubUtil.flagIf(!stub.getTypeParameters().isEmpty(), StubUtil.HAS_TYPE_PARAMETERS);
+        dataStream.writeVarInt(mask);
         dataStream.writeName(stub.getName());
-        dataStream.writeName(stub.getContainingUnitName());
-        StubUtil.writeStringCollection(dataStream, stub.getParentNames());
-        StubUtil.writeStringCollection(dataStream, stub.getAliases());
-        StubUtil.writeStringCollection(dataStream, stub.getTypeParameters());
+        if ((mask & StubUtil.HAS_UNIT_NAME) != 0) {
+            dataStream.writeName(stub.getContainingUnitName());
+        }
+        if ((mask & StubUtil.HAS_PARENTS) != 0) {
+            StubUtil.writeStringCollection(dataStream, stub.getParentNames());
+        }
+        if ((mask & StubUtil.HAS_ALIASES) != 0) {
+            StubUtil.writeStringCollection(dataStream, stub.getAliases());
+        }
+        if ((mask & StubUtil.HAS_TYPE_PARAMETERS) != 0) {
+            StubUtil.writeStringCollection(dataStream, stub.getTypeParameters());
+        }
     }
 
     @NotNull
     @Override
     public StubT deserialize(@NotNull StubInputStream dataStream, StubElement parentStub) throws IOException {
+        int mask = dataStream.readVarInt();
         String name = StubUtil.readName(dataStream);
-        String containingUnitName = StubUtil.readName(dataStream);
-        List<String> parentNames = new SmartList<>();
-        StubUtil.readStringCollection(dataStream, parentNames);
-        List<String> aliases = new SmartList<>();
-        StubUtil.readStringCollection(dataStream, aliases);
-        List<String> typeParameters = new SmartList<>();
-        StubUtil.readStringCollection(dataStream, typeParameters);
+        String containingUnitName = StubUtil.readUnitName(dataStream, mask, parentStub);
+        List<String> parentNames = readOptionalCollection(dataStream, mask, StubUtil.HAS_PARENTS);
+        List<String> aliases = readOptionalCollection(dataStream, mask, StubUtil.HAS_ALIASES);
+        List<String> typeParameters = readOptionalCollection(dataStream, mask, StubUtil.HAS_TYPE_PARAMETERS);
         return createStub(parentStub, name, containingUnitName, parentNames, aliases, typeParameters);
     }
 
     StubT deserializeHelper(StubInputStream dataStream, StubElement parentStub) throws IOException {
+        int mask = dataStream.readVarInt();
         String name = StubUtil.readName(dataStream);
-        String containingUnitName = StubUtil.readName(dataStream);
-        List<String> parentNames = new SmartList<>();
-        StubUtil.readStringCollection(dataStream, parentNames);
+        String containingUnitName = StubUtil.readUnitName(dataStream, mask, parentStub);
         String target = StubUtil.readName(dataStream);
-        List<String> typeParameters = new SmartList<>();
-        StubUtil.readStringCollection(dataStream, typeParameters);
+        List<String> parentNames = readOptionalCollection(dataStream, mask, StubUtil.HAS_PARENTS);
+        List<String> typeParameters = readOptionalCollection(dataStream, mask, StubUtil.HAS_TYPE_PARAMETERS);
         return createHelperStub(parentStub, name, containingUnitName, parentNames, target, typeParameters);
     }
 
+    private static List<String> readOptionalCollection(StubInputStream dataStream, int mask, int flag) throws IOException {
+        if ((mask & flag) == 0) {
+            return Collections.emptyList();
+        }
+        List<String> result = new SmartList<>();
+        StubUtil.readStringCollection(dataStream, result);
+        return result;
+    }
+
     @Override
     public void indexStub(@NotNull StubT stub, @NotNull IndexSink sink) {
         sink.occurrence(PascalStructIndex.KEY, stub.getUniqueName());
         sink.occurrence(PascalSymbolIndex.KEY, stub.getName());
+        indexParents(stub, sink);
+    }
+
+    static void indexParents(@NotNull PasStructStub stub, @NotNull IndexSink sink) {
+        for (String parentName : stub.getParentNames()) {
+            String key = PascalInheritanceIndex.getKey(parentName);
+            if (!key.isEmpty()) {
+                sink.occurrence(PascalInheritanceIndex.KEY, key);
+            }
+        }
     }
 
     static String calcStubName(PascalStructType psi, List<String> aliases) {
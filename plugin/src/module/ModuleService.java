@@ -8,16 +8,17 @@ import com.intellij.openapi.module.ModuleUtil;
 import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.projectRoots.Sdk;
+import com.intellij.openapi.util.Computable;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.SmartPsiElementPointer;
-import com.intellij.psi.search.FileTypeIndex;
 import com.intellij.psi.search.GlobalSearchScope;
-import com.intellij.util.Processor;
 import com.siberika.idea.pascal.PPUFileType;
+import com.siberika.idea.pascal.jps.sdk.PascalSdkData;
 import com.siberika.idea.pascal.jps.util.SysUtils;
+import com.siberika.idea.pascal.lang.stub.PascalUnitFileIndex;
 import com.siberika.idea.pascal.util.PsiUtil;
-import com.siberika.idea.pascal.util.SyncUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -25,7 +26,6 @@ import java.io.File;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.ReentrantLock;
 
 public class ModuleService implements ModuleComponent {
 
@@ -37,10 +37,11 @@ public class ModuleService implements ModuleComponent {
 
     private final Map<Object, SmartPsiElementPointer> cache = new ConcurrentHashMap<>();
     private long lastClearTime = System.nanoTime();
-    private final ReentrantLock cacheNameFileLock = new ReentrantLock();
     private final Map<String, VirtualFile> cacheNameFileMap = new ConcurrentHashMap<>();
     private long lastClearTimeNameFile = 0;
     private File syntaxCheckTempDir;
+    private final Map<String, SyntaxCheckUnitCache> syntaxCheckUnitCaches = new ConcurrentHashMap<>();
+    private volatile UnitNameTable unitNameTable;
 
     @Override
     public void initComponent() {
@@ -98,8 +99,21 @@ public class ModuleService implements ModuleComponent {
         }
     }
 
-    public VirtualFile getFileByUnitName(String unitName) {
-        return SyncUtil.doWithLock(cacheNameFileLock, () -> cacheNameFileMap.get(unitName));
+    // Returns compiled unit file of the module by unit name looking up unit file index. Found files are cached until TTL expiry.
+    public VirtualFile getFileByUnitName(@NotNull Module module, @NotNull String unitName) {
+        String key = PascalUnitFileIndex.normalize(unitName);
+        VirtualFile result = cacheNameFileMap.get(key);
+        if ((null == result) || !result.isValid()) {
+            if (DumbService.isDumb(module.getProject())) {
+                return null;
+            }
+            result = ApplicationManager.getApplication().runReadAction((Computable<VirtualFile>) () ->
+                    PascalUnitFileIndex.getUnitFile(unitName, GlobalSearchScope.moduleWithDependenciesAndLibrariesScope(module), PPUFileType.INSTANCE));
+            if (result != null) {
+                cacheNameFileMap.put(key, result);
+            }
+        }
+        return result;
     }
 
     public void ensureCache(@Nullable Module module, boolean checkTTL) {
@@ -108,30 +122,34 @@ public class ModuleService implements ModuleComponent {
         }
         long currentTime = System.nanoTime();
         if ((lastClearTimeNameFile == 0) || (checkTTL && ((currentTime - lastClearTimeNameFile) > CACHE_TTL_MS))) {
-            fillCache(module);
-        }
-    }
-
-    private void fillCache(@NotNull Module module) {
-        if (DumbService.isDumb(module.getProject())) {
-            return;
-        }
-        SyncUtil.doWithLock(cacheNameFileLock, () -> {
             cacheNameFileMap.clear();
-            lastClearTimeNameFile = System.nanoTime();;
-            ApplicationManager.getApplication().runReadAction(() -> {
-                FileTypeIndex.processFiles(PPUFileType.INSTANCE, new Processor<VirtualFile>() {
-                    @Override
-                    public boolean process(VirtualFile file) {
-                        cacheNameFileMap.put(file.getNameWithoutExtension(), file);
-                        return true;
-                    }
-                }, GlobalSearchScope.moduleWithDependenciesAndLibrariesScope(module));
-            });
-        });
+            lastClearTimeNameFile = currentTime;
+        }
     }
 
     public File getSyntaxCheckTempDir() {
         return syntaxCheckTempDir;
     }
+
+    // Returns persistent syntax check unit cache of the module for the compiler settings of the SDK
+    public SyntaxCheckUnitCache getSyntaxCheckUnitCache(@NotNull Module module, @NotNull Sdk sdk, @NotNull PascalSdkData sdkData, @NotNull String compiledExt) {
+        return syntaxCheckUnitCaches.computeIfAbsent(SyntaxCheckUnitCache.getProfileKey(module, sdk, sdkData),
+                key -> SyntaxCheckUnitCache.create(module, key, compiledExt));
+    }
+
+    // Returns unit name resolution table of the module
+    @NotNull
+    public UnitNameTable getUnitNameTable(@NotNull Module module) {
+        UnitNameTable table = unitNameTable;
+        if (null == table) {
+            synchronized (this) {
+                table = unitNameTable;
+                if (null == table) {
+                    table = new UnitNameTable(module);
+                    unitNameTable = table;
+                }
+            }
+        }
+        return table;
+    }
 }
@@ -35,6 +35,7 @@ public class PascalModuleOptionsEditor implements ModuleConfigurationEditor {
     private JComponent myComponent;
     private TextFieldWithBrowseButton exePathEdit;
     private JComboBox mainFileCBox;
+    private JTextField buildMatrixEdit;
 
     public PascalModuleOptionsEditor(ModuleConfigurationState state, Module module) {
         assert PascalModuleType.isPascalModule(module);
@@ -78,6 +79,8 @@ public class PascalModuleOptionsEditor implements ModuleConfigurationEditor {
                 new GridBagConstraints(0,0,1,1,0.0, 0.0, GridBagConstraints.NORTHWEST, GridBagConstraints.NONE, new Insets(10, 6, 6, 0), 0, 0));
         panel.add(new JLabel(PascalBundle.message("ui.module.options.editor.exePath.label")),
                 new GridBagConstraints(0,1,1,1,0.0, 0.0, GridBagConstraints.NORTHWEST, GridBagConstraints.NONE, new Insets(10, 6, 6, 0), 0, 0));
+        panel.add(new JLabel(PascalBundle.message("ui.module.options.editor.buildMatrix.label")),
+                new GridBagConstraints(0,2,1,1,0.0, 0.0, GridBagConstraints.NORTHWEST, GridBagConstraints.NONE, new Insets(10, 6, 6, 0), 0, 0));
 
         final ModuleFileIndex index = ModuleRootManager.getInstance(module).getFileIndex();
         final List<VirtualFile> pascalFiles = new ArrayList<VirtualFile>();
@@ -110,6 +113,10 @@ public class PascalModuleOptionsEditor implements ModuleConfigurationEditor {
 
         panel.add(exePathEdit, new GridBagConstraints(1, 1, 1, 1, 1.0, 0.0, GridBagConstraints.NORTHWEST, GridBagConstraints.HORIZONTAL, new Insets(6, 6, 6, 6), 0, 0));
 
+        buildMatrixEdit = new JTextField();
+        buildMatrixEdit.setToolTipText(PascalBundle.message("ui.module.options.editor.buildMatrix.tooltip"));
+        panel.add(buildMatrixEdit, new GridBagConstraints(1, 2, 1, 1, 1.0, 0.0, GridBagConstraints.NORTHWEST, GridBagConstraints.HORIZONTAL, new Insets(6, 6, 6, 6), 0, 0));
+
         return panel;
     }
 
@@ -122,12 +129,14 @@ public class PascalModuleOptionsEditor implements ModuleConfigurationEditor {
     public void apply() throws ConfigurationException {
         PascalModuleType.setMainFile(module, (VirtualFile) mainFileCBox.getSelectedItem());
         PascalModuleType.setExeOutputPath(module, exePathEdit.getText());
+        PascalModuleType.setBuildMatrix(module, buildMatrixEdit.getText());
     }
 
     @Override
     public void reset() {
         mainFileCBox.setSelectedItem(PascalModuleType.getMainFile(module));
         exePathEdit.setText(PascalModuleType.getExeOutputPath(module));
+        buildMatrixEdit.setText(PascalModuleType.getBuildMatrix(module));
     }
 
     @Override
@@ -88,4 +88,13 @@ public class PascalModuleType extends ModuleType<PascalModuleBuilder> {
         module.setOption(JpsPascalModuleType.USERDATA_KEY_EXE_OUTPUT_PATH.toString(), path);
     }
 
+    @Nullable
+    public static String getBuildMatrix(Module module) {
+        return module.getOptionValue(JpsPascalModuleType.USERDATA_KEY_BUILD_MATRIX.toString());
+    }
+
+    public static void setBuildMatrix(Module module, String matrix) {
+        module.setOption(JpsPascalModuleType.USERDATA_KEY_BUILD_MATRIX.toString(), matrix);
+    }
+
 }
@@ -0,0 +1,269 @@
+package com.siberika.idea.pascal.module;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.projectRoots.Sdk;
+import com.intellij.openapi.roots.CompilerModuleExtension;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.siberika.idea.pascal.PascalFileType;
+import com.siberika.idea.pascal.jps.sdk.PascalSdkData;
+import com.siberika.idea.pascal.lang.stub.PascalUnitFileIndex;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent unit output directory used by syntax check of a module with a particular compiler settings profile.
+ * The directory is seeded with compiled units from the module build output and kept across IDE restarts so syntax check
+ * of a unit compiles only that unit. Hash of a unit source is recorded when the unit is seeded from the build output and only if
+ * the compiled file is not older than the source, i.e. the unit was compiled from that source.
+ * A compiled unit is dropped when hash of its source differs from the recorded one or when it has no recorded hash,
+ * i.e. it was produced by the syntax check compiler. Compiles into the cache are serialized with the compile lock.
+ */
+public class SyntaxCheckUnitCache {
+
+    private static final Logger LOG = Logger.getInstance(SyntaxCheckUnitCache.class);
+
+    private static final String CACHE_DIR = "pascal-syntax-check";
+    private static final String MANIFEST = "sources.properties";
+    private static final String OBJECT_EXT = ".o";
+    private static final long VALIDATE_TTL_MS = 5000;
+    private static final long LOCK_POLL_MS = 50;
+
+    private final Module module;
+    private final File unitDir;
+    private final String compiledExt;
+    // Source hash by source path, valid while modification time and length are the same
+    private final Map<String, SourceHash> sourceHashes = new ConcurrentHashMap<>();
+    private long lastValidateTime = 0;
+    private final ReentrantLock compileLock = new ReentrantLock();
+
+    SyntaxCheckUnitCache(@NotNull Module module, @NotNull File unitDir, @NotNull String compiledExt) {
+        this.module = module;
+        this.unitDir = unitDir;
+        this.compiledExt = compiledExt;
+    }
+
+    @NotNull
+    static SyntaxCheckUnitCache create(@NotNull Module module, @NotNull String profileKey, @NotNull String compiledExt) {
+        String moduleKey = module.getName() + "." + Integer.toHexString((module.getProject().getBasePath() + module.getName()).hashCode());
+        File dir = new File(new File(new File(PathManager.getSystemPath(), CACHE_DIR), moduleKey), Integer.toHexString(profileKey.hashCode()));
+        return new SyntaxCheckUnitCache(module, dir, compiledExt);
+    }
+
+    /**
+     * Returns key of compiler settings which affect compiled units. Module build matrix contains module defines and options.
+     */
+    @NotNull
+    static String getProfileKey(@NotNull Module module, @NotNull Sdk sdk, @NotNull PascalSdkData data) {
+        return sdk.getHomePath() + "|" + sdk.getVersionString() + "|" + data.getString(PascalSdkData.Keys.COMPILER_FAMILY)
+                + "|" + data.getString(PascalSdkData.Keys.COMPILER_COMMAND)
+                + "|" + data.getString(PascalSdkData.Keys.COMPILER_OPTIONS)
+                + "|" + data.getString(PascalSdkData.Keys.COMPILER_NAMESPACES)
+                + "|" + PascalModuleType.getBuildMatrix(module);
+    }
+
+    /**
+     * Seeds the cache from the module build output if it has changed and drops compiled units with changed sources
+     * @return unit output directory or null if it can't be created
+     */
+    @Nullable
+    public synchronized File prepare() {
+        if (!unitDir.isDirectory() && !unitDir.mkdirs()) {
+            LOG.info("Can't create syntax check unit cache directory: " + unitDir.getPath());
+            return null;
+        }
+        Properties manifest = loadManifest();
+        boolean changed = seed(manifest);
+        long currentTime = System.currentTimeMillis();
+        if (changed || (currentTime - lastValidateTime > VALIDATE_TTL_MS)) {
+            changed |= validate(manifest);
+            lastValidateTime = currentTime;
+        }
+        if (changed) {
+            saveManifest(manifest);
+        }
+        return unitDir;
+    }
+
+    /**
+     * Waits for the lock serializing compiles into the unit output directory. Stops waiting if the check is canceled.
+     */
+    public void lockCompile() {
+        try {
+            while (!compileLock.tryLock(LOCK_POLL_MS, TimeUnit.MILLISECONDS)) {
+                ProgressManager.checkCanceled();
+            }
+        } catch (InterruptedException e) {
+            throw new ProcessCanceledException();
+        }
+    }
+
+    public void unlockCompile() {
+        compileLock.unlock();
+    }
+
+    /**
+     * Removes compiled files of the unit and its recorded hash. Used after syntax check as the unit was compiled from unsaved text.
+     */
+    public synchronized void evict(@NotNull String unitName) {
+        deleteCompiled(unitName);
+        Properties manifest = loadManifest();
+        if (manifest.remove(unitName.toUpperCase()) != null) {
+            saveManifest(manifest);
+        }
+    }
+
+    // File names are compared ignoring case as the compiler may change case of output files, e.g. FPC lowercases them on Unix
+    private void deleteCompiled(@NotNull String unitName) {
+        String compiledName = unitName + compiledExt;
+        String objectName = unitName + OBJECT_EXT;
+        File[] files = unitDir.listFiles((dir, name) -> name.equalsIgnoreCase(compiledName) || name.equalsIgnoreCase(objectName));
+        for (File file : files != null ? files : new File[0]) {
+            FileUtil.delete(file);
+        }
+    }
+
+    @Nullable
+    File getOutputDir() {
+        CompilerModuleExtension extension = CompilerModuleExtension.getInstance(module);
+        VirtualFile outputPath = extension != null ? extension.getCompilerOutputPath() : null;
+        return outputPath != null ? new File(outputPath.getPath()) : null;
+    }
+
+    // Copies compiled units which are newer in the build output than in the cache and not older than their sources.
+    // Modification time of each file is compared as directory modification time doesn't change when a file is overwritten.
+    private boolean seed(Properties manifest) {
+        File outputDir = getOutputDir();
+        File[] files = outputDir != null ? outputDir.listFiles((dir, name) -> name.endsWith(compiledExt)) : null;
+        boolean changed = false;
+        for (File compiled : files != null ? files : new File[0]) {
+            String unitName = FileUtil.getNameWithoutExtension(compiled);
+            File cached = new File(unitDir, compiled.getName());
+            if (cached.lastModified() >= compiled.lastModified()) {
+                continue;
+            }
+            VirtualFile source = findSource(unitName);
+            String hash = (source != null) && (source.getTimeStamp() <= compiled.lastModified()) ? getHash(source) : null;
+            if (null == hash) {
+                continue;
+            }
+            try {
+                FileUtil.copy(compiled, cached);
+                cached.setLastModified(compiled.lastModified());
+                File object = new File(outputDir, unitName + OBJECT_EXT);
+                if (object.isFile()) {
+                    FileUtil.copy(object, new File(unitDir, object.getName()));
+                }
+                manifest.setProperty(unitName.toUpperCase(), hash);
+                changed = true;
+            } catch (IOException e) {
+                LOG.info("Error seeding syntax check unit cache: " + e.getMessage());
+            }
+        }
+        return changed;
+    }
+
+    // Drops compiled units which sources differ from the ones recorded in manifest.
+    // Units compiled into the cache by the syntax check compiler have no recorded hash and are always dropped
+    // as they might be compiled from sources which differ from the ones on disk.
+    private boolean validate(Properties manifest) {
+        File[] files = unitDir.listFiles((dir, name) -> name.endsWith(compiledExt));
+        boolean changed = false;
+        for (File compiled : files != null ? files : new File[0]) {
+            String unitName = FileUtil.getNameWithoutExtension(compiled);
+            String key = unitName.toUpperCase();
+            String recorded = manifest.getProperty(key);
+            if (recorded != null) {
+                VirtualFile source = findSource(unitName);
+                String hash = source != null ? getHash(source) : null;
+                if ((null == hash) || recorded.equals(hash)) {
+                    continue;
+                }
+                manifest.remove(key);
+                changed = true;
+            }
+            deleteCompiled(unitName);
+        }
+        return changed;
+    }
+
+    @Nullable
+    VirtualFile findSource(String unitName) {
+        return ApplicationManager.getApplication().runReadAction((Computable<VirtualFile>) () -> {
+            Collection<VirtualFile> files = PascalUnitFileIndex.getFilesByName(unitName,
+                    GlobalSearchScope.moduleWithDependenciesAndLibrariesScope(module), PascalFileType.INSTANCE);
+            return !files.isEmpty() ? files.iterator().next() : null;
+        });
+    }
+
+    @Nullable
+    private String getHash(@NotNull VirtualFile source) {
+        SourceHash hash = sourceHashes.get(source.getPath());
+        if ((null == hash) || (hash.stamp != source.getTimeStamp()) || (hash.length != source.getLength())) {
+            try {
+                CRC32 crc = new CRC32();
+                crc.update(source.contentsToByteArray());
+                hash = new SourceHash(source.getTimeStamp(), source.getLength(), Long.toHexString(crc.getValue()));
+                sourceHashes.put(source.getPath(), hash);
+            } catch (IOException e) {
+                LOG.info("Error reading source: " + source.getPath());
+                return null;
+            }
+        }
+        return hash.hash;
+    }
+
+    private Properties loadManifest() {
+        Properties manifest = new Properties();
+        File file = new File(unitDir, MANIFEST);
+        if (file.isFile()) {
+            try (InputStream is = new FileInputStream(file)) {
+                manifest.load(is);
+            } catch (IOException e) {
+                LOG.info("Error loading syntax check unit cache manifest: " + e.getMessage());
+            }
+        }
+        return manifest;
+    }
+
+    private void saveManifest(Properties manifest) {
+        try (OutputStream os = new FileOutputStream(new File(unitDir, MANIFEST))) {
+            manifest.store(os, null);
+        } catch (IOException e) {
+            LOG.info("Error saving syntax check unit cache manifest: " + e.getMessage());
+        }
+    }
+
+    private static class SourceHash {
+        private final long stamp;
+        private final long length;
+        private final String hash;
+
+        private SourceHash(long stamp, long length, String hash) {
+            this.stamp = stamp;
+            this.length = length;
+            this.hash = hash;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.siberika.idea.pascal.module;
+
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.stubs.StubIndex;
+import com.intellij.util.containers.SmartHashSet;
+import com.siberika.idea.pascal.lang.psi.PascalModule;
+import com.siberika.idea.pascal.lang.stub.PascalModuleIndex;
+import com.siberika.idea.pascal.util.ModuleUtil;
+import com.siberika.idea.pascal.util.PsiUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Unit name resolution table of a module. Maps short and dotted unit names to Pascal modules found in stub index
+ * within the module scope, also trying unit namespace prefixes configured in SDK.
+ * Lookups are memoized until project roots (module settings, SDK) or files change. Namespaces are split once per SDK setting value.
+ */
+public class UnitNameTable {
+
+    private final Module module;
+    private final Map<String, Collection<PascalModule>> units = new ConcurrentHashMap<>();
+    private volatile Namespaces namespaces = new Namespaces(null);
+    private volatile long rootsStamp = -1;
+    private volatile long filesStamp = -1;
+
+    UnitNameTable(@NotNull Module module) {
+        this.module = module;
+    }
+
+    /**
+     * Returns unit namespace prefixes configured in SDK of the module
+     */
+    @NotNull
+    public List<String> getNamespaces() {
+        return ensureNamespaces().list;
+    }
+
+    /**
+     * Returns modules with the name or with the name prefixed with one of unit namespaces. Returns empty collection in dumb mode.
+     */
+    @NotNull
+    public Collection<PascalModule> findUnits(@NotNull String name) {
+        Project project = module.getProject();
+        if (DumbService.isDumb(project)) {
+            return Collections.emptyList();
+        }
+        ensureFresh(project);
+        Namespaces ns = ensureNamespaces();
+        String key = name.toUpperCase();
+        Collection<PascalModule> result = units.get(key);
+        if ((null == result) || !isValid(result)) {
+            result = lookup(project, key, ns);
+            units.put(key, result);
+        }
+        return result;
+    }
+
+    private Collection<PascalModule> lookup(Project project, String key, Namespaces ns) {
+        GlobalSearchScope scope = GlobalSearchScope.moduleWithDependenciesAndLibrariesScope(module, false);
+        Collection<PascalModule> result = new SmartHashSet<>(StubIndex.getElements(PascalModuleIndex.KEY, key, project, scope, PascalModule.class));
+        for (String prefix : ns.dottedPrefixes) {
+            result.addAll(StubIndex.getElements(PascalModuleIndex.KEY, prefix + key, project, scope, PascalModule.class));
+        }
+        return result.isEmpty() ? Collections.emptyList() : Collections.unmodifiableCollection(result);
+    }
+
+    private static boolean isValid(Collection<PascalModule> modules) {
+        for (PascalModule module : modules) {
+            if (!PsiUtil.isElementUsable(module)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void ensureFresh(Project project) {
+        long roots = ProjectRootManager.getInstance(project).getModificationCount();
+        long files = VirtualFileManager.getInstance().getModificationCount();
+        if ((roots != rootsStamp) || (files != filesStamp)) {
+            units.clear();
+            rootsStamp = roots;
+            filesStamp = files;
+        }
+    }
+
+    private Namespaces ensureNamespaces() {
+        String text = ModuleUtil.getNamespacesSetting(module, module.getProject());
+        Namespaces ns = namespaces;
+        if (!StringUtil.equals(text, ns.text)) {
+            ns = new Namespaces(text);
+            namespaces = ns;
+            units.clear();
+        }
+        return ns;
+    }
+
+    private static class Namespaces {
+        private final String text;
+        private final List<String> list;
+        private final String[] dottedPrefixes;             // upper cased namespaces followed by dot
+
+        private Namespaces(String text) {
+            this.text = text;
+            this.list = StringUtil.isNotEmpty(text) ? Collections.unmodifiableList(Arrays.asList(text.split(";"))) : Collections.emptyList();
+            this.dottedPrefixes = new String[list.size()];
+            for (int i = 0; i < dottedPrefixes.length; i++) {
+                dottedPrefixes[i] = list.get(i).toUpperCase() + ".";
+            }
+        }
+    }
+}
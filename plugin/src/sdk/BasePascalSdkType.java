@@ -40,8 +40,9 @@ public abstract class BasePascalSdkType extends SdkType {
     public static final String DEFINE_IDE_PARSER = "_IDE_PARSER_";
     public static final String DEFINE_IDE_DISABLE_CONDITIONALS_ = "_IDE_DISABLE_CONDITIONALS_";
 
-    private static final Cache<String, Map<String, Define>> definesCache = CacheBuilder.newBuilder().softValues().build();
-    private static final Cache<String, Map<String, Directive>> directivesCache = CacheBuilder.newBuilder().softValues().build();
+    // Defines and directives are kept per SDK and version until SDK settings are changed
+    private static final Cache<String, Map<String, Define>> definesCache = CacheBuilder.newBuilder().maximumSize(32).build();
+    private static final Cache<String, Map<String, Directive>> directivesCache = CacheBuilder.newBuilder().maximumSize(32).build();
 
     private Map<String, Map<String, Directive>> directives;
     private Map<String, Map<String, Define>> defines;
@@ -112,7 +112,7 @@ public class DelphiSdkType extends BasePascalSdkType {
     @NotNull
     public String suggestSdkName(@Nullable final String currentSdkName, @NotNull final String sdkHome) {
         String version = getVersionString(sdkHome);
-        final String prefix = String.format("Delphi %sv. ", isStarter(getVersionLines(sdkHome)) ? "(Starter) " : "");
+        final String prefix = String.format("Delphi %sv. ", getMetadata(sdkHome).starter ? "(Starter) " : "");
         if (version != null) {
             return prefix + version + " | " + getTargetString(sdkHome);
         } else {
@@ -120,7 +120,7 @@ public class DelphiSdkType extends BasePascalSdkType {
         }
     }
 
-    private String getVersion(String[] lines) {
+    private static String getVersion(String[] lines) {
         for (String line : lines) {
             Matcher m = DELPHI_VERSION_PATTERN.matcher(line);
             if (m.matches()) {
@@ -130,7 +130,7 @@ public class DelphiSdkType extends BasePascalSdkType {
         return null;
     }
 
-    private boolean isStarter(String[] lines) {
+    private static boolean isStarter(String[] lines) {
         LOG.info("Checking for starter edition");
         for (String line : lines) {
             LOG.info("=== Line: " + line);
@@ -142,7 +142,7 @@ public class DelphiSdkType extends BasePascalSdkType {
     }
 
     @NotNull
-    private String[] getVersionLines(String sdkHome) {
+    private static String[] getVersionLines(String sdkHome) {
         try {
             String out = SysUtils.runAndGetStdOut(sdkHome, PascalSdkUtil.getDCC32Executable(sdkHome).getAbsolutePath(), SysUtils.SHORT_TIMEOUT, PascalSdkUtil.DELPHI_PARAMS_VERSION_GET);
             return out != null ? out.split("\n", 3) : EMPTY_STRINGS;
@@ -156,15 +156,24 @@ public class DelphiSdkType extends BasePascalSdkType {
     @Override
     public String getVersionString(String sdkHome) {
         LOG.info("Getting version for SDK path: " + sdkHome);
-        String[] lines = getVersionLines(sdkHome);
-        if (isStarter(lines)) {
-            return getVersionByRTL(sdkHome);
-        } else {
-            return getVersion(lines);
+        return getMetadata(sdkHome).version;
+    }
+
+    // Compiler is launched only if there is no valid persisted record for the SDK
+    @NotNull
+    private static PascalSdkMetadata.SdkRecord getMetadata(@Nullable String sdkHome) {
+        if (null == sdkHome) {
+            return new PascalSdkMetadata.SdkRecord();
         }
+        return PascalSdkMetadata.getInstance().getRecord(sdkHome, PascalSdkUtil.getDCC32Executable(sdkHome), record -> {
+            String[] lines = getVersionLines(sdkHome);
+            record.starter = isStarter(lines);
+            record.version = record.starter ? getVersionByRTL(sdkHome) : getVersion(lines);
+            record.target = getTargetString(sdkHome);
+        });
     }
 
-    private String getVersionByRTL(String sdkHome) {
+    private static String getVersionByRTL(String sdkHome) {
         File binDir = new File(sdkHome, "bin");
         File[] rtl = binDir.listFiles();
         Integer version = null;
@@ -197,6 +206,7 @@ public class DelphiSdkType extends BasePascalSdkType {
 
     @Override
     public void setupSdkPaths(@NotNull final Sdk sdk) {
+        PascalSdkMetadata.getInstance().invalidate(sdk.getHomePath());
         configureSdkPaths(sdk);
         configureOptions(sdk, getAdditionalData(sdk), "");
     }
@@ -209,7 +219,7 @@ public class DelphiSdkType extends BasePascalSdkType {
         sb.append("-dMSWINDOWS ");
         sb.append("-dWIN32 ");
         data.setValue(PascalSdkData.Keys.COMPILER_OPTIONS.getKey(), sb.toString());
-        if (isStarter(getVersionLines(sdk.getHomePath()))) {
+        if (getMetadata(sdk.getHomePath()).starter) {
             data.setValue(PascalSdkData.Keys.DELPHI_IS_STARTER.getKey(), PascalSdkData.SDK_DATA_TRUE);
         }
     }
@@ -27,6 +27,7 @@ import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
@@ -96,23 +97,35 @@ public class FPCSdkType extends BasePascalSdkType {
     @Nullable
     public String getVersionString(String sdkHome) {
         LOG.info("Getting version for SDK path: " + sdkHome);
-        try {
-            return SysUtils.runAndGetStdOut(sdkHome, PascalSdkUtil.getFPCExecutable(sdkHome).getAbsolutePath(), SysUtils.SHORT_TIMEOUT, PascalSdkUtil.FPC_PARAMS_VERSION_GET);
-        } catch (PascalException e) {
-            LOG.info("Error: " + e.getMessage(), e);
-        } catch (RuntimeException e) {
-            LOG.info("Error: " + e.getMessage(), e);
-        }
-        return null;
+        return getMetadata(sdkHome).version;
     }
 
     @Nullable
     private static String getTargetString(String sdkHome) {
         LOG.info("Getting target for SDK path: " + sdkHome);
+        return getMetadata(sdkHome).target;
+    }
+
+    // Compiler is launched only if there is no valid persisted record for the SDK
+    @NotNull
+    private static PascalSdkMetadata.SdkRecord getMetadata(@Nullable String sdkHome) {
+        if (null == sdkHome) {
+            return new PascalSdkMetadata.SdkRecord();
+        }
+        return PascalSdkMetadata.getInstance().getRecord(sdkHome, PascalSdkUtil.getFPCExecutable(sdkHome), record -> {
+            record.version = runCompiler(sdkHome, PascalSdkUtil.FPC_PARAMS_VERSION_GET);
+            record.target = runCompiler(sdkHome, PascalSdkUtil.FPC_PARAMS_TARGET_GET);
+        });
+    }
+
+    @Nullable
+    private static String runCompiler(String sdkHome, String params) {
         try {
-            return SysUtils.runAndGetStdOut(sdkHome, PascalSdkUtil.getFPCExecutable(sdkHome).getAbsolutePath(), SysUtils.SHORT_TIMEOUT, PascalSdkUtil.FPC_PARAMS_TARGET_GET);
+            return SysUtils.runAndGetStdOut(sdkHome, PascalSdkUtil.getFPCExecutable(sdkHome).getAbsolutePath(), SysUtils.SHORT_TIMEOUT, params);
         } catch (PascalException e) {
             LOG.info("Error: " + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            LOG.info("Error: " + e.getMessage(), e);
         }
         return null;
     }
@@ -126,6 +139,7 @@ public class FPCSdkType extends BasePascalSdkType {
 
     @Override
     public void setupSdkPaths(@NotNull final Sdk sdk) {
+        PascalSdkMetadata.getInstance().invalidate(sdk.getHomePath());
         String target = getTargetString(sdk.getHomePath());
         configureSdkPaths(sdk, target);
         configureOptions(sdk, getAdditionalData(sdk), target);
@@ -161,9 +175,8 @@ public class FPCSdkType extends BasePascalSdkType {
         final SdkModificator[] sdkModificatorHolder = new SdkModificator[]{null};
         final SdkModificator sdkModificator = sdk.getSdkModificator();
         if (target != null) {
-            target = target.replace(' ', '-');
-            for (String dir : LIBRARY_DIRS) {
-                VirtualFile vdir = getLibrary(sdk, target, dir);
+            for (String root : getUnitRoots(sdk, target.replace(' ', '-'))) {
+                VirtualFile vdir = LocalFileSystem.getInstance().findFileByPath(root);
                 if (vdir != null) {
                     sdkModificator.addRoot(vdir, OrderRootType.CLASSES);
                 }
@@ -173,12 +186,24 @@ public class FPCSdkType extends BasePascalSdkType {
         }
     }
 
-    private static VirtualFile getLibrary(Sdk sdk, String target, String name) {
+    // Library directories are checked each time as they can be added to SDK home without changing the compiler
+    private static List<String> getUnitRoots(Sdk sdk, String target) {
+        List<String> roots = new ArrayList<String>();
+        for (String dir : LIBRARY_DIRS) {
+            File libDir = getLibraryDir(sdk, target, dir);
+            if (libDir.isDirectory()) {
+                roots.add(libDir.getPath());
+            }
+        }
+        return roots;
+    }
+
+    private static File getLibraryDir(Sdk sdk, String target, String name) {
         File rtlDir = new File(sdk.getHomePath() + File.separatorChar + "units" + File.separatorChar + target + File.separatorChar + name);
         if (!rtlDir.exists()) {
             rtlDir = new File(sdk.getHomePath() + File.separatorChar + sdk.getVersionString() + File.separatorChar + "units" + File.separatorChar + target + File.separatorChar + name);
         }
-        return LocalFileSystem.getInstance().findFileByIoFile(rtlDir);
+        return rtlDir;
     }
 
     @Override
@@ -233,6 +233,7 @@ public class PascalSdkConfigUI implements AdditionalDataConfigurable {
             BasePascalSdkType.getAdditionalData(sdk).setValue(entry.getKey(), getValue(keyComponentMap.get(entry.getKey())));
         }
         BasePascalSdkType.invalidateSdkCaches();
+        PascalSdkMetadata.getInstance().invalidate(sdk.getHomePath());
     }
 
     private Object getValue(JComponent control) {
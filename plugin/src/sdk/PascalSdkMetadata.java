@@ -0,0 +1,99 @@
+package com.siberika.idea.pascal.sdk;
+
+import com.intellij.openapi.components.PersistentStateComponent;
+import com.intellij.openapi.components.RoamingType;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.components.State;
+import com.intellij.openapi.components.Storage;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.xmlb.XmlSerializerUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Persistent metadata of Pascal SDKs retrieved from their compilers: version, target and edition.
+ * A record is keyed by SDK home path and is valid while modification time and size of the compiler binary are the same,
+ * so compilers are launched only when an SDK is added, its compiler is changed or its paths and settings are reset.
+ */
+@State(
+        name = "PascalSdkMetadata",
+        storages = @Storage(value = "pascal.sdk.xml", roamingType = RoamingType.DISABLED)
+)
+public class PascalSdkMetadata implements PersistentStateComponent<PascalSdkMetadata> {
+
+    private static final Logger LOG = Logger.getInstance(PascalSdkMetadata.class);
+
+    public Map<String, SdkRecord> records = new HashMap<>();
+
+    public static PascalSdkMetadata getInstance() {
+        return ServiceManager.getService(PascalSdkMetadata.class);
+    }
+
+    @Override
+    public synchronized PascalSdkMetadata getState() {
+        return this;
+    }
+
+    @Override
+    public synchronized void loadState(@NotNull PascalSdkMetadata state) {
+        XmlSerializerUtil.copyBean(state, this);
+    }
+
+    /**
+     * Returns metadata record of the SDK. If there is no valid record a new one is filled by the loader.
+     * A record without version is not stored so retrieval is retried next time.
+     * @param binary compiler executable which modification time and size validate the record
+     */
+    @NotNull
+    public SdkRecord getRecord(@NotNull String sdkHome, @NotNull File binary, @NotNull Consumer<SdkRecord> loader) {
+        SdkRecord record = findRecord(sdkHome, binary);
+        if (record != null) {
+            return record;
+        }
+        record = new SdkRecord();
+        record.binaryPath = binary.getPath();
+        record.binaryModified = binary.lastModified();
+        record.binarySize = binary.length();
+        LOG.info("Retrieving SDK metadata for " + sdkHome);
+        loader.accept(record);
+        if (record.version != null) {
+            synchronized (this) {
+                records.put(sdkHome, record);
+            }
+        }
+        return record;
+    }
+
+    /**
+     * Removes record of the SDK so the compiler is queried again next time
+     */
+    public synchronized void invalidate(@Nullable String sdkHome) {
+        if (sdkHome != null) {
+            records.remove(sdkHome);
+        }
+    }
+
+    @Nullable
+    private synchronized SdkRecord findRecord(String sdkHome, File binary) {
+        SdkRecord record = records.get(sdkHome);
+        if ((record != null) && binary.getPath().equals(record.binaryPath)
+                && (record.binaryModified == binary.lastModified()) && (record.binarySize == binary.length())) {
+            return record;
+        }
+        return null;
+    }
+
+    public static class SdkRecord {
+        public String binaryPath;
+        public long binaryModified;
+        public long binarySize;
+        public String version;
+        public String target;
+        public boolean starter;
+    }
+}
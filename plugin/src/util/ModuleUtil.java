@@ -17,15 +17,14 @@ import com.intellij.openapi.util.io.FileUtilRt;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiElement;
-import com.intellij.psi.search.FileTypeIndex;
 import com.intellij.psi.search.FilenameIndex;
 import com.intellij.psi.search.GlobalSearchScope;
-import com.intellij.util.CommonProcessors;
 import com.intellij.util.SmartList;
-import com.intellij.util.containers.ArrayListSet;
-import com.intellij.util.indexing.FileBasedIndex;
+import com.siberika.idea.pascal.PascalFileType;
 import com.siberika.idea.pascal.jps.sdk.PascalSdkData;
 import com.siberika.idea.pascal.jps.util.FileUtil;
+import com.siberika.idea.pascal.lang.stub.PascalUnitFileIndex;
+import com.siberika.idea.pascal.module.ModuleService;
 import com.siberika.idea.pascal.module.PascalModuleType;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -35,7 +34,6 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
-import java.util.Set;
 
 /**
  * Author: George Bakhtadze
@@ -54,29 +52,14 @@ public class ModuleUtil {
         }
     }
 
-    /* 1. Search for the original file name,
-       2. Search for the filename all lowercased.
-       3. Search for the filename all uppercased.
+    /* Unit file name is searched case-insensitively.
        Unit  names that are longer than 8 characters will first be looked for with  their  full length.
        If the unit is not found with this name, the name will be truncated to 8 characters. */
     public static Collection<VirtualFile> getAllCompiledModuleFilesByName(@NotNull final Module module, @NotNull final String name, final FileType fileType) {
         return ApplicationManager.getApplication().runReadAction(new Computable<Collection<VirtualFile>>() {
             @Override
             public Collection<VirtualFile> compute() {
-                Collection<VirtualFile> res = new SmartList<VirtualFile>();
-                Set<String> nameVariants = new ArrayListSet<String>();
-                String nameExt = name + "." + fileType.getDefaultExtension();
-                nameVariants.add(nameExt);
-                nameVariants.add(nameExt.toUpperCase());
-                nameVariants.add(nameExt.toLowerCase());
-                if (name.length() > 8) {
-                    nameVariants.add(name.substring(0, 8) + "." + fileType.getDefaultExtension());
-                }
-                for (String unitName : nameVariants) {
-                    res.addAll(FileBasedIndex.getInstance().getContainingFiles(FilenameIndex.NAME, unitName,
-                            GlobalSearchScope.moduleWithDependenciesAndLibrariesScope(module)));
-                }
-                return res;
+                return PascalUnitFileIndex.getUnitFiles(name, GlobalSearchScope.moduleWithDependenciesAndLibrariesScope(module), fileType);
             }
         });
     }
@@ -96,19 +79,12 @@ public class ModuleUtil {
         return null;
     }
 
-    public static VirtualFile getCompiledByNameNoCase(final Module module, String unitName, final FileType fileType) {
-        final String fullName = unitName + "." + fileType.getDefaultExtension();
+    public static VirtualFile getCompiledByNameNoCase(final Module module, final String unitName, final FileType fileType) {
         return ApplicationManager.getApplication().runReadAction(new Computable<VirtualFile>() {
             @Override
             public VirtualFile compute() {
-                final CommonProcessors.FindProcessor<VirtualFile> processor = new CommonProcessors.FindProcessor<VirtualFile>() {
-                    @Override
-                    protected boolean accept(VirtualFile virtualFile) {
-                        return fullName.equalsIgnoreCase(virtualFile.getName());
-                    }
-                };
-                FileTypeIndex.processFiles(fileType, processor, GlobalSearchScope.moduleWithDependenciesAndLibrariesScope(module));
-                return processor.getFoundValue();
+                Collection<VirtualFile> files = PascalUnitFileIndex.getFilesByName(unitName, GlobalSearchScope.moduleWithDependenciesAndLibrariesScope(module), fileType);
+                return !files.isEmpty() ? files.iterator().next() : null;
             }
         });
     }
@@ -173,6 +149,10 @@ public class ModuleUtil {
             return files.iterator().next();
         } else {
             String nameWoExt = FileUtilRt.getNameWithoutExtension(name);
+            VirtualFile unitFile = searchSourceByUnitName(nameWoExt, scope);
+            if (unitFile != null) {
+                return unitFile;
+            }
             for (String ext : INCLUDE_EXTENSIONS) {
                 files = searchInPathByName(project, nameWoExt + "." + ext, scope);
                 if (!files.isEmpty()) {
@@ -183,6 +163,28 @@ public class ModuleUtil {
         return null;
     }
 
+    // Searches for a source file with the name and any case of unit file extension, pas is preferred over pp
+    private static VirtualFile searchSourceByUnitName(String nameWoExt, GlobalSearchScope scope) {
+        Collection<VirtualFile> files;
+        try {
+            files = PascalUnitFileIndex.getFilesByName(nameWoExt, scope, PascalFileType.INSTANCE);
+        } catch (AssertionError e) {
+            LOG.info("Error using unit file index. Falling back to file name probing.");
+            return null;
+        }
+        VirtualFile result = null;
+        for (VirtualFile file : files) {
+            if (nameWoExt.equalsIgnoreCase(file.getNameWithoutExtension())) {
+                if (PascalFileType.INSTANCE.getDefaultExtension().equalsIgnoreCase(file.getExtension())) {
+                    return file;
+                } else if (null == result) {
+                    result = file;
+                }
+            }
+        }
+        return result;
+    }
+
     private static Collection<VirtualFile> searchInPathByName(Project project, String name, GlobalSearchScope scope) {
         try {
             return FilenameIndex.getVirtualFilesByName(project, name, scope);
@@ -213,19 +215,26 @@ public class ModuleUtil {
         return retrieveUnitNamespaces(com.intellij.openapi.module.ModuleUtil.findModuleForPsiElement(parentIdent), parentIdent.getProject());
     }
 
-    // TODO: cache at SDK
+    // Namespaces of a module are kept in its unit name table
     public static List<String> retrieveUnitNamespaces(@Nullable Module module, Project project) {
+        if (module != null) {
+            return ModuleService.getInstance(module).getUnitNameTable(module).getNamespaces();
+        }
+        String namespaces = getNamespacesSetting(null, project);
+        return StringUtil.isNotEmpty(namespaces) ? Arrays.asList(namespaces.split(";")) : Collections.emptyList();
+    }
+
+    // Returns semicolon separated unit namespaces configured in SDK of the module or of the project if module is not specified
+    @Nullable
+    public static String getNamespacesSetting(@Nullable Module module, Project project) {
         Sdk sdk = module != null ? ModuleRootManager.getInstance(module).getSdk() : ProjectRootManager.getInstance(project).getProjectSdk();
         if (sdk != null) {
             final SdkAdditionalData data = sdk.getSdkAdditionalData();
             if (data instanceof PascalSdkData) {
-                String namespaces = (String) ((PascalSdkData) data).getValue(PascalSdkData.Keys.COMPILER_NAMESPACES.getKey());
-                if (StringUtil.isNotEmpty(namespaces)) {
-                    return Arrays.asList(namespaces.split(";"));
-                }
+                return (String) ((PascalSdkData) data).getValue(PascalSdkData.Keys.COMPILER_NAMESPACES.getKey());
             }
         }
-        return Collections.emptyList();
+        return null;
     }
 
     // Searches for files by name with the specified list of extensions
@@ -1,10 +1,15 @@
 package com.siberika.idea.pascal;
 
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.siberika.idea.pascal.lang.psi.PasCallExpr;
 import com.siberika.idea.pascal.lang.psi.PasExpr;
 import com.siberika.idea.pascal.lang.psi.PasExpression;
 import com.siberika.idea.pascal.lang.psi.PasStatement;
+import com.siberika.idea.pascal.lang.psi.impl.PasField;
 import com.siberika.idea.pascal.lang.psi.impl.PasStatementImpl;
 import com.siberika.idea.pascal.lang.psi.impl.PascalExpression;
 import com.siberika.idea.pascal.lang.psi.impl.PascalModuleImpl;
@@ -13,8 +18,13 @@ import com.siberika.idea.pascal.lang.references.PasReferenceUtil;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Locale;
 
 public class InfereTypeTest extends PascalLightCodeInsightFixtureTestCase {
+
+    // Number of rounds of the inference benchmark
+    private static final String BENCHMARK_ROUNDS_PROPERTY = "pascal.infer.benchmark.rounds";
+
     @Override
     protected String getTestDataPath() {
         return "testData/typeInference";
@@ -110,6 +120,98 @@ public class InfereTypeTest extends PascalLightCodeInsightFixtureTestCase {
         assertEquals("PEnum", PascalExpression.calcFormalParameterType(expressions.get(i++)));
     }
 
+    public void testRecursive() {
+        myFixture.configureByFiles("infereTypeRecursive.pas");
+        List<PasExpr> expressions = getStatementExpressions("infereTypeRecursive");
+        assertEquals("Integer", PascalExpression.inferType(expressions.get(0)));
+        assertEquals("Integer", PascalExpression.inferType(expressions.get(1)));
+    }
+
+    public void testCached() {
+        myFixture.configureByFiles("infereTypePath.pas");
+        List<PasExpr> expressions = getStatementExpressions("infereTypePath");
+        PascalExpression expr = (PascalExpression) expressions.get(0);
+        List<PasField.ValueType> types = PascalExpression.getTypes(expr);
+        types.add(PasField.POINTER);
+        assertEquals(types.size() - 1, PascalExpression.getTypes(expr).size());
+        assertEquals("TOuterRec", PascalExpression.inferType(expr));
+        assertTrue(expr.isTypeCached());
+        assertEquals("TOuterRec", PascalExpression.inferType(expr));
+        touch(expr.getContainingFile());
+        assertFalse(expr.isTypeCached());
+    }
+
+    public void testCachedChangeInUsedUnit() {
+        myFixture.configureByFiles("infereTypeCrossUnit.pas", "infereTypeUsedUnit.pas");
+        PascalExpression expr = (PascalExpression) getStatementExpressions("infereTypeCrossUnit").get(0);
+        assertEquals("TValue", PascalExpression.inferType(expr));
+        PascalExpression.getTypes(expr);
+        assertTrue(expr.isTypeCached());
+        PsiFile used = PasReferenceUtil.findUnit(myFixture.getProject(),
+                PasReferenceUtil.findUnitFiles(myFixture.getProject(), getModule()), "infereTypeUsedUnit").getContainingFile();
+        replace(used, "Value: TValue;", "Value: Single;");
+        assertFalse(expr.isTypeCached());
+        assertEquals("Single", PascalExpression.inferType(expr));
+    }
+
+    // Measures inference over the type inference test corpora: first pass after a modification and repeated passes
+    public void testBenchmark() {
+        int rounds = Integer.getInteger(BENCHMARK_ROUNDS_PROPERTY, 0);
+        if (rounds <= 0) {
+            return;
+        }
+        myFixture.configureByFiles("infereTypeSimple.pas", "infereTypePath.pas", "infereTypeComplex.pas", "infereTypeCall.pas",
+                "../annotator/structTypes.pas", "../annotator/calcTypesTest.pas");
+        for (String unitName : new String[] {"infereTypeSimple", "infereTypePath", "infereTypeComplex", "infereTypeCall", "calcTypesTest"}) {
+            long coldTime = 0, warmTime = 0;
+            int count = 0;
+            for (int round = 0; round < rounds; round++) {
+                Collection<PasExpr> expressions = getAllExpressions(unitName);
+                count = expressions.size();
+                long time = System.nanoTime();
+                inferAll(expressions);
+                coldTime += System.nanoTime() - time;
+                time = System.nanoTime();
+                inferAll(expressions);
+                warmTime += System.nanoTime() - time;
+                touch(expressions.iterator().next().getContainingFile());
+            }
+            System.out.println(String.format(Locale.US, "%s: %d expressions, %d rounds. First pass: %d us, repeated pass: %d us per round.",
+                    unitName, count, rounds, coldTime / rounds / 1000, warmTime / rounds / 1000));
+        }
+    }
+
+    private static void inferAll(Collection<PasExpr> expressions) {
+        for (PasExpr expression : expressions) {
+            PascalExpression.inferType(expression);
+            if (expression instanceof PascalExpression) {
+                PascalExpression.getTypes((PascalExpression) expression);
+            }
+        }
+    }
+
+    private void touch(PsiFile file) {
+        Document document = PsiDocumentManager.getInstance(myFixture.getProject()).getDocument(file);
+        if (document != null) {
+            WriteCommandAction.runWriteCommandAction(myFixture.getProject(), () -> document.insertString(document.getTextLength(), " "));
+            PsiDocumentManager.getInstance(myFixture.getProject()).commitDocument(document);
+        }
+    }
+
+    private void replace(PsiFile file, String text, String replacement) {
+        Document document = PsiDocumentManager.getInstance(myFixture.getProject()).getDocument(file);
+        assertNotNull(document);
+        int offset = document.getText().indexOf(text);
+        WriteCommandAction.runWriteCommandAction(myFixture.getProject(), () -> document.replaceString(offset, offset + text.length(), replacement));
+        PsiDocumentManager.getInstance(myFixture.getProject()).commitDocument(document);
+    }
+
+    private Collection<PasExpr> getAllExpressions(String unitName) {
+        PascalModuleImpl mod = (PascalModuleImpl) PasReferenceUtil.findUnit(myFixture.getProject(),
+                PasReferenceUtil.findUnitFiles(myFixture.getProject(), getModule()), unitName);
+        return PsiTreeUtil.findChildrenOfType(mod, PasExpr.class);
+    }
+
     private List<PasExpr> getStatementExpressions(String unitName) {
         List<PasExpr> res = new ArrayList<PasExpr>();
         PascalModuleImpl mod = (PascalModuleImpl) PasReferenceUtil.findUnit(myFixture.getProject(),
@@ -37,6 +37,18 @@ public class InspectionTest extends LightPlatformCodeInsightFixtureTestCase {
         myFixture.checkHighlighting(true, false, false);
     }
 
+    public void testUnusedIdentsOverload() {
+        myFixture.enableInspections(UnusedIdentsInspection.class);
+        myFixture.configureByFiles("unusedIdentsOverload.pas");
+        myFixture.checkHighlighting(true, false, false);
+    }
+
+    public void testUnusedIdentsNested() {
+        myFixture.enableInspections(UnusedIdentsInspection.class);
+        myFixture.configureByFiles("unusedIdentsNested.pas");
+        myFixture.checkHighlighting(true, false, false);
+    }
+
     public void testUnimplementedMethods() {
         myFixture.enableInspections(NotImplementedInspection.class);
         myFixture.configureByFiles("unimplementedMethods.pas");
@@ -2,9 +2,30 @@ package com.siberika.idea.pascal;
 
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiReference;
+import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.testFramework.fixtures.LightPlatformCodeInsightFixtureTestCase;
+import com.siberika.idea.pascal.lang.parser.NamespaceRec;
+import com.siberika.idea.pascal.lang.psi.PasEntityScope;
+import com.siberika.idea.pascal.lang.psi.PasRefNamedIdent;
+import com.siberika.idea.pascal.lang.psi.PasSubIdent;
+import com.siberika.idea.pascal.lang.psi.PasTypeID;
+import com.siberika.idea.pascal.lang.psi.PascalModule;
+import com.siberika.idea.pascal.lang.psi.impl.GenericSpecializationCache;
+import com.siberika.idea.pascal.lang.psi.impl.PasField;
+import com.siberika.idea.pascal.lang.references.ResolveContext;
+import com.siberika.idea.pascal.lang.references.ResolveUtil;
+import com.siberika.idea.pascal.lang.references.resolve.Resolve;
+import com.siberika.idea.pascal.util.PsiUtil;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Locale;
 
 public class ResolveTest extends LightPlatformCodeInsightFixtureTestCase {
+
+    // Number of rounds of the resolve benchmark
+    private static final String BENCHMARK_ROUNDS_PROPERTY = "pascal.resolve.benchmark.rounds";
+
     @Override
     protected String getTestDataPath() {
         return "testData/misc";
@@ -24,4 +45,61 @@ public class ResolveTest extends LightPlatformCodeInsightFixtureTestCase {
         assertEquals(68, decl.getTextRange().getStartOffset());
     }
 
+    public void testGenericSpecializationCache() {
+        myFixture.configureByFiles("genericSpecialization.pas");
+        PascalModule module = (PascalModule) PsiUtil.getElementPasModule(myFixture.getFile());
+        GenericSpecializationCache cache = module.getSpecializationCache();
+        assertEquals(0, cache.size());
+        PasEntityScope list = module.getField("A").getValueType(0).getTypeScope();
+        assertNotNull(list);
+        assertEquals("TList", ResolveUtil.cleanupName(list.getName()).replaceAll("<.*", ""));
+        assertEquals(1, cache.size());
+        assertEquals(list, module.getField("B").getValueType(0).getTypeScope());
+        assertEquals(1, cache.size());
+        assertEquals(list, module.getField("C").getValueType(0).getTypeScope());
+        assertEquals(2, cache.size());
+        PasTypeID typeId = PsiTreeUtil.findChildOfType(module.getField("B").getElement().getParent(), PasTypeID.class);
+        assertEquals("TLIST<TFOO>", GenericSpecializationCache.getSpecialization(typeId));
+        myFixture.addFileToProject("genericSpecializationOther.pas", "unit genericSpecializationOther;\ninterface\nimplementation\nend.\n");
+        assertNotSame("Cache is dropped on a change in another file", cache, module.getSpecializationCache());
+    }
+
+    public void testGenericName() {
+        assertEquals("TList", GenericSpecializationCache.getGenericName("TList<TFoo>"));
+        assertEquals("TDictionary", GenericSpecializationCache.getGenericName("TDictionary<string, TBar>"));
+        assertEquals("TList", GenericSpecializationCache.getGenericName("TList"));
+        assertEquals("System.TList<T>", GenericSpecializationCache.getGenericName("System.TList<T>"));
+        assertEquals("TList<T>.TEnumerator", GenericSpecializationCache.getGenericName("TList<T>.TEnumerator"));
+    }
+
+    // Measures time and allocations of resolving all identifiers of the scoped units test corpus
+    public void testBenchmark() {
+        int rounds = Integer.getInteger(BENCHMARK_ROUNDS_PROPERTY, 0);
+        if (rounds <= 0) {
+            return;
+        }
+        myFixture.configureByFiles("../annotator/scoped.prog.pas", "../annotator/scoped.pas", "../annotator/scoped.types.pas",
+                "../annotator/scoped.util.pas", "../annotator/structTypes.pas");
+        Collection<PsiElement> idents = PsiTreeUtil.findChildrenOfAnyType(myFixture.getFile(), PasSubIdent.class, PasRefNamedIdent.class);
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        int[] found = new int[1];
+        long totalTime = 0, totalBytes = 0;
+        for (int round = 0; round < rounds; round++) {
+            found[0] = 0;
+            long bytes = bean.getThreadAllocatedBytes(threadId);
+            long time = System.nanoTime();
+            for (PsiElement ident : idents) {
+                Resolve.resolveExpr(NamespaceRec.fromElement(ident), new ResolveContext(PasField.TYPES_ALL, true), (originalScope, scope, field, type) -> {
+                    found[0]++;
+                    return false;
+                });
+            }
+            totalTime += System.nanoTime() - time;
+            totalBytes += bean.getThreadAllocatedBytes(threadId) - bytes;
+        }
+        System.out.println(String.format(Locale.US, "%d identifiers (%d resolved), %d rounds. %d us, %d KB allocated per round.",
+                idents.size(), found[0], rounds, totalTime / rounds / 1000, (totalBytes / rounds) >> 10));
+    }
+
 }
@@ -1,5 +1,7 @@
 package com.siberika.idea.pascal;
 
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiElement;
 import com.intellij.testFramework.fixtures.LightPlatformCodeInsightFixtureTestCase;
 import com.siberika.idea.pascal.ide.actions.SectionToggle;
@@ -8,6 +10,7 @@ import com.siberika.idea.pascal.lang.psi.PascalNamedElement;
 import com.siberika.idea.pascal.lang.psi.PascalRoutine;
 import com.siberika.idea.pascal.lang.psi.impl.PasExportedRoutineImpl;
 import com.siberika.idea.pascal.lang.psi.impl.PasRoutineImplDeclImpl;
+import com.siberika.idea.pascal.lang.psi.impl.RoutineImplMap;
 import com.siberika.idea.pascal.util.TestUtil;
 
 import java.util.ArrayList;
@@ -42,6 +45,23 @@ public class SectionToggleTest extends LightPlatformCodeInsightFixtureTestCase {
         doTestSectionToggle(symbols, true);
     }
 
+    public void testRoutineImplMap() {
+        List<PascalNamedElement> symbols = retrieveSymbols("sectionToggleStrict.pas");
+        RoutineImplMap map = RoutineImplMap.forElement(symbols.get(0));
+        assertNotNull(map);
+        assertSame(map, RoutineImplMap.forElement(symbols.get(0)));
+        for (PasExportedRoutineImpl decl : getDecls(symbols)) {
+            assertTrue(decl.getName(), map.contains(decl));
+            PsiElement impl = map.getTarget(decl, true);
+            if (impl instanceof PascalRoutine) {
+                assertEquals(decl.getName(), decl, map.getTarget((PascalRoutine) impl, true));
+            }
+        }
+        WriteCommandAction.runWriteCommandAction(myFixture.getProject(), () -> myFixture.getEditor().getDocument().insertString(0, " "));
+        PsiDocumentManager.getInstance(myFixture.getProject()).commitAllDocuments();
+        assertNotSame(map, RoutineImplMap.forElement(myFixture.getFile().findElementAt(1)));
+    }
+
     public void testRoutinesFwd() {
         PsiElement ref = myFixture.configureByFile("routinesFwd.pas").findElementAt(95);
         PsiElement decl = SectionToggle.getRoutineForwardDeclaration((PasRoutineImplDeclImpl) ref.getParent().getParent());
@@ -0,0 +1,102 @@
+package com.siberika.idea.pascal.jps.builder;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CompilerOutputTokenizerTest {
+
+    // Number of lines to tokenize in the benchmark
+    private static final String BENCHMARK_LINES_PROPERTY = "pascal.tokenizer.benchmark.lines";
+
+    @Test
+    public void testFPCMessages() {
+        assertDiagnostic(CompilerOutputTokenizer.tokenizeFPC("/src/model.pas(220,5) Error: (3208) Illegal assignment"),
+                CompilerMessageCategory.ERROR, "3208", "Illegal assignment", "/src/model.pas", 220, 5);
+        assertDiagnostic(CompilerOutputTokenizer.tokenizeFPC("/src/model.pas(220) Warning: (4046) Constructing a class"),
+                CompilerMessageCategory.WARNING, "4046", "Constructing a class", "/src/model.pas", 220, -1);
+        assertDiagnostic(CompilerOutputTokenizer.tokenizeFPC("/src/u.pas(14,15) Hint: (5024) Parameter \"Sender\" not used"),
+                CompilerMessageCategory.HINT, "5024", "Parameter \"Sender\" not used", "/src/u.pas", 14, 15);
+        assertDiagnostic(CompilerOutputTokenizer.tokenizeFPC("(3104) Compiling /src/u.pas"),
+                CompilerMessageCategory.HINT, "3104", "Compiling /src/u.pas", null, -1, -1);
+        assertDiagnostic(CompilerOutputTokenizer.tokenizeFPC("Fatal: Compilation aborted"),
+                CompilerMessageCategory.ERROR, null, "Compilation aborted", null, -1, -1);
+        assertDiagnostic(CompilerOutputTokenizer.tokenizeFPC("Free Pascal Compiler version 3.0.4"),
+                CompilerMessageCategory.INFO, null, "Free Pascal Compiler version 3.0.4", "", -1, -1);
+    }
+
+    @Test
+    public void testDelphiMessages() {
+        assertDiagnostic(CompilerOutputTokenizer.tokenizeDelphi("c:\\srv\\test.pas(15) Error: E2003 Undeclared identifier"),
+                CompilerMessageCategory.ERROR, "E2003", "Undeclared identifier", "c:\\srv\\test.pas", 15, -1);
+        assertDiagnostic(CompilerOutputTokenizer.tokenizeDelphi("c:\\srv\\test.pas(20) Hint: H2164 Variable 'i' is declared but never used"),
+                CompilerMessageCategory.INFO, "H2164", "Variable 'i' is declared but never used", "c:\\srv\\test.pas", 20, -1);
+        assertDiagnostic(CompilerOutputTokenizer.tokenizeDelphi("Embarcadero Delphi for Win32 compiler version 32.0"),
+                CompilerMessageCategory.INFO, null, "Embarcadero Delphi for Win32 compiler version 32.0", "", -1, -1);
+    }
+
+    @Test
+    public void testRecordedLog() throws Exception {
+        List<String> lines = readLog();
+        int expected = 0;
+        for (String line : lines) {
+            if (line.contains("Error: ") || line.contains("Fatal: ")) {
+                expected++;
+            }
+        }
+        assertEquals(expected, countErrors(lines, lines.size()));
+    }
+
+    @Test
+    public void benchmarkRecordedLog() throws Exception {
+        int count = Integer.getInteger(BENCHMARK_LINES_PROPERTY, 0);
+        if (count <= 0) {
+            return;
+        }
+        List<String> lines = readLog();
+        long start = System.nanoTime();
+        int errors = 0;
+        for (int i = 0; i < count; i++) {
+            if (CompilerOutputTokenizer.tokenizeFPC(lines.get(i % lines.size())).category == CompilerMessageCategory.ERROR) {
+                errors++;
+            }
+        }
+        long time = System.nanoTime() - start;
+        System.out.println(String.format("Tokenized %d lines in %d ms", count, time / 1000000));
+        assertEquals(count / lines.size() * countErrors(lines, lines.size()) + countErrors(lines, count % lines.size()), errors);
+    }
+
+    private static List<String> readLog() throws IOException {
+        return Files.readAllLines(new File("testData/compilerLog/fpc.log").toPath(), StandardCharsets.UTF_8);
+    }
+
+    private static int countErrors(List<String> lines, int count) {
+        int res = 0;
+        for (int i = 0; i < count; i++) {
+            if (CompilerOutputTokenizer.tokenizeFPC(lines.get(i)).category == CompilerMessageCategory.ERROR) {
+                res++;
+            }
+        }
+        return res;
+    }
+
+    private static void assertDiagnostic(CompilerDiagnostic diagnostic, CompilerMessageCategory category, String msgId, String message, String path, long line, long column) {
+        assertEquals(category, diagnostic.category);
+        if (null == msgId) {
+            assertNull(diagnostic.msgId);
+        } else {
+            assertEquals(msgId, diagnostic.msgId);
+        }
+        assertEquals(message, diagnostic.message);
+        assertEquals(path, diagnostic.path);
+        assertEquals(line, diagnostic.line);
+        assertEquals(column, diagnostic.column);
+    }
+}
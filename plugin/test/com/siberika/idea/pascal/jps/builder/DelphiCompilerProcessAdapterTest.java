@@ -10,7 +10,10 @@ import org.mockito.ArgumentCaptor;
 
 import static com.siberika.idea.pascal.jps.compiler.DelphiBackendCompiler.DELPHI_STARTER_RESPONSE;
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 
 /**
@@ -50,4 +53,13 @@ public class DelphiCompilerProcessAdapterTest {
         assertEquals(BuildMessage.Kind.ERROR, argument.getValue().getKind());
     }
 
+    @Test
+    public void compilingUnit() throws Exception {
+        CompilerMessager progress = mock(CompilerMessager.class);
+        adapter.processLine(progress, "c:\\srv\\test.pas(120)");
+        adapter.processLine(progress, "c:\\srv\\test.inc(10)");
+        verify(progress).compiling(eq("c:\\srv\\test.pas"), anyLong());
+        verify(progress, never()).compiling(eq("c:\\srv\\test.inc"), anyLong());
+    }
+
 }
\ No newline at end of file
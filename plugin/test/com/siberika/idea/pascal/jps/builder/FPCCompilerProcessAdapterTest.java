@@ -0,0 +1,58 @@
+package com.siberika.idea.pascal.jps.builder;
+
+import com.siberika.idea.pascal.jps.compiler.CompilerMessager;
+import org.jetbrains.jps.incremental.CompileContext;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class FPCCompilerProcessAdapterTest {
+
+    private FPCCompilerProcessAdapter adapter;
+
+    @Before
+    public void setUp() throws Exception {
+        adapter = new FPCCompilerProcessAdapter(new PascalCompilerMessager("test", mock(CompileContext.class)));
+    }
+
+    @Test
+    public void compilingUnit() throws Exception {
+        CompilerMessager progress = mock(CompilerMessager.class);
+        adapter.processLine(progress, "(3104) Compiling /src/test.pas");
+        adapter.processLine(progress, "(9022) Compiling resource /src/test.or");
+        adapter.processLine(progress, "/src/test.pas(14,15) Hint: (5024) Parameter \"Sender\" not used");
+        verify(progress).compiling(eq("/src/test.pas"), anyLong());
+        verify(progress, never()).compiling(eq("/src/test.or"), anyLong());
+        verify(progress, never()).compiling(eq("Parameter \"Sender\" not used"), anyLong());
+    }
+
+    @Test
+    public void profilerRecordsUnits() throws Exception {
+        PascalBuildProfiler profiler = new PascalBuildProfiler("test");
+        CompilerMessager messager = new PascalCompilerMessager("test", mock(CompileContext.class), profiler);
+        adapter.processLine(messager, "(3104) Compiling /src/main.pas");
+        adapter.processLine(messager, "(3104) Compiling /src/unit1.pas");
+        profiler.finish();
+        assertTrue(profiler.getSummary(), profiler.getSummary().contains(": 2 units"));
+    }
+
+    @Test
+    public void duplicateHintsSkipped() throws Exception {
+        CompilerMessager messager = mock(CompilerMessager.class);
+        adapter.processLine(messager, "/src/test.inc(14,15) Hint: (5024) Parameter \"Sender\" not used");
+        adapter.processLine(messager, "/src/test.inc(30,10) Warning: (4046) Constructing a class \"TStrings\" with abstract method \"Get\"");
+        adapter.processLine(messager, "/src/test.inc(14,15) Hint: (5024) Parameter \"Sender\" not used");
+        adapter.processLine(messager, "/src/test.inc(30,10) Warning: (4046) Constructing a class \"TStrings\" with abstract method \"Get\"");
+        verify(messager, times(1)).hint(eq("5024"), anyString(), eq("/src/test.inc"), eq(14L), eq(15L));
+        verify(messager, times(2)).warning(eq("4046"), anyString(), eq("/src/test.inc"), eq(30L), eq(10L));
+    }
+
+}
@@ -0,0 +1,168 @@
+package com.siberika.idea.pascal.jps.builder;
+
+import org.jetbrains.jps.incremental.CompileContext;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PascalArtifactCacheTest {
+
+    private static final String EXT = ".ppu";
+    private static final long PAST = System.currentTimeMillis() - 60000;
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private PascalArtifactCache cache;
+    private File src;
+    private File inc;
+
+    @Before
+    public void setUp() throws Exception {
+        CompileContext context = mock(CompileContext.class);
+        when(context.getBuilderParameter(PascalArtifactCache.DIR_PARAM)).thenReturn(temp.newFolder("cache").getPath());
+        cache = PascalArtifactCache.getInstance(context);
+        src = temp.newFolder("src");
+        inc = temp.newFolder("inc");
+    }
+
+    @Test
+    public void testStoreAndRestore() throws Exception {
+        source("a.pas", "unit a; interface uses b; implementation end.");
+        source("b.pas", "unit b; interface implementation end.");
+        File out = build("out1", "a", "b");
+        File restored = restore("out2");
+        assertEquals(content(new File(out, "a" + EXT)), content(new File(restored, "a" + EXT)));
+        assertTrue(new File(restored, "b" + EXT).isFile());
+    }
+
+    @Test
+    public void testStaleCompiledNotStored() throws Exception {
+        source("a.pas", "unit a; interface implementation end.");
+        source("b.pas", "unit b; interface implementation end.");
+        File out = temp.newFolder("out1");
+        compiled(out, "a", PAST + 30000);
+        PascalArtifactCache.Session session = open(out);
+        session.restore();
+        compiled(out, "b", System.currentTimeMillis());
+        session.store();
+        File restored = restore("out2");
+        assertFalse(new File(restored, "a" + EXT).exists());
+        assertTrue(new File(restored, "b" + EXT).isFile());
+    }
+
+    @Test
+    public void testDependencyChangeChangesKey() throws Exception {
+        source("a.pas", "unit a; interface uses b; implementation end.");
+        source("b.pas", "unit b; interface uses c; implementation end.");
+        File c = source("c.pas", "unit c; interface const X = 1; implementation end.");
+        build("out1", "a", "b", "c");
+        Files.write(c.toPath(), "unit c; interface const X = 2; implementation end.".getBytes(StandardCharsets.UTF_8));
+        File restored = restore("out2");
+        assertFalse(new File(restored, "a" + EXT).exists());
+        assertFalse(new File(restored, "b" + EXT).exists());
+        assertFalse(new File(restored, "c" + EXT).exists());
+    }
+
+    @Test
+    public void testIncludeFromIncludePath() throws Exception {
+        source("a.pas", "unit a; interface {$I defs.inc} implementation end.");
+        File defs = write(new File(inc, "defs.inc"), "const X = 1;");
+        build("out1", "a");
+        assertTrue(new File(restore("out2"), "a" + EXT).isFile());
+        write(defs, "const X = 2;");
+        assertFalse(new File(restore("out3"), "a" + EXT).exists());
+    }
+
+    @Test
+    public void testIncludeWithoutExtension() throws Exception {
+        source("a.pas", "unit a; interface {$I defs} implementation end.");
+        File defs = write(new File(src, "defs.inc"), "const X = 1;");
+        build("out1", "a");
+        write(defs, "const X = 2;");
+        assertFalse(new File(restore("out2"), "a" + EXT).exists());
+    }
+
+    @Test
+    public void testMissingIncludeNotCached() throws Exception {
+        source("a.pas", "unit a; interface {$I missing.inc} implementation end.");
+        source("b.pas", "unit b; interface uses a; implementation end.");
+        source("c.pas", "unit c; interface implementation end.");
+        build("out1", "a", "b", "c");
+        File restored = restore("out2");
+        assertFalse(new File(restored, "a" + EXT).exists());
+        assertFalse(new File(restored, "b" + EXT).exists());
+        assertTrue(new File(restored, "c" + EXT).isFile());
+    }
+
+    @Test
+    public void testFindInclude() throws Exception {
+        File local = write(new File(src, "defs.inc"), "");
+        File shared = write(new File(inc, "shared.inc"), "");
+        List<File> paths = Collections.singletonList(inc);
+        assertEquals(local, PascalArtifactCache.UnitInfo.findInclude("defs.inc", src, paths));
+        assertEquals(shared, PascalArtifactCache.UnitInfo.findInclude("shared", src, paths));
+        assertNotNull(PascalArtifactCache.UnitInfo.findInclude(shared.getAbsolutePath(), src, Collections.emptyList()));
+        assertEquals(null, PascalArtifactCache.UnitInfo.findInclude("shared.inc", src, Collections.emptyList()));
+    }
+
+    // Simulates compiler run which writes compiled files of the units
+    private File build(String outName, String... units) throws IOException {
+        File out = temp.newFolder(outName);
+        PascalArtifactCache.Session session = open(out);
+        session.restore();
+        for (String unit : units) {
+            compiled(out, unit, System.currentTimeMillis());
+        }
+        session.store();
+        return out;
+    }
+
+    private File restore(String outName) throws IOException {
+        File out = temp.newFolder(outName);
+        open(out).restore();
+        return out;
+    }
+
+    private PascalArtifactCache.Session open(File out) {
+        String[] cmdLine = {"fpc", "-O2", "-Fu" + src.getAbsolutePath(), "-Fi" + src.getAbsolutePath(), "-Fi" + inc.getAbsolutePath()};
+        return cache.open("3.0.4", cmdLine, Arrays.asList(src), out, EXT);
+    }
+
+    private File source(String name, String text) throws IOException {
+        File file = write(new File(src, name), text);
+        assertTrue(file.setLastModified(PAST));
+        return file;
+    }
+
+    private static File compiled(File out, String unit, long time) throws IOException {
+        File file = write(new File(out, unit + EXT), unit + time);
+        assertTrue(file.setLastModified(time));
+        return file;
+    }
+
+    private static File write(File file, String text) throws IOException {
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static String content(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
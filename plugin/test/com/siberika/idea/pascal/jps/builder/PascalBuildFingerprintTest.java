@@ -0,0 +1,101 @@
+package com.siberika.idea.pascal.jps.builder;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class PascalBuildFingerprintTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private File data;
+    private File src;
+    private File inc;
+    private File sdk;
+    private List<File> outputs;
+    private String[] cmdLine;
+
+    @Before
+    public void setUp() throws Exception {
+        data = temp.newFolder("data");
+        src = temp.newFolder("src");
+        inc = temp.newFolder("inc");
+        sdk = temp.newFolder("sdk");
+        outputs = Collections.singletonList(temp.newFolder("out"));
+        cmdLine = new String[] {"fpc", "-Fu" + src.getPath(), "-Fi" + inc.getPath(), "-Fi" + sdk.getPath(), "main.lpr"};
+        write(new File(src, "main.lpr"), "program main; begin end.");
+        write(new File(src, "main.lfm"), "object Form1: TForm1 end");
+        write(new File(inc, "defs.inc"), "{$DEFINE A}");
+        write(new File(sdk, "system.inc"), "");
+    }
+
+    @Test
+    public void testUpToDate() throws Exception {
+        build();
+        assertNull(check());
+    }
+
+    @Test
+    public void testResourceChanged() throws Exception {
+        build();
+        write(new File(src, "main.lfm"), "object Form1: TMainForm end");
+        assertEquals("sources changed", check());
+        write(new File(src, "app.res"), "res");
+        build();
+        write(new File(src, "app.res"), "res2");
+        assertEquals("sources changed", check());
+    }
+
+    @Test
+    public void testIncludePathChanged() throws Exception {
+        build();
+        write(new File(inc, "defs.inc"), "{$DEFINE BB}");
+        assertEquals("sources changed", check());
+    }
+
+    @Test
+    public void testSdkPathNotHashed() throws Exception {
+        build();
+        write(new File(sdk, "system.inc"), "changed");
+        assertNull(check());
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        build();
+        PascalBuildFingerprint.load(data).reset();
+        assertEquals("no previous build information", check());
+    }
+
+    // content change is detected by length and modification time so changed files get different lengths
+    private void build() {
+        PascalBuildFingerprint fingerprint = compute();
+        fingerprint.save(outputs);
+    }
+
+    private String check() {
+        return compute().getChangeReason(outputs);
+    }
+
+    private PascalBuildFingerprint compute() {
+        PascalBuildFingerprint fingerprint = PascalBuildFingerprint.load(data);
+        fingerprint.computeInputs(cmdLine, "3.0.4", Collections.singletonList(src), Collections.singletonList(sdk), Collections.<File>emptyList());
+        return fingerprint;
+    }
+
+    private static void write(File file, String text) throws IOException {
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,187 @@
+package com.siberika.idea.pascal.jps.builder;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jps.api.CanceledStatus;
+import org.jetbrains.jps.incremental.CompileContext;
+import org.jetbrains.jps.incremental.ProjectBuildException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PascalBuildSchedulerTest {
+
+    private final AtomicBoolean canceled = new AtomicBoolean();
+    private final List<String> compiled = new CopyOnWriteArrayList<>();
+    private final Map<PascalTarget, List<PascalTarget>> prepared = new HashMap<>();
+    private final Map<PascalTarget, List<File>> preparedFiles = new HashMap<>();
+    private CompileContext context;
+
+    @Before
+    public void setUp() {
+        context = mock(CompileContext.class);
+        CanceledStatus cancelStatus = canceled::get;
+        when(context.getCancelStatus()).thenReturn(cancelStatus);
+    }
+
+    @Test
+    public void testDependencyOrder() throws Exception {
+        PascalTarget a = target("a");
+        PascalTarget b = target("b");
+        PascalTarget c = target("c");
+        Map<PascalTarget, Collection<PascalTarget>> deps = new LinkedHashMap<>();
+        deps.put(a, Collections.singletonList(b));
+        deps.put(b, Collections.singletonList(c));
+        deps.put(c, Collections.emptyList());
+        PascalBuildScheduler scheduler = new PascalBuildScheduler(context, new TestCompilation(run -> true), 4);
+        scheduler.schedule(deps);
+        assertTrue(scheduler.await(a));
+        assertEquals(Arrays.asList("c", "b", "a"), compiled);
+        assertEquals(Arrays.asList(b, c), prepared.get(a));
+        assertEquals(Collections.singletonList(new File("a.pas")), preparedFiles.get(a));
+    }
+
+    @Test
+    public void testParallelismBound() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        Map<PascalTarget, Collection<PascalTarget>> deps = new LinkedHashMap<>();
+        for (int i = 0; i < 8; i++) {
+            deps.put(target("t" + i), Collections.emptyList());
+        }
+        PascalBuildScheduler scheduler = new PascalBuildScheduler(context, new TestCompilation(run -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(20);
+            running.decrementAndGet();
+            return true;
+        }), 2);
+        scheduler.schedule(deps);
+        for (PascalTarget target : deps.keySet()) {
+            assertTrue(scheduler.await(target));
+        }
+        assertEquals(8, compiled.size());
+        assertTrue("Max concurrent runs: " + maxRunning.get(), maxRunning.get() <= 2);
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        PascalTarget a = target("a");
+        PascalTarget b = target("b");
+        Map<PascalTarget, Collection<PascalTarget>> deps = new LinkedHashMap<>();
+        deps.put(a, Collections.singletonList(b));
+        deps.put(b, Collections.emptyList());
+        PascalBuildScheduler scheduler = new PascalBuildScheduler(context, new TestCompilation(run -> {
+            started.countDown();
+            while (!canceled.get()) {
+                Thread.sleep(10);
+            }
+            return true;
+        }), 2);
+        scheduler.schedule(deps);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        canceled.set(true);
+        assertFalse(scheduler.await(a));
+        assertFalse(compiled.contains("a"));
+    }
+
+    @Test
+    public void testRunExceptionNotWrapped() throws Exception {
+        PascalBuildScheduler scheduler = new PascalBuildScheduler(context, new TestCompilation(run -> true), 2);
+        try {
+            scheduler.run(Collections.<Callable<Boolean>>singletonList(() -> {
+                throw new IOException("test");
+            }));
+            fail("IOException expected");
+        } catch (IOException e) {
+            assertEquals("test", e.getMessage());
+        }
+        try {
+            scheduler.run(Collections.<Callable<Boolean>>singletonList(() -> {
+                throw new ProjectBuildException("test");
+            }));
+            fail("ProjectBuildException expected");
+        } catch (ProjectBuildException e) {
+            assertEquals("test", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testDependencyFailure() throws Exception {
+        PascalTarget a = target("a");
+        PascalTarget b = target("b");
+        PascalTarget c = target("c");
+        Map<PascalTarget, Collection<PascalTarget>> deps = new LinkedHashMap<>();
+        deps.put(a, Collections.singletonList(b));
+        deps.put(b, Collections.emptyList());
+        deps.put(c, Collections.emptyList());
+        PascalBuildScheduler scheduler = new PascalBuildScheduler(context, new TestCompilation(run -> !"b".equals(run)), 2);
+        scheduler.schedule(deps);
+        assertFalse(scheduler.await(a));
+        assertFalse(scheduler.await(b));
+        assertTrue(scheduler.await(c));
+        assertFalse(compiled.contains("a"));
+    }
+
+    private static PascalTarget target(String id) {
+        PascalTarget target = mock(PascalTarget.class);
+        when(target.getId()).thenReturn(id);
+        return target;
+    }
+
+    private interface Run {
+        boolean call(String id) throws Exception;
+    }
+
+    private class TestCompilation implements PascalBuildScheduler.Compilation {
+        private final Run run;
+
+        private TestCompilation(Run run) {
+            this.run = run;
+        }
+
+        @NotNull
+        @Override
+        public List<File> getFiles(@NotNull PascalTarget target) {
+            return Collections.singletonList(new File(target.getId() + ".pas"));
+        }
+
+        @NotNull
+        @Override
+        public List<Callable<Boolean>> prepare(@NotNull PascalTarget target, @NotNull List<File> files, @NotNull List<PascalTarget> dependencies) {
+            synchronized (prepared) {
+                prepared.put(target, new ArrayList<>(dependencies));
+                preparedFiles.put(target, files);
+            }
+            return Collections.<Callable<Boolean>>singletonList(() -> {
+                boolean result = run.call(target.getId());
+                if (!canceled.get()) {
+                    compiled.add(target.getId());
+                }
+                return result;
+            });
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.siberika.idea.pascal.jps.compiler;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FPCTargetProfileTest {
+
+    @Test
+    public void parse() throws Exception {
+        List<FPCTargetProfile> matrix = FPCTargetProfile.parse(" i386-win32; x86_64-Linux -O2 -g\narm-linux;invalid;i386-win32 -O3");
+        assertEquals(3, matrix.size());
+        assertEquals("i386-win32", matrix.get(0).getName());
+        assertEquals("x86_64-linux", matrix.get(1).getName());
+        assertEquals("arm-linux", matrix.get(2).getName());
+        List<String> cmd = new ArrayList<String>();
+        matrix.get(1).addOptions(cmd);
+        assertEquals(Arrays.asList("-Px86_64", "-Tlinux", "-O2", "-g"), cmd);
+    }
+
+    @Test
+    public void parseQuoted() throws Exception {
+        List<FPCTargetProfile> matrix = FPCTargetProfile.parse("x86_64-win64 -Fi\"C:\\My Includes\" '-dNAME=a;b'; i386-win32 -O2 \"-Fu/opt/my units");
+        assertEquals(2, matrix.size());
+        List<String> cmd = new ArrayList<String>();
+        matrix.get(0).addOptions(cmd);
+        assertEquals(Arrays.asList("-Px86_64", "-Twin64", "-FiC:\\My Includes", "-dNAME=a;b"), cmd);
+        cmd.clear();
+        matrix.get(1).addOptions(cmd);
+        assertEquals(Arrays.asList("-Pi386", "-Twin32", "-O2", "-Fu/opt/my units"), cmd);
+    }
+
+    @Test
+    public void parseEmpty() throws Exception {
+        assertTrue(FPCTargetProfile.parse(null).isEmpty());
+        assertTrue(FPCTargetProfile.parse("  ").isEmpty());
+    }
+}
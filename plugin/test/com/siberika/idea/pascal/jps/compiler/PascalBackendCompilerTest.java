@@ -0,0 +1,25 @@
+package com.siberika.idea.pascal.jps.compiler;
+
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class PascalBackendCompilerTest {
+
+    @Test
+    public void launchReturnsExitCode() throws Exception {
+        CompilerMessager messager = mock(CompilerMessager.class);
+        PascalBackendCompiler compiler = new FPCBackendCompiler(messager);
+        String java = new File(new File(System.getProperty("java.home"), "bin"), "java").getPath();
+        assertEquals(0, compiler.launch(messager, new String[] {java, "-version"}, null));
+        assertEquals(1, compiler.launch(messager, new String[] {java, "NoSuchMainClass"}, null));
+        verify(messager).warning((String) isNull(), anyString(), (String) isNull(), anyLong(), anyLong());
+    }
+}
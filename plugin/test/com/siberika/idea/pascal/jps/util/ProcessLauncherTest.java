@@ -0,0 +1,102 @@
+package com.siberika.idea.pascal.jps.util;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ProcessLauncherTest {
+
+    private static final long SLEEP_MS = 30000;
+
+    @Test
+    public void testOutput() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        ProcessLauncher.Result<Void> result = launcher("out", "hello").withCharset(StandardCharsets.UTF_8)
+                .run((buffer, length) -> sb.append(buffer, 0, length));
+        assertEquals("hello", sb.toString().trim());
+        assertEquals(0, result.getExitCode());
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        long start = System.currentTimeMillis();
+        try {
+            launcher("sleep").withTimeout(1000).run((buffer, length) -> { });
+            fail("IOException expected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("timed out"));
+        }
+        assertTrue(System.currentTimeMillis() - start < SLEEP_MS);
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        long start = System.currentTimeMillis();
+        try {
+            launcher("sleep").withCancelCheck(() -> System.currentTimeMillis() - start > 1000).run((buffer, length) -> { });
+            fail("CancellationException expected");
+        } catch (CancellationException e) {
+            assertTrue(System.currentTimeMillis() - start < SLEEP_MS);
+        }
+    }
+
+    @Test
+    public void testStderrTail() throws Exception {
+        ProcessLauncher.Result<Void> result = launcher("err", "20000").run((buffer, length) -> { });
+        assertEquals(3, result.getExitCode());
+        String stderr = result.getStderr();
+        assertEquals(8192, stderr.length());
+        assertTrue(stderr.endsWith("END"));
+    }
+
+    @Test
+    public void testProcessorException() throws Exception {
+        long start = System.currentTimeMillis();
+        try {
+            launcher("sleep").run(stdout -> {
+                throw new IllegalStateException("test");
+            });
+            fail("IllegalStateException expected");
+        } catch (IllegalStateException e) {
+            assertEquals("test", e.getMessage());
+        }
+        assertTrue(System.currentTimeMillis() - start < SLEEP_MS);
+    }
+
+    private static ProcessLauncher launcher(String... args) {
+        String java = new File(new File(System.getProperty("java.home"), "bin"), "java").getPath();
+        String[] cmdLine = new String[args.length + 4];
+        cmdLine[0] = java;
+        cmdLine[1] = "-cp";
+        cmdLine[2] = System.getProperty("java.class.path");
+        cmdLine[3] = Child.class.getName();
+        System.arraycopy(args, 0, cmdLine, 4, args.length);
+        return new ProcessLauncher(cmdLine);
+    }
+
+    // Child process launched by the tests
+    public static class Child {
+        public static void main(String[] args) throws Exception {
+            if ("out".equals(args[0])) {
+                System.out.println(args[1]);
+            } else if ("err".equals(args[0])) {
+                int count = Integer.parseInt(args[1]);
+                for (int i = 0; i < count; i++) {
+                    System.err.print('e');
+                }
+                System.err.print("END");
+                System.err.flush();
+                System.exit(3);
+            } else if ("sleep".equals(args[0])) {
+                Thread.sleep(SLEEP_MS);
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.siberika.idea.pascal.lang;
+
+import com.intellij.lang.folding.FoldingDescriptor;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import com.siberika.idea.pascal.PascalLightCodeInsightFixtureTestCase;
+import com.siberika.idea.pascal.lang.folding.PascalLexerFoldingBuilder;
+import com.siberika.idea.pascal.lang.lexer.PascalLexer;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class LexerFoldingTest extends PascalLightCodeInsightFixtureTestCase {
+
+    private static final String UNIT = "unit foldTest;\n" +
+            "\n" +
+            "interface\n" +
+            "\n" +
+            "uses\n" +
+            "  SysUtils, Classes;\n" +
+            "\n" +
+            "type\n" +
+            "  TRec = record\n" +
+            "    A: Integer;\n" +
+            "    case Kind: Integer of\n" +
+            "      0: (B: Integer);\n" +
+            "      1: (C: Double);\n" +
+            "  end;\n" +
+            "\n" +
+            "implementation\n" +
+            "\n" +
+            "{ first comment line\n" +
+            "  second comment line }\n" +
+            "\n" +
+            "procedure Test(X: Integer);\n" +
+            "var\n" +
+            "  I: Integer;\n" +
+            "begin\n" +
+            "  try\n" +
+            "    begin\n" +
+            "      case X of\n" +
+            "        1: I := 1;\n" +
+            "      end;\n" +
+            "    end;\n" +
+            "  finally\n" +
+            "    I := 0;\n" +
+            "  end;\n" +
+            "end;\n" +
+            "\n" +
+            "end.\n";
+
+    @Override
+    protected void tearDown() throws Exception {
+        try {
+            System.clearProperty(PascalFoldingBuilder.LEXER_FOLDING_THRESHOLD_PROPERTY);
+        } finally {
+            super.tearDown();
+        }
+    }
+
+    public void testNestedBlocks() {
+        List<PascalLexerFoldingBuilder.Region> regions = buildRegions(UNIT);
+        assertRegion(regions, PascalLexerFoldingBuilder.Kind.BLOCK, block(UNIT, "  try", "  end;\nend;"));
+        assertRegion(regions, PascalLexerFoldingBuilder.Kind.BLOCK, block(UNIT, "    begin", "    end;\n  finally"));
+        assertRegion(regions, PascalLexerFoldingBuilder.Kind.BLOCK, block(UNIT, "      case", "      end;\n    end;"));
+        assertRegion(regions, PascalLexerFoldingBuilder.Kind.BLOCK, block(UNIT, "\nbegin", "end;\n\nend."));
+    }
+
+    public void testRecordWithVariantPart() {
+        List<PascalLexerFoldingBuilder.Region> regions = buildRegions(UNIT);
+        assertRegion(regions, PascalLexerFoldingBuilder.Kind.BLOCK, block(UNIT, "= record", "  end;\n\nimplementation"));
+    }
+
+    public void testRoutineUsesAndComment() {
+        List<PascalLexerFoldingBuilder.Region> regions = buildRegions(UNIT);
+        PascalLexerFoldingBuilder.Region routine = assertRegion(regions, PascalLexerFoldingBuilder.Kind.ROUTINE,
+                new TextRange(UNIT.indexOf("procedure") + "procedure".length(), UNIT.indexOf("end;\n\nend.") + "end".length()));
+        assertEquals(" Test(X: Integer);", routine.placeholder);
+        PascalLexerFoldingBuilder.Region uses = assertRegion(regions, PascalLexerFoldingBuilder.Kind.USES,
+                new TextRange(UNIT.indexOf("uses") + "uses".length(), UNIT.indexOf("Classes;") + "Classes;".length()));
+        assertEquals(" SysUtils, Classes;", uses.placeholder);
+        PascalLexerFoldingBuilder.Region comment = assertRegion(regions, PascalLexerFoldingBuilder.Kind.COMMENT,
+                new TextRange(UNIT.indexOf("\n  second"), UNIT.indexOf("line }") + "line }".length()));
+        assertEquals("...}", comment.placeholder);
+    }
+
+    public void testUnterminatedBlock() {
+        String text = "program test;\n" +
+                "{ first comment line\n" +
+                "  second comment line }\n" +
+                "begin\n" +
+                "  if True then begin\n" +
+                "    WriteLn(1);\n";
+        List<PascalLexerFoldingBuilder.Region> regions = buildRegions(text);
+        for (PascalLexerFoldingBuilder.Region region : regions) {
+            assertFalse(region.kind == PascalLexerFoldingBuilder.Kind.BLOCK);
+        }
+        assertRegion(regions, PascalLexerFoldingBuilder.Kind.COMMENT,
+                new TextRange(text.indexOf("\n  second"), text.indexOf("line }") + "line }".length()));
+    }
+
+    public void testThreshold() {
+        PsiFile file = myFixture.configureByText("foldTest.pas", UNIT);
+        Document document = PsiDocumentManager.getInstance(getProject()).getDocument(file);
+        System.setProperty(PascalFoldingBuilder.LEXER_FOLDING_THRESHOLD_PROPERTY, String.valueOf(UNIT.length() - 1));
+        FoldingDescriptor[] descriptors = new PascalFoldingBuilder().buildFoldRegions(file, document, true);
+        Set<TextRange> ranges = new HashSet<>();
+        for (PascalLexerFoldingBuilder.Region region : buildRegions(UNIT)) {
+            ranges.add(region.range);
+        }
+        assertEquals(ranges.size(), descriptors.length);
+        boolean found = false;
+        for (FoldingDescriptor descriptor : descriptors) {
+            found = found || " Test(X: Integer);".equals(descriptor.getPlaceholderText());
+        }
+        assertTrue(found);
+    }
+
+    private List<PascalLexerFoldingBuilder.Region> buildRegions(String text) {
+        PsiFile file = myFixture.configureByText("foldTest.pas", text);
+        return new PascalLexerFoldingBuilder(new PascalLexer.ParsingPascalLexer(getProject(), file.getVirtualFile()), text).build();
+    }
+
+    // Range from the end of the start marker to the end of the first "end" of the end marker
+    private static TextRange block(String text, String startMarker, String endMarker) {
+        int start = text.indexOf(startMarker);
+        int end = text.indexOf(endMarker);
+        assertTrue(startMarker, start >= 0);
+        assertTrue(endMarker, end >= 0);
+        return new TextRange(start + startMarker.length(), text.indexOf("end", end) + "end".length());
+    }
+
+    private static PascalLexerFoldingBuilder.Region assertRegion(List<PascalLexerFoldingBuilder.Region> regions, PascalLexerFoldingBuilder.Kind kind, TextRange range) {
+        for (PascalLexerFoldingBuilder.Region region : regions) {
+            if ((region.kind == kind) && region.range.equals(range)) {
+                return region;
+            }
+        }
+        fail(String.format("No %s region at %s", kind, range));
+        return null;
+    }
+}
@@ -0,0 +1,115 @@
+package com.siberika.idea.pascal.lang;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.psi.PsiFile;
+import com.siberika.idea.pascal.PascalLightCodeInsightFixtureTestCase;
+import com.siberika.idea.pascal.jps.compiler.CompilerMessager;
+import com.siberika.idea.pascal.jps.compiler.PascalBackendCompiler;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.function.BooleanSupplier;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class PascalSyntaxCheckOverlayTest extends PascalLightCodeInsightFixtureTestCase {
+
+    private static final String TEXT = "unit overlayTest;\ninterface\nimplementation\nend.\n";
+
+    private File tempDir;
+    private PsiFile file;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        tempDir = FileUtil.createTempDirectory("overlay", null);
+        file = myFixture.configureByText("overlayTest.pas", TEXT);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        try {
+            FileUtil.delete(tempDir);
+        } finally {
+            super.tearDown();
+        }
+    }
+
+    public void testWriteSnapshot() throws Exception {
+        PascalAnnotatorInfo info = info(1);
+        PascalSyntaxCheckOverlay.submit(info);
+        File overlayFile = PascalSyntaxCheckOverlay.writeSnapshot(info, tempDir);
+        assertNotNull(overlayFile);
+        assertEquals(file.getVirtualFile().getName(), overlayFile.getName());
+        assertTrue(FileUtil.isAncestor(tempDir, overlayFile, true));
+        assertEquals(TEXT, new String(Files.readAllBytes(overlayFile.toPath()), StandardCharsets.UTF_8));
+        PascalSyntaxCheckOverlay.deleteSnapshot(overlayFile);
+        assertFalse(overlayFile.getParentFile().exists());
+        PascalSyntaxCheckOverlay.complete(info);
+        assertFalse(PascalSyntaxCheckOverlay.isSubmitted(file.getVirtualFile()));
+    }
+
+    public void testSnapshotPerCheck() throws Exception {
+        PascalAnnotatorInfo info = info(1);
+        PascalSyntaxCheckOverlay.submit(info);
+        File first = PascalSyntaxCheckOverlay.writeSnapshot(info, tempDir);
+        File second = PascalSyntaxCheckOverlay.writeSnapshot(info, tempDir);
+        assertNotNull(first);
+        assertNotNull(second);
+        assertFalse(FileUtil.filesEqual(first.getParentFile(), second.getParentFile()));
+        PascalSyntaxCheckOverlay.deleteSnapshot(first);
+        assertTrue(second.exists());
+        PascalSyntaxCheckOverlay.deleteSnapshot(second);
+        PascalSyntaxCheckOverlay.complete(info);
+    }
+
+    public void testStaleSnapshot() throws Exception {
+        PascalAnnotatorInfo info = info(1);
+        PascalAnnotatorInfo newer = info(2);
+        PascalSyntaxCheckOverlay.submit(info);
+        PascalSyntaxCheckOverlay.submit(newer);
+        assertNull(PascalSyntaxCheckOverlay.writeSnapshot(info, tempDir));
+        PascalSyntaxCheckOverlay.complete(info);
+        assertTrue(PascalSyntaxCheckOverlay.isSubmitted(file.getVirtualFile()));
+        PascalSyntaxCheckOverlay.complete(newer);
+        assertFalse(PascalSyntaxCheckOverlay.isSubmitted(file.getVirtualFile()));
+    }
+
+    public void testCompile() throws Exception {
+        PascalAnnotatorInfo info = info(1);
+        PascalSyntaxCheckOverlay.submit(info);
+        PascalBackendCompiler compiler = mockCompiler();
+        CompilerMessager messager = mock(CompilerMessager.class);
+        assertTrue(PascalSyntaxCheckOverlay.compile(info, compiler, messager, new String[] {"fpc"}, tempDir));
+        verify(messager, never()).warning(anyString(), anyString(), anyString(), anyLong(), anyLong());
+        PascalSyntaxCheckOverlay.complete(info);
+    }
+
+    public void testCompileStale() throws Exception {
+        PascalAnnotatorInfo info = info(1);
+        PascalAnnotatorInfo newer = info(2);
+        PascalSyntaxCheckOverlay.submit(info);
+        PascalSyntaxCheckOverlay.submit(newer);
+        assertFalse(PascalSyntaxCheckOverlay.compile(info, mockCompiler(), mock(CompilerMessager.class), new String[] {"fpc"}, tempDir));
+        PascalSyntaxCheckOverlay.complete(newer);
+    }
+
+    private PascalAnnotatorInfo info(long stamp) {
+        return new PascalAnnotatorInfo(file, 4, TEXT, stamp);
+    }
+
+    // Compiler which fails unless canceled, exit code warning is reported by PascalBackendCompiler.launch() only
+    private static PascalBackendCompiler mockCompiler() throws Exception {
+        PascalBackendCompiler compiler = mock(PascalBackendCompiler.class);
+        doAnswer(invocation -> ((BooleanSupplier) invocation.getArguments()[3]).getAsBoolean() ? -1 : 1)
+                .when(compiler).launch(any(CompilerMessager.class), any(String[].class), any(File.class), any(BooleanSupplier.class));
+        return compiler;
+    }
+}
@@ -3,7 +3,6 @@ package com.siberika.idea.pascal.lang.compiled;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.testFramework.LightVirtualFile;
-import org.apache.commons.io.IOUtils;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -51,8 +50,8 @@ public class PPUDumpParserTest {
         }
 
         @Override
-        String retrieveXml(String key, VirtualFile file, File ppuDump) throws IOException {
-            return IOUtils.toString(new FileInputStream(files.get(key)), "UTF-8");
+        PPUDumpParser.Section retrieveSection(String key, VirtualFile file, File ppuDump, StreamHead head) throws Exception {
+            return PPUDumpParser.parse(new FileInputStream(files.get(key)), this);
         }
 
         @Override
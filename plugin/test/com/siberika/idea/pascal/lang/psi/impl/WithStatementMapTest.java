@@ -0,0 +1,77 @@
+package com.siberika.idea.pascal.lang.psi.impl;
+
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.siberika.idea.pascal.PascalLightCodeInsightFixtureTestCase;
+import com.siberika.idea.pascal.lang.psi.PasWithStatement;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class WithStatementMapTest extends PascalLightCodeInsightFixtureTestCase {
+
+    private static final String TEXT = "program withTest;\n" +
+            "var A, B, C: record X: Integer; end;\n" +
+            "begin\n" +
+            "  with A do begin\n" +
+            "    X := 1;\n" +
+            "    with B do\n" +
+            "      X := 2;\n" +
+            "    X := 3;\n" +
+            "  end;\n" +
+            "  C.X := 4;\n" +
+            "  with C do X := 5;\n" +
+            "end.\n";
+
+    private List<PasWithStatement> statements;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        PsiFile file = myFixture.configureByText("withTest.pas", TEXT);
+        statements = new ArrayList<>(PsiTreeUtil.findChildrenOfType(file, PasWithStatement.class));
+        assertEquals(3, statements.size());
+    }
+
+    public void testModuleMap() {
+        WithStatementMap map = WithStatementMap.forElement(myFixture.getFile());
+        assertNotNull(map);
+        checkLookup(map);
+    }
+
+    public void testCollectedMap() {
+        List<PasWithStatement> reversed = new ArrayList<>(statements);
+        Collections.reverse(reversed);
+        checkLookup(WithStatementMap.build(reversed, 0));
+    }
+
+    public void testEmpty() {
+        WithStatementMap map = WithStatementMap.build(Collections.emptyList(), 0);
+        assertTrue(map.isEmpty());
+        assertTrue(map.getAffecting(TEXT.indexOf("X := 1")).isEmpty());
+        assertNull(map.getOutermost(TEXT.indexOf("X := 1")));
+    }
+
+    private void checkLookup(WithStatementMap map) {
+        PasWithStatement outer = statements.get(0);
+        PasWithStatement nested = statements.get(1);
+        PasWithStatement last = statements.get(2);
+        assertFalse(map.isEmpty());
+        assertEquals(Collections.emptyList(), map.getAffecting(0));
+        assertEquals(Collections.emptyList(), map.getAffecting(TEXT.indexOf("with A")));
+        assertEquals(Collections.singletonList(outer), map.getAffecting(TEXT.indexOf("X := 1")));
+        assertEquals(Arrays.asList(outer, nested), map.getAffecting(TEXT.indexOf("X := 2")));
+        assertEquals(outer, map.getOutermost(TEXT.indexOf("X := 2")));
+        assertEquals(Collections.singletonList(outer), map.getAffecting(TEXT.indexOf("X := 3")));
+        int outerEnd = outer.getStatement().getTextRange().getEndOffset();
+        assertEquals(Collections.singletonList(outer), map.getAffecting(outerEnd - 1));
+        assertEquals(Collections.emptyList(), map.getAffecting(outerEnd));
+        assertEquals(Collections.emptyList(), map.getAffecting(TEXT.indexOf("C.X")));
+        assertNull(map.getOutermost(TEXT.indexOf("C.X")));
+        assertEquals(Collections.singletonList(last), map.getAffecting(TEXT.indexOf("X := 5")));
+        assertEquals(last, map.getOutermost(TEXT.indexOf("X := 5")));
+        assertEquals(Collections.emptyList(), map.getAffecting(TEXT.length() - 1));
+    }
+}
@@ -0,0 +1,127 @@
+package com.siberika.idea.pascal.lang.references;
+
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.siberika.idea.pascal.PascalLightCodeInsightFixtureTestCase;
+import com.siberika.idea.pascal.editor.highlighter.PasHighlightWithIdentsHandler;
+import com.siberika.idea.pascal.lang.psi.PasFullyQualifiedIdent;
+import com.siberika.idea.pascal.lang.psi.PasSubIdent;
+import com.siberika.idea.pascal.lang.psi.PasWithStatement;
+import com.siberika.idea.pascal.lang.psi.PascalModule;
+import com.siberika.idea.pascal.lang.psi.PascalNamedElement;
+import com.siberika.idea.pascal.lang.psi.PascalStructType;
+import com.siberika.idea.pascal.lang.psi.impl.PasField;
+import com.siberika.idea.pascal.util.PsiUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ResolvedIdentsTest extends PascalLightCodeInsightFixtureTestCase {
+
+    @Override
+    protected String getTestDataPath() {
+        return "testData/resolve";
+    }
+
+    public void testTable() {
+        myFixture.configureByFiles("resolvedIdents.pas");
+        ResolvedIdents idents = getPascalModule().getResolvedIdents();
+        for (int i = 1; i < idents.size(); i++) {
+            assertTrue(idents.getIdent(i - 1).getTextRange().getStartOffset() < idents.getIdent(i).getTextRange().getStartOffset());
+        }
+
+        int index = idents.indexOf(findIdent("TRec;"));
+        assertTrue(index >= 0);
+        assertEquals(ResolvedIdents.Section.INTERFACE, idents.getSection(index));
+        assertTrue(idents.isResolved(index));
+
+        index = idents.indexOf(findIdent("X := Local"));
+        assertTrue(index >= 0);
+        assertEquals(ResolvedIdents.Section.IMPLEMENTATION, idents.getSection(index));
+        PasField field = idents.getField(index);
+        assertNotNull(field);
+        assertTrue(field.owner instanceof PascalStructType);
+        assertEquals("TRec", field.owner.getName());
+
+        index = idents.indexOf(findIdent("Unknown"));
+        assertTrue(index >= 0);
+        assertFalse(idents.isResolved(index));
+        assertNull(idents.getField(index));
+    }
+
+    public void testResumeAfterCancel() {
+        myFixture.configureByFiles("resolvedIdents.pas");
+        List<PasSubIdent> elements = new ArrayList<>(PsiTreeUtil.findChildrenOfType(myFixture.getFile(), PasSubIdent.class));
+        assertTrue(elements.size() > 3);
+        List<PascalNamedElement> resolved = new ArrayList<>();
+        ResolvedIdents.Resolver resolver = (ident, builder) -> {
+            if ((resolved.size() == 2) && !resolved.contains(ident)) {
+                resolved.add(ident);
+                throw new ProcessCanceledException();
+            }
+            resolved.add(ident);
+            builder.addResolved(ident, ResolvedIdents.Section.NONE, null);
+        };
+        ResolvedIdents.Builder builder = new ResolvedIdents.Builder(elements);
+        try {
+            builder.build(resolver);
+            fail("ProcessCanceledException expected");
+        } catch (ProcessCanceledException e) {
+            assertEquals(2, builder.getResolvedCount());
+        }
+        ResolvedIdents idents = builder.build(resolver);
+        assertEquals(elements.size() + 1, resolved.size());        // only the interrupted identifier is resolved twice
+        assertEquals(elements.size(), idents.size());
+        for (int i = 0; i < elements.size(); i++) {
+            assertEquals(elements.get(i), idents.getIdent(i));
+        }
+    }
+
+    public void testWithIdentsFromTable() {
+        myFixture.configureByFiles("resolvedIdents.pas");
+        PasWithStatement with = PsiTreeUtil.findChildOfType(myFixture.getFile(), PasWithStatement.class);
+        assertNotNull(with);
+        List<PasSubIdent> found = new ArrayList<>();
+        for (PasFullyQualifiedIdent ident : PsiTreeUtil.findChildrenOfType(with, PasFullyQualifiedIdent.class)) {
+            PasHighlightWithIdentsHandler.processElementsFromWith(with.getExpressionList().get(0), ident, element -> {
+                found.add(element);
+                return true;
+            });
+        }
+        assertEquals(1, found.size());
+        assertEquals("X", found.get(0).getName());
+    }
+
+    public void testRebuiltOnChangeInUsedUnit() {
+        PsiFile[] files = myFixture.configureByFiles("resolvedIdentsCrossUnit.pas", "resolvedIdentsUsedUnit.pas");
+        ResolvedIdents idents = getPascalModule().getResolvedIdents();
+        assertSame(idents, getPascalModule().getResolvedIdents());
+        assertFalse(idents.isResolved(idents.indexOf(findIdent("Value :="))));
+        Document document = PsiDocumentManager.getInstance(getProject()).getDocument(files[1]);
+        assertNotNull(document);
+        int offset = document.getText().indexOf("Other");
+        WriteCommandAction.runWriteCommandAction(getProject(), () -> document.replaceString(offset, offset + "Other".length(), "Value"));
+        PsiDocumentManager.getInstance(getProject()).commitDocument(document);
+        idents = getPascalModule().getResolvedIdents();
+        int index = idents.indexOf(findIdent("Value :="));
+        assertTrue(idents.isResolved(index));
+        assertEquals("resolvedIdentsUsedUnit", idents.getField(index).owner.getName());
+    }
+
+    private PascalNamedElement findIdent(String marker) {
+        int offset = myFixture.getFile().getText().indexOf(marker);
+        assertTrue(marker, offset >= 0);
+        PsiElement element = PsiTreeUtil.getParentOfType(myFixture.getFile().findElementAt(offset), PascalNamedElement.class);
+        assertNotNull(marker, element);
+        return (PascalNamedElement) element;
+    }
+
+    private PascalModule getPascalModule() {
+        return (PascalModule) PsiUtil.getElementPasModule(myFixture.getFile());
+    }
+}
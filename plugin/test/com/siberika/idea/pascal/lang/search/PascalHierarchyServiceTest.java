@@ -0,0 +1,91 @@
+package com.siberika.idea.pascal.lang.search;
+
+import com.siberika.idea.pascal.PascalLightCodeInsightFixtureTestCase;
+import com.siberika.idea.pascal.ide.actions.SectionToggle;
+import com.siberika.idea.pascal.lang.psi.PasEntityScope;
+import com.siberika.idea.pascal.lang.psi.PascalRoutine;
+import com.siberika.idea.pascal.lang.psi.PascalStructType;
+import com.siberika.idea.pascal.lang.references.ResolveUtil;
+import com.siberika.idea.pascal.lang.stub.PascalInheritanceIndex;
+import com.siberika.idea.pascal.util.PsiUtil;
+import com.siberika.idea.pascal.util.TestUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+public class PascalHierarchyServiceTest extends PascalLightCodeInsightFixtureTestCase {
+
+    @Override
+    protected String getTestDataPath() {
+        return "testData/hierarchy";
+    }
+
+    public void testKey() {
+        assertEquals("TLIST", PascalInheritanceIndex.getKey("System.Generics.TList<Integer>"));
+        assertEquals("TBASE", PascalInheritanceIndex.getKey("TBase#"));
+        assertEquals("TLIST", PascalInheritanceIndex.getKey("generic TList<T>#"));
+    }
+
+    public void testSubtypes() {
+        myFixture.configureByFiles("hierarchy.pas");
+        PascalHierarchyService service = PascalHierarchyService.getInstance(myFixture.getProject());
+        assertEquals(names("TMiddle", "TOther"), names(service.getSubtypes(find("TBase"))));
+        assertEquals(names("TMiddle", "TLeaf", "TOther"), names(collectSubtypes(service, find("TBase"))));
+        assertEquals(names("TLeaf"), names(service.getSubtypes(find("TMiddle"))));
+        assertEquals(names("TBase", "IDerived", "TMiddle", "TLeaf", "TOther"), names(collectSubtypes(service, find("IBase"))));
+        assertTrue(service.hasSubtypes(find("TBase")));
+        assertFalse(service.hasSubtypes(find("TLeaf")));
+        assertFalse(service.hasSubtypes(find("TUnrelated")));
+    }
+
+    public void testSupertypes() {
+        myFixture.configureByFiles("hierarchy.pas");
+        PascalHierarchyService service = PascalHierarchyService.getInstance(myFixture.getProject());
+        assertEquals(names("TBase", "IDerived"), names(service.getSupertypes(find("TMiddle"))));
+        assertTrue(service.isSubtype(find("TLeaf"), find("TBase")));
+        assertTrue(service.isSubtype(find("TLeaf"), find("IBase")));
+        assertFalse(service.isSubtype(find("TBase"), find("TLeaf")));
+        assertFalse(service.isSubtype(find("TOther"), find("TMiddle")));
+    }
+
+    public void testOverridden() {
+        myFixture.configureByFiles("hierarchy.pas");
+        PascalHierarchyService service = PascalHierarchyService.getInstance(myFixture.getProject());
+        PascalStructType base = find("TBase");
+        PasEntityScope run = (PasEntityScope) base.getField("Run").getElement();
+        PasEntityScope stay = (PasEntityScope) base.getField("Stay").getElement();
+        PasEntityScope runImpl = (PasEntityScope) SectionToggle.retrieveImplementation((PascalRoutine) run, false);
+        List<PasEntityScope> elements = Arrays.asList(base, run, stay, runImpl, find("TLeaf"), find("TMiddle"));
+        Set<PasEntityScope> overridden = service.findOverridden(elements);
+        assertEquals(new HashSet<>(Arrays.asList(base, run, runImpl, find("TMiddle"))), overridden);
+        assertEquals(overridden, service.findOverridden(elements));
+    }
+
+    private static List<PascalStructType> collectSubtypes(PascalHierarchyService service, PascalStructType type) {
+        List<PascalStructType> result = new ArrayList<>();
+        service.processSubtypes(type, true, result::add);
+        return result;
+    }
+
+    private PascalStructType find(String name) {
+        return (PascalStructType) TestUtil.findClass(Objects.requireNonNull(PsiUtil.getElementPasModule(myFixture.getFile())), name);
+    }
+
+    private static Collection<String> names(String...names) {
+        return new TreeSet<>(Arrays.asList(names));
+    }
+
+    private static Collection<String> names(List<PascalStructType> types) {
+        Collection<String> result = new TreeSet<>();
+        for (PascalStructType type : types) {
+            result.add(ResolveUtil.cleanupName(type.getName()));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,157 @@
+package com.siberika.idea.pascal.lang.stub;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiFileFactory;
+import com.intellij.psi.stubs.DefaultStubBuilder;
+import com.intellij.psi.stubs.LightStubBuilder;
+import com.intellij.psi.stubs.StubElement;
+import com.siberika.idea.pascal.PascalLanguage;
+import com.siberika.idea.pascal.PascalLightCodeInsightFixtureTestCase;
+import com.siberika.idea.pascal.lang.stub.struct.PasStructStub;
+import com.siberika.idea.pascal.lang.stub.struct.PascalHelperDeclStub;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+public class LightStubBuilderTest extends PascalLightCodeInsightFixtureTestCase {
+
+    // Directory with sources to benchmark stub building on, e.g. FPC rtl or packages
+    static final String BENCHMARK_DIR_PROPERTY = "pascal.stub.benchmark.dir";
+
+    @Override
+    protected String getTestDataPath() {
+        return "testData/stub";
+    }
+
+    public void testUnit() throws IOException {
+        doTest("lightStubs.pas");
+    }
+
+    public void testProgram() throws IOException {
+        doTest("lightStubsProgram.pas");
+    }
+
+    public void testLightStubs() throws IOException {
+        StubElement stub = buildLight("lightStubs.pas", loadText("lightStubs.pas"));
+        String dump = dump(stub);
+        assertTrue(dump, dump.contains("PasModuleStubImpl lightStubs UNIT [System.Types, Classes, SysUtils] [Math]"));
+        assertTrue(dump, dump.contains("TBase# lightStubs parents=[TObject, IBase]"));
+        assertTrue(dump, dump.contains("generic TList<T># lightStubs parents=[TBase] aliases=[] params=[T]"));
+        assertTrue(dump, dump.contains("Anon1# lightStubs parents=[] aliases=[Anon2#]"));
+        assertTrue(dump, dump.contains("TBaseHelper# lightStubs parents=[] aliases=[] params=[] target=TBase"));
+        assertTrue(dump, dump.contains("Writer 2 lightStubs PROPERTY Integer TYPEALIAS WRITEONLY null []"));
+        assertTrue(dump, dump.contains("TColor 2 lightStubs TYPE (clRed, clGreen, clBlue) ENUM READONLY null [clRed, clGreen, clBlue]"));
+        assertTrue(dump, dump.contains("Create PUBLIC 42 lightStubs TBase [AValue, AName] [Integer, string] [NONE, CONST] ['default']"));
+        assertFalse(dump, dump.contains("Tmp"));
+        assertFalse(dump, dump.contains("Prefix"));
+    }
+
+    public void testBenchmark() throws IOException {
+        String dir = System.getProperty(BENCHMARK_DIR_PROPERTY);
+        if (null == dir) {
+            return;
+        }
+        List<File> files = new ArrayList<>();
+        collectSources(new File(dir), files);
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long psiTime = 0, psiBytes = 0, lightTime = 0, lightBytes = 0;
+        for (File file : files) {
+            String text = FileUtil.loadFile(file);
+            long bytes = bean.getThreadAllocatedBytes(threadId);
+            long time = System.nanoTime();
+            StubElement psiStub = buildPsi(file.getName(), text);
+            psiTime += System.nanoTime() - time;
+            psiBytes += bean.getThreadAllocatedBytes(threadId) - bytes;
+
+            bytes = bean.getThreadAllocatedBytes(threadId);
+            time = System.nanoTime();
+            StubElement lightStub = buildLight(file.getName(), text);
+            lightTime += System.nanoTime() - time;
+            lightBytes += bean.getThreadAllocatedBytes(threadId) - bytes;
+
+            assertEquals(file.getPath(), dump(psiStub), dump(lightStub));
+        }
+        System.out.println(String.format(Locale.US, "Stubs of %d files. PSI builder: %d ms, %d MB allocated. Light builder: %d ms, %d MB allocated.",
+                files.size(), psiTime / 1000000, psiBytes >> 20, lightTime / 1000000, lightBytes >> 20));
+    }
+
+    private void doTest(String filename) throws IOException {
+        String text = loadText(filename);
+        assertEquals(dump(buildPsi(filename, text)), dump(buildLight(filename, text)));
+    }
+
+    private String loadText(String filename) throws IOException {
+        return FileUtil.loadFile(new File(getTestDataPath(), filename));
+    }
+
+    private PsiFile createFile(String filename, String text) {
+        return PsiFileFactory.getInstance(myFixture.getProject()).createFileFromText(filename, PascalLanguage.INSTANCE, text);
+    }
+
+    private StubElement buildPsi(String filename, String text) {
+        return new DefaultStubBuilder().buildStubTree(createFile(filename, text));
+    }
+
+    // AST of the created file is not loaded so the stubs are built from light tree
+    private StubElement buildLight(String filename, String text) {
+        return new LightStubBuilder().buildStubTree(createFile(filename, text));
+    }
+
+    static void collectSources(File dir, List<File> result) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName().toLowerCase();
+                if (file.isDirectory()) {
+                    collectSources(file, result);
+                } else if (name.endsWith(".pas") || name.endsWith(".pp")) {
+                    result.add(file);
+                }
+            }
+        }
+    }
+
+    static String dump(StubElement stub) {
+        StringBuilder sb = new StringBuilder();
+        dump(stub, sb, "");
+        return sb.toString();
+    }
+
+    private static void dump(StubElement<?> stub, StringBuilder sb, String indent) {
+        sb.append(indent).append(stub.getClass().getSimpleName());
+        if (stub instanceof PasModuleStub) {
+            PasModuleStub s = (PasModuleStub) stub;
+            sb.append(" ").append(s.getName()).append(" ").append(s.getModuleType())
+                    .append(" ").append(s.getUsedUnitsPublic()).append(" ").append(s.getUsedUnitsPrivate());
+        } else if (stub instanceof PasExportedRoutineStub) {
+            PasExportedRoutineStub s = (PasExportedRoutineStub) stub;
+            sb.append(" ").append(s.getName()).append(" ").append(s.getVisibility()).append(" ").append(s.getFlags())
+                    .append(" ").append(s.getContainingUnitName()).append(" ").append(s.getFunctionTypeStr())
+                    .append(" ").append(s.getFormalParameterNames()).append(" ").append(s.getFormalParameterTypes())
+                    .append(" ").append(s.getFormalParameterAccess()).append(" ").append(s.getFormalParameterValues());
+        } else if (stub instanceof PasIdentStub) {
+            PasIdentStub s = (PasIdentStub) stub;
+            sb.append(" ").append(s.getName()).append(" ").append(s.getFlags()).append(" ").append(s.getContainingUnitName())
+                    .append(" ").append(s.getType()).append(" ").append(s.getTypeString()).append(" ").append(s.getTypeKind())
+                    .append(" ").append(s.getAccess()).append(" ").append(s.getValue()).append(" ").append(s.getSubMembers());
+        } else if (stub instanceof PasStructStub) {
+            PasStructStub s = (PasStructStub) stub;
+            sb.append(" ").append(s.getName()).append(" ").append(s.getContainingUnitName())
+                    .append(" parents=").append(s.getParentNames()).append(" aliases=").append(s.getAliases())
+                    .append(" params=").append(s.getTypeParameters());
+            if (stub instanceof PascalHelperDeclStub) {
+                sb.append(" target=").append(((PascalHelperDeclStub) stub).getTarget());
+            }
+        }
+        sb.append("\n");
+        for (StubElement child : stub.getChildrenStubs()) {
+            dump(child, sb, indent + "  ");
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.siberika.idea.pascal.lang.stub;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.psi.PsiFileFactory;
+import com.intellij.psi.stubs.LightStubBuilder;
+import com.intellij.psi.stubs.StubElement;
+import com.siberika.idea.pascal.PascalLanguage;
+import com.siberika.idea.pascal.PascalLightCodeInsightFixtureTestCase;
+
+import java.io.File;
+import java.io.IOException;
+
+public class PasStubMemberTableTest extends PascalLightCodeInsightFixtureTestCase {
+
+    @Override
+    protected String getTestDataPath() {
+        return "testData/stub";
+    }
+
+    public void testModuleMembers() throws IOException {
+        PasModuleStub module = buildModule("lightStubs.pas");
+        PasStubMemberTable table = PasStubMemberTable.of(module);
+        assertSame(table, PasStubMemberTable.of(module));
+        assertSame(module, table.getStub("LIGHTSTUBS"));
+        assertEquals("TBase#", table.getStub("tbase#").getName());
+        assertEquals("MAX_COUNT", table.getStub("Max_Count").getName());
+        assertEquals("Anon1#", table.getStub("anon2#").getName());
+        assertEquals("Max", table.getStub("max(A:Integer,B:Integer):Integer").getName());
+        assertEquals(1, table.getRoutineCount("MAX"));
+        assertEquals(0, table.getRoutineCount("GetItem"));
+        assertNull(table.getStub("Tmp"));
+        assertNull(table.getStub("Unknown"));
+    }
+
+    public void testStructMembers() throws IOException {
+        PasModuleStub module = buildModule("lightStubs.pas");
+        PasStubMemberTable table = PasStubMemberTable.of((PasNamedStub) PasStubMemberTable.of(module).getStub("TBase#"));
+        assertEquals("FValue", table.getStub("fvalue").getName());
+        assertEquals("Items", table.getStub("ITEMS").getName());
+        assertEquals(1, table.getRoutineCount("getitem"));
+        assertEquals(1, table.getRoutineCount("Create"));
+        assertNull(table.getStub("TBase#"));
+    }
+
+    private PasModuleStub buildModule(String filename) throws IOException {
+        String text = FileUtil.loadFile(new File(getTestDataPath(), filename));
+        StubElement root = new LightStubBuilder().buildStubTree(PsiFileFactory.getInstance(myFixture.getProject())
+                .createFileFromText(filename, PascalLanguage.INSTANCE, text));
+        return (PasModuleStub) root.getChildrenStubs().get(0);
+    }
+}
@@ -0,0 +1,68 @@
+package com.siberika.idea.pascal.lang.stub;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.siberika.idea.pascal.PPUFileType;
+import com.siberika.idea.pascal.PascalFileType;
+import com.siberika.idea.pascal.PascalLightCodeInsightFixtureTestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+public class PascalUnitFileIndexTest extends PascalLightCodeInsightFixtureTestCase {
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        addUnit("SysUtils.pas");
+        addUnit("System.SysUtils.pas");
+        addUnit("Vcl.Imaging.Jpeg.pas");
+        addUnit("Data.Jpeg.pas");
+        addUnit("LongUnit.pp");
+    }
+
+    public void testExactName() {
+        assertEquals(Collections.singletonList("SysUtils.pas"), names(PascalUnitFileIndex.getFilesByName("sysutils", scope())));
+        assertEquals(Collections.singletonList("System.SysUtils.pas"), names(PascalUnitFileIndex.getFilesByName("SYSTEM.sysutils", scope())));
+        assertTrue(PascalUnitFileIndex.getFilesByName("Jpeg", scope()).isEmpty());
+        assertTrue(PascalUnitFileIndex.getFilesByName("SysUtils", scope(), PPUFileType.INSTANCE).isEmpty());
+    }
+
+    public void testNamespaces() {
+        assertEquals(Arrays.asList("SysUtils.pas", "System.SysUtils.pas"),
+                names(PascalUnitFileIndex.getUnitFiles("SysUtils", Collections.singletonList("System"), scope(), PascalFileType.INSTANCE)));
+        assertEquals(Arrays.asList("Data.Jpeg.pas", "Vcl.Imaging.Jpeg.pas"),
+                names(PascalUnitFileIndex.getUnitFiles("jpeg", Arrays.asList("Data", "Vcl.Imaging"), scope())));
+        assertEquals(Arrays.asList("Vcl.Imaging.Jpeg.pas", "Data.Jpeg.pas"),
+                names(PascalUnitFileIndex.getUnitFiles("jpeg", Arrays.asList("vcl.imaging", "Data"), scope())));
+        assertEquals(Collections.singletonList("Vcl.Imaging.Jpeg.pas"),
+                names(PascalUnitFileIndex.getUnitFiles("Imaging.Jpeg", Collections.singletonList("Vcl"), scope())));
+        assertTrue(PascalUnitFileIndex.getUnitFiles("Jpeg", Collections.singletonList("Vcl"), scope()).isEmpty());
+    }
+
+    public void testTruncatedName() {
+        assertEquals(Collections.singletonList("LongUnit.pp"), names(PascalUnitFileIndex.getUnitFiles("LongUnitName", scope())));
+        assertEquals("LongUnit.pp", PascalUnitFileIndex.getUnitFile("longunitname", scope()).getName());
+        assertNull(PascalUnitFileIndex.getUnitFile("LongUnitName", scope(), PPUFileType.INSTANCE));
+    }
+
+    private void addUnit(String fileName) {
+        String name = fileName.substring(0, fileName.lastIndexOf('.'));
+        myFixture.addFileToProject(fileName, "unit " + name + ";\ninterface\nimplementation\nend.\n");
+    }
+
+    private GlobalSearchScope scope() {
+        return GlobalSearchScope.allScope(getProject());
+    }
+
+    private static List<String> names(Collection<VirtualFile> files) {
+        List<String> result = new ArrayList<>();
+        for (VirtualFile file : files) {
+            result.add(file.getName());
+        }
+        return result;
+    }
+}
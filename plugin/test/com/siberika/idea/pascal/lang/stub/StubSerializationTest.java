@@ -0,0 +1,84 @@
+package com.siberika.idea.pascal.lang.stub;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.psi.PsiFileFactory;
+import com.intellij.psi.stubs.LightStubBuilder;
+import com.intellij.psi.stubs.SerializationManagerEx;
+import com.intellij.psi.stubs.Stub;
+import com.intellij.psi.stubs.StubElement;
+import com.siberika.idea.pascal.PascalLanguage;
+import com.siberika.idea.pascal.PascalLightCodeInsightFixtureTestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+public class StubSerializationTest extends PascalLightCodeInsightFixtureTestCase {
+
+    private static final int BENCHMARK_ROUNDS = 5;
+
+    @Override
+    protected String getTestDataPath() {
+        return "testData/stub";
+    }
+
+    public void testRoundTrip() throws Exception {
+        for (String filename : new String[] {"lightStubs.pas", "lightStubsProgram.pas"}) {
+            StubElement stub = buildStub(filename, FileUtil.loadFile(new File(getTestDataPath(), filename)));
+            byte[] data = serialize(stub);
+            assertEquals(filename, LightStubBuilderTest.dump(stub), LightStubBuilderTest.dump((StubElement) deserialize(data)));
+        }
+    }
+
+    public void testBenchmark() throws Exception {
+        String dir = System.getProperty(LightStubBuilderTest.BENCHMARK_DIR_PROPERTY);
+        if (null == dir) {
+            return;
+        }
+        List<File> files = new ArrayList<>();
+        LightStubBuilderTest.collectSources(new File(dir), files);
+        List<byte[]> serialized = new ArrayList<>(files.size());
+        long bytes = 0;
+        for (File file : files) {
+            byte[] data = serialize(buildStub(file.getName(), FileUtil.loadFile(file)));
+            serialized.add(data);
+            bytes += data.length;
+        }
+        long stubCount = 0;
+        long time = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ROUNDS; i++) {
+            for (byte[] data : serialized) {
+                stubCount += countStubs((StubElement) deserialize(data));
+            }
+        }
+        double seconds = (System.nanoTime() - time) / 1e9;
+        System.out.println(String.format(Locale.US, "Stubs of %d files: %d bytes, %.1f bytes per file. Deserialization: %.0f stubs/s, %.1f MB/s",
+                files.size(), bytes, (double) bytes / Math.max(files.size(), 1),
+                stubCount / seconds, bytes * BENCHMARK_ROUNDS / seconds / (1 << 20)));
+    }
+
+    private StubElement buildStub(String filename, String text) {
+        return new LightStubBuilder().buildStubTree(PsiFileFactory.getInstance(myFixture.getProject()).createFileFromText(filename, PascalLanguage.INSTANCE, text));
+    }
+
+    private static byte[] serialize(StubElement stub) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SerializationManagerEx.getInstanceEx().serialize(stub, out);
+        return out.toByteArray();
+    }
+
+    private static Stub deserialize(byte[] data) throws Exception {
+        return SerializationManagerEx.getInstanceEx().deserialize(new ByteArrayInputStream(data));
+    }
+
+    private static int countStubs(StubElement<?> stub) {
+        int result = 1;
+        for (StubElement child : stub.getChildrenStubs()) {
+            result += countStubs(child);
+        }
+        return result;
+    }
+}
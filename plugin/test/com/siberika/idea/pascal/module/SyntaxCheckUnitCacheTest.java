@@ -0,0 +1,118 @@
+package com.siberika.idea.pascal.module;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.siberika.idea.pascal.PascalLightCodeInsightFixtureTestCase;
+
+import java.io.File;
+import java.io.IOException;
+
+public class SyntaxCheckUnitCacheTest extends PascalLightCodeInsightFixtureTestCase {
+
+    private static final String EXT = ".ppu";
+    private static final long T0 = System.currentTimeMillis() - 600000;
+
+    private File srcDir;
+    private File outputDir;
+    private File unitDir;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        File root = FileUtil.createTempDirectory("syntaxCheck", null);
+        srcDir = new File(root, "src");
+        outputDir = new File(root, "out");
+        unitDir = new File(root, "cache");
+        assertTrue(srcDir.mkdirs() && outputDir.mkdirs());
+    }
+
+    public void testSeed() throws Exception {
+        write(new File(srcDir, "a.pas"), "unit a;", T0);
+        write(new File(outputDir, "a" + EXT), "a1", T0 + 1000);
+        File dir = newCache().prepare();
+        assertEquals("a1", FileUtil.loadFile(new File(dir, "a" + EXT)));
+    }
+
+    public void testStaleOutputNotSeeded() throws Exception {
+        write(new File(srcDir, "a.pas"), "unit a;", T0 + 2000);
+        write(new File(outputDir, "a" + EXT), "a1", T0 + 1000);
+        File dir = newCache().prepare();
+        assertFalse(new File(dir, "a" + EXT).exists());
+    }
+
+    public void testChangedSourceEvicts() throws Exception {
+        File source = write(new File(srcDir, "a.pas"), "unit a;", T0);
+        write(new File(outputDir, "a" + EXT), "a1", T0 + 1000);
+        newCache().prepare();
+        write(source, "unit a; // changed", T0 + 500);
+        File dir = newCache().prepare();
+        assertFalse(new File(dir, "a" + EXT).exists());
+    }
+
+    public void testUnitWithoutHash() throws Exception {
+        write(new File(srcDir, "a.pas"), "unit a;", T0 + 2000);
+        write(new File(srcDir, "b.pas"), "unit b;", T0);
+        assertTrue(unitDir.mkdirs());
+        write(new File(unitDir, "a" + EXT), "a0", T0 + 1000);
+        write(new File(unitDir, "b" + EXT), "b0", T0 + 1000);
+        File dir = newCache().prepare();
+        assertFalse(new File(dir, "a" + EXT).exists());
+        assertFalse("Units compiled by syntax check are not trusted", new File(dir, "b" + EXT).exists());
+    }
+
+    public void testEvictIgnoresCase() throws Exception {
+        write(new File(srcDir, "Unit1.pas"), "unit Unit1;", T0);
+        write(new File(outputDir, "unit1" + EXT), "a1", T0 + 1000);
+        write(new File(outputDir, "unit1.o"), "o1", T0 + 1000);
+        SyntaxCheckUnitCache cache = newCache();
+        File dir = cache.prepare();
+        assertTrue(new File(dir, "unit1" + EXT).exists());
+        cache.evict("Unit1");
+        assertFalse(new File(dir, "unit1" + EXT).exists());
+        assertFalse(new File(dir, "unit1.o").exists());
+        write(new File(dir, "unit1" + EXT), "a2", T0 + 2000);
+        cache = newCache();
+        dir = cache.prepare();
+        assertFalse("Unit compiled by syntax check after eviction is dropped", new File(dir, "unit1" + EXT).exists());
+        dir = cache.prepare();
+        assertEquals("a1", FileUtil.loadFile(new File(dir, "unit1" + EXT)));
+    }
+
+    public void testRebuiltOutputReseeded() throws Exception {
+        write(new File(srcDir, "a.pas"), "unit a;", T0);
+        File compiled = write(new File(outputDir, "a" + EXT), "a1", T0 + 1000);
+        SyntaxCheckUnitCache cache = newCache();
+        cache.prepare();
+        long dirTime = outputDir.lastModified();
+        write(compiled, "a2", T0 + 3000);
+        assertTrue(outputDir.setLastModified(dirTime));
+        File dir = cache.prepare();
+        assertEquals("a2", FileUtil.loadFile(new File(dir, "a" + EXT)));
+    }
+
+    // New instance as after IDE restart
+    private SyntaxCheckUnitCache newCache() {
+        return new SyntaxCheckUnitCache(getModule(), unitDir, EXT) {
+            @Override
+            File getOutputDir() {
+                return outputDir;
+            }
+
+            @Override
+            VirtualFile findSource(String unitName) {
+                VirtualFile file = LocalFileSystem.getInstance().refreshAndFindFileByIoFile(new File(srcDir, unitName + ".pas"));
+                if (file != null) {
+                    file.refresh(false, false);
+                }
+                return file;
+            }
+        };
+    }
+
+    private static File write(File file, String text, long time) throws IOException {
+        FileUtil.writeToFile(file, text);
+        assertTrue(file.setLastModified(time));
+        return file;
+    }
+}
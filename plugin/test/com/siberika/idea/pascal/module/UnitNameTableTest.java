@@ -0,0 +1,33 @@
+package com.siberika.idea.pascal.module;
+
+import com.siberika.idea.pascal.PascalLightCodeInsightFixtureTestCase;
+import com.siberika.idea.pascal.lang.psi.PascalModule;
+
+import java.util.Collection;
+
+public class UnitNameTableTest extends PascalLightCodeInsightFixtureTestCase {
+
+    @Override
+    protected String getTestDataPath() {
+        return "testData/uses";
+    }
+
+    public void testFindUnits() {
+        myFixture.configureByFiles("TestUnit.pas", "UsedIntf.pas", "UsedImpl.pas");
+        UnitNameTable table = ModuleService.getInstance(getModule()).getUnitNameTable(getModule());
+        assertSame(table, ModuleService.getInstance(getModule()).getUnitNameTable(getModule()));
+        Collection<PascalModule> units = table.findUnits("usedintf");
+        assertEquals(1, units.size());
+        assertEquals("UsedIntf", units.iterator().next().getName());
+        assertSame(units, table.findUnits("USEDINTF"));
+        assertTrue(table.findUnits("Unknown").isEmpty());
+    }
+
+    public void testNewUnit() {
+        myFixture.configureByFiles("TestUnit.pas");
+        UnitNameTable table = ModuleService.getInstance(getModule()).getUnitNameTable(getModule());
+        assertTrue(table.findUnits("AddedUnit").isEmpty());
+        myFixture.addFileToProject("AddedUnit.pas", "unit AddedUnit;\ninterface\nimplementation\nend.");
+        assertEquals(1, table.findUnits("AddedUnit").size());
+    }
+}
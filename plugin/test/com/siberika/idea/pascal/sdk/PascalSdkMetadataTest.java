@@ -0,0 +1,98 @@
+package com.siberika.idea.pascal.sdk;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class PascalSdkMetadataTest {
+
+    private static final String HOME = "/sdk/home";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Consumer<PascalSdkMetadata.SdkRecord> loader = record -> {
+        loads.incrementAndGet();
+        record.version = "3.2." + loads.get();
+        record.target = "x86_64-linux";
+    };
+    private PascalSdkMetadata metadata;
+    private File binary;
+
+    @Before
+    public void setUp() throws IOException {
+        metadata = new PascalSdkMetadata();
+        binary = folder.newFile("fpc");
+        Files.write(binary.toPath(), new byte[] {1, 2, 3});
+        binary.setLastModified(1000000000000L);
+    }
+
+    @Test
+    public void testRecordReused() {
+        PascalSdkMetadata.SdkRecord record = metadata.getRecord(HOME, binary, loader);
+        assertEquals("3.2.1", record.version);
+        assertEquals(binary.getPath(), record.binaryPath);
+        assertEquals(3, record.binarySize);
+        assertSame(record, metadata.getRecord(HOME, binary, loader));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testBinaryModified() {
+        metadata.getRecord(HOME, binary, loader);
+        binary.setLastModified(binary.lastModified() + 60000);
+        assertEquals("3.2.2", metadata.getRecord(HOME, binary, loader).version);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testBinarySizeChanged() throws IOException {
+        metadata.getRecord(HOME, binary, loader);
+        long modified = binary.lastModified();
+        Files.write(binary.toPath(), new byte[] {1, 2, 3, 4});
+        binary.setLastModified(modified);
+        assertEquals("3.2.2", metadata.getRecord(HOME, binary, loader).version);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testBinaryPathChanged() throws IOException {
+        metadata.getRecord(HOME, binary, loader);
+        File other = folder.newFile("ppcx64");
+        Files.copy(binary.toPath(), other.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        other.setLastModified(binary.lastModified());
+        metadata.getRecord(HOME, other, loader);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testRecordWithoutVersionNotStored() {
+        PascalSdkMetadata.SdkRecord record = metadata.getRecord(HOME, binary, r -> loads.incrementAndGet());
+        assertNull(record.version);
+        metadata.getRecord(HOME, binary, loader);
+        assertEquals(2, loads.get());
+        assertEquals(1, metadata.records.size());
+    }
+
+    @Test
+    public void testInvalidate() {
+        metadata.getRecord(HOME, binary, loader);
+        metadata.invalidate(HOME);
+        metadata.invalidate(null);
+        assertEquals("3.2.2", metadata.getRecord(HOME, binary, loader).version);
+        assertEquals(2, loads.get());
+    }
+}
@@ -0,0 +1,39 @@
+unit unusedIdentsNested;
+interface
+
+procedure Outer;
+procedure Outer2;
+
+implementation
+
+procedure Outer;
+var
+    X: Integer;
+
+    procedure Inner;
+    var
+        <warning descr="W0003: Identifier declared but never used">X</warning>: Integer;
+    begin
+    end;
+
+begin
+    X := 1;
+    Inner;
+end;
+
+procedure Outer2;
+var
+    <warning descr="W0003: Identifier declared but never used">Y</warning>: Integer;
+
+    procedure Inner2;
+    var
+        Y: Integer;
+    begin
+        Y := 1;
+    end;
+
+begin
+    Inner2;
+end;
+
+end.
@@ -0,0 +1,31 @@
+unit unusedIdentsOverload;
+interface
+
+procedure Run;
+
+implementation
+
+procedure Print(const S: string); overload;
+var
+    T: string;
+begin
+    T := S;
+end;
+
+procedure Print(const I: Integer); overload;
+var
+    N: Integer;
+begin
+    N := I;
+end;
+
+procedure Run;
+var
+    Num: Integer;
+    <warning descr="W0003: Identifier declared but never used">Str</warning>: string;
+begin
+    Num := 1;
+    Print(Num);
+end;
+
+end.
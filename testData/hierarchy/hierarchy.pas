@@ -0,0 +1,38 @@
+unit hierarchy;
+
+interface
+
+type
+    IBase = interface
+    end;
+    IDerived = interface(IBase)
+    end;
+    TBase = class(TObject, IBase)
+        procedure Run(); virtual;
+        procedure Stay();
+    end;
+    TMiddle = class(TBase, IDerived)
+        procedure Run(); override;
+    end;
+    TLeaf = class(hierarchy.TMiddle)
+    end;
+    TOther = class(TBase)
+    end;
+    TUnrelated = class
+    end;
+
+implementation
+
+procedure TBase.Run();
+begin
+end;
+
+procedure TBase.Stay();
+begin
+end;
+
+procedure TMiddle.Run();
+begin
+end;
+
+end.
@@ -0,0 +1,23 @@
+unit genericSpecialization;
+
+interface
+
+type
+    TFoo = class
+    end;
+    TList<T> = class
+        procedure Add(const Item: T);
+    end;
+
+var
+    A: TList<TFoo>;
+    B: TList< TFoo >;
+    C: TList<Integer>;
+
+implementation
+
+procedure TList<T>.Add(const Item: T);
+begin
+end;
+
+end.
@@ -0,0 +1,26 @@
+unit resolvedIdents;
+
+interface
+
+type
+  TRec = record
+    X: Integer;
+    Y: Integer;
+  end;
+
+var
+  R: TRec;
+
+implementation
+
+procedure Test;
+var
+  Local: Integer;
+begin
+  Local := 1;
+  with R do
+    X := Local;
+  Unknown := 2;
+end;
+
+end.
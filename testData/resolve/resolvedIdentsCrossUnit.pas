@@ -0,0 +1,14 @@
+unit resolvedIdentsCrossUnit;
+
+interface
+
+uses resolvedIdentsUsedUnit;
+
+implementation
+
+procedure Test;
+begin
+  Value := 1;
+end;
+
+end.
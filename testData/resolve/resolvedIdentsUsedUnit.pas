@@ -0,0 +1,10 @@
+unit resolvedIdentsUsedUnit;
+
+interface
+
+var
+  Other: Integer;
+
+implementation
+
+end.
@@ -0,0 +1,156 @@
+unit lightStubs;
+
+interface
+
+uses SysUtils, Classes, System.Types;
+
+const
+  MAX_COUNT = 100;
+  Title: string = 'stubs';
+
+type
+  TColor = (clRed, clGreen, clBlue);
+  TColors = set of TColor;
+  TRange = 1..10;
+  PInteger = ^Integer;
+  TName = type string;
+  TAlias = Integer;
+  TIntArray = array of Integer;
+  TNotify = procedure(Sender: TObject) of object;
+  TBaseClass = class of TBase;
+
+  IBase = interface(IInterface)
+    function GetValue: Integer;
+    property Value: Integer read GetValue;
+  end;
+
+  TBase = class(TObject, IBase)
+  private
+    FValue: Integer;
+    FItems: array[0..9] of string;
+    function GetItem(Index: Integer): string;
+    procedure SetItem(Index: Integer; const AValue: string);
+  protected
+    function GetValue: Integer; virtual; abstract;
+  public
+    constructor Create(AValue: Integer; const AName: string = 'default'); overload;
+    class constructor CreateClass;
+    destructor Destroy; override;
+    procedure Process(var Data; out Count: Integer; constref Ref: TBase); dynamic; final;
+    property Items[Index: Integer]: string read GetItem write SetItem; default;
+    property Writer: Integer write FValue;
+    class operator Add(A, B: TBase): TBase;
+  end;
+
+  generic TList<T> = class(TBase)
+    FData: array of T;
+  end;
+
+  TPoint = record
+    X, Y: Integer;
+    case Kind: Byte of
+      0: (A: Integer);
+      1: (B: Double);
+  end;
+
+  TOldObject = object
+    Count: Integer;
+  end;
+
+  TBaseHelper = class helper for TBase
+    function Describe: string;
+  end;
+
+  TPointHelper = record helper for TPoint
+    function Len: Double;
+  end;
+
+var
+  GlobalPoint: TPoint;
+  Anon1, Anon2: record
+    Field: Integer;
+  end;
+  AnonArr: array[0..1] of record
+    Item: string;
+  end;
+  Counter: Integer = 0;
+
+function Max(A, B: Integer): Integer;
+procedure Log(const Msg: string; Level: Integer = 1);
+function MakeColors: TColors; inline;
+
+implementation
+
+uses Math;
+
+type
+  THidden = class
+    Secret: Integer;
+  end;
+
+var
+  Internal: Boolean;
+
+function Max(A, B: Integer): Integer;
+var
+  Tmp: Integer;
+begin
+  Tmp := A;
+  if B > Tmp then
+    Tmp := B;
+  Result := Tmp;
+end;
+
+procedure Log(const Msg: string; Level: Integer);
+const
+  Prefix = '> ';
+begin
+end;
+
+function MakeColors: TColors;
+begin
+  Result := [clRed];
+end;
+
+function TBase.GetItem(Index: Integer): string;
+begin
+  Result := FItems[Index];
+end;
+
+procedure TBase.SetItem(Index: Integer; const AValue: string);
+begin
+  FItems[Index] := AValue;
+end;
+
+constructor TBase.Create(AValue: Integer; const AName: string);
+begin
+  FValue := AValue;
+end;
+
+class constructor TBase.CreateClass;
+begin
+end;
+
+destructor TBase.Destroy;
+begin
+  inherited;
+end;
+
+procedure TBase.Process(var Data; out Count: Integer; constref Ref: TBase);
+begin
+end;
+
+class operator TBase.Add(A, B: TBase): TBase;
+begin
+end;
+
+function TBaseHelper.Describe: string;
+begin
+end;
+
+function TPointHelper.Len: Double;
+begin
+  Result := Sqrt(Sqr(X) + Sqr(Y));
+end;
+
+end.
@@ -0,0 +1,19 @@
+program lightStubsProgram;
+
+uses lightStubs, Unit2 in 'unit2.pas';
+
+type
+  TLocal = class(TBase)
+    procedure Run;
+  end;
+
+var
+  Local: TLocal;
+
+procedure TLocal.Run;
+begin
+end;
+
+begin
+  Local := TLocal.Create(1);
+end.
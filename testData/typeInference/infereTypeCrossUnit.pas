@@ -0,0 +1,14 @@
+unit infereTypeCrossUnit;
+
+interface
+
+uses infereTypeUsedUnit;
+
+implementation
+
+procedure Test();
+begin
+  Value;
+end;
+
+end.
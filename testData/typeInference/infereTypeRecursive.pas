@@ -0,0 +1,14 @@
+unit infereTypeRecursive;
+
+interface
+
+const
+  A = B + 1;
+  B = A * 2;
+
+implementation
+
+begin
+  A;
+  B;
+end.
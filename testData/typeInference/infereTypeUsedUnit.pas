@@ -0,0 +1,13 @@
+unit infereTypeUsedUnit;
+
+interface
+
+type
+  TValue = Integer;
+
+var
+  Value: TValue;
+
+implementation
+
+end.